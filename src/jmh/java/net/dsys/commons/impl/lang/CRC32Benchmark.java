@@ -0,0 +1,93 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link CRC32} with {@link java.util.zip.CRC32} over byte arrays and
+ * direct buffers of several sizes.
+ *
+ * @author Ricardo Padilha
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CRC32Benchmark {
+
+	@Param({ "16", "256", "4096", "65536", "1048576" })
+	private int size;
+
+	private byte[] array;
+	private ByteBuffer direct;
+	private java.util.zip.CRC32 jdk;
+
+	@Setup
+	public void setUp() {
+		array = new byte[size];
+		new Random(size).nextBytes(array);
+		direct = ByteBuffer.allocateDirect(size);
+		direct.put(array).flip();
+		jdk = new java.util.zip.CRC32();
+	}
+
+	@Benchmark
+	public int array() {
+		return CRC32.digest(array, 0, size);
+	}
+
+	@Benchmark
+	public long jdkArray() {
+		jdk.reset();
+		jdk.update(array, 0, size);
+		return jdk.getValue();
+	}
+
+	@Benchmark
+	public int direct() {
+		return CRC32.digest(direct, 0, size);
+	}
+
+	/**
+	 * Requires Java 8, for {@link java.util.zip.CRC32#update(ByteBuffer)}.
+	 */
+	@Benchmark
+	public long jdkDirect() {
+		jdk.reset();
+		direct.rewind();
+		jdk.update(direct);
+		return jdk.getValue();
+	}
+
+}
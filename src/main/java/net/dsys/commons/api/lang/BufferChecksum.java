@@ -0,0 +1,50 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dsys.commons.api.lang;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link Checksum} that can also be updated from heap and direct buffers,
+ * in place.
+ * 
+ * @author Ricardo Padilha
+ */
+public interface BufferChecksum extends Checksum {
+
+	/**
+	 * Updates the checksum with the specified array of bytes.
+	 */
+	void update(@Nonnull byte[] array);
+
+	/**
+	 * Updates the checksum with the remaining bytes of a buffer. Upon return,
+	 * the buffer's position will be equal to its limit.
+	 */
+	void update(@Nonnull ByteBuffer buffer);
+
+	/**
+	 * Updates the checksum with the bytes of a buffer between position
+	 * (inclusive) and limit (exclusive). The buffer's position and limit are
+	 * not affected.
+	 */
+	void update(@Nonnull ByteBuffer buffer, @Nonnegative int position, @Nonnegative int limit);
+
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dsys.commons.api.lang;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Strategy interface for checksum algorithms, so that the algorithm can be
+ * chosen per use, e.g., trading integrity for speed. Values are unsigned, as
+ * in {@link java.util.zip.Checksum#getValue()}.
+ * 
+ * @author Ricardo Padilha
+ */
+public interface Checksummer {
+
+	/**
+	 * @return the number of significant bits in a checksum value
+	 */
+	@Nonnegative
+	int bits();
+
+	/**
+	 * @return the checksum of a range of an array
+	 */
+	long digest(@Nonnull byte[] array, @Nonnegative int offset, @Nonnegative int length);
+
+	/**
+	 * @return the checksum of the remaining bytes of a buffer. Upon return,
+	 *         the buffer's position will be equal to its limit.
+	 */
+	long digest(@Nonnull ByteBuffer buffer);
+
+	/**
+	 * @return the checksum of the bytes of a buffer between position
+	 *         (inclusive) and limit (exclusive). The buffer's position and
+	 *         limit are not affected.
+	 */
+	long digest(@Nonnull ByteBuffer buffer, @Nonnegative int position, @Nonnegative int limit);
+
+	/**
+	 * @return a new streaming checksum, in its initial state
+	 */
+	@Nonnull
+	BufferChecksum newChecksum();
+
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import net.dsys.commons.api.lang.BufferChecksum;
+
+/**
+ * Calculation of Adler-32 (RFC 1950). The modulo is deferred for as many
+ * bytes as the sums cannot overflow, and direct buffers are read a word at a
+ * time. Results are identical to {@link java.util.zip.Adler32}.
+ *
+ * @author Ricardo Padilha
+ */
+public final class Adler32 implements BufferChecksum {
+
+	private static final int BYTE_SIZE = Byte.SIZE;
+	private static final int BYTE_MASK = 0xFF;
+	private static final int LONG_LENGTH = Long.SIZE / Byte.SIZE;
+	private static final int MOD = 65521;
+	private static final int SHIFT = 16;
+	private static final int SUM_MASK = 0xFFFF;
+	/**
+	 * Largest number of bytes for which the sums cannot overflow a signed
+	 * int. Zlib uses 5552, which assumes unsigned sums.
+	 */
+	private static final int NMAX = 3854;
+
+	private int adler;
+
+	public Adler32() {
+		reset();
+	}
+
+	/**
+	 * Calculates the Adler-32 of a byte array.
+	 */
+	public static int digest(@Nonnull final byte... values) {
+		return update(1, values, 0, values.length);
+	}
+
+	/**
+	 * Calculates the Adler-32 of a byte array.
+	 */
+	public static int digest(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		return update(1, array, offset, length);
+	}
+
+	/**
+	 * Calculates the Adler-32 of the remaining bytes of a buffer. Upon return,
+	 * the buffer's position will be updated to its limit; its limit will not
+	 * have been changed.
+	 */
+	public static int digest(@Nonnull final ByteBuffer value) {
+		final int adler = update(1, value, value.position(), value.limit());
+		value.position(value.limit());
+		return adler;
+	}
+
+	/**
+	 * Calculates the Adler-32 of the bytes of a buffer between position
+	 * (inclusive) and limit (exclusive). The buffer's position and limit are
+	 * not affected.
+	 */
+	public static int digest(@Nonnull final ByteBuffer value, @Nonnegative final int position,
+			@Nonnegative final int limit) {
+		return update(1, value, position, limit);
+	}
+
+	@Override
+	public void reset() {
+		adler = 1;
+	}
+
+	/**
+	 * Updates the checksum with a byte.
+	 */
+	@Override
+	public void update(final int value) {
+		final int a = ((adler & SUM_MASK) + (value & BYTE_MASK)) % MOD;
+		final int b = ((adler >>> SHIFT) + a) % MOD;
+		adler = (b << SHIFT) | a;
+	}
+
+	@Override
+	public void update(@Nonnull final byte[] array) {
+		update(array, 0, array.length);
+	}
+
+	@Override
+	public void update(@Nonnull final byte[] array, @Nonnegative final int offset, @Nonnegative final int length) {
+		adler = update(adler, array, offset, length);
+	}
+
+	@Override
+	public void update(@Nonnull final ByteBuffer buffer) {
+		update(buffer, buffer.position(), buffer.limit());
+		buffer.position(buffer.limit());
+	}
+
+	@Override
+	public void update(@Nonnull final ByteBuffer buffer, @Nonnegative final int position,
+			@Nonnegative final int limit) {
+		adler = update(adler, buffer, position, limit);
+	}
+
+	/**
+	 * @return the current checksum, after which the checksum is reset
+	 */
+	public int digest() {
+		final int digest = adler;
+		reset();
+		return digest;
+	}
+
+	/**
+	 * @return the current checksum, as an unsigned int
+	 */
+	@Override
+	public long getValue() {
+		return adler & 0xFFFF_FFFFL;
+	}
+
+	private static int update(final int adler, final byte[] array, final int offset, final int length) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		int a = adler & SUM_MASK;
+		int b = adler >>> SHIFT;
+		int i = offset;
+		final int end = offset + length;
+		while (i < end) {
+			final int k = Math.min(NMAX, end - i);
+			for (final int n = i + k; i < n; i++) {
+				a += array[i] & BYTE_MASK;
+				b += a;
+			}
+			a %= MOD;
+			b %= MOD;
+		}
+		return (b << SHIFT) | a;
+	}
+
+	private static int update(final int adler, final ByteBuffer buffer, final int position, final int limit) {
+		if (position < 0 || position > limit || limit > buffer.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (buffer.hasArray()) {
+			return update(adler, buffer.array(), buffer.arrayOffset() + position, limit - position);
+		}
+		int a = adler & SUM_MASK;
+		int b = adler >>> SHIFT;
+		int i = position;
+		while (i < limit) {
+			final int k = Math.min(NMAX, limit - i);
+			final int n = i + k;
+			// first round with longs
+			for (; i <= n - LONG_LENGTH; i += LONG_LENGTH) {
+				long word = FastArrays.getLongLE(buffer, i);
+				for (int j = 0; j < LONG_LENGTH; j++, word >>>= BYTE_SIZE) {
+					a += (int) word & BYTE_MASK;
+					b += a;
+				}
+			}
+			// second round with bytes
+			for (; i < n; i++) {
+				a += buffer.get(i) & BYTE_MASK;
+				b += a;
+			}
+			a %= MOD;
+			b %= MOD;
+		}
+		return (b << SHIFT) | a;
+	}
+
+}
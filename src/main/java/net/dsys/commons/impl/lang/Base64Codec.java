@@ -0,0 +1,288 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Table-driven Base64 (RFC 4648) encoder and decoder that writes into
+ * caller-supplied buffers, without intermediate allocation. Instances are
+ * immutable and thread-safe.
+ *
+ * @author Ricardo Padilha
+ */
+public final class Base64Codec {
+
+	/**
+	 * Standard alphabet, with padding.
+	 */
+	public static final Base64Codec STANDARD = new Base64Codec(
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/", true);
+
+	/**
+	 * URL and file name safe alphabet, without padding.
+	 */
+	public static final Base64Codec URL_SAFE = new Base64Codec(
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_", false);
+
+	private static final int BYTE_MASK = 0xFF;
+	private static final int SIX_BITS = 0x3F;
+	private static final char PAD = '=';
+
+	private final char[] digits;
+	private final byte[] values;
+	private final boolean padding;
+
+	private Base64Codec(@Nonnull final String alphabet, final boolean padding) {
+		this.digits = alphabet.toCharArray();
+		this.values = new byte[Byte.MAX_VALUE + 1];
+		Arrays.fill(values, (byte) -1);
+		for (int i = 0; i < digits.length; i++) {
+			values[digits[i]] = (byte) i;
+		}
+		this.padding = padding;
+	}
+
+	/**
+	 * @return the number of chars needed to encode <code>length</code> bytes
+	 */
+	public int encodedLength(@Nonnegative final int length) {
+		if (padding) {
+			return ((length + 2) / 3) * 4;
+		}
+		return (length / 3) * 4 + ((length % 3) * 4 + 2) / 3;
+	}
+
+	/**
+	 * @return the number of bytes encoded by the given chars, ignoring padding
+	 */
+	public int decodedLength(@Nonnull final CharSequence src, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		int n = length;
+		while (n > 0 && src.charAt(offset + n - 1) == PAD) {
+			n--;
+		}
+		return decodedLength(n);
+	}
+
+	/**
+	 * @return the number of bytes encoded by the given ASCII bytes, ignoring
+	 *         padding
+	 */
+	public int decodedLength(@Nonnull final byte[] src, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		int n = length;
+		while (n > 0 && src[offset + n - 1] == PAD) {
+			n--;
+		}
+		return decodedLength(n);
+	}
+
+	private static int decodedLength(final int digits) {
+		if (digits % 4 == 1) {
+			throw new IllegalArgumentException("truncated base64");
+		}
+		return (digits / 4) * 3 + ((digits % 4) * 3) / 4;
+	}
+
+	/**
+	 * Encodes a byte range into a char array.
+	 * @return the number of chars written, same as {@link #encodedLength(int)}
+	 */
+	public int encode(@Nonnull final byte[] src, @Nonnegative final int offset, @Nonnegative final int length,
+			@Nonnull final char[] dst, @Nonnegative final int dstOffset) {
+		final int total = encodedLength(length);
+		checkRange(src.length, offset, length);
+		checkRange(dst.length, dstOffset, total);
+		int i = offset;
+		int j = dstOffset;
+		for (final int end = offset + (length / 3) * 3; i < end; i += 3, j += 4) {
+			final int bits = ((src[i] & BYTE_MASK) << 16) | ((src[i + 1] & BYTE_MASK) << 8) | (src[i + 2] & BYTE_MASK);
+			dst[j]     = digits[bits >>> 18];
+			dst[j + 1] = digits[(bits >>> 12) & SIX_BITS];
+			dst[j + 2] = digits[(bits >>> 6) & SIX_BITS];
+			dst[j + 3] = digits[bits & SIX_BITS];
+		}
+		final int rest = offset + length - i;
+		if (rest > 0) {
+			final int bits = ((src[i] & BYTE_MASK) << 16) | (rest == 2 ? (src[i + 1] & BYTE_MASK) << 8 : 0);
+			dst[j++] = digits[bits >>> 18];
+			dst[j++] = digits[(bits >>> 12) & SIX_BITS];
+			if (rest == 2) {
+				dst[j++] = digits[(bits >>> 6) & SIX_BITS];
+			} else if (padding) {
+				dst[j++] = PAD;
+			}
+			if (padding) {
+				dst[j++] = PAD;
+			}
+		}
+		return j - dstOffset;
+	}
+
+	/**
+	 * Encodes a byte range into an array, as ASCII bytes.
+	 * @return the number of bytes written, same as {@link #encodedLength(int)}
+	 */
+	public int encode(@Nonnull final byte[] src, @Nonnegative final int offset, @Nonnegative final int length,
+			@Nonnull final byte[] dst, @Nonnegative final int dstOffset) {
+		final int total = encodedLength(length);
+		checkRange(src.length, offset, length);
+		checkRange(dst.length, dstOffset, total);
+		int i = offset;
+		int j = dstOffset;
+		for (final int end = offset + (length / 3) * 3; i < end; i += 3, j += 4) {
+			final int bits = ((src[i] & BYTE_MASK) << 16) | ((src[i + 1] & BYTE_MASK) << 8) | (src[i + 2] & BYTE_MASK);
+			dst[j]     = (byte) digits[bits >>> 18];
+			dst[j + 1] = (byte) digits[(bits >>> 12) & SIX_BITS];
+			dst[j + 2] = (byte) digits[(bits >>> 6) & SIX_BITS];
+			dst[j + 3] = (byte) digits[bits & SIX_BITS];
+		}
+		final int rest = offset + length - i;
+		if (rest > 0) {
+			final int bits = ((src[i] & BYTE_MASK) << 16) | (rest == 2 ? (src[i + 1] & BYTE_MASK) << 8 : 0);
+			dst[j++] = (byte) digits[bits >>> 18];
+			dst[j++] = (byte) digits[(bits >>> 12) & SIX_BITS];
+			if (rest == 2) {
+				dst[j++] = (byte) digits[(bits >>> 6) & SIX_BITS];
+			} else if (padding) {
+				dst[j++] = PAD;
+			}
+			if (padding) {
+				dst[j++] = PAD;
+			}
+		}
+		return j - dstOffset;
+	}
+
+	/**
+	 * Appends the encoding of a byte range to a builder.
+	 * @return the number of chars appended, same as {@link #encodedLength(int)}
+	 */
+	public int encode(@Nonnull final byte[] src, @Nonnegative final int offset, @Nonnegative final int length,
+			@Nonnull final StringBuilder dst) {
+		final int total = encodedLength(length);
+		checkRange(src.length, offset, length);
+		dst.ensureCapacity(dst.length() + total);
+		int i = offset;
+		for (final int end = offset + (length / 3) * 3; i < end; i += 3) {
+			final int bits = ((src[i] & BYTE_MASK) << 16) | ((src[i + 1] & BYTE_MASK) << 8) | (src[i + 2] & BYTE_MASK);
+			dst.append(digits[bits >>> 18])
+				.append(digits[(bits >>> 12) & SIX_BITS])
+				.append(digits[(bits >>> 6) & SIX_BITS])
+				.append(digits[bits & SIX_BITS]);
+		}
+		final int rest = offset + length - i;
+		if (rest > 0) {
+			final int bits = ((src[i] & BYTE_MASK) << 16) | (rest == 2 ? (src[i + 1] & BYTE_MASK) << 8 : 0);
+			dst.append(digits[bits >>> 18]).append(digits[(bits >>> 12) & SIX_BITS]);
+			if (rest == 2) {
+				dst.append(digits[(bits >>> 6) & SIX_BITS]);
+			} else if (padding) {
+				dst.append(PAD);
+			}
+			if (padding) {
+				dst.append(PAD);
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Decodes chars into an array. Padding is optional.
+	 * @return the number of bytes written, same as
+	 *         {@link #decodedLength(CharSequence, int, int)}
+	 * @throws IllegalArgumentException if a char is not in the alphabet
+	 */
+	public int decode(@Nonnull final CharSequence src, @Nonnegative final int offset, @Nonnegative final int length,
+			@Nonnull final byte[] dst, @Nonnegative final int dstOffset) {
+		checkRange(src.length(), offset, length);
+		final int total = decodedLength(src, offset, length);
+		checkRange(dst.length, dstOffset, total);
+		int i = offset;
+		int j = dstOffset;
+		for (final int end = dstOffset + (total / 3) * 3; j < end; i += 4, j += 3) {
+			final int bits = (value(src.charAt(i)) << 18) | (value(src.charAt(i + 1)) << 12)
+					| (value(src.charAt(i + 2)) << 6) | value(src.charAt(i + 3));
+			dst[j]     = (byte) (bits >>> 16);
+			dst[j + 1] = (byte) (bits >>> 8);
+			dst[j + 2] = (byte) bits;
+		}
+		final int rest = dstOffset + total - j;
+		if (rest > 0) {
+			int bits = (value(src.charAt(i)) << 18) | (value(src.charAt(i + 1)) << 12);
+			if (rest == 2) {
+				bits |= value(src.charAt(i + 2)) << 6;
+				dst[j + 1] = (byte) (bits >>> 8);
+			}
+			dst[j] = (byte) (bits >>> 16);
+		}
+		return total;
+	}
+
+	/**
+	 * Decodes ASCII bytes into an array. Padding is optional. The source and
+	 * destination may be the same array, as long as
+	 * <code>dstOffset &lt;= offset</code>.
+	 * @return the number of bytes written, same as
+	 *         {@link #decodedLength(byte[], int, int)}
+	 * @throws IllegalArgumentException if a byte is not in the alphabet
+	 */
+	public int decode(@Nonnull final byte[] src, @Nonnegative final int offset, @Nonnegative final int length,
+			@Nonnull final byte[] dst, @Nonnegative final int dstOffset) {
+		checkRange(src.length, offset, length);
+		final int total = decodedLength(src, offset, length);
+		checkRange(dst.length, dstOffset, total);
+		int i = offset;
+		int j = dstOffset;
+		for (final int end = dstOffset + (total / 3) * 3; j < end; i += 4, j += 3) {
+			final int bits = (value(src[i]) << 18) | (value(src[i + 1]) << 12)
+					| (value(src[i + 2]) << 6) | value(src[i + 3]);
+			dst[j]     = (byte) (bits >>> 16);
+			dst[j + 1] = (byte) (bits >>> 8);
+			dst[j + 2] = (byte) bits;
+		}
+		final int rest = dstOffset + total - j;
+		if (rest > 0) {
+			int bits = (value(src[i]) << 18) | (value(src[i + 1]) << 12);
+			if (rest == 2) {
+				bits |= value(src[i + 2]) << 6;
+				dst[j + 1] = (byte) (bits >>> 8);
+			}
+			dst[j] = (byte) (bits >>> 16);
+		}
+		return total;
+	}
+
+	private int value(final int c) {
+		final int value;
+		if (c >= 0 && c < values.length && (value = values[c]) >= 0) {
+			return value;
+		}
+		throw new IllegalArgumentException("not a base64 digit: " + (char) c);
+	}
+
+	private static void checkRange(final int capacity, final int offset, final int length) {
+		if (offset < 0 || length < 0 || offset > capacity - length) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+}
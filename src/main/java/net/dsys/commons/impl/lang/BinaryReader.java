@@ -0,0 +1,460 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Cursor that reads binary fields written by {@link BinaryWriter} from a heap
+ * array, a heap or direct buffer, or the chunks returned by
+ * {@link BinaryWriter#buffers()}. Chunks are read under the writer's rules:
+ * a primitive field never straddles two chunks, so one that does not fit in
+ * the rest of a chunk is read from the next; byte ranges and strings continue
+ * across chunks. Reading a field does not allocate, with the exception of
+ * {@link #getString()} and {@link #getSlice()}; slices are views, and only
+ * copied when they span chunks. Reading past the end throws
+ * {@link BufferUnderflowException}. Instances are not thread-safe, and may be
+ * re-targeted with the <code>wrap</code> methods.
+ *
+ * @author Ricardo Padilha
+ */
+public final class BinaryReader {
+
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+	private static final int SHORT_LENGTH = Short.SIZE / Byte.SIZE;
+	private static final int INT_LENGTH = Integer.SIZE / Byte.SIZE;
+	private static final int LONG_LENGTH = Long.SIZE / Byte.SIZE;
+
+	private ByteBuffer[] chunks;
+	private int next;
+	private int last;
+	private ByteBuffer buffer;
+	private int start;
+	private int index;
+	private int end;
+	private int passed;
+	private int total;
+
+	/**
+	 * Creates an empty reader, to be re-targeted with
+	 * {@link #wrap(ByteBuffer)} or {@link #getSlice(BinaryReader)}.
+	 */
+	public BinaryReader() {
+		this(EMPTY);
+	}
+
+	public BinaryReader(@Nonnull final byte[] array, @Nonnegative final int offset, @Nonnegative final int length) {
+		wrap(ByteBuffer.wrap(array, offset, length));
+	}
+
+	/**
+	 * Creates a reader over the remaining bytes of a buffer. The buffer's
+	 * position and limit are not affected.
+	 */
+	public BinaryReader(@Nonnull final ByteBuffer buffer) {
+		wrap(buffer);
+	}
+
+	/**
+	 * Re-targets this reader to the remaining bytes of a buffer. The buffer's
+	 * position and limit are not affected.
+	 */
+	@Nonnull
+	public BinaryReader wrap(@Nonnull final ByteBuffer buffer) {
+		return wrap(buffer, buffer.position(), buffer.remaining());
+	}
+
+	/**
+	 * Re-targets this reader to a range of a buffer. The buffer's position and
+	 * limit are not affected.
+	 */
+	@Nonnull
+	public BinaryReader wrap(@Nonnull final ByteBuffer buffer, @Nonnegative final int index,
+			@Nonnegative final int length) {
+		if (index < 0 || length < 0 || index > buffer.limit() - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		return wrap(null, 0, 0, buffer, index, index + length, length);
+	}
+
+	/**
+	 * Re-targets this reader to the remaining bytes of a sequence of chunks,
+	 * e.g., those returned by {@link BinaryWriter#buffers()}. The chunks'
+	 * positions and limits are not affected, and must not change while they
+	 * are read.
+	 */
+	@Nonnull
+	public BinaryReader wrap(@Nonnull final ByteBuffer[] buffers) {
+		return wrap(buffers, 0, buffers.length);
+	}
+
+	/**
+	 * Re-targets this reader to the remaining bytes of a range of chunks.
+	 * @see #wrap(ByteBuffer[])
+	 */
+	@Nonnull
+	public BinaryReader wrap(@Nonnull final ByteBuffer[] buffers, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		if (offset < 0 || length < 0 || offset > buffers.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (length == 0) {
+			return wrap(EMPTY);
+		}
+		long bytes = 0;
+		for (int i = offset; i < offset + length; i++) {
+			bytes += buffers[i].remaining();
+		}
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("buffers are too long");
+		}
+		final ByteBuffer first = buffers[offset];
+		return wrap(buffers, offset + 1, offset + length, first, first.position(), first.limit(), (int) bytes);
+	}
+
+	private BinaryReader wrap(final ByteBuffer[] chunks, final int next, final int last, final ByteBuffer buffer,
+			final int index, final int end, final int length) {
+		this.chunks = chunks;
+		this.next = next;
+		this.last = last;
+		this.buffer = buffer;
+		this.start = index;
+		this.index = index;
+		this.end = end;
+		this.passed = 0;
+		this.total = length;
+		return this;
+	}
+
+	/**
+	 * Moves to the start of the next chunk, skipping the rest of this one.
+	 * @return <code>false</code> if there is no next chunk
+	 */
+	private boolean nextChunk() {
+		if (next == last) {
+			return false;
+		}
+		passed += end - start;
+		buffer = chunks[next++];
+		start = buffer.position();
+		index = start;
+		end = start + Math.min(buffer.remaining(), total - passed);
+		return true;
+	}
+
+	/**
+	 * Moves past any exhausted chunks, without changing the position.
+	 */
+	private void skipEmptyChunks() {
+		while (index == end && nextChunk()) {
+			continue;
+		}
+	}
+
+	/**
+	 * @return the number of bytes read since the start
+	 */
+	public int position() {
+		return passed + index - start;
+	}
+
+	/**
+	 * @return the number of bytes left to read
+	 */
+	public int remaining() {
+		return total - position();
+	}
+
+	public boolean hasRemaining() {
+		return remaining() > 0;
+	}
+
+	/**
+	 * Skips the given number of bytes.
+	 */
+	@Nonnull
+	public BinaryReader skip(@Nonnegative final int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("length < 0");
+		}
+		if (length > remaining()) {
+			throw new BufferUnderflowException();
+		}
+		int n = length;
+		while (true) {
+			final int count = Math.min(n, end - index);
+			index += count;
+			n -= count;
+			if (n == 0) {
+				return this;
+			}
+			nextChunk();
+		}
+	}
+
+	/**
+	 * Makes sure that a primitive field of the given length is in the current
+	 * chunk. Primitives never straddle chunks, so if it does not fit in the
+	 * rest of this chunk, it starts on the next one.
+	 */
+	private void require(final int length) {
+		if (index <= end - length) {
+			return;
+		}
+		if (length > remaining()) {
+			throw new BufferUnderflowException();
+		}
+		do {
+			if (!nextChunk()) {
+				throw new BufferUnderflowException();
+			}
+		} while (index > end - length);
+	}
+
+	public byte getByte() {
+		require(1);
+		return buffer.get(index++);
+	}
+
+	public boolean getBoolean() {
+		return getByte() != 0;
+	}
+
+	public short getShort() {
+		require(SHORT_LENGTH);
+		final short value = FastArrays.getShort(buffer, index);
+		index += SHORT_LENGTH;
+		return value;
+	}
+
+	public short getShortLE() {
+		require(SHORT_LENGTH);
+		final short value = FastArrays.getShortLE(buffer, index);
+		index += SHORT_LENGTH;
+		return value;
+	}
+
+	public int getInt() {
+		require(INT_LENGTH);
+		final int value = FastArrays.getInt(buffer, index);
+		index += INT_LENGTH;
+		return value;
+	}
+
+	public int getIntLE() {
+		require(INT_LENGTH);
+		final int value = FastArrays.getIntLE(buffer, index);
+		index += INT_LENGTH;
+		return value;
+	}
+
+	public long getLong() {
+		require(LONG_LENGTH);
+		final long value = FastArrays.getLong(buffer, index);
+		index += LONG_LENGTH;
+		return value;
+	}
+
+	public long getLongLE() {
+		require(LONG_LENGTH);
+		final long value = FastArrays.getLongLE(buffer, index);
+		index += LONG_LENGTH;
+		return value;
+	}
+
+	public float getFloat() {
+		return Float.intBitsToFloat(getInt());
+	}
+
+	public double getDouble() {
+		return Double.longBitsToDouble(getLong());
+	}
+
+	/**
+	 * Reads an unsigned varint (LEB128).
+	 * @see FastArrays#getVarInt(ByteBuffer, int)
+	 */
+	public int getVarInt() {
+		requireVarint(FastArrays.VARINT_MAX_LENGTH);
+		final int value = FastArrays.getVarInt(buffer, index);
+		index += FastArrays.varIntLength(value);
+		return value;
+	}
+
+	/**
+	 * Reads an unsigned varint (LEB128).
+	 * @see FastArrays#getVarLong(ByteBuffer, int)
+	 */
+	public long getVarLong() {
+		requireVarint(FastArrays.VARLONG_MAX_LENGTH);
+		final long value = FastArrays.getVarLong(buffer, index);
+		index += FastArrays.varLongLength(value);
+		return value;
+	}
+
+	/**
+	 * Checks that a varint ends before the end of this reader. FastArrays
+	 * decodes up to the buffer's limit, so a varint cut off at the end would
+	 * otherwise run into the bytes after it. Like other primitives, varints
+	 * never straddle chunks.
+	 */
+	private void requireVarint(final int maxLength) {
+		if (index <= end - maxLength) {
+			return;
+		}
+		skipEmptyChunks();
+		for (int i = index; i < end; i++) {
+			if (buffer.get(i) >= 0) {
+				return;
+			}
+		}
+		throw new BufferUnderflowException();
+	}
+
+	@Nonnull
+	public BinaryReader getBytes(@Nonnull final byte[] dst) {
+		return getBytes(dst, 0, dst.length);
+	}
+
+	@Nonnull
+	public BinaryReader getBytes(@Nonnull final byte[] dst, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		if (offset < 0 || length < 0 || offset > dst.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (length > remaining()) {
+			throw new BufferUnderflowException();
+		}
+		int i = offset;
+		int n = length;
+		while (true) {
+			final int count = Math.min(n, end - index);
+			FastArrays.arrayCopy(buffer, index, dst, i, count);
+			index += count;
+			i += count;
+			n -= count;
+			if (n == 0) {
+				return this;
+			}
+			nextChunk();
+		}
+	}
+
+	/**
+	 * @return the length of the next slice or string, without consuming it
+	 */
+	public int peekLength() {
+		skipEmptyChunks();
+		final int mark = index;
+		final int length = getVarInt();
+		index = mark;
+		return length;
+	}
+
+	/**
+	 * Reads a length prefix, and checks that as many bytes follow it.
+	 */
+	private int getLength() {
+		skipEmptyChunks();
+		final int mark = index;
+		final int length = getVarInt();
+		if (length < 0 || length > remaining()) {
+			index = mark;
+			throw new BufferUnderflowException();
+		}
+		return length;
+	}
+
+	/**
+	 * Reads a slice written by {@link BinaryWriter#putSlice(ByteBuffer)}.
+	 * @return a view of the slice's bytes, or a copy if they span chunks
+	 */
+	@Nonnull
+	public ByteBuffer getSlice() {
+		final int length = getLength();
+		if (length > end - index) {
+			final byte[] copy = new byte[length];
+			getBytes(copy, 0, length);
+			return ByteBuffer.wrap(copy);
+		}
+		final ByteBuffer view = buffer.duplicate();
+		view.limit(index + length);
+		view.position(index);
+		index += length;
+		return view.slice();
+	}
+
+	/**
+	 * Reads a slice written by {@link BinaryWriter#putSlice(ByteBuffer)},
+	 * without allocation or copies, by re-targeting another reader to it,
+	 * even if it spans chunks.
+	 * @return <code>dst</code>
+	 */
+	@Nonnull
+	public BinaryReader getSlice(@Nonnull final BinaryReader dst) {
+		final int length = getLength();
+		dst.wrap(chunks, next, last, buffer, index, index + Math.min(length, end - index), length);
+		skip(length);
+		return dst;
+	}
+
+	/**
+	 * Reads a string written by {@link BinaryWriter#putString(CharSequence)}
+	 * and appends it to a builder.
+	 * @throws IllegalArgumentException if the string is not well-formed UTF-8
+	 */
+	@Nonnull
+	public BinaryReader getString(@Nonnull final StringBuilder dst) {
+		decode(getLength(), dst);
+		return this;
+	}
+
+	/**
+	 * Reads a string written by {@link BinaryWriter#putString(CharSequence)}.
+	 * @throws IllegalArgumentException if the string is not well-formed UTF-8
+	 */
+	@Nonnull
+	public String getString() {
+		final int length = getLength();
+		final StringBuilder sb = new StringBuilder(length);
+		decode(length, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Decodes a string chunk by chunk. {@link BinaryWriter} only splits
+	 * strings between characters, so each chunk holds well-formed UTF-8.
+	 */
+	private void decode(final int length, final StringBuilder dst) {
+		int n = length;
+		while (true) {
+			final int count = Math.min(n, end - index);
+			Utf8.decode(buffer, index, count, dst);
+			index += count;
+			n -= count;
+			if (n == 0) {
+				return;
+			}
+			nextChunk();
+		}
+	}
+
+}
@@ -0,0 +1,449 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import net.dsys.commons.api.lang.Factory;
+
+/**
+ * Cursor that appends binary fields, encoded as by {@link FastArrays}
+ * (big-endian unless stated otherwise), to one of:
+ * <ul>
+ * <li>a heap array that grows as needed;</li>
+ * <li>a fixed buffer, heap or direct, that throws
+ * {@link BufferOverflowException} when full;</li>
+ * <li>a chain of chunks obtained from a {@link Factory}, e.g., a pool of
+ * direct buffers. Primitive fields never straddle two chunks; byte ranges and
+ * strings are split as needed.</li>
+ * </ul>
+ * Writing a field does not allocate. The result is read through
+ * {@link #buffers()}, which suits gathering writes, or {@link #buffer()}.
+ * Instances are not thread-safe.
+ *
+ * @author Ricardo Padilha
+ */
+public final class BinaryWriter {
+
+	private static final int DEFAULT_CAPACITY = 256;
+	private static final int SHORT_LENGTH = Short.SIZE / Byte.SIZE;
+	private static final int INT_LENGTH = Integer.SIZE / Byte.SIZE;
+	private static final int LONG_LENGTH = Long.SIZE / Byte.SIZE;
+	private static final int MAX_CHAR_LENGTH = 3;
+
+	private final Factory<ByteBuffer> factory;
+	private final boolean growable;
+	private final int start;
+	private ByteBuffer buffer;
+	private int index;
+	private ByteBuffer[] chunks;
+	private int chunkCount;
+	private int sealed;
+
+	/**
+	 * Creates a writer over a growable heap array.
+	 */
+	public BinaryWriter() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a writer over a growable heap array.
+	 */
+	public BinaryWriter(@Nonnegative final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity < 1");
+		}
+		this.factory = null;
+		this.growable = true;
+		this.start = 0;
+		this.buffer = ByteBuffer.allocate(capacity);
+	}
+
+	/**
+	 * Creates a writer over a fixed array.
+	 */
+	public BinaryWriter(@Nonnull final byte[] array, @Nonnegative final int offset, @Nonnegative final int length) {
+		this(ByteBuffer.wrap(array, offset, length));
+	}
+
+	/**
+	 * Creates a writer over a fixed buffer, between its position and its
+	 * limit. The buffer's position and limit are not affected.
+	 */
+	public BinaryWriter(@Nonnull final ByteBuffer buffer) {
+		if (buffer.isReadOnly()) {
+			throw new IllegalArgumentException("buffer is read-only");
+		}
+		this.factory = null;
+		this.growable = false;
+		this.start = buffer.position();
+		this.buffer = buffer;
+		this.index = start;
+	}
+
+	/**
+	 * Creates a writer over chunks obtained from a factory. Each chunk is
+	 * written between zero and its limit, and must have room for at least
+	 * one varlong ({@value FastArrays#VARLONG_MAX_LENGTH} bytes).
+	 */
+	public BinaryWriter(@Nonnull final Factory<ByteBuffer> factory) {
+		if (factory == null) {
+			throw new NullPointerException("factory == null");
+		}
+		this.factory = factory;
+		this.growable = false;
+		this.start = 0;
+		this.chunks = new ByteBuffer[1];
+		this.buffer = newChunk();
+	}
+
+	/**
+	 * @return the number of bytes written since the last reset
+	 */
+	public int length() {
+		return sealed + index - start;
+	}
+
+	/**
+	 * Discards everything written. In chunked mode, the first chunk is kept
+	 * and the others are dropped.
+	 */
+	public void reset() {
+		if (chunkCount > 0) {
+			buffer = chunks[0];
+			buffer.clear();
+			Arrays.fill(chunks, 0, chunkCount, null);
+			chunkCount = 0;
+		}
+		index = start;
+		sealed = 0;
+	}
+
+	/**
+	 * @return a view of the bytes written since the last reset
+	 * @throws IllegalStateException if they span more than one chunk
+	 */
+	@Nonnull
+	public ByteBuffer buffer() {
+		if (chunkCount > 0) {
+			throw new IllegalStateException("writer spans several chunks");
+		}
+		return view(buffer, start, index);
+	}
+
+	/**
+	 * @return views of the bytes written since the last reset, one per chunk
+	 */
+	@Nonnull
+	public ByteBuffer[] buffers() {
+		final ByteBuffer[] views = new ByteBuffer[chunkCount + 1];
+		for (int i = 0; i < chunkCount; i++) {
+			views[i] = view(chunks[i], 0, chunks[i].limit());
+		}
+		views[chunkCount] = view(buffer, start, index);
+		return views;
+	}
+
+	private static ByteBuffer view(final ByteBuffer buffer, final int position, final int limit) {
+		final ByteBuffer view = buffer.duplicate();
+		view.limit(limit);
+		view.position(position);
+		return view;
+	}
+
+	/**
+	 * Makes room for a field of the given length.
+	 */
+	private void ensure(final int length) {
+		if (index <= buffer.limit() - length) {
+			return;
+		}
+		if (growable) {
+			grow(length);
+		} else if (factory != null) {
+			next(length);
+		} else {
+			throw new BufferOverflowException();
+		}
+	}
+
+	/**
+	 * Ensures room for a length prefix and its payload at once, so that a
+	 * failed write leaves no dangling prefix. Chunked writers may still split
+	 * the payload from its prefix.
+	 */
+	private void ensurePrefixed(final int length) {
+		if (factory != null) {
+			return;
+		}
+		final long total = (long) FastArrays.varIntLength(length) + length;
+		if (total > Integer.MAX_VALUE) {
+			throw new BufferOverflowException();
+		}
+		ensure((int) total);
+	}
+
+	private void grow(final int length) {
+		final long needed = (long) index + length;
+		if (needed > Integer.MAX_VALUE) {
+			throw new BufferOverflowException();
+		}
+		final long doubled = Math.min(Integer.MAX_VALUE, 2L * buffer.capacity());
+		buffer = ByteBuffer.wrap(Arrays.copyOf(buffer.array(), (int) Math.max(needed, doubled)));
+	}
+
+	/**
+	 * Seals the current chunk and continues on a new one.
+	 */
+	private void next(final int length) {
+		final ByteBuffer chunk = newChunk();
+		if (chunk.limit() < length) {
+			throw new BufferOverflowException();
+		}
+		buffer.limit(index);
+		if (chunkCount == chunks.length) {
+			chunks = Arrays.copyOf(chunks, chunkCount * 2);
+		}
+		chunks[chunkCount++] = buffer;
+		sealed += index;
+		buffer = chunk;
+		index = 0;
+	}
+
+	private ByteBuffer newChunk() {
+		final ByteBuffer chunk = factory.newInstance();
+		if (chunk.isReadOnly()) {
+			throw new IllegalArgumentException("chunk is read-only");
+		}
+		chunk.clear();
+		if (chunk.limit() < FastArrays.VARLONG_MAX_LENGTH) {
+			throw new IllegalArgumentException("chunk is too small");
+		}
+		return chunk;
+	}
+
+	@Nonnull
+	public BinaryWriter putByte(final byte value) {
+		ensure(1);
+		buffer.put(index++, value);
+		return this;
+	}
+
+	@Nonnull
+	public BinaryWriter putBoolean(final boolean value) {
+		return putByte(value ? (byte) 1 : (byte) 0);
+	}
+
+	@Nonnull
+	public BinaryWriter putShort(final short value) {
+		ensure(SHORT_LENGTH);
+		index += FastArrays.putShort(buffer, index, value);
+		return this;
+	}
+
+	@Nonnull
+	public BinaryWriter putShortLE(final short value) {
+		ensure(SHORT_LENGTH);
+		index += FastArrays.putShortLE(buffer, index, value);
+		return this;
+	}
+
+	@Nonnull
+	public BinaryWriter putInt(final int value) {
+		ensure(INT_LENGTH);
+		index += FastArrays.putInt(buffer, index, value);
+		return this;
+	}
+
+	@Nonnull
+	public BinaryWriter putIntLE(final int value) {
+		ensure(INT_LENGTH);
+		index += FastArrays.putIntLE(buffer, index, value);
+		return this;
+	}
+
+	@Nonnull
+	public BinaryWriter putLong(final long value) {
+		ensure(LONG_LENGTH);
+		index += FastArrays.putLong(buffer, index, value);
+		return this;
+	}
+
+	@Nonnull
+	public BinaryWriter putLongLE(final long value) {
+		ensure(LONG_LENGTH);
+		index += FastArrays.putLongLE(buffer, index, value);
+		return this;
+	}
+
+	@Nonnull
+	public BinaryWriter putFloat(final float value) {
+		return putInt(Float.floatToRawIntBits(value));
+	}
+
+	@Nonnull
+	public BinaryWriter putDouble(final double value) {
+		return putLong(Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Appends an unsigned varint (LEB128).
+	 * @see FastArrays#putVarInt(ByteBuffer, int, int)
+	 */
+	@Nonnull
+	public BinaryWriter putVarInt(final int value) {
+		ensure(FastArrays.varIntLength(value));
+		index += FastArrays.putVarInt(buffer, index, value);
+		return this;
+	}
+
+	/**
+	 * Appends an unsigned varint (LEB128).
+	 * @see FastArrays#putVarLong(ByteBuffer, int, long)
+	 */
+	@Nonnull
+	public BinaryWriter putVarLong(final long value) {
+		ensure(FastArrays.varLongLength(value));
+		index += FastArrays.putVarLong(buffer, index, value);
+		return this;
+	}
+
+	@Nonnull
+	public BinaryWriter putBytes(@Nonnull final byte[] src) {
+		return putBytes(src, 0, src.length);
+	}
+
+	@Nonnull
+	public BinaryWriter putBytes(@Nonnull final byte[] src, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		if (offset < 0 || length < 0 || offset > src.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (factory == null) {
+			ensure(length);
+			FastArrays.arrayCopy(src, offset, buffer, index, length);
+			index += length;
+			return this;
+		}
+		int i = offset;
+		int n = length;
+		while (true) {
+			final int count = Math.min(n, buffer.limit() - index);
+			FastArrays.arrayCopy(src, i, buffer, index, count);
+			index += count;
+			i += count;
+			n -= count;
+			if (n == 0) {
+				return this;
+			}
+			next(1);
+		}
+	}
+
+	/**
+	 * Appends the remaining bytes of a buffer. Upon return, the buffer's
+	 * position will be equal to its limit.
+	 */
+	@Nonnull
+	public BinaryWriter putBytes(@Nonnull final ByteBuffer src) {
+		final int length = src.remaining();
+		if (factory == null) {
+			ensure(length);
+			FastArrays.arrayCopy(src, src.position(), buffer, index, length);
+			index += length;
+			src.position(src.limit());
+			return this;
+		}
+		int n = length;
+		while (true) {
+			final int count = Math.min(n, buffer.limit() - index);
+			FastArrays.arrayCopy(src, src.position(), buffer, index, count);
+			src.position(src.position() + count);
+			index += count;
+			n -= count;
+			if (n == 0) {
+				return this;
+			}
+			next(1);
+		}
+	}
+
+	/**
+	 * Appends a slice: its length, as a varint, followed by its bytes.
+	 * @see BinaryReader#getSlice()
+	 */
+	@Nonnull
+	public BinaryWriter putSlice(@Nonnull final byte[] src, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		if (offset < 0 || length < 0 || offset > src.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		ensurePrefixed(length);
+		return putVarInt(length).putBytes(src, offset, length);
+	}
+
+	/**
+	 * Appends the remaining bytes of a buffer as a slice. Upon return, the
+	 * buffer's position will be equal to its limit.
+	 * @see BinaryReader#getSlice()
+	 */
+	@Nonnull
+	public BinaryWriter putSlice(@Nonnull final ByteBuffer src) {
+		ensurePrefixed(src.remaining());
+		return putVarInt(src.remaining()).putBytes(src);
+	}
+
+	/**
+	 * Appends a string: the length of its UTF-8 encoding, as a varint,
+	 * followed by the encoding.
+	 * @see Utf8#encode(CharSequence, ByteBuffer, int)
+	 */
+	@Nonnull
+	public BinaryWriter putString(@Nonnull final CharSequence value) {
+		final int length = Utf8.encodedLength(value);
+		ensurePrefixed(length);
+		putVarInt(length);
+		if (factory == null || length <= buffer.limit() - index) {
+			ensure(length);
+			index += Utf8.encode(value, buffer, index);
+			return this;
+		}
+		// split at char boundaries, never between a surrogate pair
+		final int end = value.length();
+		int i = 0;
+		while (i < end) {
+			int count = Math.min(end - i, (buffer.limit() - index) / MAX_CHAR_LENGTH);
+			if (count > 0 && count < end - i && Character.isHighSurrogate(value.charAt(i + count - 1))) {
+				count--;
+			}
+			if (count == 0) {
+				next(2 * MAX_CHAR_LENGTH);
+				continue;
+			}
+			index += Utf8.encode(value, i, count, buffer, index);
+			i += count;
+		}
+		return this;
+	}
+
+}
@@ -17,28 +17,40 @@
 package net.dsys.commons.impl.lang;
 
 import java.nio.ByteBuffer;
-import java.util.zip.Checksum;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 import javax.annotation.Nonnegative;
 import javax.annotation.Nonnull;
 
+import net.dsys.commons.api.lang.BufferChecksum;
+
 /**
- * Calculation of CRC32 based on a cached table. This implementation outperforms
- * the CRC32 implementation that is in the java.util.zip package by a factor of
- * at least 80x.
+ * Calculation of CRC32 based on a cached table. Arrays are processed eight
+ * bytes at a time with slicing-by-8 tables. Note that on recent VMs
+ * {@link java.util.zip.CRC32} is an intrinsic, and is faster for large
+ * arrays.
  * 
+ * @see http://create.stephan-brumme.com/crc32/#slicing-by-8-overview
  * @see http://snippets.dzone.com/tag/crc32
  * @see http://introcs.cs.princeton.edu/java/51data/CRC32.java.html
  * 
  * @author Ricardo Padilha
  */
-public final class CRC32 implements Checksum {
+public final class CRC32 implements BufferChecksum {
 
 	private static final int BYTE_SIZE = Byte.SIZE;
 	private static final int BYTE_MASK = 0xFF;
 	private static final int INT_MASK = 0xFFFF_FFFF;
-	private static final int INT_COUNT = (Integer.SIZE / Byte.SIZE) - 1;
-	private static final int LONG_COUNT = (Long.SIZE / Byte.SIZE) - 1;
+	private static final long LONG_INT_MASK = 0xFFFF_FFFFL;
+	/**
+	 * Reversed CRC32 polynomial, same as <code>TABLE[128]</code>.
+	 */
+	private static final int POLYNOMIAL = 0xEDB8_8320;
+	/**
+	 * Ranges up to this length are not split by <code>parallelDigest</code>.
+	 */
+	private static final long PARALLEL_THRESHOLD = 1 << 20;
 
 	private static final int[] TABLE = { 0x00000000, 0x77073096, 0xee0e612c,
 			0x990951ba, 0x076dc419, 0x706af48f, 0xe963a535, 0x9e6495a3,
@@ -93,6 +105,12 @@ public final class CRC32 implements Checksum {
 			0xb3667a2e, 0xc4614ab8, 0x5d681b02, 0x2a6f2b94, 0xb40bbe37,
 			0xc30c8ea1, 0x5a05df1b, 0x2d02ef8d, };
 
+	/**
+	 * Slicing-by-8 tables, see {@link SlicingBy8}. Slice zero is
+	 * {@link #TABLE}.
+	 */
+	private static final int[] SLICES = SlicingBy8.slices(POLYNOMIAL);
+
 	private int crc;
 
 	public CRC32() {
@@ -100,26 +118,22 @@ public final class CRC32 implements Checksum {
 	}
 
 	public static int digest(@Nonnull final byte... values) {
-		final int k = values.length;
-		int crc = INT_MASK;
-		for (int j = 0; j < k; j++) {
-			crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ values[j]) & BYTE_MASK];
-		}
-		crc = crc ^ INT_MASK;
-		return crc;
+		return update(INT_MASK, values, 0, values.length) ^ INT_MASK;
 	}
 
 	/**
 	 * Calculates the CRC32 of an integer as if it was an 4-byte array (big-endian).
 	 */
 	public static int digest(final int value) {
-		int crc = INT_MASK;
-		for (int i = INT_COUNT; i >= 0; i--) {
-			final byte b = (byte) ((value >>> (i * BYTE_SIZE)) & BYTE_MASK);
-			crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ b) & BYTE_MASK];
-		}
-		crc = crc ^ INT_MASK;
-		return crc;
+		return updateInt(INT_MASK, value) ^ INT_MASK;
+	}
+
+	/**
+	 * Calculates the CRC32 of two integers as if they were an 8-byte array
+	 * (big-endian).
+	 */
+	public static int digest(final int a, final int b) {
+		return updateLong(INT_MASK, ((long) a << Integer.SIZE) | (b & LONG_INT_MASK)) ^ INT_MASK;
 	}
 
 	/**
@@ -129,27 +143,24 @@ public final class CRC32 implements Checksum {
 		final int k = values.length;
 		int crc = INT_MASK;
 		for (int j = 0; j < k; j++) {
-			final int value = values[j];
-			for (int i = INT_COUNT; i >= 0; i--) {
-				final byte b = (byte) ((value >>> (i * BYTE_SIZE)) & BYTE_MASK);
-				crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ b) & BYTE_MASK];
-			}
+			crc = updateInt(crc, values[j]);
 		}
-		crc = crc ^ INT_MASK;
-		return crc;
+		return crc ^ INT_MASK;
 	}
 
 	/**
 	 * Calculates the CRC32 of a long as if it was an 8-byte array (big-endian).
 	 */
 	public static int digest(final long value) {
-		int crc = INT_MASK;
-		for (int i = LONG_COUNT; i >= 0; i++) {
-			final byte b = (byte) (value >>> (i * BYTE_SIZE));
-			crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ b) & BYTE_MASK];
-		}
-		crc = crc ^ INT_MASK;
-		return crc;
+		return updateLong(INT_MASK, value) ^ INT_MASK;
+	}
+
+	/**
+	 * Calculates the CRC32 of two longs as if they were a 16-byte array
+	 * (big-endian).
+	 */
+	public static int digest(final long a, final long b) {
+		return updateLong(updateLong(INT_MASK, a), b) ^ INT_MASK;
 	}
 
 	/**
@@ -159,14 +170,9 @@ public final class CRC32 implements Checksum {
 		final int k = values.length;
 		int crc = INT_MASK;
 		for (int j = 0; j < k; j++) {
-			final long value = values[j];
-			for (int i = LONG_COUNT; i >= 0; i++) {
-				final byte b = (byte) (value >>> (i * BYTE_SIZE));
-				crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ b) & BYTE_MASK];
-			}
+			crc = updateLong(crc, values[j]);
 		}
-		crc = crc ^ INT_MASK;
-		return crc;
+		return crc ^ INT_MASK;
 	}
 
 	/**
@@ -174,13 +180,7 @@ public final class CRC32 implements Checksum {
 	 */
 	public static int digest(@Nonnull final byte[] array, @Nonnegative final int offset,
 			@Nonnegative final int length) {
-		final int k = offset + length;
-		int crc = INT_MASK;
-		for (int i = offset; i < k; i++) {
-			crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ array[i]) & BYTE_MASK];
-		}
-		crc = crc ^ INT_MASK;
-		return crc;
+		return update(INT_MASK, array, offset, length) ^ INT_MASK;
 	}
 
 	/**
@@ -190,12 +190,7 @@ public final class CRC32 implements Checksum {
 	 * its limit; its limit will not have been changed.
 	 */
 	public static int digest(@Nonnull final ByteBuffer value) {
-		final int k = value.limit();
-		int crc = INT_MASK;
-		for (int i = value.position(); i < k; i++) {
-			crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ value.get(i)) & BYTE_MASK];
-		}
-		crc = crc ^ INT_MASK;
+		final int crc = update(INT_MASK, value, value.position(), value.limit()) ^ INT_MASK;
 		value.position(value.limit());
 		return crc;
 	}
@@ -207,12 +202,7 @@ public final class CRC32 implements Checksum {
 	 */
 	public static int digest(@Nonnull final ByteBuffer value, @Nonnegative final int position,
 			@Nonnegative final int limit) {
-		int crc = INT_MASK;
-		for (int i = position; i < limit; i++) {
-			crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ value.get(i)) & BYTE_MASK];
-		}
-		crc = crc ^ INT_MASK;
-		return crc;
+		return update(INT_MASK, value, position, limit) ^ INT_MASK;
 	}
 
 	/**
@@ -231,10 +221,27 @@ public final class CRC32 implements Checksum {
 		crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ (value & BYTE_MASK)) & BYTE_MASK];
 	}
 
+	/**
+	 * Updates the checksum with an integer as if it was an 4-byte array
+	 * (big-endian).
+	 */
+	public void updateInt(final int value) {
+		crc = updateInt(crc, value);
+	}
+
+	/**
+	 * Updates the checksum with a long as if it was an 8-byte array
+	 * (big-endian).
+	 */
+	public void updateLong(final long value) {
+		crc = updateLong(crc, value);
+	}
+
 	/**
 	 * Updates the CRC-32 checksum with the specified array of bytes.
 	 * @param array the array of bytes to update the checksum with
 	 */
+	@Override
 	public void update(@Nonnull final byte[] array) {
 		update(array, 0, array.length);
 	}
@@ -247,10 +254,23 @@ public final class CRC32 implements Checksum {
 	@Override
 	public void update(@Nonnull final byte[] array, @Nonnegative final int offset,
 			@Nonnegative final int length) {
-		final int k = offset + length;
-		for (int i = offset; i < k; i++) {
-			crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ array[i]) & BYTE_MASK];
-		}
+		crc = update(crc, array, offset, length);
+	}
+
+	private static int update(final int crc, final byte[] array, final int offset, final int length) {
+		return SlicingBy8.update(SLICES, crc, array, offset, length);
+	}
+
+	private static int update(final int crc, final ByteBuffer buffer, final int position, final int limit) {
+		return SlicingBy8.update(SLICES, crc, buffer, position, limit);
+	}
+
+	private static int updateInt(final int crc, final int value) {
+		return SlicingBy8.updateInt(SLICES, crc, value);
+	}
+
+	private static int updateLong(final int crc, final long value) {
+		return SlicingBy8.updateLE(SLICES, crc, Long.reverseBytes(value));
 	}
 
 	/**
@@ -261,11 +281,9 @@ public final class CRC32 implements Checksum {
 	 * 
 	 * @param buffer the ByteBuffer to update the checksum with
 	 */
+	@Override
 	public void update(@Nonnull final ByteBuffer buffer) {
-		final int k = buffer.limit();
-		for (int i = buffer.position(); i < k; i++) {
-			crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ buffer.get(i)) & BYTE_MASK];
-		}
+		crc = update(crc, buffer, buffer.position(), buffer.limit());
 		buffer.position(buffer.limit());
 	}
 
@@ -276,13 +294,152 @@ public final class CRC32 implements Checksum {
 	 * 
 	 * @param buffer the ByteBuffer to update the checksum with
 	 */
+	@Override
 	public void update(@Nonnull final ByteBuffer value, @Nonnegative final int position,
 			@Nonnegative final int limit) {
-		for (int i = position; i < limit; i++) {
-			crc = (crc >>> BYTE_SIZE) ^ TABLE[(crc ^ value.get(i)) & BYTE_MASK];
+		crc = update(crc, value, position, limit);
+	}
+
+	/**
+	 * Combines the CRC32 of two adjacent ranges, <code>A</code> followed by
+	 * <code>B</code>, into the CRC32 of their concatenation, in
+	 * <code>O(log(lengthB))</code> time. Appending <code>lengthB</code> zero
+	 * bytes is a linear operator over GF(2), which is applied to
+	 * <code>crcA</code> by repeated squaring of 32x32 bit matrices.
+	 *
+	 * @see http://github.com/madler/zlib/blob/master/crc32.c
+	 */
+	public static int combine(final int crcA, final int crcB, @Nonnegative final long lengthB) {
+		if (lengthB < 0) {
+			throw new IllegalArgumentException("lengthB < 0");
+		}
+		if (lengthB == 0) {
+			return crcA;
 		}
+		final int[] even = new int[Integer.SIZE];
+		final int[] odd = new int[Integer.SIZE];
+		// operator for one zero bit
+		odd[0] = POLYNOMIAL;
+		for (int n = 1, row = 1; n < Integer.SIZE; n++, row <<= 1) {
+			odd[n] = row;
+		}
+		// operators for two and four zero bits
+		square(even, odd);
+		square(odd, even);
+		// apply the operators for one zero byte, two zero bytes, and so on
+		int crc = crcA;
+		long n = lengthB;
+		while (true) {
+			square(even, odd);
+			if ((n & 1) != 0) {
+				crc = multiply(even, crc);
+			}
+			n >>>= 1;
+			if (n == 0) {
+				break;
+			}
+			square(odd, even);
+			if ((n & 1) != 0) {
+				crc = multiply(odd, crc);
+			}
+			n >>>= 1;
+			if (n == 0) {
+				break;
+			}
+		}
+		return crc ^ crcB;
+	}
+
+	private static int multiply(final int[] matrix, final int vector) {
+		int sum = 0;
+		for (int i = 0, v = vector; v != 0; i++, v >>>= 1) {
+			if ((v & 1) != 0) {
+				sum ^= matrix[i];
+			}
+		}
+		return sum;
 	}
 
+	private static void square(final int[] square, final int[] matrix) {
+		for (int n = 0; n < Integer.SIZE; n++) {
+			square[n] = multiply(matrix, matrix[n]);
+		}
+	}
+
+	/**
+	 * Calculates the CRC32 of a byte array, splitting it across a shared
+	 * fork/join pool.
+	 * @see #combine(int, int, long)
+	 */
+	public static int parallelDigest(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		return parallelDigest(SharedPool.INSTANCE, array, offset, length);
+	}
+
+	/**
+	 * Calculates the CRC32 of a byte array, splitting it across a fork/join
+	 * pool.
+	 * @see #combine(int, int, long)
+	 */
+	public static int parallelDigest(@Nonnull final ForkJoinPool pool, @Nonnull final byte[] array,
+			@Nonnegative final int offset, @Nonnegative final int length) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		return pool.invoke(new ArrayTask(array, offset, length)).intValue();
+	}
+
+	/**
+	 * Calculates the CRC32 of the bytes from the specified buffer, splitting
+	 * them across a shared fork/join pool. The buffer's position and limit are
+	 * not affected.
+	 * @see #combine(int, int, long)
+	 */
+	public static int parallelDigest(@Nonnull final ByteBuffer value, @Nonnegative final int position,
+			@Nonnegative final int limit) {
+		return parallelDigest(SharedPool.INSTANCE, value, position, limit);
+	}
+
+	/**
+	 * Calculates the CRC32 of the bytes from the specified buffer, splitting
+	 * them across a fork/join pool. The buffer's position and limit are not
+	 * affected.
+	 * @see #combine(int, int, long)
+	 */
+	public static int parallelDigest(@Nonnull final ForkJoinPool pool, @Nonnull final ByteBuffer value,
+			@Nonnegative final int position, @Nonnegative final int limit) {
+		if (position < 0 || position > limit || limit > value.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		return pool.invoke(new BufferTask(value, position, limit - position)).intValue();
+	}
+
+	/**
+	 * Calculates the CRC32 of a range of a mapped region, splitting it across
+	 * a shared fork/join pool.
+	 * @see #combine(int, int, long)
+	 */
+	public static int parallelDigest(@Nonnull final MappedRegion region, @Nonnegative final long offset,
+			@Nonnegative final long length) {
+		return parallelDigest(SharedPool.INSTANCE, region, offset, length);
+	}
+
+	/**
+	 * Calculates the CRC32 of a range of a mapped region, splitting it across
+	 * a fork/join pool.
+	 * @see #combine(int, int, long)
+	 */
+	public static int parallelDigest(@Nonnull final ForkJoinPool pool, @Nonnull final MappedRegion region,
+			@Nonnegative final long offset, @Nonnegative final long length) {
+		if (offset < 0 || length < 0 || offset > region.length() - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		return pool.invoke(new RegionTask(region, offset, length)).intValue();
+	}
+
+	/**
+	 * @return the current checksum, after which the checksum is reset
+	 */
 	public int digest() {
 		final int digest = this.crc ^ INT_MASK;
 		this.crc = INT_MASK;
@@ -290,11 +447,131 @@ public final class CRC32 implements Checksum {
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * @return the current checksum, as an unsigned int, without resetting
 	 */
 	@Override
 	public long getValue() {
-		return digest();
+		return (crc ^ INT_MASK) & LONG_INT_MASK;
+	}
+
+	/**
+	 * Lazily created pool for <code>parallelDigest</code>, sized to the
+	 * number of processors. Its worker threads are daemons.
+	 */
+	private static final class SharedPool {
+		static final ForkJoinPool INSTANCE = new ForkJoinPool();
+	}
+
+	/**
+	 * Splits a range in halves down to {@link CRC32#PARALLEL_THRESHOLD} bytes,
+	 * and combines the CRCs of the halves. Single-threaded pools do not split.
+	 */
+	private abstract static class DigestTask extends RecursiveTask<Integer> {
+
+		private static final long serialVersionUID = 1L;
+
+		final long offset;
+		final long length;
+
+		DigestTask(final long offset, final long length) {
+			this.offset = offset;
+			this.length = length;
+		}
+
+		abstract DigestTask split(long offset, long length);
+
+		abstract int digest();
+
+		@Override
+		protected final Integer compute() {
+			if (length <= PARALLEL_THRESHOLD || getPool().getParallelism() == 1) {
+				return Integer.valueOf(digest());
+			}
+			final long half = length >>> 1;
+			final DigestTask left = split(offset, half);
+			final DigestTask right = split(offset + half, length - half);
+			left.fork();
+			final int crcB = right.compute().intValue();
+			final int crcA = left.join().intValue();
+			return Integer.valueOf(combine(crcA, crcB, length - half));
+		}
+	}
+
+	private static final class ArrayTask extends DigestTask {
+
+		private static final long serialVersionUID = 1L;
+
+		private final byte[] array;
+
+		ArrayTask(final byte[] array, final long offset, final long length) {
+			super(offset, length);
+			this.array = array;
+		}
+
+		@Override
+		DigestTask split(final long offset, final long length) {
+			return new ArrayTask(array, offset, length);
+		}
+
+		@Override
+		int digest() {
+			return update(INT_MASK, array, (int) offset, (int) length) ^ INT_MASK;
+		}
+	}
+
+	private static final class BufferTask extends DigestTask {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient ByteBuffer buffer;
+
+		BufferTask(final ByteBuffer buffer, final long offset, final long length) {
+			super(offset, length);
+			this.buffer = buffer;
+		}
+
+		@Override
+		DigestTask split(final long offset, final long length) {
+			return new BufferTask(buffer, offset, length);
+		}
+
+		@Override
+		int digest() {
+			return update(INT_MASK, buffer, (int) offset, (int) (offset + length)) ^ INT_MASK;
+		}
+	}
+
+	private static final class RegionTask extends DigestTask {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient MappedRegion region;
+
+		RegionTask(final MappedRegion region, final long offset, final long length) {
+			super(offset, length);
+			this.region = region;
+		}
+
+		@Override
+		DigestTask split(final long offset, final long length) {
+			return new RegionTask(region, offset, length);
+		}
+
+		@Override
+		int digest() {
+			final int windowSize = region.windowSize();
+			int crc = INT_MASK;
+			long pos = offset;
+			long remaining = length;
+			while (remaining > 0) {
+				final int index = (int) (pos & (windowSize - 1));
+				final int count = (int) Math.min(remaining, windowSize - index);
+				crc = update(crc, region.window(pos), index, index + count);
+				pos += count;
+				remaining -= count;
+			}
+			return crc ^ INT_MASK;
+		}
 	}
 
 }
@@ -0,0 +1,280 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import net.dsys.commons.api.lang.BufferChecksum;
+
+/**
+ * Calculation of CRC32C (Castagnoli, as used by iSCSI, ext4 and many storage
+ * formats). On Java 9 and later, arrays and buffers are delegated to
+ * {@link java.util.zip.CRC32C}, which is an intrinsic; otherwise, or when the
+ * system property {@value #PURE_PROPERTY} is <code>true</code>, they are
+ * processed with slicing-by-8 tables. Primitives always use the tables.
+ *
+ * @see CRC32
+ *
+ * @author Ricardo Padilha
+ */
+public final class CRC32C implements BufferChecksum {
+
+	/**
+	 * System property that disables delegation to
+	 * {@link java.util.zip.CRC32C}.
+	 */
+	public static final String PURE_PROPERTY = "net.dsys.commons.impl.lang.CRC32C.pure";
+
+	private static final boolean INTRINSIC = IntrinsicCRC32C.isAvailable() && !Boolean.getBoolean(PURE_PROPERTY);
+
+	private static final int BYTE_SIZE = Byte.SIZE;
+	private static final int BYTE_MASK = 0xFF;
+	private static final int INT_MASK = 0xFFFF_FFFF;
+	private static final long LONG_INT_MASK = 0xFFFF_FFFFL;
+	/**
+	 * Castagnoli polynomial, bit-reflected.
+	 */
+	private static final int POLYNOMIAL = 0x82F6_3B78;
+
+	/**
+	 * Slicing-by-8 tables, see {@link SlicingBy8}.
+	 */
+	private static final int[] SLICES = SlicingBy8.slices(POLYNOMIAL);
+
+	private final Checksum intrinsic;
+	private int crc;
+
+	public CRC32C() {
+		intrinsic = INTRINSIC ? IntrinsicCRC32C.newChecksum() : null;
+		reset();
+	}
+
+	/**
+	 * @return <code>true</code> if arrays and buffers are delegated to
+	 *         {@link java.util.zip.CRC32C}
+	 */
+	public static boolean isIntrinsic() {
+		return INTRINSIC;
+	}
+
+	public static int digest(@Nonnull final byte... values) {
+		return digest(values, 0, values.length);
+	}
+
+	/**
+	 * Calculates the CRC32C of an integer as if it was an 4-byte array (big-endian).
+	 */
+	public static int digest(final int value) {
+		return update(INT_MASK, value) ^ INT_MASK;
+	}
+
+	/**
+	 * Calculates the CRC32C of integers as if they were 4-byte arrays (big-endian).
+	 */
+	public static int digest(@Nonnull final int... values) {
+		int crc = INT_MASK;
+		for (final int value : values) {
+			crc = update(crc, value);
+		}
+		return crc ^ INT_MASK;
+	}
+
+	/**
+	 * Calculates the CRC32C of a long as if it was an 8-byte array (big-endian).
+	 */
+	public static int digest(final long value) {
+		return update(INT_MASK, value) ^ INT_MASK;
+	}
+
+	/**
+	 * Calculates the CRC32C of longs as if they were 8-byte arrays (big-endian).
+	 */
+	public static int digest(@Nonnull final long... values) {
+		int crc = INT_MASK;
+		for (final long value : values) {
+			crc = update(crc, value);
+		}
+		return crc ^ INT_MASK;
+	}
+
+	/**
+	 * Calculates the CRC32C of a byte array.
+	 */
+	public static int digest(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		if (INTRINSIC) {
+			final Checksum checksum = IntrinsicCRC32C.newChecksum();
+			checksum.update(array, offset, length);
+			return (int) checksum.getValue();
+		}
+		return update(INT_MASK, array, offset, length) ^ INT_MASK;
+	}
+
+	/**
+	 * Calculates the CRC32C of the bytes from the specified buffer. The
+	 * checksum is updated using buffer.remaining() bytes starting at
+	 * buffer.position() Upon return, the buffer's position will be updated to
+	 * its limit; its limit will not have been changed.
+	 */
+	public static int digest(@Nonnull final ByteBuffer value) {
+		final int crc = digest(value, value.position(), value.limit());
+		value.position(value.limit());
+		return crc;
+	}
+
+	/**
+	 * Calculates the CRC32C of the bytes from the specified buffer. The
+	 * checksum is updated byte retrieving bytes directly from the buffer.
+	 * The buffer's position and limit are not affected.
+	 */
+	public static int digest(@Nonnull final ByteBuffer value, @Nonnegative final int position,
+			@Nonnegative final int limit) {
+		if (INTRINSIC) {
+			final Checksum checksum = IntrinsicCRC32C.newChecksum();
+			update(checksum, value, position, limit);
+			return (int) checksum.getValue();
+		}
+		return update(INT_MASK, value, position, limit) ^ INT_MASK;
+	}
+
+	/**
+	 * Resets CRC-32C to initial value.
+	 */
+	@Override
+	public void reset() {
+		if (intrinsic != null) {
+			intrinsic.reset();
+		}
+		crc = INT_MASK;
+	}
+
+	/**
+	 * Calculates the CRC32C of a byte.
+	 */
+	@Override
+	public void update(final int value) {
+		if (intrinsic != null) {
+			intrinsic.update(value);
+			return;
+		}
+		crc = (crc >>> BYTE_SIZE) ^ SLICES[(crc ^ value) & BYTE_MASK];
+	}
+
+	/**
+	 * Updates the CRC-32C checksum with the specified array of bytes.
+	 * @param array the array of bytes to update the checksum with
+	 */
+	@Override
+	public void update(@Nonnull final byte[] array) {
+		update(array, 0, array.length);
+	}
+
+	@Override
+	public void update(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		if (intrinsic != null) {
+			intrinsic.update(array, offset, length);
+			return;
+		}
+		crc = update(crc, array, offset, length);
+	}
+
+	/**
+	 * Updates the checksum with the bytes from the specified buffer. The
+	 * checksum is updated using buffer.remaining() bytes starting at
+	 * buffer.position() Upon return, the buffer's position will be updated to
+	 * its limit; its limit will not have been changed.
+	 *
+	 * @param buffer the ByteBuffer to update the checksum with
+	 */
+	@Override
+	public void update(@Nonnull final ByteBuffer buffer) {
+		update(buffer, buffer.position(), buffer.limit());
+		buffer.position(buffer.limit());
+	}
+
+	/**
+	 * Updates the checksum with the bytes from the specified buffer. The
+	 * checksum is updated byte retrieving bytes directly from the buffer.
+	 * The buffer's position and limit are not affected.
+	 *
+	 * @param value the ByteBuffer to update the checksum with
+	 */
+	@Override
+	public void update(@Nonnull final ByteBuffer value, @Nonnegative final int position,
+			@Nonnegative final int limit) {
+		if (intrinsic != null) {
+			update(intrinsic, value, position, limit);
+			return;
+		}
+		crc = update(crc, value, position, limit);
+	}
+
+	/**
+	 * @return the current checksum, after which the checksum is reset
+	 */
+	public int digest() {
+		final int digest = (int) getValue();
+		reset();
+		return digest;
+	}
+
+	/**
+	 * @return the current checksum, as an unsigned int
+	 */
+	@Override
+	public long getValue() {
+		if (intrinsic != null) {
+			return intrinsic.getValue();
+		}
+		return (crc ^ INT_MASK) & LONG_INT_MASK;
+	}
+
+	private static void update(final Checksum checksum, final ByteBuffer buffer, final int position,
+			final int limit) {
+		SlicingBy8.checkRange(buffer, position, limit);
+		if (buffer.hasArray()) {
+			checksum.update(buffer.array(), buffer.arrayOffset() + position, limit - position);
+			return;
+		}
+		final ByteBuffer view = buffer.duplicate();
+		view.limit(limit);
+		view.position(position);
+		IntrinsicCRC32C.update(checksum, view);
+	}
+
+	private static int update(final int crc, final int value) {
+		return SlicingBy8.updateInt(SLICES, crc, value);
+	}
+
+	private static int update(final int crc, final long value) {
+		return SlicingBy8.updateLE(SLICES, crc, Long.reverseBytes(value));
+	}
+
+	private static int update(final int crc, final byte[] array, final int offset, final int length) {
+		return SlicingBy8.update(SLICES, crc, array, offset, length);
+	}
+
+	private static int update(final int crc, final ByteBuffer buffer, final int position, final int limit) {
+		return SlicingBy8.update(SLICES, crc, buffer, position, limit);
+	}
+
+}
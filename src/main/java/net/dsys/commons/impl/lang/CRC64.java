@@ -0,0 +1,153 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import net.dsys.commons.api.lang.BufferChecksum;
+
+/**
+ * Calculation of CRC-64 with the ECMA-182 polynomial, in the reflected form
+ * used by XZ (initial value and final XOR of all ones). Arrays and buffers are
+ * processed eight bytes at a time with slicing-by-8 tables.
+ *
+ * @see CRC32
+ * @see http://tukaani.org/xz/xz-file-format.txt
+ *
+ * @author Ricardo Padilha
+ */
+public final class CRC64 implements BufferChecksum {
+
+	private static final int BYTE_SIZE = Byte.SIZE;
+	private static final int BYTE_MASK = 0xFF;
+	private static final long LONG_MASK = 0xFFFF_FFFF_FFFF_FFFFL;
+	/**
+	 * ECMA-182 polynomial, bit-reflected.
+	 */
+	private static final long POLYNOMIAL = 0xC96C_5795_D787_0F42L;
+
+	/**
+	 * Slicing-by-8 tables, see {@link SlicingBy8}.
+	 */
+	private static final long[] SLICES = SlicingBy8.slices(POLYNOMIAL);
+
+	private long crc;
+
+	public CRC64() {
+		reset();
+	}
+
+	public static long digest(@Nonnull final byte... values) {
+		return update(LONG_MASK, values, 0, values.length) ^ LONG_MASK;
+	}
+
+	/**
+	 * Calculates the CRC64 of a byte array.
+	 */
+	public static long digest(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		return update(LONG_MASK, array, offset, length) ^ LONG_MASK;
+	}
+
+	/**
+	 * Calculates the CRC64 of the bytes from the specified buffer. The
+	 * checksum is updated using buffer.remaining() bytes starting at
+	 * buffer.position() Upon return, the buffer's position will be updated to
+	 * its limit; its limit will not have been changed.
+	 */
+	public static long digest(@Nonnull final ByteBuffer value) {
+		final long crc = update(LONG_MASK, value, value.position(), value.limit()) ^ LONG_MASK;
+		value.position(value.limit());
+		return crc;
+	}
+
+	/**
+	 * Calculates the CRC64 of the bytes from the specified buffer. The
+	 * buffer's position and limit are not affected.
+	 */
+	public static long digest(@Nonnull final ByteBuffer value, @Nonnegative final int position,
+			@Nonnegative final int limit) {
+		return update(LONG_MASK, value, position, limit) ^ LONG_MASK;
+	}
+
+	/**
+	 * Resets CRC-64 to initial value.
+	 */
+	@Override
+	public void reset() {
+		crc = LONG_MASK;
+	}
+
+	/**
+	 * Calculates the CRC64 of a byte.
+	 */
+	@Override
+	public void update(final int value) {
+		crc = (crc >>> BYTE_SIZE) ^ SLICES[((int) crc ^ value) & BYTE_MASK];
+	}
+
+	@Override
+	public void update(@Nonnull final byte[] array) {
+		update(array, 0, array.length);
+	}
+
+	@Override
+	public void update(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		crc = update(crc, array, offset, length);
+	}
+
+	@Override
+	public void update(@Nonnull final ByteBuffer buffer) {
+		crc = update(crc, buffer, buffer.position(), buffer.limit());
+		buffer.position(buffer.limit());
+	}
+
+	@Override
+	public void update(@Nonnull final ByteBuffer value, @Nonnegative final int position,
+			@Nonnegative final int limit) {
+		crc = update(crc, value, position, limit);
+	}
+
+	/**
+	 * @return the current checksum, after which the checksum is reset
+	 */
+	public long digest() {
+		final long digest = getValue();
+		reset();
+		return digest;
+	}
+
+	/**
+	 * @return the current checksum
+	 */
+	@Override
+	public long getValue() {
+		return crc ^ LONG_MASK;
+	}
+
+	private static long update(final long crc, final byte[] array, final int offset, final int length) {
+		return SlicingBy8.update(SLICES, crc, array, offset, length);
+	}
+
+	private static long update(final long crc, final ByteBuffer buffer, final int position, final int limit) {
+		return SlicingBy8.update(SLICES, crc, buffer, position, limit);
+	}
+
+}
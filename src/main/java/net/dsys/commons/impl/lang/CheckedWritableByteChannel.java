@@ -0,0 +1,89 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.Checksum;
+
+import javax.annotation.Nonnull;
+
+import net.dsys.commons.api.lang.Checksummer;
+
+/**
+ * Channel decorator that updates a checksum with the bytes written, in place
+ * in the caller's buffer, without copying them. The stream counterpart is
+ * {@link java.util.zip.CheckedOutputStream}, which accepts any
+ * {@link net.dsys.commons.api.lang.BufferChecksum} as well.
+ *
+ * @author Ricardo Padilha
+ */
+public final class CheckedWritableByteChannel implements WritableByteChannel {
+
+	private final WritableByteChannel channel;
+	private final Checksum checksum;
+	private final byte[] scratch;
+
+	public CheckedWritableByteChannel(@Nonnull final WritableByteChannel channel, @Nonnull final Checksum checksum) {
+		if (channel == null) {
+			throw new NullPointerException("channel == null");
+		}
+		if (checksum == null) {
+			throw new NullPointerException("checksum == null");
+		}
+		this.channel = channel;
+		this.checksum = checksum;
+		this.scratch = ChecksumBuffers.scratch(checksum);
+	}
+
+	/**
+	 * Creates a channel that updates a new checksum of the given algorithm.
+	 */
+	public CheckedWritableByteChannel(@Nonnull final WritableByteChannel channel, @Nonnull final Checksummer checksummer) {
+		this(channel, checksummer.newChecksum());
+	}
+
+	/**
+	 * @return the checksum updated by this channel
+	 */
+	@Nonnull
+	public Checksum getChecksum() {
+		return checksum;
+	}
+
+	@Override
+	public int write(@Nonnull final ByteBuffer src) throws IOException {
+		final int position = src.position();
+		final int n = channel.write(src);
+		if (n > 0) {
+			ChecksumBuffers.update(checksum, scratch, src, position, position + n);
+		}
+		return n;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return channel.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+}
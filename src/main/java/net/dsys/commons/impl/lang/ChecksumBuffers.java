@@ -0,0 +1,73 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+import net.dsys.commons.api.lang.BufferChecksum;
+
+/**
+ * Updates a {@link Checksum} with a range of a buffer, in place. A
+ * {@link BufferChecksum} reads heap and direct buffers directly; any other
+ * checksum reads heap buffers through their array, and direct buffers through
+ * a scratch array, since {@link Checksum} has no buffer method before Java 9.
+ * Callers allocate the scratch array once and reuse it across updates.
+ *
+ * @author Ricardo Padilha
+ */
+final class ChecksumBuffers {
+
+	private static final int SCRATCH_LENGTH = 8192;
+
+	private ChecksumBuffers() {
+		// no instantiation allowed
+		return;
+	}
+
+	/**
+	 * @return a scratch array for {@link #update}, or <code>null</code> if
+	 *         the checksum reads buffers directly
+	 */
+	static byte[] scratch(final Checksum checksum) {
+		if (checksum instanceof BufferChecksum) {
+			return null;
+		}
+		return new byte[SCRATCH_LENGTH];
+	}
+
+	/**
+	 * The buffer's position and limit are not affected.
+	 * @param scratch as returned by {@link #scratch(Checksum)} for the same
+	 *            checksum
+	 */
+	static void update(final Checksum checksum, final byte[] scratch, final ByteBuffer buffer, final int position,
+			final int limit) {
+		if (checksum instanceof BufferChecksum) {
+			((BufferChecksum) checksum).update(buffer, position, limit);
+		} else if (buffer.hasArray()) {
+			checksum.update(buffer.array(), buffer.arrayOffset() + position, limit - position);
+		} else {
+			for (int i = position; i < limit; i += scratch.length) {
+				final int count = Math.min(scratch.length, limit - i);
+				FastArrays.arrayCopy(buffer, i, scratch, 0, count);
+				checksum.update(scratch, 0, count);
+			}
+		}
+	}
+
+}
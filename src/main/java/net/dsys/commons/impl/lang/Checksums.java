@@ -0,0 +1,152 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnull;
+
+import net.dsys.commons.api.lang.BufferChecksum;
+import net.dsys.commons.api.lang.Checksummer;
+
+/**
+ * The checksum algorithms of this package, as {@link Checksummer} strategies.
+ * From fastest to most robust, roughly: {@link #XXHASH32} and
+ * {@link #ADLER32} (weak on short inputs), {@link #CRC32C} (hardware
+ * accelerated on Java 9+), {@link #CRC32}, and {@link #CRC64}.
+ *
+ * <p>
+ * Within each constant, the name of the algorithm refers to the constant
+ * itself, so the classes are qualified.
+ * </p>
+ *
+ * @author Ricardo Padilha
+ */
+public enum Checksums implements Checksummer {
+
+	CRC32(Integer.SIZE) {
+		@Override
+		public long digest(final byte[] array, final int offset, final int length) {
+			return unsigned(net.dsys.commons.impl.lang.CRC32.digest(array, offset, length));
+		}
+
+		@Override
+		public long digest(final ByteBuffer buffer, final int position, final int limit) {
+			return unsigned(net.dsys.commons.impl.lang.CRC32.digest(buffer, position, limit));
+		}
+
+		@Override
+		public BufferChecksum newChecksum() {
+			return new net.dsys.commons.impl.lang.CRC32();
+		}
+	},
+
+	CRC32C(Integer.SIZE) {
+		@Override
+		public long digest(final byte[] array, final int offset, final int length) {
+			return unsigned(net.dsys.commons.impl.lang.CRC32C.digest(array, offset, length));
+		}
+
+		@Override
+		public long digest(final ByteBuffer buffer, final int position, final int limit) {
+			return unsigned(net.dsys.commons.impl.lang.CRC32C.digest(buffer, position, limit));
+		}
+
+		@Override
+		public BufferChecksum newChecksum() {
+			return new net.dsys.commons.impl.lang.CRC32C();
+		}
+	},
+
+	ADLER32(Integer.SIZE) {
+		@Override
+		public long digest(final byte[] array, final int offset, final int length) {
+			return unsigned(Adler32.digest(array, offset, length));
+		}
+
+		@Override
+		public long digest(final ByteBuffer buffer, final int position, final int limit) {
+			return unsigned(Adler32.digest(buffer, position, limit));
+		}
+
+		@Override
+		public BufferChecksum newChecksum() {
+			return new Adler32();
+		}
+	},
+
+	CRC64(Long.SIZE) {
+		@Override
+		public long digest(final byte[] array, final int offset, final int length) {
+			return net.dsys.commons.impl.lang.CRC64.digest(array, offset, length);
+		}
+
+		@Override
+		public long digest(final ByteBuffer buffer, final int position, final int limit) {
+			return net.dsys.commons.impl.lang.CRC64.digest(buffer, position, limit);
+		}
+
+		@Override
+		public BufferChecksum newChecksum() {
+			return new net.dsys.commons.impl.lang.CRC64();
+		}
+	},
+
+	/**
+	 * xxHash32 with seed 0.
+	 */
+	XXHASH32(Integer.SIZE) {
+		@Override
+		public long digest(final byte[] array, final int offset, final int length) {
+			return unsigned(XXHash32.hash(array, offset, length));
+		}
+
+		@Override
+		public long digest(final ByteBuffer buffer, final int position, final int limit) {
+			return unsigned(XXHash32.hash(buffer, position, limit, 0));
+		}
+
+		@Override
+		public BufferChecksum newChecksum() {
+			return new XXHash32();
+		}
+	};
+
+	private static final long INT_MASK = 0xFFFF_FFFFL;
+
+	private final int bits;
+
+	private Checksums(final int bits) {
+		this.bits = bits;
+	}
+
+	static long unsigned(final int value) {
+		return value & INT_MASK;
+	}
+
+	@Override
+	public int bits() {
+		return bits;
+	}
+
+	@Override
+	public long digest(@Nonnull final ByteBuffer buffer) {
+		final long digest = digest(buffer, buffer.position(), buffer.limit());
+		buffer.position(buffer.limit());
+		return digest;
+	}
+
+}
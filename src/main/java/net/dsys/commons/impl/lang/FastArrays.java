@@ -17,38 +17,90 @@
 package net.dsys.commons.impl.lang;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.nio.Buffer;
 import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.LongBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.Arrays;
-import java.util.Formatter;
+import java.util.Locale;
 
 import net.dsys.commons.api.exception.Bug;
 
 import sun.misc.Unsafe;
 
 /**
- * Wrapper for sun.misc.Unsafe for faster byte[] manipulation.
+ * Wrapper for sun.misc.Unsafe for faster byte[] manipulation. When Unsafe is
+ * not available, primitive accessors fall back to VarHandles (Java 9+, see
+ * the multi-release part of the JAR), and then to plain Java. The backend in
+ * use is given by {@link #backend()}, and can be forced with the
+ * {@value #BACKEND_PROPERTY} system property. Bulk operations on large ranges
+ * also use SIMD kernels when {@link #isVectorized()}.
  * 
  * @author Ricardo Padilha
  */
 @SuppressWarnings("restriction")
 public final class FastArrays {
 
-	private static final Unsafe UNSAFE = getUnsafeOrNull();
+	/**
+	 * Implementations available for the primitive accessors.
+	 */
+	public enum Backend {
+		/**
+		 * sun.misc.Unsafe
+		 */
+		UNSAFE,
+		/**
+		 * java.lang.invoke.VarHandle byte array views (Java 9+)
+		 */
+		VARHANDLE,
+		/**
+		 * Plain Java, byte by byte
+		 */
+		PLAIN
+	}
+
+	/**
+	 * System property used to force a given backend, e.g.,
+	 * <code>-Dnet.dsys.commons.impl.lang.FastArrays.backend=varhandle</code>.
+	 * If the requested backend is not available, the next one in the order of
+	 * {@link Backend} is used.
+	 */
+	public static final String BACKEND_PROPERTY = "net.dsys.commons.impl.lang.FastArrays.backend";
+
+	private static final Backend BACKEND = selectBackend(System.getProperty(BACKEND_PROPERTY));
+	private static final Unsafe UNSAFE = BACKEND == Backend.UNSAFE ? getUnsafeOrNull() : null;
 	private static final boolean FAST = UNSAFE != null;
+	private static final boolean VARHANDLE = BACKEND == Backend.VARHANDLE;
+	private static final String NO_UNSAFE = "raw memory access requires the Unsafe backend";
+	private static final String NO_ATOMIC = "atomic access requires the Unsafe or VarHandle backend";
+	private static final String NO_ATOMIC_READ_ONLY = "atomic access to a read-only heap buffer requires VarHandles";
+	/**
+	 * Read-only heap buffers hide their array, so atomics on them go through
+	 * VarHandles whenever they are available, whatever the backend.
+	 */
+	private static final boolean ATOMIC_VARHANDLE = VARHANDLE
+			|| BACKEND != Backend.PLAIN && VarHandleAccess.isAvailable();
+
+	/**
+	 * SIMD kernels are used for ranges of at least this many bytes.
+	 */
+	private static final int VECTOR_THRESHOLD = 64;
+	private static final boolean VECTOR = VectorKernels.isAvailable();
 
 	private static final int BYTE_LENGTH = Byte.SIZE / Byte.SIZE;
 	private static final int BOOLEAN_LENGTH = BYTE_LENGTH;
 	private static final int SHORT_LENGTH = Short.SIZE / Byte.SIZE;
 	private static final int INT_LENGTH = Integer.SIZE / Byte.SIZE;
 	private static final int LONG_LENGTH = Long.SIZE / Byte.SIZE;
+	private static final int CHAR_LENGTH = Character.SIZE / Byte.SIZE;
+	private static final int FLOAT_LENGTH = Float.SIZE / Byte.SIZE;
+	private static final int DOUBLE_LENGTH = Double.SIZE / Byte.SIZE;
 
 	private static final int BYTE_MASK = 0xFF;
 	private static final int SHORT_MASK = 0xFFFF;
@@ -56,16 +108,58 @@ public final class FastArrays {
 	private static final byte BOOLEAN_TRUE = 1;
 	private static final byte BOOLEAN_FALSE = 0;
 
+	/**
+	 * Maximum length of an int varint.
+	 */
+	public static final int VARINT_MAX_LENGTH = 5;
+	/**
+	 * Maximum length of a long varint.
+	 */
+	public static final int VARLONG_MAX_LENGTH = 10;
+	private static final int VARINT_BITS = 7;
+	private static final int VARINT_PAYLOAD = 0x7F;
+	private static final int VARINT_CONTINUE = 0x80;
+	private static final long VARINT_STOP_BITS = 0x8080_8080_8080_8080L;
+	private static final long BYTE_LOW_BITS = 0x7F7F_7F7F_7F7F_7F7FL;
+	private static final long BYTE_BROADCAST = 0x0101_0101_0101_0101L;
+	/**
+	 * Largest set scanned word-at-a-time by <code>indexOfAny</code>; larger
+	 * sets use a bitmap lookup per byte.
+	 */
+	private static final int SWAR_MAX_SET = 4;
+	private static final int BITMAP_SHIFT = 6;
+	private static final int BITMAP_WORDS = 256 >>> BITMAP_SHIFT;
+	private static final String MALFORMED_VARINT = "malformed varint";
+
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	private static final byte[] HEX_VALUES = hexValues();
+
 	/**
 	 * This boolean indicates whether or not data read with the Unsafe needs to
 	 * be reversed byte-wise, because the VM is not big endian.
 	 */
 	private static final boolean REVERSE = ByteOrder.nativeOrder() != ByteOrder.BIG_ENDIAN;
-	private static final long BYTE_ARRAY_OFFSET = Unsafe.ARRAY_BYTE_BASE_OFFSET;
-	//private static final long SHORT_ARRAY_OFFSET = Unsafe.ARRAY_SHORT_BASE_OFFSET;
-	//private static final long INT_ARRAY_OFFSET = Unsafe.ARRAY_INT_BASE_OFFSET;
-	private static final long LONG_ARRAY_OFFSET = Unsafe.ARRAY_LONG_BASE_OFFSET;
-	private static final long BB_ADDRESS_OFFSET = fieldOffsetOrError(UNSAFE, Buffer.class, "address");
+	private static final long BYTE_ARRAY_OFFSET = FAST ? UNSAFE.arrayBaseOffset(byte[].class) : 0;
+	private static final long SHORT_ARRAY_OFFSET = FAST ? UNSAFE.arrayBaseOffset(short[].class) : 0;
+	private static final long CHAR_ARRAY_OFFSET = FAST ? UNSAFE.arrayBaseOffset(char[].class) : 0;
+	private static final long INT_ARRAY_OFFSET = FAST ? UNSAFE.arrayBaseOffset(int[].class) : 0;
+	private static final long LONG_ARRAY_OFFSET = FAST ? UNSAFE.arrayBaseOffset(long[].class) : 0;
+	private static final long FLOAT_ARRAY_OFFSET = FAST ? UNSAFE.arrayBaseOffset(float[].class) : 0;
+	private static final long DOUBLE_ARRAY_OFFSET = FAST ? UNSAFE.arrayBaseOffset(double[].class) : 0;
+	private static final long BB_ADDRESS_OFFSET = FAST ? fieldOffsetOrError(UNSAFE, Buffer.class, "address") : 0;
+	/**
+	 * Runtime.version() is Java 9+; there, direct buffers can only be released
+	 * through Unsafe.invokeCleaner, whichever backend is selected.
+	 */
+	private static final boolean JAVA9 = methodOrNull(Runtime.class, "version") != null;
+	private static final Unsafe CLEANER_UNSAFE = JAVA9 ? getUnsafeOrNull() : null;
+	private static final Method INVOKE_CLEANER = CLEANER_UNSAFE != null
+			? methodOrNull(Unsafe.class, "invokeCleaner", ByteBuffer.class) : null;
+	/**
+	 * Unsafe.getAndAdd* are Java 8+; Java 7 falls back to a CAS loop.
+	 */
+	private static final boolean GET_AND_ADD = FAST
+			&& methodOrNull(Unsafe.class, "getAndAddLong", Object.class, long.class, long.class) != null;
 
 	private FastArrays() {
 		// no instantiation allowed
@@ -85,11 +179,56 @@ public final class FastArrays {
 	private static Unsafe getUnsafeOrNull() {
 		try {
 			return getUnsafe();
-		} catch (final PrivilegedActionException e) {
+		} catch (final PrivilegedActionException | SecurityException | LinkageError e) {
 			return null;
 		}
 	}
 
+	private static byte[] hexValues() {
+		final byte[] values = new byte['f' + 1];
+		Arrays.fill(values, (byte) -1);
+		for (int i = 0; i < HEX_DIGITS.length; i++) {
+			values[HEX_DIGITS[i]] = (byte) i;
+			values[Character.toLowerCase(HEX_DIGITS[i])] = (byte) i;
+		}
+		return values;
+	}
+
+	private static Backend selectBackend(final String name) {
+		Backend requested = Backend.UNSAFE;
+		if (name != null) {
+			try {
+				requested = Backend.valueOf(name.trim().toUpperCase(Locale.ROOT));
+			} catch (final IllegalArgumentException e) {
+				throw new Bug("unknown " + BACKEND_PROPERTY + ": " + name);
+			}
+		}
+		if (requested == Backend.UNSAFE && getUnsafeOrNull() != null) {
+			return Backend.UNSAFE;
+		}
+		if (requested != Backend.PLAIN && VarHandleAccess.isAvailable()) {
+			return Backend.VARHANDLE;
+		}
+		return Backend.PLAIN;
+	}
+
+	/**
+	 * @return the backend used by the primitive accessors of this class
+	 */
+	public static Backend backend() {
+		return BACKEND;
+	}
+
+	/**
+	 * @return <code>true</code> if bulk operations (compare, mismatch, hash
+	 *         code, byte search and fill) use SIMD kernels. This requires Java
+	 *         17+ and the <code>jdk.incubator.vector</code> module, e.g.,
+	 *         <code>--add-modules jdk.incubator.vector</code>.
+	 */
+	public static boolean isVectorized() {
+		return VECTOR;
+	}
+
 	private static long fieldOffset(final Unsafe unsafe, final Class<?> cl, final String field)
 			throws NoSuchFieldException {
 		final Field f = cl.getDeclaredField(field);
@@ -194,6 +333,9 @@ public final class FastArrays {
 			}
 			return UNSAFE.getShort(array, BYTE_ARRAY_OFFSET + offset);
 		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getShort(array, offset);
+		}
 		// fall-back to plain Java
 		return (short) (((array[offset]  & BYTE_MASK) << 8)
 					+ (array[offset + 1] & BYTE_MASK));
@@ -212,6 +354,10 @@ public final class FastArrays {
 			UNSAFE.putShort(array, BYTE_ARRAY_OFFSET + offset, value);
 			return SHORT_LENGTH;
 		}
+		if (VARHANDLE) {
+			VarHandleAccess.putShort(array, offset, value);
+			return SHORT_LENGTH;
+		}
 		// fall-back to plain Java
 		array[offset]     = (byte) (value >>> 8);
 		array[offset + 1] = (byte) (value);
@@ -229,6 +375,9 @@ public final class FastArrays {
 			}
 			return UNSAFE.getInt(array, BYTE_ARRAY_OFFSET + offset);
 		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getInt(array, offset);
+		}
 		// fall-back to plain Java
 		return (array[offset]                  << 24)
 			+ ((array[offset + 1] & BYTE_MASK) << 16)
@@ -249,6 +398,10 @@ public final class FastArrays {
 			UNSAFE.putInt(array, BYTE_ARRAY_OFFSET + offset, value);
 			return INT_LENGTH;
 		}
+		if (VARHANDLE) {
+			VarHandleAccess.putInt(array, offset, value);
+			return INT_LENGTH;
+		}
 		// fall-back to plain Java
 		array[offset]     = (byte) (value >>> 24);
 		array[offset + 1] = (byte) (value >>> 16);
@@ -268,12 +421,15 @@ public final class FastArrays {
 			}
 			return UNSAFE.getLong(array, BYTE_ARRAY_OFFSET + offset);
 		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getLong(array, offset);
+		}
 		// fall-back to plain Java
 		return ((long) (array[offset])                << 56)
 			+ ((long) (array[offset + 1] & BYTE_MASK) << 48)
 			+ ((long) (array[offset + 2] & BYTE_MASK) << 40)
 			+ ((long) (array[offset + 3] & BYTE_MASK) << 32)
-			+ ((array[offset + 4]        & BYTE_MASK) << 24)
+			+ ((long) (array[offset + 4] & BYTE_MASK) << 24)
 			+ ((array[offset + 5]        & BYTE_MASK) << 16)
 			+ ((array[offset + 6]        & BYTE_MASK) <<  8)
 			+ (array[offset + 7]         & BYTE_MASK);
@@ -292,6 +448,10 @@ public final class FastArrays {
 			UNSAFE.putLong(array, BYTE_ARRAY_OFFSET + offset, value);
 			return LONG_LENGTH;
 		}
+		if (VARHANDLE) {
+			VarHandleAccess.putLong(array, offset, value);
+			return LONG_LENGTH;
+		}
 		// fall-back to plain Java
 		array[offset]     = (byte) (value >>> 56);
 		array[offset + 1] = (byte) (value >>> 48);
@@ -305,255 +465,2708 @@ public final class FastArrays {
 	}
 
 	/**
-	 * Commodity method to wrap a short in a byte array.
+	 * Get a little-endian short from an array.
+	 * Uses fast methods if available.
 	 */
-	public static byte[] toArray(final short value) {
-		final byte[] array = new byte[SHORT_LENGTH];
-		putShort(array, 0, value);
-		return array;
+	public static int getUnsignedShortLE(final byte[] array, final int offset) {
+		return getShortLE(array, offset) & SHORT_MASK;
 	}
 
 	/**
-	 * Commodity method to wrap an int in a byte array.
+	 * Put a little-endian short in an array.
+	 * Uses fast methods if available.
 	 */
-	public static byte[] toArray(final int value) {
-		final byte[] array = new byte[INT_LENGTH];
-		putInt(array, 0, value);
-		return array;
+	public static int putUnsignedShortLE(final byte[] array, final int offset, final int value) {
+		if (value > SHORT_MASK || value < 0) {
+			throw new IllegalArgumentException();
+		}
+		putShortLE(array, offset, (short) value);
+		return SHORT_LENGTH;
 	}
 
 	/**
-	 * Commodity method to wrap a long in a byte array.
+	 * Get a little-endian int from an array.
+	 * Uses fast methods if available.
 	 */
-	public static byte[] toArray(final long value) {
-		final byte[] array = new byte[LONG_LENGTH];
-		putLong(array, 0, value);
-		return array;
+	public static long getUnsignedIntLE(final byte[] array, final int offset) {
+		return getIntLE(array, offset) & INT_MASK;
 	}
 
-	public static int fill(final byte[] array, final int offset, final int length, final byte value) {
-		if (FAST) {
-			UNSAFE.setMemory(array, BYTE_ARRAY_OFFSET + offset, length, value);
-			return length;
+	/**
+	 * Put a little-endian int in an array.
+	 * Uses fast methods if available.
+	 */
+	public static int putUnsignedIntLE(final byte[] array, final int offset, final long value) {
+		if (value > INT_MASK || value < 0) {
+			throw new IllegalArgumentException();
 		}
-		// fall-back to plain Java
-		Arrays.fill(array, offset, offset + length, value);
-		return length;
+		putIntLE(array, offset, (int) value);
+		return INT_LENGTH;
 	}
 
 	/**
-	 * @see System#arraycopy(Object, int, Object, int, int)
+	 * Get a little-endian short from an array.
+	 * Uses fast methods if available.
 	 */
-	public static void arrayCopy(final byte[] src, final int srcPos, final byte[] dst, final int dstPos,
-			final int length) {
+	public static short getShortLE(final byte[] array, final int offset) {
 		if (FAST) {
-			if (srcPos < 0 || dstPos < 0 || length < 0 || (srcPos + length) > src.length
-					|| (dstPos + length) > dst.length) {
-				throw new IndexOutOfBoundsException();
+			if (REVERSE) {
+				return UNSAFE.getShort(array, BYTE_ARRAY_OFFSET + offset);
 			}
-			UNSAFE.copyMemory(src, BYTE_ARRAY_OFFSET + srcPos, dst, BYTE_ARRAY_OFFSET + dstPos, length);
-			return;
+			return Short.reverseBytes(UNSAFE.getShort(array, BYTE_ARRAY_OFFSET + offset));
+		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getShortLE(array, offset);
 		}
 		// fall-back to plain Java
-		System.arraycopy(src, srcPos, dst, dstPos, length);
+		return (short) ((array[offset]            & BYTE_MASK)
+					+ ((array[offset + 1] & BYTE_MASK) << 8));
 	}
 
 	/**
-	 * This method copies and casts between arrays.
-	 * @param length the number of bytes to be copied. Must be a multiple {@link #LONG_LENGTH}.
-	 * @see System#arraycopy(Object, int, Object, int, int)
+	 * Put a little-endian short in an array.
+	 * Uses fast methods if available.
 	 */
-	public static void arrayCopy(final byte[] src, final int srcPos, final long[] dst, final int dstPos,
-			final int length) {
+	public static int putShortLE(final byte[] array, final int offset, final short value) {
 		if (FAST) {
-			if (srcPos < 0 || dstPos < 0 || length < 0) {
-				throw new IllegalArgumentException();
-			}
-			if ((srcPos + length) > src.length || (dstPos + length) > dst.length * LONG_LENGTH) {
-				throw new ArrayIndexOutOfBoundsException();
-			}
-			if (length % LONG_LENGTH != 0) {
-				throw new IllegalArgumentException();
+			if (REVERSE) {
+				UNSAFE.putShort(array, BYTE_ARRAY_OFFSET + offset, value);
+				return SHORT_LENGTH;
 			}
-			UNSAFE.copyMemory(src, BYTE_ARRAY_OFFSET + srcPos, dst, LONG_ARRAY_OFFSET + dstPos, length);
-			return;
+			UNSAFE.putShort(array, BYTE_ARRAY_OFFSET + offset, Short.reverseBytes(value));
+			return SHORT_LENGTH;
+		}
+		if (VARHANDLE) {
+			VarHandleAccess.putShortLE(array, offset, value);
+			return SHORT_LENGTH;
 		}
 		// fall-back to plain Java
-		final LongBuffer srcbuf = ByteBuffer.wrap(src, srcPos, length).asLongBuffer();
-		final LongBuffer dstbuf = LongBuffer.wrap(dst, dstPos, length / LONG_LENGTH);
-		dstbuf.put(srcbuf);
+		array[offset]     = (byte) (value);
+		array[offset + 1] = (byte) (value >>> 8);
+		return SHORT_LENGTH;
 	}
 
 	/**
-	 * This method copies and casts between arrays.
-	 * @param length number of longs to be copied.
-	 * @see System#arraycopy(Object, int, Object, int, int)
+	 * Get a little-endian int from an array.
+	 * Uses fast methods if available.
 	 */
-	public static void arrayCopy(final long[] src, final int srcPos, final byte[] dst, final int dstPos,
-			final int length) {
+	public static int getIntLE(final byte[] array, final int offset) {
 		if (FAST) {
-			if (srcPos < 0 || dstPos < 0 || length < 0) {
-				throw new IllegalArgumentException();
-			}
-			if ((srcPos + length) > src.length || (dstPos + length * LONG_LENGTH) > dst.length) {
-				throw new ArrayIndexOutOfBoundsException();
+			if (REVERSE) {
+				return UNSAFE.getInt(array, BYTE_ARRAY_OFFSET + offset);
 			}
-			final long len = ((long) length) * LONG_LENGTH;
-			UNSAFE.copyMemory(src, LONG_ARRAY_OFFSET + srcPos, dst, BYTE_ARRAY_OFFSET + dstPos, len);
-			return;
+			return Integer.reverseBytes(UNSAFE.getInt(array, BYTE_ARRAY_OFFSET + offset));
+		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getIntLE(array, offset);
 		}
 		// fall-back to plain Java
-		final LongBuffer srcbuf = LongBuffer.wrap(src, srcPos, length);
-		final LongBuffer dstbuf = ByteBuffer.wrap(dst, dstPos, length * LONG_LENGTH).asLongBuffer();
-		dstbuf.put(srcbuf);
+		return (array[offset]                  & BYTE_MASK)
+			+ ((array[offset + 1] & BYTE_MASK) << 8)
+			+ ((array[offset + 2] & BYTE_MASK) << 16)
+			+ (array[offset  + 3]              << 24);
 	}
 
 	/**
-	 * @see System#arraycopy(Object, int, Object, int, int)
-	 * @see ByteBuffer#get(byte[], int, int)
+	 * Put a little-endian int in an array.
+	 * Uses fast methods if available.
 	 */
-	public static void arrayCopy(final ByteBuffer src, final byte[] dst, final int dstPos, final int length) {
+	public static int putIntLE(final byte[] array, final int offset, final int value) {
 		if (FAST) {
-			if (src.isDirect()) {
-				final int srcPos = src.position();
-				if (dstPos < 0 || length < 0) {
-					throw new IllegalArgumentException();
-				}
-				if ((srcPos + length) > src.limit()) {
-					throw new BufferUnderflowException();
-				}
-				if ((dstPos + length) > dst.length) {
-					throw new ArrayIndexOutOfBoundsException(dstPos + length);
-				}
-				final long address = UNSAFE.getLong(src, BB_ADDRESS_OFFSET);
-				UNSAFE.copyMemory(null, address + srcPos, dst, BYTE_ARRAY_OFFSET + dstPos, length);
-				src.position(srcPos + length);
-				return;
-			} else if (src.hasArray()) {
-				arrayCopy(src.array(), src.position(), dst, dstPos, length);
-				return;
+			if (REVERSE) {
+				UNSAFE.putInt(array, BYTE_ARRAY_OFFSET + offset, value);
+				return INT_LENGTH;
 			}
-			throw new IllegalArgumentException();
+			UNSAFE.putInt(array, BYTE_ARRAY_OFFSET + offset, Integer.reverseBytes(value));
+			return INT_LENGTH;
+		}
+		if (VARHANDLE) {
+			VarHandleAccess.putIntLE(array, offset, value);
+			return INT_LENGTH;
 		}
 		// fall-back to plain Java
-		src.get(dst, dstPos, length);
+		array[offset]     = (byte) (value);
+		array[offset + 1] = (byte) (value >>> 8);
+		array[offset + 2] = (byte) (value >>> 16);
+		array[offset + 3] = (byte) (value >>> 24);
+		return INT_LENGTH;
 	}
 
 	/**
-	 * @see System#arraycopy(Object, int, Object, int, int)
-	 * @see ByteBuffer#get(byte[], int, int)
+	 * Get a little-endian long from an array.
+	 * Uses fast methods if available.
 	 */
-	public static void arrayCopy(final byte[] src, final int srcPos, final ByteBuffer dst, final int length) {
+	public static long getLongLE(final byte[] array, final int offset) {
 		if (FAST) {
-			if (dst.isDirect()) {
-				final int dstPos = dst.position();
-				if (srcPos < 0 || length < 0) {
-					throw new IllegalArgumentException();
-				}
-				if ((srcPos + length) > src.length) {
-					throw new ArrayIndexOutOfBoundsException(srcPos + length);
-				}
-				if ((dstPos + length) > dst.remaining()) {
-					throw new BufferOverflowException();
-				}
-				final long address = UNSAFE.getLong(src, BB_ADDRESS_OFFSET);
-				UNSAFE.copyMemory(src, address + srcPos, dst, BYTE_ARRAY_OFFSET + dstPos, length);
-				dst.position(dstPos + length);
-				return;
-			} else if (dst.hasArray()) {
-				arrayCopy(src, srcPos, dst.array(), dst.position(), length);
-				return;
+			if (REVERSE) {
+				return UNSAFE.getLong(array, BYTE_ARRAY_OFFSET + offset);
 			}
-			throw new IllegalArgumentException();
+			return Long.reverseBytes(UNSAFE.getLong(array, BYTE_ARRAY_OFFSET + offset));
+		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getLongLE(array, offset);
 		}
 		// fall-back to plain Java
-		dst.put(src, srcPos, length);
+		return (array[offset]                 & BYTE_MASK)
+			+ ((array[offset + 1]        & BYTE_MASK) <<  8)
+			+ ((array[offset + 2]        & BYTE_MASK) << 16)
+			+ ((long) (array[offset + 3] & BYTE_MASK) << 24)
+			+ ((long) (array[offset + 4] & BYTE_MASK) << 32)
+			+ ((long) (array[offset + 5] & BYTE_MASK) << 40)
+			+ ((long) (array[offset + 6] & BYTE_MASK) << 48)
+			+ ((long) (array[offset + 7])             << 56);
 	}
 
 	/**
-	 * Lexicographical (unsigned) comparison.
-	 * Same as <code>compareArrays(left, 0, left.length, right, 0, right.length)</code>.
+	 * Put a little-endian long in an array.
+	 * Uses fast methods if available.
 	 */
-	public static int compareArrays(final byte[] left, final byte[] right) {
-		return compareArrays(left, 0, left.length, right, 0, right.length);
+	public static int putLongLE(final byte[] array, final int offset, final long value) {
+		if (FAST) {
+			if (REVERSE) {
+				UNSAFE.putLong(array, BYTE_ARRAY_OFFSET + offset, value);
+				return LONG_LENGTH;
+			}
+			UNSAFE.putLong(array, BYTE_ARRAY_OFFSET + offset, Long.reverseBytes(value));
+			return LONG_LENGTH;
+		}
+		if (VARHANDLE) {
+			VarHandleAccess.putLongLE(array, offset, value);
+			return LONG_LENGTH;
+		}
+		// fall-back to plain Java
+		array[offset]     = (byte) (value);
+		array[offset + 1] = (byte) (value >>>  8);
+		array[offset + 2] = (byte) (value >>> 16);
+		array[offset + 3] = (byte) (value >>> 24);
+		array[offset + 4] = (byte) (value >>> 32);
+		array[offset + 5] = (byte) (value >>> 40);
+		array[offset + 6] = (byte) (value >>> 48);
+		array[offset + 7] = (byte) (value >>> 56);
+		return LONG_LENGTH;
 	}
 
 	/**
-	 * Lexicographical (unsigned) comparison.
+	 * Get a short from a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
 	 */
-	public static int compareArrays(final byte[] left, final int leftOffset, final int leftLength,
-			final byte[] right, final int rightOffset, final int rightLength) {
-		if (leftOffset < 0 || leftLength < 0 || rightOffset < 0 || rightLength < 0) {
-			throw new IllegalArgumentException();
+	public static short getShort(final ByteBuffer buffer, final int index) {
+		checkIndex(buffer, index, SHORT_LENGTH);
+		if (buffer.hasArray()) {
+			return getShort(buffer.array(), buffer.arrayOffset() + index);
 		}
-		if (left == right && leftOffset == rightOffset && leftLength == rightLength) {
-			return 0; // null == null
-		} else if (left == null) {
-			return -1;
-		} else if (right == null) {
-			return 1;
+		if (FAST && buffer.isDirect()) {
+			return getShort(address(buffer) + index);
 		}
-		if (leftOffset + leftLength > left.length || rightOffset + rightLength > right.length) {
-			throw new ArrayIndexOutOfBoundsException();
+		if (VARHANDLE) {
+			return VarHandleAccess.getShort(buffer, index);
 		}
+		// fall-back to plain Java
+		return (short) getBytes(buffer, index, SHORT_LENGTH);
+	}
 
-		final int minLength = Math.min(leftLength, rightLength);
-		int pos = 0;
-
-		// first round with longs
-		if (minLength >= LONG_LENGTH) {
-			final int longs = minLength / LONG_LENGTH;
-			for (final int end = longs * LONG_LENGTH; pos < end; pos += LONG_LENGTH) {
-				final long lw = getLong(left, leftOffset + pos);
-				final long rw = getLong(right, rightOffset + pos);
-				if (lw != rw) {
-					if ((lw < rw) ^ (lw < 0) ^ (rw < 0)) {
-						return -1;
-					}
-					return 1;
-				}
-			}
+	/**
+	 * Put a short in a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
+	 */
+	public static int putShort(final ByteBuffer buffer, final int index, final short value) {
+		checkIndex(buffer, index, SHORT_LENGTH);
+		if (buffer.hasArray()) {
+			return putShort(buffer.array(), buffer.arrayOffset() + index, value);
 		}
-
-		// second round with ints
-		if (minLength - pos >= INT_LENGTH) {
-			final int ints = (minLength - pos) / INT_LENGTH;
-			for (final int end = pos + (ints * INT_LENGTH); pos < end; pos += INT_LENGTH) {
-				final int lw = getInt(left, leftOffset + pos);
-				final int rw = getInt(right, rightOffset + pos);
-				if (lw != rw) {
-					if ((lw < rw) ^ (lw < 0) ^ (rw < 0)) {
-						return -1;
-					}
-					return 1;
-				}
-			}
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
 		}
-
-		// third round with bytes
-		for (; pos < minLength; pos++) {
-			final int lw = left[leftOffset + pos];
-			final int rw = right[rightOffset + pos];
-			if (lw != rw) {
-				if ((lw < rw) ^ (lw < 0) ^ (rw < 0)) {
-					return -1;
-				}
-				return 1;
-			}
+		if (FAST && buffer.isDirect()) {
+			return putShort(address(buffer) + index, value);
 		}
-		return Integer.signum(leftLength - rightLength);
+		if (VARHANDLE) {
+			VarHandleAccess.putShort(buffer, index, value);
+			return SHORT_LENGTH;
+		}
+		// fall-back to plain Java
+		putBytes(buffer, index, SHORT_LENGTH, value);
+		return SHORT_LENGTH;
 	}
 
 	/**
-	 * Lexicographical (unsigned) comparison.
+	 * Get an int from a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
 	 */
-	public static int compareBuffers(final ByteBuffer left, final ByteBuffer right) {
-		if (right.isDirect() || left.isDirect()) {
-			throw new IllegalArgumentException("buffer is direct");
+	public static int getInt(final ByteBuffer buffer, final int index) {
+		checkIndex(buffer, index, INT_LENGTH);
+		if (buffer.hasArray()) {
+			return getInt(buffer.array(), buffer.arrayOffset() + index);
 		}
-		return compareArrays(left.array(), left.arrayOffset() + left.position(), left.remaining(),
-				right.array(), right.arrayOffset() + right.position(), right.remaining());
-	}
+		if (FAST && buffer.isDirect()) {
+			return getInt(address(buffer) + index);
+		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getInt(buffer, index);
+		}
+		// fall-back to plain Java
+		return (int) getBytes(buffer, index, INT_LENGTH);
+	}
+
+	/**
+	 * Put an int in a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
+	 */
+	public static int putInt(final ByteBuffer buffer, final int index, final int value) {
+		checkIndex(buffer, index, INT_LENGTH);
+		if (buffer.hasArray()) {
+			return putInt(buffer.array(), buffer.arrayOffset() + index, value);
+		}
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && buffer.isDirect()) {
+			return putInt(address(buffer) + index, value);
+		}
+		if (VARHANDLE) {
+			VarHandleAccess.putInt(buffer, index, value);
+			return INT_LENGTH;
+		}
+		// fall-back to plain Java
+		putBytes(buffer, index, INT_LENGTH, value);
+		return INT_LENGTH;
+	}
+
+	/**
+	 * Get a long from a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
+	 */
+	public static long getLong(final ByteBuffer buffer, final int index) {
+		checkIndex(buffer, index, LONG_LENGTH);
+		if (buffer.hasArray()) {
+			return getLong(buffer.array(), buffer.arrayOffset() + index);
+		}
+		if (FAST && buffer.isDirect()) {
+			return getLong(address(buffer) + index);
+		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getLong(buffer, index);
+		}
+		// fall-back to plain Java
+		return getBytes(buffer, index, LONG_LENGTH);
+	}
+
+	/**
+	 * Put a long in a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
+	 */
+	public static int putLong(final ByteBuffer buffer, final int index, final long value) {
+		checkIndex(buffer, index, LONG_LENGTH);
+		if (buffer.hasArray()) {
+			return putLong(buffer.array(), buffer.arrayOffset() + index, value);
+		}
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && buffer.isDirect()) {
+			return putLong(address(buffer) + index, value);
+		}
+		if (VARHANDLE) {
+			VarHandleAccess.putLong(buffer, index, value);
+			return LONG_LENGTH;
+		}
+		// fall-back to plain Java
+		putBytes(buffer, index, LONG_LENGTH, value);
+		return LONG_LENGTH;
+	}
+
+	/**
+	 * Get a little-endian short from a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
+	 */
+	public static short getShortLE(final ByteBuffer buffer, final int index) {
+		checkIndex(buffer, index, SHORT_LENGTH);
+		if (buffer.hasArray()) {
+			return getShortLE(buffer.array(), buffer.arrayOffset() + index);
+		}
+		if (FAST && buffer.isDirect()) {
+			return getShortLE(address(buffer) + index);
+		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getShortLE(buffer, index);
+		}
+		// fall-back to plain Java
+		return (short) getBytesLE(buffer, index, SHORT_LENGTH);
+	}
+
+	/**
+	 * Put a little-endian short in a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
+	 */
+	public static int putShortLE(final ByteBuffer buffer, final int index, final short value) {
+		checkIndex(buffer, index, SHORT_LENGTH);
+		if (buffer.hasArray()) {
+			return putShortLE(buffer.array(), buffer.arrayOffset() + index, value);
+		}
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && buffer.isDirect()) {
+			return putShortLE(address(buffer) + index, value);
+		}
+		if (VARHANDLE) {
+			VarHandleAccess.putShortLE(buffer, index, value);
+			return SHORT_LENGTH;
+		}
+		// fall-back to plain Java
+		putBytesLE(buffer, index, SHORT_LENGTH, value);
+		return SHORT_LENGTH;
+	}
+
+	/**
+	 * Get a little-endian int from a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
+	 */
+	public static int getIntLE(final ByteBuffer buffer, final int index) {
+		checkIndex(buffer, index, INT_LENGTH);
+		if (buffer.hasArray()) {
+			return getIntLE(buffer.array(), buffer.arrayOffset() + index);
+		}
+		if (FAST && buffer.isDirect()) {
+			return getIntLE(address(buffer) + index);
+		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getIntLE(buffer, index);
+		}
+		// fall-back to plain Java
+		return (int) getBytesLE(buffer, index, INT_LENGTH);
+	}
+
+	/**
+	 * Put a little-endian int in a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
+	 */
+	public static int putIntLE(final ByteBuffer buffer, final int index, final int value) {
+		checkIndex(buffer, index, INT_LENGTH);
+		if (buffer.hasArray()) {
+			return putIntLE(buffer.array(), buffer.arrayOffset() + index, value);
+		}
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && buffer.isDirect()) {
+			return putIntLE(address(buffer) + index, value);
+		}
+		if (VARHANDLE) {
+			VarHandleAccess.putIntLE(buffer, index, value);
+			return INT_LENGTH;
+		}
+		// fall-back to plain Java
+		putBytesLE(buffer, index, INT_LENGTH, value);
+		return INT_LENGTH;
+	}
+
+	/**
+	 * Get a little-endian long from a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
+	 */
+	public static long getLongLE(final ByteBuffer buffer, final int index) {
+		checkIndex(buffer, index, LONG_LENGTH);
+		if (buffer.hasArray()) {
+			return getLongLE(buffer.array(), buffer.arrayOffset() + index);
+		}
+		if (FAST && buffer.isDirect()) {
+			return getLongLE(address(buffer) + index);
+		}
+		if (VARHANDLE) {
+			return VarHandleAccess.getLongLE(buffer, index);
+		}
+		// fall-back to plain Java
+		return getBytesLE(buffer, index, LONG_LENGTH);
+	}
+
+	/**
+	 * Put a little-endian long in a buffer at an absolute index, ignoring the buffer's
+	 * byte order. The buffer's position and limit are not affected.
+	 * Uses fast methods if available.
+	 */
+	public static int putLongLE(final ByteBuffer buffer, final int index, final long value) {
+		checkIndex(buffer, index, LONG_LENGTH);
+		if (buffer.hasArray()) {
+			return putLongLE(buffer.array(), buffer.arrayOffset() + index, value);
+		}
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && buffer.isDirect()) {
+			return putLongLE(address(buffer) + index, value);
+		}
+		if (VARHANDLE) {
+			VarHandleAccess.putLongLE(buffer, index, value);
+			return LONG_LENGTH;
+		}
+		// fall-back to plain Java
+		putBytesLE(buffer, index, LONG_LENGTH, value);
+		return LONG_LENGTH;
+	}
+
+	/**
+	 * Get a byte from a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static byte getByte(final long address) {
+		if (FAST) {
+			return UNSAFE.getByte(address);
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Put a byte at a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static int putByte(final long address, final byte value) {
+		if (FAST) {
+			UNSAFE.putByte(address, value);
+			return BYTE_LENGTH;
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Get a short from a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static short getShort(final long address) {
+		if (FAST) {
+			if (REVERSE) {
+				return Short.reverseBytes(UNSAFE.getShort(address));
+			}
+			return UNSAFE.getShort(address);
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Put a short at a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static int putShort(final long address, final short value) {
+		if (FAST) {
+			if (REVERSE) {
+				UNSAFE.putShort(address, Short.reverseBytes(value));
+				return SHORT_LENGTH;
+			}
+			UNSAFE.putShort(address, value);
+			return SHORT_LENGTH;
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Get an int from a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static int getInt(final long address) {
+		if (FAST) {
+			if (REVERSE) {
+				return Integer.reverseBytes(UNSAFE.getInt(address));
+			}
+			return UNSAFE.getInt(address);
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Put an int at a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static int putInt(final long address, final int value) {
+		if (FAST) {
+			if (REVERSE) {
+				UNSAFE.putInt(address, Integer.reverseBytes(value));
+				return INT_LENGTH;
+			}
+			UNSAFE.putInt(address, value);
+			return INT_LENGTH;
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Get a long from a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static long getLong(final long address) {
+		if (FAST) {
+			if (REVERSE) {
+				return Long.reverseBytes(UNSAFE.getLong(address));
+			}
+			return UNSAFE.getLong(address);
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Put a long at a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static int putLong(final long address, final long value) {
+		if (FAST) {
+			if (REVERSE) {
+				UNSAFE.putLong(address, Long.reverseBytes(value));
+				return LONG_LENGTH;
+			}
+			UNSAFE.putLong(address, value);
+			return LONG_LENGTH;
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Get a little-endian short from a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static short getShortLE(final long address) {
+		if (FAST) {
+			if (!REVERSE) {
+				return Short.reverseBytes(UNSAFE.getShort(address));
+			}
+			return UNSAFE.getShort(address);
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Put a little-endian short at a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static int putShortLE(final long address, final short value) {
+		if (FAST) {
+			if (!REVERSE) {
+				UNSAFE.putShort(address, Short.reverseBytes(value));
+				return SHORT_LENGTH;
+			}
+			UNSAFE.putShort(address, value);
+			return SHORT_LENGTH;
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Get a little-endian int from a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static int getIntLE(final long address) {
+		if (FAST) {
+			if (!REVERSE) {
+				return Integer.reverseBytes(UNSAFE.getInt(address));
+			}
+			return UNSAFE.getInt(address);
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Put a little-endian int at a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static int putIntLE(final long address, final int value) {
+		if (FAST) {
+			if (!REVERSE) {
+				UNSAFE.putInt(address, Integer.reverseBytes(value));
+				return INT_LENGTH;
+			}
+			UNSAFE.putInt(address, value);
+			return INT_LENGTH;
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Get a little-endian long from a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static long getLongLE(final long address) {
+		if (FAST) {
+			if (!REVERSE) {
+				return Long.reverseBytes(UNSAFE.getLong(address));
+			}
+			return UNSAFE.getLong(address);
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * Put a little-endian long at a raw memory address.
+	 * Requires the Unsafe backend.
+	 */
+	public static int putLongLE(final long address, final long value) {
+		if (FAST) {
+			if (!REVERSE) {
+				UNSAFE.putLong(address, Long.reverseBytes(value));
+				return LONG_LENGTH;
+			}
+			UNSAFE.putLong(address, value);
+			return LONG_LENGTH;
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	/**
+	 * @return the memory address of a direct buffer.
+	 * Requires the Unsafe backend.
+	 */
+	public static long address(final ByteBuffer buffer) {
+		if (!buffer.isDirect()) {
+			throw new IllegalArgumentException("buffer is not direct");
+		}
+		if (FAST) {
+			return UNSAFE.getLong(buffer, BB_ADDRESS_OFFSET);
+		}
+		throw new UnsupportedOperationException(NO_UNSAFE);
+	}
+
+	private static void checkIndex(final ByteBuffer buffer, final int index, final int length) {
+		if (index < 0 || index > buffer.limit() - length) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	private static long getBytes(final ByteBuffer buffer, final int index, final int length) {
+		long value = 0;
+		for (int i = 0; i < length; i++) {
+			value = (value << Byte.SIZE) | (buffer.get(index + i) & BYTE_MASK);
+		}
+		return value;
+	}
+
+	private static long getBytesLE(final ByteBuffer buffer, final int index, final int length) {
+		long value = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			value = (value << Byte.SIZE) | (buffer.get(index + i) & BYTE_MASK);
+		}
+		return value;
+	}
+
+	private static void putBytes(final ByteBuffer buffer, final int index, final int length, final long value) {
+		for (int i = 0, shift = (length - 1) * Byte.SIZE; i < length; i++, shift -= Byte.SIZE) {
+			buffer.put(index + i, (byte) (value >>> shift));
+		}
+	}
+
+	private static void putBytesLE(final ByteBuffer buffer, final int index, final int length, final long value) {
+		for (int i = 0, shift = 0; i < length; i++, shift += Byte.SIZE) {
+			buffer.put(index + i, (byte) (value >>> shift));
+		}
+	}
+
+	/**
+	 * ZigZag encoding: maps signed ints to unsigned ints so that numbers with
+	 * a small absolute value have a small varint encoding.
+	 */
+	public static int encodeZigZag(final int value) {
+		return (value << 1) ^ (value >> (Integer.SIZE - 1));
+	}
+
+	/**
+	 * @see #encodeZigZag(int)
+	 */
+	public static int decodeZigZag(final int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * ZigZag encoding: maps signed longs to unsigned longs so that numbers
+	 * with a small absolute value have a small varint encoding.
+	 */
+	public static long encodeZigZag(final long value) {
+		return (value << 1) ^ (value >> (Long.SIZE - 1));
+	}
+
+	/**
+	 * @see #encodeZigZag(long)
+	 */
+	public static long decodeZigZag(final long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * @return the number of bytes of the varint (LEB128) encoding of the
+	 *         value, between 1 and {@link #VARINT_MAX_LENGTH}. Negative values
+	 *         always take the maximum length; use ZigZag encoding for them.
+	 */
+	public static int varIntLength(final int value) {
+		// max(1, ceil(bits / 7)) computed as (bits * 9 + 64) / 64
+		return ((Integer.SIZE - Integer.numberOfLeadingZeros(value)) * 9 + 64) >>> 6;
+	}
+
+	/**
+	 * @return the number of bytes of the varint (LEB128) encoding of the
+	 *         value, between 1 and {@link #VARLONG_MAX_LENGTH}. Negative
+	 *         values always take the maximum length; use ZigZag encoding for
+	 *         them.
+	 */
+	public static int varLongLength(final long value) {
+		return ((Long.SIZE - Long.numberOfLeadingZeros(value)) * 9 + 64) >>> 6;
+	}
+
+	/**
+	 * Put an unsigned varint (LEB128) in an array.
+	 * @return the number of bytes written, same as {@link #varIntLength(int)}
+	 */
+	public static int putVarInt(final byte[] array, final int offset, final int value) {
+		int v = value;
+		int i = offset;
+		while ((v & ~VARINT_PAYLOAD) != 0) {
+			array[i++] = (byte) (v | VARINT_CONTINUE);
+			v >>>= VARINT_BITS;
+		}
+		array[i++] = (byte) v;
+		return i - offset;
+	}
+
+	/**
+	 * Put an unsigned varint (LEB128) in an array.
+	 * @return the number of bytes written, same as {@link #varLongLength(long)}
+	 */
+	public static int putVarLong(final byte[] array, final int offset, final long value) {
+		long v = value;
+		int i = offset;
+		while ((v & ~VARINT_PAYLOAD) != 0) {
+			array[i++] = (byte) (v | VARINT_CONTINUE);
+			v >>>= VARINT_BITS;
+		}
+		array[i++] = (byte) v;
+		return i - offset;
+	}
+
+	/**
+	 * Get an unsigned varint (LEB128) from an array. Only the shortest
+	 * encoding of a value is accepted, so the number of bytes consumed is
+	 * always {@link #varIntLength(int)} of the result.
+	 * Uses a word-at-a-time decoder when at least 8 bytes are available.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the encoding is malformed, overlong, or overflows
+	 */
+	public static int getVarInt(final byte[] array, final int offset) {
+		if (offset >= 0 && offset <= array.length - LONG_LENGTH) {
+			return decodeVarInt(getLongLE(array, offset));
+		}
+		int value = 0;
+		for (int i = 0, shift = 0; i < VARINT_MAX_LENGTH; i++, shift += VARINT_BITS) {
+			final int b = array[offset + i];
+			value |= (b & VARINT_PAYLOAD) << shift;
+			if (b >= 0) {
+				checkVarInt(i, b);
+				return value;
+			}
+		}
+		throw new IllegalArgumentException(MALFORMED_VARINT);
+	}
+
+	/**
+	 * Get an unsigned varint (LEB128) from an array. Only the shortest
+	 * encoding of a value is accepted, so the number of bytes consumed is
+	 * always {@link #varLongLength(long)} of the result.
+	 * Uses a word-at-a-time decoder when at least 8 bytes are available.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the encoding is malformed, overlong, or overflows
+	 */
+	public static long getVarLong(final byte[] array, final int offset) {
+		if (offset >= 0 && offset <= array.length - LONG_LENGTH) {
+			final long word = getLongLE(array, offset);
+			if ((~word & VARINT_STOP_BITS) != 0) {
+				return decodeVarLong(word);
+			}
+		}
+		long value = 0;
+		for (int i = 0, shift = 0; i < VARLONG_MAX_LENGTH; i++, shift += VARINT_BITS) {
+			final int b = array[offset + i];
+			value |= (long) (b & VARINT_PAYLOAD) << shift;
+			if (b >= 0) {
+				checkVarLong(i, b);
+				return value;
+			}
+		}
+		throw new IllegalArgumentException(MALFORMED_VARINT);
+	}
+
+	/**
+	 * Put an unsigned varint (LEB128) in a buffer at an absolute index. The
+	 * buffer's position and limit are not affected.
+	 * @return the number of bytes written, same as {@link #varIntLength(int)}
+	 */
+	public static int putVarInt(final ByteBuffer buffer, final int index, final int value) {
+		final int length = varIntLength(value);
+		checkIndex(buffer, index, length);
+		if (buffer.hasArray()) {
+			return putVarInt(buffer.array(), buffer.arrayOffset() + index, value);
+		}
+		int v = value;
+		for (int i = 0; i < length - 1; i++) {
+			buffer.put(index + i, (byte) (v | VARINT_CONTINUE));
+			v >>>= VARINT_BITS;
+		}
+		buffer.put(index + length - 1, (byte) v);
+		return length;
+	}
+
+	/**
+	 * Put an unsigned varint (LEB128) in a buffer at an absolute index. The
+	 * buffer's position and limit are not affected.
+	 * @return the number of bytes written, same as {@link #varLongLength(long)}
+	 */
+	public static int putVarLong(final ByteBuffer buffer, final int index, final long value) {
+		final int length = varLongLength(value);
+		checkIndex(buffer, index, length);
+		if (buffer.hasArray()) {
+			return putVarLong(buffer.array(), buffer.arrayOffset() + index, value);
+		}
+		long v = value;
+		for (int i = 0; i < length - 1; i++) {
+			buffer.put(index + i, (byte) (v | VARINT_CONTINUE));
+			v >>>= VARINT_BITS;
+		}
+		buffer.put(index + length - 1, (byte) v);
+		return length;
+	}
+
+	/**
+	 * Get an unsigned varint (LEB128) from a buffer at an absolute index. The
+	 * buffer's position and limit are not affected.
+	 * @see #getVarInt(byte[], int)
+	 */
+	public static int getVarInt(final ByteBuffer buffer, final int index) {
+		if (index >= 0 && index <= buffer.limit() - LONG_LENGTH) {
+			return decodeVarInt(getLongLE(buffer, index));
+		}
+		int value = 0;
+		for (int i = 0, shift = 0; i < VARINT_MAX_LENGTH; i++, shift += VARINT_BITS) {
+			final int b = buffer.get(index + i);
+			value |= (b & VARINT_PAYLOAD) << shift;
+			if (b >= 0) {
+				checkVarInt(i, b);
+				return value;
+			}
+		}
+		throw new IllegalArgumentException(MALFORMED_VARINT);
+	}
+
+	/**
+	 * Get an unsigned varint (LEB128) from a buffer at an absolute index. The
+	 * buffer's position and limit are not affected.
+	 * @see #getVarLong(byte[], int)
+	 */
+	public static long getVarLong(final ByteBuffer buffer, final int index) {
+		if (index >= 0 && index <= buffer.limit() - LONG_LENGTH) {
+			final long word = getLongLE(buffer, index);
+			if ((~word & VARINT_STOP_BITS) != 0) {
+				return decodeVarLong(word);
+			}
+		}
+		long value = 0;
+		for (int i = 0, shift = 0; i < VARLONG_MAX_LENGTH; i++, shift += VARINT_BITS) {
+			final int b = buffer.get(index + i);
+			value |= (long) (b & VARINT_PAYLOAD) << shift;
+			if (b >= 0) {
+				checkVarLong(i, b);
+				return value;
+			}
+		}
+		throw new IllegalArgumentException(MALFORMED_VARINT);
+	}
+
+	/**
+	 * Decodes a varint from the first bytes of a little-endian word.
+	 */
+	private static int decodeVarInt(final long word) {
+		final long stops = ~word & VARINT_STOP_BITS;
+		// index of the last byte of the varint, or 8 if there is none
+		final int last = Long.numberOfTrailingZeros(stops) >>> 3;
+		if (last >= VARINT_MAX_LENGTH) {
+			throw new IllegalArgumentException(MALFORMED_VARINT);
+		}
+		final long value = compactVarInt(word, last);
+		if (value >>> Integer.SIZE != 0 || (last > 0 && (word >>> (last * Byte.SIZE) & BYTE_MASK) == 0)) {
+			throw new IllegalArgumentException(MALFORMED_VARINT);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Decodes a varint of at most 8 bytes from a little-endian word.
+	 */
+	private static long decodeVarLong(final long word) {
+		final long stops = ~word & VARINT_STOP_BITS;
+		final int last = Long.numberOfTrailingZeros(stops) >>> 3;
+		if (last > 0 && (word >>> (last * Byte.SIZE) & BYTE_MASK) == 0) {
+			throw new IllegalArgumentException(MALFORMED_VARINT);
+		}
+		return compactVarInt(word, last);
+	}
+
+	/**
+	 * Removes the continuation bits from bytes <code>0..last</code> of a
+	 * little-endian word, and packs the 7-bit groups together.
+	 */
+	private static long compactVarInt(final long word, final int last) {
+		final long keep = -1L >>> ((LONG_LENGTH - 1 - last) * Byte.SIZE);
+		long x = word & keep & 0x7F7F_7F7F_7F7F_7F7FL;
+		x = ((x & 0x7F00_7F00_7F00_7F00L) >>> 1) | (x & 0x007F_007F_007F_007FL);
+		x = ((x & 0x3FFF_0000_3FFF_0000L) >>> 2) | (x & 0x0000_3FFF_0000_3FFFL);
+		x = ((x & 0x0FFF_FFFF_0000_0000L) >>> 4) | (x & 0x0000_0000_0FFF_FFFFL);
+		return x;
+	}
+
+	private static void checkVarInt(final int last, final int b) {
+		// no overlong encodings, and at most 32 bits
+		if ((last > 0 && b == 0) || (last == VARINT_MAX_LENGTH - 1 && b > 0x0F)) {
+			throw new IllegalArgumentException(MALFORMED_VARINT);
+		}
+	}
+
+	private static void checkVarLong(final int last, final int b) {
+		// no overlong encodings, and at most 64 bits
+		if ((last > 0 && b == 0) || (last == VARLONG_MAX_LENGTH - 1 && b > 1)) {
+			throw new IllegalArgumentException(MALFORMED_VARINT);
+		}
+	}
+
+	/**
+	 * Commodity method to wrap a short in a byte array.
+	 */
+	public static byte[] toArray(final short value) {
+		final byte[] array = new byte[SHORT_LENGTH];
+		putShort(array, 0, value);
+		return array;
+	}
+
+	/**
+	 * Commodity method to wrap an int in a byte array.
+	 */
+	public static byte[] toArray(final int value) {
+		final byte[] array = new byte[INT_LENGTH];
+		putInt(array, 0, value);
+		return array;
+	}
+
+	/**
+	 * Commodity method to wrap a long in a byte array.
+	 */
+	public static byte[] toArray(final long value) {
+		final byte[] array = new byte[LONG_LENGTH];
+		putLong(array, 0, value);
+		return array;
+	}
+
+	public static int fill(final byte[] array, final int offset, final int length, final byte value) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		if (FAST) {
+			UNSAFE.setMemory(array, BYTE_ARRAY_OFFSET + offset, length, value);
+			return length;
+		}
+		if (VECTOR && length >= VECTOR_THRESHOLD) {
+			VectorKernels.fill(array, offset, length, value);
+			return length;
+		}
+		// fall-back to plain Java
+		Arrays.fill(array, offset, offset + length, value);
+		return length;
+	}
+
+	/**
+	 * @see System#arraycopy(Object, int, Object, int, int)
+	 */
+	public static void arrayCopy(final byte[] src, final int srcPos, final byte[] dst, final int dstPos,
+			final int length) {
+		if (FAST) {
+			if (srcPos < 0 || dstPos < 0 || length < 0 || (srcPos + length) > src.length
+					|| (dstPos + length) > dst.length) {
+				throw new IndexOutOfBoundsException();
+			}
+			UNSAFE.copyMemory(src, BYTE_ARRAY_OFFSET + srcPos, dst, BYTE_ARRAY_OFFSET + dstPos, length);
+			return;
+		}
+		// fall-back to plain Java
+		System.arraycopy(src, srcPos, dst, dstPos, length);
+	}
+
+	/**
+	 * This method copies and casts between arrays. Longs are decoded in
+	 * big-endian order, like {@link #getLong(byte[], int)}.
+	 * @param length the number of bytes to be copied. Must be a multiple {@link #LONG_LENGTH}.
+	 * @see System#arraycopy(Object, int, Object, int, int)
+	 */
+	public static void arrayCopy(final byte[] src, final int srcPos, final long[] dst, final int dstPos,
+			final int length) {
+		if (length % LONG_LENGTH != 0) {
+			throw new IllegalArgumentException();
+		}
+		arrayCopy(src, srcPos, dst, dstPos, length / LONG_LENGTH, ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * This method copies and casts between arrays. Longs are encoded in
+	 * big-endian order, like {@link #putLong(byte[], int, long)}.
+	 * @param length number of longs to be copied.
+	 * @see System#arraycopy(Object, int, Object, int, int)
+	 */
+	public static void arrayCopy(final long[] src, final int srcPos, final byte[] dst, final int dstPos,
+			final int length) {
+		arrayCopy(src, srcPos, dst, dstPos, length, ByteOrder.BIG_ENDIAN);
+	}
+
+	/**
+	 * Copies bytes into shorts, decoding each short in the given byte order.
+	 * @param length the number of shorts to be copied
+	 */
+	public static void arrayCopy(final byte[] src, final int srcPos, final short[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, (long) length * SHORT_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (FAST) {
+			copyElements(src, BYTE_ARRAY_OFFSET + srcPos, dst, SHORT_ARRAY_OFFSET + (long) dstPos * SHORT_LENGTH,
+					length, SHORT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(src, srcPos, length * SHORT_LENGTH).order(order).asShortBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Copies shorts into bytes, encoding each short in the given byte order.
+	 * @param length the number of shorts to be copied
+	 */
+	public static void arrayCopy(final short[] src, final int srcPos, final byte[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.length, dstPos, (long) length * SHORT_LENGTH);
+		if (FAST) {
+			copyElements(src, SHORT_ARRAY_OFFSET + (long) srcPos * SHORT_LENGTH, dst, BYTE_ARRAY_OFFSET + dstPos,
+					length, SHORT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(dst, dstPos, length * SHORT_LENGTH).order(order).asShortBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Absolute bulk get: copies bytes starting at the given index of the
+	 * buffer into shorts, decoding each short in the given byte order. The
+	 * buffer's position, limit and order are not affected.
+	 * @param length the number of shorts to be copied
+	 */
+	public static void arrayCopy(final ByteBuffer src, final int srcIndex, final short[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.limit(), srcIndex, (long) length * SHORT_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (src.hasArray()) {
+			arrayCopy(src.array(), src.arrayOffset() + srcIndex, dst, dstPos, length, order);
+			return;
+		}
+		if (FAST && src.isDirect()) {
+			copyElements(null, address(src) + srcIndex, dst, SHORT_ARRAY_OFFSET + (long) dstPos * SHORT_LENGTH,
+					length, SHORT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(src, srcIndex, length * SHORT_LENGTH, order).asShortBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Absolute bulk put: copies shorts into the buffer starting at the given
+	 * index, encoding each short in the given byte order. The buffer's
+	 * position, limit and order are not affected.
+	 * @param length the number of shorts to be copied
+	 */
+	public static void arrayCopy(final short[] src, final int srcPos, final ByteBuffer dst, final int dstIndex,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.limit(), dstIndex, (long) length * SHORT_LENGTH);
+		if (dst.hasArray()) {
+			arrayCopy(src, srcPos, dst.array(), dst.arrayOffset() + dstIndex, length, order);
+			return;
+		}
+		if (dst.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && dst.isDirect()) {
+			copyElements(src, SHORT_ARRAY_OFFSET + (long) srcPos * SHORT_LENGTH, null, address(dst) + dstIndex,
+					length, SHORT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(dst, dstIndex, length * SHORT_LENGTH, order).asShortBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Copies bytes into chars, decoding each char in the given byte order.
+	 * @param length the number of chars to be copied
+	 */
+	public static void arrayCopy(final byte[] src, final int srcPos, final char[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, (long) length * CHAR_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (FAST) {
+			copyElements(src, BYTE_ARRAY_OFFSET + srcPos, dst, CHAR_ARRAY_OFFSET + (long) dstPos * CHAR_LENGTH,
+					length, CHAR_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(src, srcPos, length * CHAR_LENGTH).order(order).asCharBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Copies chars into bytes, encoding each char in the given byte order.
+	 * @param length the number of chars to be copied
+	 */
+	public static void arrayCopy(final char[] src, final int srcPos, final byte[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.length, dstPos, (long) length * CHAR_LENGTH);
+		if (FAST) {
+			copyElements(src, CHAR_ARRAY_OFFSET + (long) srcPos * CHAR_LENGTH, dst, BYTE_ARRAY_OFFSET + dstPos,
+					length, CHAR_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(dst, dstPos, length * CHAR_LENGTH).order(order).asCharBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Absolute bulk get: copies bytes starting at the given index of the
+	 * buffer into chars, decoding each char in the given byte order. The
+	 * buffer's position, limit and order are not affected.
+	 * @param length the number of chars to be copied
+	 */
+	public static void arrayCopy(final ByteBuffer src, final int srcIndex, final char[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.limit(), srcIndex, (long) length * CHAR_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (src.hasArray()) {
+			arrayCopy(src.array(), src.arrayOffset() + srcIndex, dst, dstPos, length, order);
+			return;
+		}
+		if (FAST && src.isDirect()) {
+			copyElements(null, address(src) + srcIndex, dst, CHAR_ARRAY_OFFSET + (long) dstPos * CHAR_LENGTH,
+					length, CHAR_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(src, srcIndex, length * CHAR_LENGTH, order).asCharBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Absolute bulk put: copies chars into the buffer starting at the given
+	 * index, encoding each char in the given byte order. The buffer's
+	 * position, limit and order are not affected.
+	 * @param length the number of chars to be copied
+	 */
+	public static void arrayCopy(final char[] src, final int srcPos, final ByteBuffer dst, final int dstIndex,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.limit(), dstIndex, (long) length * CHAR_LENGTH);
+		if (dst.hasArray()) {
+			arrayCopy(src, srcPos, dst.array(), dst.arrayOffset() + dstIndex, length, order);
+			return;
+		}
+		if (dst.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && dst.isDirect()) {
+			copyElements(src, CHAR_ARRAY_OFFSET + (long) srcPos * CHAR_LENGTH, null, address(dst) + dstIndex,
+					length, CHAR_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(dst, dstIndex, length * CHAR_LENGTH, order).asCharBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Copies bytes into ints, decoding each int in the given byte order.
+	 * @param length the number of ints to be copied
+	 */
+	public static void arrayCopy(final byte[] src, final int srcPos, final int[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, (long) length * INT_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (FAST) {
+			copyElements(src, BYTE_ARRAY_OFFSET + srcPos, dst, INT_ARRAY_OFFSET + (long) dstPos * INT_LENGTH,
+					length, INT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(src, srcPos, length * INT_LENGTH).order(order).asIntBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Copies ints into bytes, encoding each int in the given byte order.
+	 * @param length the number of ints to be copied
+	 */
+	public static void arrayCopy(final int[] src, final int srcPos, final byte[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.length, dstPos, (long) length * INT_LENGTH);
+		if (FAST) {
+			copyElements(src, INT_ARRAY_OFFSET + (long) srcPos * INT_LENGTH, dst, BYTE_ARRAY_OFFSET + dstPos,
+					length, INT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(dst, dstPos, length * INT_LENGTH).order(order).asIntBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Absolute bulk get: copies bytes starting at the given index of the
+	 * buffer into ints, decoding each int in the given byte order. The
+	 * buffer's position, limit and order are not affected.
+	 * @param length the number of ints to be copied
+	 */
+	public static void arrayCopy(final ByteBuffer src, final int srcIndex, final int[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.limit(), srcIndex, (long) length * INT_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (src.hasArray()) {
+			arrayCopy(src.array(), src.arrayOffset() + srcIndex, dst, dstPos, length, order);
+			return;
+		}
+		if (FAST && src.isDirect()) {
+			copyElements(null, address(src) + srcIndex, dst, INT_ARRAY_OFFSET + (long) dstPos * INT_LENGTH,
+					length, INT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(src, srcIndex, length * INT_LENGTH, order).asIntBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Absolute bulk put: copies ints into the buffer starting at the given
+	 * index, encoding each int in the given byte order. The buffer's
+	 * position, limit and order are not affected.
+	 * @param length the number of ints to be copied
+	 */
+	public static void arrayCopy(final int[] src, final int srcPos, final ByteBuffer dst, final int dstIndex,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.limit(), dstIndex, (long) length * INT_LENGTH);
+		if (dst.hasArray()) {
+			arrayCopy(src, srcPos, dst.array(), dst.arrayOffset() + dstIndex, length, order);
+			return;
+		}
+		if (dst.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && dst.isDirect()) {
+			copyElements(src, INT_ARRAY_OFFSET + (long) srcPos * INT_LENGTH, null, address(dst) + dstIndex,
+					length, INT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(dst, dstIndex, length * INT_LENGTH, order).asIntBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Copies bytes into longs, decoding each long in the given byte order.
+	 * @param length the number of longs to be copied
+	 */
+	public static void arrayCopy(final byte[] src, final int srcPos, final long[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, (long) length * LONG_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (FAST) {
+			copyElements(src, BYTE_ARRAY_OFFSET + srcPos, dst, LONG_ARRAY_OFFSET + (long) dstPos * LONG_LENGTH,
+					length, LONG_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(src, srcPos, length * LONG_LENGTH).order(order).asLongBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Copies longs into bytes, encoding each long in the given byte order.
+	 * @param length the number of longs to be copied
+	 */
+	public static void arrayCopy(final long[] src, final int srcPos, final byte[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.length, dstPos, (long) length * LONG_LENGTH);
+		if (FAST) {
+			copyElements(src, LONG_ARRAY_OFFSET + (long) srcPos * LONG_LENGTH, dst, BYTE_ARRAY_OFFSET + dstPos,
+					length, LONG_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(dst, dstPos, length * LONG_LENGTH).order(order).asLongBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Absolute bulk get: copies bytes starting at the given index of the
+	 * buffer into longs, decoding each long in the given byte order. The
+	 * buffer's position, limit and order are not affected.
+	 * @param length the number of longs to be copied
+	 */
+	public static void arrayCopy(final ByteBuffer src, final int srcIndex, final long[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.limit(), srcIndex, (long) length * LONG_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (src.hasArray()) {
+			arrayCopy(src.array(), src.arrayOffset() + srcIndex, dst, dstPos, length, order);
+			return;
+		}
+		if (FAST && src.isDirect()) {
+			copyElements(null, address(src) + srcIndex, dst, LONG_ARRAY_OFFSET + (long) dstPos * LONG_LENGTH,
+					length, LONG_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(src, srcIndex, length * LONG_LENGTH, order).asLongBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Absolute bulk put: copies longs into the buffer starting at the given
+	 * index, encoding each long in the given byte order. The buffer's
+	 * position, limit and order are not affected.
+	 * @param length the number of longs to be copied
+	 */
+	public static void arrayCopy(final long[] src, final int srcPos, final ByteBuffer dst, final int dstIndex,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.limit(), dstIndex, (long) length * LONG_LENGTH);
+		if (dst.hasArray()) {
+			arrayCopy(src, srcPos, dst.array(), dst.arrayOffset() + dstIndex, length, order);
+			return;
+		}
+		if (dst.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && dst.isDirect()) {
+			copyElements(src, LONG_ARRAY_OFFSET + (long) srcPos * LONG_LENGTH, null, address(dst) + dstIndex,
+					length, LONG_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(dst, dstIndex, length * LONG_LENGTH, order).asLongBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Copies bytes into floats, decoding each float in the given byte order.
+	 * @param length the number of floats to be copied
+	 */
+	public static void arrayCopy(final byte[] src, final int srcPos, final float[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, (long) length * FLOAT_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (FAST) {
+			copyElements(src, BYTE_ARRAY_OFFSET + srcPos, dst, FLOAT_ARRAY_OFFSET + (long) dstPos * FLOAT_LENGTH,
+					length, FLOAT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(src, srcPos, length * FLOAT_LENGTH).order(order).asFloatBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Copies floats into bytes, encoding each float in the given byte order.
+	 * @param length the number of floats to be copied
+	 */
+	public static void arrayCopy(final float[] src, final int srcPos, final byte[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.length, dstPos, (long) length * FLOAT_LENGTH);
+		if (FAST) {
+			copyElements(src, FLOAT_ARRAY_OFFSET + (long) srcPos * FLOAT_LENGTH, dst, BYTE_ARRAY_OFFSET + dstPos,
+					length, FLOAT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(dst, dstPos, length * FLOAT_LENGTH).order(order).asFloatBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Absolute bulk get: copies bytes starting at the given index of the
+	 * buffer into floats, decoding each float in the given byte order. The
+	 * buffer's position, limit and order are not affected.
+	 * @param length the number of floats to be copied
+	 */
+	public static void arrayCopy(final ByteBuffer src, final int srcIndex, final float[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.limit(), srcIndex, (long) length * FLOAT_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (src.hasArray()) {
+			arrayCopy(src.array(), src.arrayOffset() + srcIndex, dst, dstPos, length, order);
+			return;
+		}
+		if (FAST && src.isDirect()) {
+			copyElements(null, address(src) + srcIndex, dst, FLOAT_ARRAY_OFFSET + (long) dstPos * FLOAT_LENGTH,
+					length, FLOAT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(src, srcIndex, length * FLOAT_LENGTH, order).asFloatBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Absolute bulk put: copies floats into the buffer starting at the given
+	 * index, encoding each float in the given byte order. The buffer's
+	 * position, limit and order are not affected.
+	 * @param length the number of floats to be copied
+	 */
+	public static void arrayCopy(final float[] src, final int srcPos, final ByteBuffer dst, final int dstIndex,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.limit(), dstIndex, (long) length * FLOAT_LENGTH);
+		if (dst.hasArray()) {
+			arrayCopy(src, srcPos, dst.array(), dst.arrayOffset() + dstIndex, length, order);
+			return;
+		}
+		if (dst.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && dst.isDirect()) {
+			copyElements(src, FLOAT_ARRAY_OFFSET + (long) srcPos * FLOAT_LENGTH, null, address(dst) + dstIndex,
+					length, FLOAT_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(dst, dstIndex, length * FLOAT_LENGTH, order).asFloatBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Copies bytes into doubles, decoding each double in the given byte order.
+	 * @param length the number of doubles to be copied
+	 */
+	public static void arrayCopy(final byte[] src, final int srcPos, final double[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, (long) length * DOUBLE_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (FAST) {
+			copyElements(src, BYTE_ARRAY_OFFSET + srcPos, dst, DOUBLE_ARRAY_OFFSET + (long) dstPos * DOUBLE_LENGTH,
+					length, DOUBLE_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(src, srcPos, length * DOUBLE_LENGTH).order(order).asDoubleBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Copies doubles into bytes, encoding each double in the given byte order.
+	 * @param length the number of doubles to be copied
+	 */
+	public static void arrayCopy(final double[] src, final int srcPos, final byte[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.length, dstPos, (long) length * DOUBLE_LENGTH);
+		if (FAST) {
+			copyElements(src, DOUBLE_ARRAY_OFFSET + (long) srcPos * DOUBLE_LENGTH, dst, BYTE_ARRAY_OFFSET + dstPos,
+					length, DOUBLE_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		ByteBuffer.wrap(dst, dstPos, length * DOUBLE_LENGTH).order(order).asDoubleBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Absolute bulk get: copies bytes starting at the given index of the
+	 * buffer into doubles, decoding each double in the given byte order. The
+	 * buffer's position, limit and order are not affected.
+	 * @param length the number of doubles to be copied
+	 */
+	public static void arrayCopy(final ByteBuffer src, final int srcIndex, final double[] dst, final int dstPos,
+			final int length, final ByteOrder order) {
+		checkRange(src.limit(), srcIndex, (long) length * DOUBLE_LENGTH);
+		checkRange(dst.length, dstPos, length);
+		if (src.hasArray()) {
+			arrayCopy(src.array(), src.arrayOffset() + srcIndex, dst, dstPos, length, order);
+			return;
+		}
+		if (FAST && src.isDirect()) {
+			copyElements(null, address(src) + srcIndex, dst, DOUBLE_ARRAY_OFFSET + (long) dstPos * DOUBLE_LENGTH,
+					length, DOUBLE_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(src, srcIndex, length * DOUBLE_LENGTH, order).asDoubleBuffer().get(dst, dstPos, length);
+	}
+
+	/**
+	 * Absolute bulk put: copies doubles into the buffer starting at the given
+	 * index, encoding each double in the given byte order. The buffer's
+	 * position, limit and order are not affected.
+	 * @param length the number of doubles to be copied
+	 */
+	public static void arrayCopy(final double[] src, final int srcPos, final ByteBuffer dst, final int dstIndex,
+			final int length, final ByteOrder order) {
+		checkRange(src.length, srcPos, length);
+		checkRange(dst.limit(), dstIndex, (long) length * DOUBLE_LENGTH);
+		if (dst.hasArray()) {
+			arrayCopy(src, srcPos, dst.array(), dst.arrayOffset() + dstIndex, length, order);
+			return;
+		}
+		if (dst.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && dst.isDirect()) {
+			copyElements(src, DOUBLE_ARRAY_OFFSET + (long) srcPos * DOUBLE_LENGTH, null, address(dst) + dstIndex,
+					length, DOUBLE_LENGTH, order != ByteOrder.nativeOrder());
+			return;
+		}
+		// fall-back to plain Java
+		view(dst, dstIndex, length * DOUBLE_LENGTH, order).asDoubleBuffer().put(src, srcPos, length);
+	}
+
+	/**
+	 * Copies <code>count</code> elements of <code>size</code> bytes between
+	 * two Unsafe locations. If <code>swap</code> is set, the bytes of each
+	 * element are reversed; the loop is simple enough for the JIT to unroll.
+	 */
+	private static void copyElements(final Object src, final long srcOffset, final Object dst, final long dstOffset,
+			final int count, final int size, final boolean swap) {
+		if (!swap) {
+			UNSAFE.copyMemory(src, srcOffset, dst, dstOffset, (long) count * size);
+			return;
+		}
+		switch (size) {
+			case SHORT_LENGTH:
+				for (int i = 0; i < count; i++) {
+					final long offset = (long) i * SHORT_LENGTH;
+					UNSAFE.putShort(dst, dstOffset + offset, Short.reverseBytes(UNSAFE.getShort(src, srcOffset + offset)));
+				}
+				break;
+			case INT_LENGTH:
+				for (int i = 0; i < count; i++) {
+					final long offset = (long) i * INT_LENGTH;
+					UNSAFE.putInt(dst, dstOffset + offset, Integer.reverseBytes(UNSAFE.getInt(src, srcOffset + offset)));
+				}
+				break;
+			case LONG_LENGTH:
+				for (int i = 0; i < count; i++) {
+					final long offset = (long) i * LONG_LENGTH;
+					UNSAFE.putLong(dst, dstOffset + offset, Long.reverseBytes(UNSAFE.getLong(src, srcOffset + offset)));
+				}
+				break;
+			default:
+				throw new Bug("unsupported element size: " + size);
+		}
+	}
+
+	/**
+	 * @return a duplicate of the buffer covering <code>length</code> bytes
+	 *         from <code>index</code>, in the given byte order
+	 */
+	private static ByteBuffer view(final ByteBuffer buffer, final int index, final int length, final ByteOrder order) {
+		final ByteBuffer dup = buffer.duplicate();
+		dup.limit(index + length);
+		dup.position(index);
+		return dup.order(order);
+	}
+
+	private static void checkRange(final int capacity, final int offset, final long length) {
+		if (offset < 0 || length < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (offset + length > capacity) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * @see System#arraycopy(Object, int, Object, int, int)
+	 * @see ByteBuffer#get(byte[], int, int)
+	 */
+	public static void arrayCopy(final ByteBuffer src, final byte[] dst, final int dstPos, final int length) {
+		if (FAST) {
+			if (src.isDirect()) {
+				final int srcPos = src.position();
+				if (dstPos < 0 || length < 0) {
+					throw new IllegalArgumentException();
+				}
+				if ((srcPos + length) > src.limit()) {
+					throw new BufferUnderflowException();
+				}
+				if ((dstPos + length) > dst.length) {
+					throw new ArrayIndexOutOfBoundsException(dstPos + length);
+				}
+				final long address = UNSAFE.getLong(src, BB_ADDRESS_OFFSET);
+				UNSAFE.copyMemory(null, address + srcPos, dst, BYTE_ARRAY_OFFSET + dstPos, length);
+				src.position(srcPos + length);
+				return;
+			} else if (src.hasArray()) {
+				final int srcPos = src.position();
+				if ((srcPos + length) > src.limit()) {
+					throw new BufferUnderflowException();
+				}
+				arrayCopy(src.array(), src.arrayOffset() + srcPos, dst, dstPos, length);
+				src.position(srcPos + length);
+				return;
+			}
+			throw new IllegalArgumentException();
+		}
+		// fall-back to plain Java
+		src.get(dst, dstPos, length);
+	}
+
+	/**
+	 * @see System#arraycopy(Object, int, Object, int, int)
+	 * @see ByteBuffer#get(byte[], int, int)
+	 */
+	public static void arrayCopy(final byte[] src, final int srcPos, final ByteBuffer dst, final int length) {
+		if (FAST) {
+			if (dst.isDirect()) {
+				final int dstPos = dst.position();
+				if (srcPos < 0 || length < 0) {
+					throw new IllegalArgumentException();
+				}
+				if ((srcPos + length) > src.length) {
+					throw new ArrayIndexOutOfBoundsException(srcPos + length);
+				}
+				if ((dstPos + length) > dst.limit()) {
+					throw new BufferOverflowException();
+				}
+				if (dst.isReadOnly()) {
+					throw new ReadOnlyBufferException();
+				}
+				final long address = UNSAFE.getLong(dst, BB_ADDRESS_OFFSET);
+				UNSAFE.copyMemory(src, BYTE_ARRAY_OFFSET + srcPos, null, address + dstPos, length);
+				dst.position(dstPos + length);
+				return;
+			} else if (dst.hasArray()) {
+				final int dstPos = dst.position();
+				if ((dstPos + length) > dst.limit()) {
+					throw new BufferOverflowException();
+				}
+				arrayCopy(src, srcPos, dst.array(), dst.arrayOffset() + dstPos, length);
+				dst.position(dstPos + length);
+				return;
+			}
+			throw new IllegalArgumentException();
+		}
+		// fall-back to plain Java
+		dst.put(src, srcPos, length);
+	}
+
+	/**
+	 * Absolute bulk get: copies bytes starting at the given index of the
+	 * buffer. The buffer's position and limit are not affected.
+	 * @see ByteBuffer#get(byte[], int, int)
+	 */
+	public static void arrayCopy(final ByteBuffer src, final int srcIndex, final byte[] dst, final int dstPos,
+			final int length) {
+		if (srcIndex < 0 || dstPos < 0 || length < 0) {
+			throw new IllegalArgumentException();
+		}
+		if ((srcIndex + length) > src.limit() || (dstPos + length) > dst.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (src.hasArray()) {
+			arrayCopy(src.array(), src.arrayOffset() + srcIndex, dst, dstPos, length);
+			return;
+		}
+		if (FAST && src.isDirect()) {
+			UNSAFE.copyMemory(null, address(src) + srcIndex, dst, BYTE_ARRAY_OFFSET + dstPos, length);
+			return;
+		}
+		// fall-back to plain Java
+		final ByteBuffer dup = src.duplicate();
+		dup.position(srcIndex);
+		dup.get(dst, dstPos, length);
+	}
+
+	/**
+	 * Absolute bulk put: copies bytes starting at the given index of the
+	 * buffer. The buffer's position and limit are not affected.
+	 * @see ByteBuffer#put(byte[], int, int)
+	 */
+	public static void arrayCopy(final byte[] src, final int srcPos, final ByteBuffer dst, final int dstIndex,
+			final int length) {
+		if (srcPos < 0 || dstIndex < 0 || length < 0) {
+			throw new IllegalArgumentException();
+		}
+		if ((srcPos + length) > src.length || (dstIndex + length) > dst.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (dst.hasArray()) {
+			arrayCopy(src, srcPos, dst.array(), dst.arrayOffset() + dstIndex, length);
+			return;
+		}
+		if (dst.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && dst.isDirect()) {
+			UNSAFE.copyMemory(src, BYTE_ARRAY_OFFSET + srcPos, null, address(dst) + dstIndex, length);
+			return;
+		}
+		// fall-back to plain Java
+		final ByteBuffer dup = dst.duplicate();
+		dup.position(dstIndex);
+		dup.put(src, srcPos, length);
+	}
+
+	/**
+	 * Absolute bulk copy between buffers. The buffers' positions and limits
+	 * are not affected. The ranges must not overlap.
+	 * @see ByteBuffer#put(ByteBuffer)
+	 */
+	public static void arrayCopy(final ByteBuffer src, final int srcIndex, final ByteBuffer dst, final int dstIndex,
+			final int length) {
+		if (srcIndex < 0 || dstIndex < 0 || length < 0) {
+			throw new IllegalArgumentException();
+		}
+		if ((srcIndex + length) > src.limit() || (dstIndex + length) > dst.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (src.hasArray()) {
+			arrayCopy(src.array(), src.arrayOffset() + srcIndex, dst, dstIndex, length);
+			return;
+		}
+		if (dst.hasArray()) {
+			arrayCopy(src, srcIndex, dst.array(), dst.arrayOffset() + dstIndex, length);
+			return;
+		}
+		if (dst.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (FAST && src.isDirect() && dst.isDirect()) {
+			UNSAFE.copyMemory(address(src) + srcIndex, address(dst) + dstIndex, length);
+			return;
+		}
+		// fall-back to plain Java
+		final ByteBuffer in = src.duplicate();
+		in.limit(srcIndex + length);
+		in.position(srcIndex);
+		final ByteBuffer out = dst.duplicate();
+		out.position(dstIndex);
+		out.put(in);
+	}
+
+	/**
+	 * Volatile read of a native-order int in an array.
+	 * @throws IllegalArgumentException if the offset is not aligned
+	 */
+	public static int getIntVolatile(final byte[] array, final int offset) {
+		final long address = atomicOffset(array, offset, INT_LENGTH);
+		if (FAST) {
+			return UNSAFE.getIntVolatile(array, address);
+		}
+		return VarHandleAccess.getIntVolatile(array, offset);
+	}
+
+	/**
+	 * Volatile write of a native-order int in an array.
+	 * @throws IllegalArgumentException if the offset is not aligned
+	 */
+	public static void putIntVolatile(final byte[] array, final int offset, final int value) {
+		final long address = atomicOffset(array, offset, INT_LENGTH);
+		if (FAST) {
+			UNSAFE.putIntVolatile(array, address, value);
+			return;
+		}
+		VarHandleAccess.putIntVolatile(array, offset, value);
+	}
+
+	/**
+	 * Ordered (release) write of a native-order int in an array.
+	 * @throws IllegalArgumentException if the offset is not aligned
+	 */
+	public static void putIntOrdered(final byte[] array, final int offset, final int value) {
+		final long address = atomicOffset(array, offset, INT_LENGTH);
+		if (FAST) {
+			UNSAFE.putOrderedInt(array, address, value);
+			return;
+		}
+		VarHandleAccess.putIntOrdered(array, offset, value);
+	}
+
+	/**
+	 * Atomic compare-and-set of a native-order int in an array.
+	 * @return <code>true</code> if the value was <code>expected</code> and was
+	 *         replaced
+	 * @throws IllegalArgumentException if the offset is not aligned
+	 */
+	public static boolean compareAndSetInt(final byte[] array, final int offset, final int expected, final int value) {
+		final long address = atomicOffset(array, offset, INT_LENGTH);
+		if (FAST) {
+			return UNSAFE.compareAndSwapInt(array, address, expected, value);
+		}
+		return VarHandleAccess.compareAndSetInt(array, offset, expected, value);
+	}
+
+	/**
+	 * Atomic get-and-add of a native-order int in an array.
+	 * @return the previous value
+	 * @throws IllegalArgumentException if the offset is not aligned
+	 */
+	public static int getAndAddInt(final byte[] array, final int offset, final int delta) {
+		final long address = atomicOffset(array, offset, INT_LENGTH);
+		if (FAST) {
+			return unsafeGetAndAddInt(array, address, delta);
+		}
+		return VarHandleAccess.getAndAddInt(array, offset, delta);
+	}
+
+	/**
+	 * Volatile read of a native-order long in an array.
+	 * @throws IllegalArgumentException if the offset is not aligned
+	 */
+	public static long getLongVolatile(final byte[] array, final int offset) {
+		final long address = atomicOffset(array, offset, LONG_LENGTH);
+		if (FAST) {
+			return UNSAFE.getLongVolatile(array, address);
+		}
+		return VarHandleAccess.getLongVolatile(array, offset);
+	}
+
+	/**
+	 * Volatile write of a native-order long in an array.
+	 * @throws IllegalArgumentException if the offset is not aligned
+	 */
+	public static void putLongVolatile(final byte[] array, final int offset, final long value) {
+		final long address = atomicOffset(array, offset, LONG_LENGTH);
+		if (FAST) {
+			UNSAFE.putLongVolatile(array, address, value);
+			return;
+		}
+		VarHandleAccess.putLongVolatile(array, offset, value);
+	}
+
+	/**
+	 * Ordered (release) write of a native-order long in an array.
+	 * @throws IllegalArgumentException if the offset is not aligned
+	 */
+	public static void putLongOrdered(final byte[] array, final int offset, final long value) {
+		final long address = atomicOffset(array, offset, LONG_LENGTH);
+		if (FAST) {
+			UNSAFE.putOrderedLong(array, address, value);
+			return;
+		}
+		VarHandleAccess.putLongOrdered(array, offset, value);
+	}
+
+	/**
+	 * Atomic compare-and-set of a native-order long in an array.
+	 * @return <code>true</code> if the value was <code>expected</code> and was
+	 *         replaced
+	 * @throws IllegalArgumentException if the offset is not aligned
+	 */
+	public static boolean compareAndSetLong(final byte[] array, final int offset, final long expected, final long value) {
+		final long address = atomicOffset(array, offset, LONG_LENGTH);
+		if (FAST) {
+			return UNSAFE.compareAndSwapLong(array, address, expected, value);
+		}
+		return VarHandleAccess.compareAndSetLong(array, offset, expected, value);
+	}
+
+	/**
+	 * Atomic get-and-add of a native-order long in an array.
+	 * @return the previous value
+	 * @throws IllegalArgumentException if the offset is not aligned
+	 */
+	public static long getAndAddLong(final byte[] array, final int offset, final long delta) {
+		final long address = atomicOffset(array, offset, LONG_LENGTH);
+		if (FAST) {
+			return unsafeGetAndAddLong(array, address, delta);
+		}
+		return VarHandleAccess.getAndAddLong(array, offset, delta);
+	}
+
+	/**
+	 * Volatile read of a native-order int in a buffer at an
+	 * absolute index. The buffer's position and limit are not affected.
+	 * @throws IllegalArgumentException if the address is not aligned
+	 */
+	public static int getIntVolatile(final ByteBuffer buffer, final int index) {
+		checkIndex(buffer, index, INT_LENGTH);
+		if (buffer.hasArray()) {
+			return getIntVolatile(buffer.array(), buffer.arrayOffset() + index);
+		}
+		if (FAST && buffer.isDirect()) {
+			return UNSAFE.getIntVolatile(null, atomicAddress(buffer, index, INT_LENGTH));
+		}
+		if (ATOMIC_VARHANDLE) {
+			return VarHandleAccess.getIntVolatile(buffer, index);
+		}
+		throw noAtomic();
+	}
+
+	/**
+	 * Volatile write of a native-order int in a buffer at an
+	 * absolute index. The buffer's position and limit are not affected.
+	 * @throws IllegalArgumentException if the address is not aligned
+	 */
+	public static void putIntVolatile(final ByteBuffer buffer, final int index, final int value) {
+		checkIndex(buffer, index, INT_LENGTH);
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (buffer.hasArray()) {
+			putIntVolatile(buffer.array(), buffer.arrayOffset() + index, value);
+			return;
+		}
+		if (FAST && buffer.isDirect()) {
+			UNSAFE.putIntVolatile(null, atomicAddress(buffer, index, INT_LENGTH), value);
+			return;
+		}
+		if (ATOMIC_VARHANDLE) {
+			VarHandleAccess.putIntVolatile(buffer, index, value);
+			return;
+		}
+		throw noAtomic();
+	}
+
+	/**
+	 * Ordered (release) write of a native-order int in a buffer at an
+	 * absolute index. The buffer's position and limit are not affected.
+	 * @throws IllegalArgumentException if the address is not aligned
+	 */
+	public static void putIntOrdered(final ByteBuffer buffer, final int index, final int value) {
+		checkIndex(buffer, index, INT_LENGTH);
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (buffer.hasArray()) {
+			putIntOrdered(buffer.array(), buffer.arrayOffset() + index, value);
+			return;
+		}
+		if (FAST && buffer.isDirect()) {
+			UNSAFE.putOrderedInt(null, atomicAddress(buffer, index, INT_LENGTH), value);
+			return;
+		}
+		if (ATOMIC_VARHANDLE) {
+			VarHandleAccess.putIntOrdered(buffer, index, value);
+			return;
+		}
+		throw noAtomic();
+	}
+
+	/**
+	 * Atomic compare-and-set of a native-order int in a buffer at an
+	 * absolute index. The buffer's position and limit are not affected.
+	 * @return <code>true</code> if the value was <code>expected</code> and was
+	 *         replaced
+	 * @throws IllegalArgumentException if the address is not aligned
+	 */
+	public static boolean compareAndSetInt(final ByteBuffer buffer, final int index, final int expected, final int value) {
+		checkIndex(buffer, index, INT_LENGTH);
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (buffer.hasArray()) {
+			return compareAndSetInt(buffer.array(), buffer.arrayOffset() + index, expected, value);
+		}
+		if (FAST && buffer.isDirect()) {
+			return UNSAFE.compareAndSwapInt(null, atomicAddress(buffer, index, INT_LENGTH), expected, value);
+		}
+		if (ATOMIC_VARHANDLE) {
+			return VarHandleAccess.compareAndSetInt(buffer, index, expected, value);
+		}
+		throw noAtomic();
+	}
+
+	/**
+	 * Atomic get-and-add of a native-order int in a buffer at an
+	 * absolute index. The buffer's position and limit are not affected.
+	 * @return the previous value
+	 * @throws IllegalArgumentException if the address is not aligned
+	 */
+	public static int getAndAddInt(final ByteBuffer buffer, final int index, final int delta) {
+		checkIndex(buffer, index, INT_LENGTH);
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (buffer.hasArray()) {
+			return getAndAddInt(buffer.array(), buffer.arrayOffset() + index, delta);
+		}
+		if (FAST && buffer.isDirect()) {
+			return unsafeGetAndAddInt(null, atomicAddress(buffer, index, INT_LENGTH), delta);
+		}
+		if (ATOMIC_VARHANDLE) {
+			return VarHandleAccess.getAndAddInt(buffer, index, delta);
+		}
+		throw noAtomic();
+	}
+
+	/**
+	 * Volatile read of a native-order long in a buffer at an
+	 * absolute index. The buffer's position and limit are not affected.
+	 * @throws IllegalArgumentException if the address is not aligned
+	 */
+	public static long getLongVolatile(final ByteBuffer buffer, final int index) {
+		checkIndex(buffer, index, LONG_LENGTH);
+		if (buffer.hasArray()) {
+			return getLongVolatile(buffer.array(), buffer.arrayOffset() + index);
+		}
+		if (FAST && buffer.isDirect()) {
+			return UNSAFE.getLongVolatile(null, atomicAddress(buffer, index, LONG_LENGTH));
+		}
+		if (ATOMIC_VARHANDLE) {
+			return VarHandleAccess.getLongVolatile(buffer, index);
+		}
+		throw noAtomic();
+	}
+
+	/**
+	 * Volatile write of a native-order long in a buffer at an
+	 * absolute index. The buffer's position and limit are not affected.
+	 * @throws IllegalArgumentException if the address is not aligned
+	 */
+	public static void putLongVolatile(final ByteBuffer buffer, final int index, final long value) {
+		checkIndex(buffer, index, LONG_LENGTH);
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (buffer.hasArray()) {
+			putLongVolatile(buffer.array(), buffer.arrayOffset() + index, value);
+			return;
+		}
+		if (FAST && buffer.isDirect()) {
+			UNSAFE.putLongVolatile(null, atomicAddress(buffer, index, LONG_LENGTH), value);
+			return;
+		}
+		if (ATOMIC_VARHANDLE) {
+			VarHandleAccess.putLongVolatile(buffer, index, value);
+			return;
+		}
+		throw noAtomic();
+	}
+
+	/**
+	 * Ordered (release) write of a native-order long in a buffer at an
+	 * absolute index. The buffer's position and limit are not affected.
+	 * @throws IllegalArgumentException if the address is not aligned
+	 */
+	public static void putLongOrdered(final ByteBuffer buffer, final int index, final long value) {
+		checkIndex(buffer, index, LONG_LENGTH);
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (buffer.hasArray()) {
+			putLongOrdered(buffer.array(), buffer.arrayOffset() + index, value);
+			return;
+		}
+		if (FAST && buffer.isDirect()) {
+			UNSAFE.putOrderedLong(null, atomicAddress(buffer, index, LONG_LENGTH), value);
+			return;
+		}
+		if (ATOMIC_VARHANDLE) {
+			VarHandleAccess.putLongOrdered(buffer, index, value);
+			return;
+		}
+		throw noAtomic();
+	}
+
+	/**
+	 * Atomic compare-and-set of a native-order long in a buffer at an
+	 * absolute index. The buffer's position and limit are not affected.
+	 * @return <code>true</code> if the value was <code>expected</code> and was
+	 *         replaced
+	 * @throws IllegalArgumentException if the address is not aligned
+	 */
+	public static boolean compareAndSetLong(final ByteBuffer buffer, final int index, final long expected, final long value) {
+		checkIndex(buffer, index, LONG_LENGTH);
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (buffer.hasArray()) {
+			return compareAndSetLong(buffer.array(), buffer.arrayOffset() + index, expected, value);
+		}
+		if (FAST && buffer.isDirect()) {
+			return UNSAFE.compareAndSwapLong(null, atomicAddress(buffer, index, LONG_LENGTH), expected, value);
+		}
+		if (ATOMIC_VARHANDLE) {
+			return VarHandleAccess.compareAndSetLong(buffer, index, expected, value);
+		}
+		throw noAtomic();
+	}
+
+	/**
+	 * Atomic get-and-add of a native-order long in a buffer at an
+	 * absolute index. The buffer's position and limit are not affected.
+	 * @return the previous value
+	 * @throws IllegalArgumentException if the address is not aligned
+	 */
+	public static long getAndAddLong(final ByteBuffer buffer, final int index, final long delta) {
+		checkIndex(buffer, index, LONG_LENGTH);
+		if (buffer.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		if (buffer.hasArray()) {
+			return getAndAddLong(buffer.array(), buffer.arrayOffset() + index, delta);
+		}
+		if (FAST && buffer.isDirect()) {
+			return unsafeGetAndAddLong(null, atomicAddress(buffer, index, LONG_LENGTH), delta);
+		}
+		if (ATOMIC_VARHANDLE) {
+			return VarHandleAccess.getAndAddLong(buffer, index, delta);
+		}
+		throw noAtomic();
+	}
+
+	private static long atomicOffset(final byte[] array, final int offset, final int length) {
+		if (offset < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException(offset);
+		}
+		if (!FAST && !VARHANDLE) {
+			throw new UnsupportedOperationException(NO_ATOMIC);
+		}
+		// the VarHandle backend assumes that arrays start 8-byte aligned
+		final long address = FAST ? BYTE_ARRAY_OFFSET + offset : offset;
+		checkAligned(address, length);
+		return address;
+	}
+
+	/**
+	 * Atomics on buffers fail only for heap buffers without an accessible
+	 * array, i.e., read-only ones, or on the plain backend.
+	 */
+	private static UnsupportedOperationException noAtomic() {
+		if (BACKEND == Backend.PLAIN) {
+			return new UnsupportedOperationException(NO_ATOMIC);
+		}
+		return new UnsupportedOperationException(NO_ATOMIC_READ_ONLY);
+	}
+
+	private static long atomicAddress(final ByteBuffer buffer, final int index, final int length) {
+		final long address = address(buffer) + index;
+		checkAligned(address, length);
+		return address;
+	}
+
+	private static void checkAligned(final long address, final int length) {
+		if ((address & (length - 1)) != 0) {
+			throw new IllegalArgumentException("unaligned access");
+		}
+	}
+
+	private static int unsafeGetAndAddInt(final Object base, final long address, final int delta) {
+		if (GET_AND_ADD) {
+			return UNSAFE.getAndAddInt(base, address, delta);
+		}
+		int value;
+		do {
+			value = UNSAFE.getIntVolatile(base, address);
+		} while (!UNSAFE.compareAndSwapInt(base, address, value, value + delta));
+		return value;
+	}
+
+	private static long unsafeGetAndAddLong(final Object base, final long address, final long delta) {
+		if (GET_AND_ADD) {
+			return UNSAFE.getAndAddLong(base, address, delta);
+		}
+		long value;
+		do {
+			value = UNSAFE.getLongVolatile(base, address);
+		} while (!UNSAFE.compareAndSwapLong(base, address, value, value + delta));
+		return value;
+	}
+
+	/**
+	 * Releases the memory of a direct buffer, e.g., unmaps a
+	 * {@link java.nio.MappedByteBuffer}, without waiting for garbage
+	 * collection. The buffer, and any view of it, must not be used afterwards.
+	 * 
+	 * @return <code>false</code> if the VM does not allow explicit release, in
+	 *         which case the memory is released when the buffer is collected.
+	 */
+	public static boolean release(final ByteBuffer buffer) {
+		if (!buffer.isDirect()) {
+			throw new IllegalArgumentException("buffer is not direct");
+		}
+		try {
+			if (JAVA9) {
+				if (INVOKE_CLEANER == null) {
+					return false;
+				}
+				INVOKE_CLEANER.invoke(CLEANER_UNSAFE, buffer);
+				return true;
+			}
+			// Java 7 and 8
+			final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			final Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner == null) {
+				return false;
+			}
+			cleaner.getClass().getMethod("clean").invoke(cleaner);
+			return true;
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			return false;
+		}
+	}
+
+	private static Method methodOrNull(final Class<?> cl, final String name, final Class<?>... types) {
+		try {
+			return cl.getMethod(name, types);
+		} catch (final NoSuchMethodException | SecurityException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Lexicographical (unsigned) comparison.
+	 * Same as <code>compareArrays(left, 0, left.length, right, 0, right.length)</code>.
+	 */
+	public static int compareArrays(final byte[] left, final byte[] right) {
+		return compareArrays(left, 0, left.length, right, 0, right.length);
+	}
+
+	/**
+	 * Lexicographical (unsigned) comparison.
+	 */
+	public static int compareArrays(final byte[] left, final int leftOffset, final int leftLength,
+			final byte[] right, final int rightOffset, final int rightLength) {
+		if (leftOffset < 0 || leftLength < 0 || rightOffset < 0 || rightLength < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (left == right && leftOffset == rightOffset && leftLength == rightLength) {
+			return 0; // null == null
+		} else if (left == null) {
+			return -1;
+		} else if (right == null) {
+			return 1;
+		}
+		if (leftOffset + leftLength > left.length || rightOffset + rightLength > right.length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+
+		final int minLength = Math.min(leftLength, rightLength);
+		if (VECTOR && minLength >= VECTOR_THRESHOLD) {
+			final int pos = VectorKernels.mismatch(left, leftOffset, right, rightOffset, minLength);
+			if (pos < 0) {
+				return Integer.signum(leftLength - rightLength);
+			}
+			if ((left[leftOffset + pos] & BYTE_MASK) < (right[rightOffset + pos] & BYTE_MASK)) {
+				return -1;
+			}
+			return 1;
+		}
+		int pos = 0;
+
+		// first round with longs
+		if (minLength >= LONG_LENGTH) {
+			final int longs = minLength / LONG_LENGTH;
+			for (final int end = longs * LONG_LENGTH; pos < end; pos += LONG_LENGTH) {
+				final long lw = getLong(left, leftOffset + pos);
+				final long rw = getLong(right, rightOffset + pos);
+				if (lw != rw) {
+					if ((lw < rw) ^ (lw < 0) ^ (rw < 0)) {
+						return -1;
+					}
+					return 1;
+				}
+			}
+		}
+
+		// second round with ints
+		if (minLength - pos >= INT_LENGTH) {
+			final int ints = (minLength - pos) / INT_LENGTH;
+			for (final int end = pos + (ints * INT_LENGTH); pos < end; pos += INT_LENGTH) {
+				final int lw = getInt(left, leftOffset + pos);
+				final int rw = getInt(right, rightOffset + pos);
+				if (lw != rw) {
+					if ((lw < rw) ^ (lw < 0) ^ (rw < 0)) {
+						return -1;
+					}
+					return 1;
+				}
+			}
+		}
+
+		// third round with bytes
+		for (; pos < minLength; pos++) {
+			final int lw = left[leftOffset + pos];
+			final int rw = right[rightOffset + pos];
+			if (lw != rw) {
+				if ((lw < rw) ^ (lw < 0) ^ (rw < 0)) {
+					return -1;
+				}
+				return 1;
+			}
+		}
+		return Integer.signum(leftLength - rightLength);
+	}
+
+	/**
+	 * Finds the first byte that differs between two ranges of the same length.
+	 * Compares 8 bytes at a time.
+	 * 
+	 * @return the index of the first differing byte, relative to the start of
+	 *         the ranges, or -1 if both ranges are equal
+	 */
+	public static int mismatch(final byte[] left, final int leftOffset, final byte[] right, final int rightOffset,
+			final int length) {
+		if (leftOffset < 0 || rightOffset < 0 || length < 0) {
+			throw new IllegalArgumentException();
+		}
+		if (leftOffset > left.length - length || rightOffset > right.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		if (VECTOR && length >= VECTOR_THRESHOLD) {
+			return VectorKernels.mismatch(left, leftOffset, right, rightOffset, length);
+		}
+		int pos = 0;
+		if (length >= LONG_LENGTH) {
+			for (final int end = length - LONG_LENGTH; pos <= end; pos += LONG_LENGTH) {
+				final long diff = getLong(left, leftOffset + pos) ^ getLong(right, rightOffset + pos);
+				if (diff != 0) {
+					return pos + (Long.numberOfLeadingZeros(diff) >>> 3);
+				}
+			}
+			if (pos == length) {
+				return -1;
+			}
+			// last word overlaps bytes already known to be equal
+			pos = length - LONG_LENGTH;
+			final long diff = getLong(left, leftOffset + pos) ^ getLong(right, rightOffset + pos);
+			if (diff != 0) {
+				return pos + (Long.numberOfLeadingZeros(diff) >>> 3);
+			}
+			return -1;
+		}
+		for (; pos < length; pos++) {
+			if (left[leftOffset + pos] != right[rightOffset + pos]) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Equality of two byte ranges. Compares 8 bytes at a time.
+	 */
+	public static boolean equals(final byte[] left, final int leftOffset, final int leftLength,
+			final byte[] right, final int rightOffset, final int rightLength) {
+		if (leftLength != rightLength) {
+			return false;
+		}
+		if (left == right && leftOffset == rightOffset) {
+			return true; // null == null
+		} else if (left == null || right == null) {
+			return false;
+		}
+		return mismatch(left, leftOffset, right, rightOffset, leftLength) < 0;
+	}
+
+	/**
+	 * Lexicographical (unsigned) comparison of the remaining bytes of two
+	 * buffers. Heap and direct buffers can be mixed. The buffers' positions
+	 * and limits are not affected.
+	 */
+	public static int compareBuffers(final ByteBuffer left, final ByteBuffer right) {
+		if (left.hasArray() && right.hasArray()) {
+			return compareArrays(left.array(), left.arrayOffset() + left.position(), left.remaining(),
+					right.array(), right.arrayOffset() + right.position(), right.remaining());
+		}
+		final int leftOffset = left.position();
+		final int rightOffset = right.position();
+		final int leftLength = left.remaining();
+		final int rightLength = right.remaining();
+		final int minLength = Math.min(leftLength, rightLength);
+		int pos = 0;
+
+		// first round with longs
+		for (final int end = minLength - LONG_LENGTH; pos <= end; pos += LONG_LENGTH) {
+			final long lw = getLong(left, leftOffset + pos);
+			final long rw = getLong(right, rightOffset + pos);
+			if (lw != rw) {
+				if ((lw < rw) ^ (lw < 0) ^ (rw < 0)) {
+					return -1;
+				}
+				return 1;
+			}
+		}
+
+		// second round with bytes
+		for (; pos < minLength; pos++) {
+			final int lw = left.get(leftOffset + pos) & BYTE_MASK;
+			final int rw = right.get(rightOffset + pos) & BYTE_MASK;
+			if (lw != rw) {
+				if (lw < rw) {
+					return -1;
+				}
+				return 1;
+			}
+		}
+		return Integer.signum(leftLength - rightLength);
+	}
+
+	/**
+	 * @return the index of the first occurrence of a byte in a range of an
+	 *         array, or -1 if it does not occur
+	 */
+	public static int indexOf(final byte[] array, final int offset, final int length, final byte value) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		if (VECTOR && length >= VECTOR_THRESHOLD) {
+			return VectorKernels.indexOf(array, offset, length, value);
+		}
+		final int end = offset + length;
+		final long pattern = broadcast(value);
+		int i = offset;
+		// first round with longs
+		for (final int last = end - LONG_LENGTH; i <= last; i += LONG_LENGTH) {
+			final long found = zeroBytes(getLongLE(array, i) ^ pattern);
+			if (found != 0) {
+				return i + firstByte(found);
+			}
+		}
+		// second round with bytes
+		for (; i < end; i++) {
+			if (array[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index of the first occurrence of a byte in a range of a
+	 *         buffer, heap or direct, or -1 if it does not occur. The buffer's
+	 *         position and limit are not affected.
+	 */
+	public static int indexOf(final ByteBuffer buffer, final int index, final int length, final byte value) {
+		checkRange(buffer, index, length);
+		if (buffer.hasArray()) {
+			return fromArray(buffer, indexOf(buffer.array(), buffer.arrayOffset() + index, length, value));
+		}
+		final int end = index + length;
+		final long pattern = broadcast(value);
+		int i = index;
+		// first round with longs
+		for (final int last = end - LONG_LENGTH; i <= last; i += LONG_LENGTH) {
+			final long found = zeroBytes(getLongLE(buffer, i) ^ pattern);
+			if (found != 0) {
+				return i + firstByte(found);
+			}
+		}
+		// second round with bytes
+		for (; i < end; i++) {
+			if (buffer.get(i) == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index of the last occurrence of a byte in a range of an
+	 *         array, or -1 if it does not occur
+	 */
+	public static int lastIndexOf(final byte[] array, final int offset, final int length, final byte value) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		final long pattern = broadcast(value);
+		int i = offset + length;
+		// first round with longs, backwards
+		for (final int first = offset + LONG_LENGTH; i >= first; i -= LONG_LENGTH) {
+			final long found = zeroBytes(getLongLE(array, i - LONG_LENGTH) ^ pattern);
+			if (found != 0) {
+				return i - 1 - lastByte(found);
+			}
+		}
+		// second round with bytes
+		for (i--; i >= offset; i--) {
+			if (array[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the index of the last occurrence of a byte in a range of a
+	 *         buffer, heap or direct, or -1 if it does not occur. The buffer's
+	 *         position and limit are not affected.
+	 */
+	public static int lastIndexOf(final ByteBuffer buffer, final int index, final int length, final byte value) {
+		checkRange(buffer, index, length);
+		if (buffer.hasArray()) {
+			return fromArray(buffer, lastIndexOf(buffer.array(), buffer.arrayOffset() + index, length, value));
+		}
+		final long pattern = broadcast(value);
+		int i = index + length;
+		// first round with longs, backwards
+		for (final int first = index + LONG_LENGTH; i >= first; i -= LONG_LENGTH) {
+			final long found = zeroBytes(getLongLE(buffer, i - LONG_LENGTH) ^ pattern);
+			if (found != 0) {
+				return i - 1 - lastByte(found);
+			}
+		}
+		// second round with bytes
+		for (i--; i >= index; i--) {
+			if (buffer.get(i) == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Scans for any byte of a set, e.g., a set of delimiters. Sets of up to
+	 * {@value #SWAR_MAX_SET} bytes are scanned a word at a time.
+	 * @return the index of the first occurrence of any of the given bytes in a
+	 *         range of an array, or -1 if none occurs
+	 */
+	public static int indexOfAny(final byte[] array, final int offset, final int length, final byte... values) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		if (values.length == 1) {
+			return indexOf(array, offset, length, values[0]);
+		}
+		final int end = offset + length;
+		if (values.length > SWAR_MAX_SET) {
+			final long[] set = bitmap(values);
+			for (int i = offset; i < end; i++) {
+				if (contains(set, array[i])) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		int i = offset;
+		// first round with longs
+		for (final int last = end - LONG_LENGTH; i <= last; i += LONG_LENGTH) {
+			final long found = zeroBytes(getLongLE(array, i), values);
+			if (found != 0) {
+				return i + firstByte(found);
+			}
+		}
+		// second round with bytes
+		for (; i < end; i++) {
+			if (contains(values, array[i])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Scans for any byte of a set, e.g., a set of delimiters. Sets of up to
+	 * {@value #SWAR_MAX_SET} bytes are scanned a word at a time.
+	 * @return the index of the first occurrence of any of the given bytes in a
+	 *         range of a buffer, heap or direct, or -1 if none occurs. The
+	 *         buffer's position and limit are not affected.
+	 */
+	public static int indexOfAny(final ByteBuffer buffer, final int index, final int length, final byte... values) {
+		checkRange(buffer, index, length);
+		if (buffer.hasArray()) {
+			return fromArray(buffer, indexOfAny(buffer.array(), buffer.arrayOffset() + index, length, values));
+		}
+		final int end = index + length;
+		if (values.length > SWAR_MAX_SET) {
+			final long[] set = bitmap(values);
+			for (int i = index; i < end; i++) {
+				if (contains(set, buffer.get(i))) {
+					return i;
+				}
+			}
+			return -1;
+		}
+		int i = index;
+		// first round with longs
+		for (final int last = end - LONG_LENGTH; i <= last; i += LONG_LENGTH) {
+			final long found = zeroBytes(getLongLE(buffer, i), values);
+			if (found != 0) {
+				return i + firstByte(found);
+			}
+		}
+		// second round with bytes
+		for (; i < end; i++) {
+			if (contains(values, buffer.get(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static void checkRange(final ByteBuffer buffer, final int index, final int length) {
+		if (index < 0 || length < 0 || index > buffer.limit() - length) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * Translates an index in a heap buffer's array back to a buffer index.
+	 */
+	private static int fromArray(final ByteBuffer buffer, final int index) {
+		if (index < 0) {
+			return index;
+		}
+		return index - buffer.arrayOffset();
+	}
+
+	private static long broadcast(final byte value) {
+		return (value & BYTE_MASK) * BYTE_BROADCAST;
+	}
+
+	/**
+	 * @return a word with the high bit set in each byte of <code>word</code>
+	 *         that is zero, and clear everywhere else. Unlike the shorter
+	 *         <code>(word - 0x01..) &amp; ~word &amp; 0x80..</code>, borrows
+	 *         cannot produce false positives, so the result is exact in both
+	 *         directions.
+	 */
+	private static long zeroBytes(final long word) {
+		return ~(((word & BYTE_LOW_BITS) + BYTE_LOW_BITS) | word | BYTE_LOW_BITS);
+	}
+
+	private static long zeroBytes(final long word, final byte[] values) {
+		long found = 0;
+		for (final byte value : values) {
+			found |= zeroBytes(word ^ broadcast(value));
+		}
+		return found;
+	}
+
+	/**
+	 * @return the position of the first flagged byte in a little-endian word
+	 */
+	private static int firstByte(final long found) {
+		return Long.numberOfTrailingZeros(found) >>> 3;
+	}
+
+	/**
+	 * @return the number of bytes that follow the last flagged byte in a
+	 *         little-endian word
+	 */
+	private static int lastByte(final long found) {
+		return Long.numberOfLeadingZeros(found) >>> 3;
+	}
+
+	private static boolean contains(final byte[] values, final byte value) {
+		for (final byte v : values) {
+			if (v == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long[] bitmap(final byte[] values) {
+		final long[] set = new long[BITMAP_WORDS];
+		for (final byte value : values) {
+			final int b = value & BYTE_MASK;
+			set[b >>> BITMAP_SHIFT] |= 1L << b;
+		}
+		return set;
+	}
+
+	private static boolean contains(final long[] set, final byte value) {
+		final int b = value & BYTE_MASK;
+		return (set[b >>> BITMAP_SHIFT] & (1L << b)) != 0;
+	}
 
 	/**
 	 * Byte[] hash code using unsafe methods if available. Same as
@@ -580,10 +3193,14 @@ public final class FastArrays {
 		}
 
 		int index = offset;
-        int hashcode = 1;
+		int hashcode = 1;
 
 		// first round with ints
-		if (length >= INT_LENGTH) {
+		if (VECTOR && length >= VECTOR_THRESHOLD) {
+			final int ints = length / INT_LENGTH;
+			hashcode = VectorKernels.hashInts(array, index, ints, hashcode);
+			index += ints * INT_LENGTH;
+		} else if (length >= INT_LENGTH) {
 			final int ints = length / INT_LENGTH;
 			final int intend = index + (ints * INT_LENGTH);
 			for (; index < intend; index += INT_LENGTH) {
@@ -608,14 +3225,128 @@ public final class FastArrays {
 		if (length <= 0) {
 			return "";
 		}
-		final StringBuilder sb = new StringBuilder(length * 2);
-		try (final Formatter fmt = new Formatter(sb)) {
-			final int k = offset + length;
-			for (int i = offset; i < k; i++) {
-				fmt.format("%02X", Byte.valueOf(value[i]));
-			}
+		final char[] chars = new char[length * 2];
+		toHex(value, offset, length, chars, 0);
+		return new String(chars);
+	}
+
+	/**
+	 * Writes the upper-case hex encoding of a byte range into a char array.
+	 * @return the number of chars written, i.e., <code>length * 2</code>
+	 */
+	public static int toHex(final byte[] src, final int offset, final int length, final char[] dst,
+			final int dstOffset) {
+		if (offset < 0 || length < 0 || offset > src.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (dstOffset < 0 || dstOffset > dst.length - length * 2) {
+			throw new IndexOutOfBoundsException();
+		}
+		final int k = offset + length;
+		for (int i = offset, j = dstOffset; i < k; i++, j += 2) {
+			final int b = src[i] & BYTE_MASK;
+			dst[j]     = HEX_DIGITS[b >>> 4];
+			dst[j + 1] = HEX_DIGITS[b & 0x0F];
+		}
+		return length * 2;
+	}
+
+	/**
+	 * Writes the upper-case hex encoding of a byte range into an array, as
+	 * ASCII bytes.
+	 * @return the number of bytes written, i.e., <code>length * 2</code>
+	 */
+	public static int toHex(final byte[] src, final int offset, final int length, final byte[] dst,
+			final int dstOffset) {
+		if (offset < 0 || length < 0 || offset > src.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (dstOffset < 0 || dstOffset > dst.length - length * 2) {
+			throw new IndexOutOfBoundsException();
+		}
+		final int k = offset + length;
+		for (int i = offset, j = dstOffset; i < k; i++, j += 2) {
+			final int b = src[i] & BYTE_MASK;
+			dst[j]     = (byte) HEX_DIGITS[b >>> 4];
+			dst[j + 1] = (byte) HEX_DIGITS[b & 0x0F];
+		}
+		return length * 2;
+	}
+
+	/**
+	 * Appends the upper-case hex encoding of a byte range to a builder.
+	 * @return the number of chars appended, i.e., <code>length * 2</code>
+	 */
+	public static int toHex(final byte[] src, final int offset, final int length, final StringBuilder dst) {
+		if (offset < 0 || length < 0 || offset > src.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		dst.ensureCapacity(dst.length() + length * 2);
+		final int k = offset + length;
+		for (int i = offset; i < k; i++) {
+			final int b = src[i] & BYTE_MASK;
+			dst.append(HEX_DIGITS[b >>> 4]).append(HEX_DIGITS[b & 0x0F]);
+		}
+		return length * 2;
+	}
+
+	/**
+	 * Decodes hex digits (upper or lower case) into an array.
+	 * @param length the number of chars to decode, must be even
+	 * @return the number of bytes written, i.e., <code>length / 2</code>
+	 * @throws IllegalArgumentException if a char is not a hex digit
+	 */
+	public static int fromHex(final CharSequence src, final int offset, final int length, final byte[] dst,
+			final int dstOffset) {
+		if (length % 2 != 0) {
+			throw new IllegalArgumentException("odd number of hex digits");
+		}
+		if (offset < 0 || length < 0 || offset > src.length() - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (dstOffset < 0 || dstOffset > dst.length - length / 2) {
+			throw new IndexOutOfBoundsException();
+		}
+		final int k = offset + length;
+		for (int i = offset, j = dstOffset; i < k; i += 2, j++) {
+			dst[j] = (byte) ((hexValue(src.charAt(i)) << 4) | hexValue(src.charAt(i + 1)));
+		}
+		return length / 2;
+	}
+
+	/**
+	 * Decodes hex digits (upper or lower case), given as ASCII bytes, into an
+	 * array. The source and destination may be the same array, as long as
+	 * <code>dstOffset &lt;= offset</code>.
+	 * @param length the number of bytes to decode, must be even
+	 * @return the number of bytes written, i.e., <code>length / 2</code>
+	 * @throws IllegalArgumentException if a byte is not a hex digit
+	 */
+	public static int fromHex(final byte[] src, final int offset, final int length, final byte[] dst,
+			final int dstOffset) {
+		if (length % 2 != 0) {
+			throw new IllegalArgumentException("odd number of hex digits");
+		}
+		if (offset < 0 || length < 0 || offset > src.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (dstOffset < 0 || dstOffset > dst.length - length / 2) {
+			throw new IndexOutOfBoundsException();
+		}
+		final int k = offset + length;
+		for (int i = offset, j = dstOffset; i < k; i += 2, j++) {
+			dst[j] = (byte) ((hexValue((char) (src[i] & BYTE_MASK)) << 4)
+					| hexValue((char) (src[i + 1] & BYTE_MASK)));
+		}
+		return length / 2;
+	}
+
+	private static int hexValue(final char c) {
+		final int value;
+		if (c < HEX_VALUES.length && (value = HEX_VALUES[c]) >= 0) {
+			return value;
 		}
-		return sb.toString();
+		throw new IllegalArgumentException("not a hex digit: " + c);
 	}
 
 }
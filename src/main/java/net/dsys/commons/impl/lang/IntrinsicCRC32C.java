@@ -0,0 +1,52 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+import java.util.zip.Checksum;
+
+/**
+ * Java 7 placeholder for the intrinsic backend of {@link CRC32C}. The actual
+ * implementation lives in <code>src/main/java9</code> and replaces this class
+ * in the multi-release JAR when running on Java 9 or later.
+ * 
+ * @author Ricardo Padilha
+ */
+final class IntrinsicCRC32C {
+
+	private IntrinsicCRC32C() {
+		// no instantiation allowed
+		return;
+	}
+
+	/**
+	 * Not a constant, so that callers compiled against this class do not
+	 * inline it.
+	 */
+	static boolean isAvailable() {
+		return false;
+	}
+
+	static Checksum newChecksum() {
+		throw new UnsupportedOperationException();
+	}
+
+	static void update(final Checksum checksum, final ByteBuffer buffer) {
+		throw new UnsupportedOperationException();
+	}
+
+}
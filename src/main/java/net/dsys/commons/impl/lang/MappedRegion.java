@@ -0,0 +1,440 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * A memory-mapped file region addressed with 64-bit offsets. The region is
+ * mapped as a chain of {@link MappedByteBuffer} windows, so it is not limited
+ * to 2 GB. Accessors follow {@link FastArrays}: big-endian by default,
+ * little-endian with the <code>LE</code> suffix. Values that straddle two
+ * windows are assembled byte by byte; all others go through the fast
+ * {@link FastArrays} buffer accessors.
+ *
+ * <p>
+ * This class is not thread-safe with respect to {@link #close()}: accessing a
+ * region while it is being closed may crash the VM.
+ * </p>
+ *
+ * @author Ricardo Padilha
+ */
+public final class MappedRegion implements Closeable {
+
+	/**
+	 * Default window size: 1 GiB.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+	private static final int BYTE_MASK = 0xFF;
+	private static final int SHORT_LENGTH = Short.SIZE / Byte.SIZE;
+	private static final int INT_LENGTH = Integer.SIZE / Byte.SIZE;
+	private static final int LONG_LENGTH = Long.SIZE / Byte.SIZE;
+
+	private final MappedByteBuffer[] windows;
+	private final long length;
+	private final int windowSize;
+	private final int shift;
+	private final long mask;
+
+	/**
+	 * Maps the whole file, using {@link #DEFAULT_WINDOW_SIZE}.
+	 */
+	public MappedRegion(@Nonnull final Path file, @Nonnull final MapMode mode) throws IOException {
+		this(file, mode, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Maps the whole file.
+	 * @param windowSize must be a power of two
+	 */
+	public MappedRegion(@Nonnull final Path file, @Nonnull final MapMode mode, @Nonnegative final int windowSize)
+			throws IOException {
+		if (file == null) {
+			throw new NullPointerException("file == null");
+		}
+		try (final FileChannel channel = open(file, mode)) {
+			// mappings remain valid after the channel is closed
+			final long size = channel.size();
+			this.windows = map(channel, mode, 0, size, windowSize);
+			this.length = size;
+		}
+		this.windowSize = windowSize;
+		this.shift = Integer.numberOfTrailingZeros(windowSize);
+		this.mask = windowSize - 1;
+	}
+
+	/**
+	 * Maps <code>length</code> bytes of the channel, starting at
+	 * <code>position</code>. If the mode is {@link MapMode#READ_WRITE} and the
+	 * file is smaller than the requested region, it is extended.
+	 * @param windowSize must be a power of two
+	 */
+	public MappedRegion(@Nonnull final FileChannel channel, @Nonnull final MapMode mode,
+			@Nonnegative final long position, @Nonnegative final long length, @Nonnegative final int windowSize)
+			throws IOException {
+		if (channel == null) {
+			throw new NullPointerException("channel == null");
+		}
+		this.windows = map(channel, mode, position, length, windowSize);
+		this.length = length;
+		this.windowSize = windowSize;
+		this.shift = Integer.numberOfTrailingZeros(windowSize);
+		this.mask = windowSize - 1;
+	}
+
+	private static FileChannel open(final Path file, final MapMode mode) throws IOException {
+		if (mode == MapMode.READ_ONLY) {
+			return FileChannel.open(file, StandardOpenOption.READ);
+		}
+		return FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	private static MappedByteBuffer[] map(final FileChannel channel, final MapMode mode, final long position,
+			final long length, final int windowSize) throws IOException {
+		if (mode == null) {
+			throw new NullPointerException("mode == null");
+		}
+		if (position < 0 || length < 0) {
+			throw new IllegalArgumentException("position < 0 || length < 0");
+		}
+		if (windowSize < 1 || Integer.bitCount(windowSize) != 1) {
+			throw new IllegalArgumentException("windowSize is not a power of two");
+		}
+		final long count = (length + windowSize - 1) / windowSize;
+		if (count > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many windows");
+		}
+		final MappedByteBuffer[] windows = new MappedByteBuffer[(int) count];
+		try {
+			for (int i = 0; i < windows.length; i++) {
+				final long start = (long) i * windowSize;
+				final long size = Math.min(windowSize, length - start);
+				windows[i] = channel.map(mode, position + start, size);
+			}
+		} catch (final IOException | RuntimeException e) {
+			release(windows);
+			throw e;
+		}
+		return windows;
+	}
+
+	private static void release(final MappedByteBuffer[] windows) {
+		for (int i = 0; i < windows.length; i++) {
+			if (windows[i] != null) {
+				FastArrays.release(windows[i]);
+				windows[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bytes in this region
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * @return the size of the windows of this region, a power of two
+	 */
+	int windowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * @return the window that contains the given offset
+	 */
+	MappedByteBuffer window(final long offset) {
+		final MappedByteBuffer window = windows[(int) (offset >>> shift)];
+		if (window == null) {
+			throw new IllegalStateException("region is closed");
+		}
+		return window;
+	}
+
+	private void checkIndex(final long offset, final long count) {
+		if (offset < 0 || count < 0 || offset > length - count) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if <code>count</code> bytes starting at
+	 *         <code>offset</code> are all in the same window
+	 */
+	private boolean inWindow(final long offset, final int count) {
+		return (offset & mask) <= windowSize - count;
+	}
+
+	public byte get(final long offset) {
+		checkIndex(offset, 1);
+		return window(offset).get((int) (offset & mask));
+	}
+
+	public int put(final long offset, final byte value) {
+		checkIndex(offset, 1);
+		window(offset).put((int) (offset & mask), value);
+		return 1;
+	}
+
+	public short getShort(final long offset) {
+		checkIndex(offset, SHORT_LENGTH);
+		if (inWindow(offset, SHORT_LENGTH)) {
+			return FastArrays.getShort(window(offset), (int) (offset & mask));
+		}
+		return (short) getBytes(offset, SHORT_LENGTH);
+	}
+
+	public int putShort(final long offset, final short value) {
+		checkIndex(offset, SHORT_LENGTH);
+		if (inWindow(offset, SHORT_LENGTH)) {
+			return FastArrays.putShort(window(offset), (int) (offset & mask), value);
+		}
+		return putBytes(offset, SHORT_LENGTH, value);
+	}
+
+	public int getInt(final long offset) {
+		checkIndex(offset, INT_LENGTH);
+		if (inWindow(offset, INT_LENGTH)) {
+			return FastArrays.getInt(window(offset), (int) (offset & mask));
+		}
+		return (int) getBytes(offset, INT_LENGTH);
+	}
+
+	public int putInt(final long offset, final int value) {
+		checkIndex(offset, INT_LENGTH);
+		if (inWindow(offset, INT_LENGTH)) {
+			return FastArrays.putInt(window(offset), (int) (offset & mask), value);
+		}
+		return putBytes(offset, INT_LENGTH, value);
+	}
+
+	public long getLong(final long offset) {
+		checkIndex(offset, LONG_LENGTH);
+		if (inWindow(offset, LONG_LENGTH)) {
+			return FastArrays.getLong(window(offset), (int) (offset & mask));
+		}
+		return getBytes(offset, LONG_LENGTH);
+	}
+
+	public int putLong(final long offset, final long value) {
+		checkIndex(offset, LONG_LENGTH);
+		if (inWindow(offset, LONG_LENGTH)) {
+			return FastArrays.putLong(window(offset), (int) (offset & mask), value);
+		}
+		return putBytes(offset, LONG_LENGTH, value);
+	}
+
+	public short getShortLE(final long offset) {
+		checkIndex(offset, SHORT_LENGTH);
+		if (inWindow(offset, SHORT_LENGTH)) {
+			return FastArrays.getShortLE(window(offset), (int) (offset & mask));
+		}
+		return Short.reverseBytes((short) getBytes(offset, SHORT_LENGTH));
+	}
+
+	public int putShortLE(final long offset, final short value) {
+		checkIndex(offset, SHORT_LENGTH);
+		if (inWindow(offset, SHORT_LENGTH)) {
+			return FastArrays.putShortLE(window(offset), (int) (offset & mask), value);
+		}
+		return putBytes(offset, SHORT_LENGTH, Short.reverseBytes(value));
+	}
+
+	public int getIntLE(final long offset) {
+		checkIndex(offset, INT_LENGTH);
+		if (inWindow(offset, INT_LENGTH)) {
+			return FastArrays.getIntLE(window(offset), (int) (offset & mask));
+		}
+		return Integer.reverseBytes((int) getBytes(offset, INT_LENGTH));
+	}
+
+	public int putIntLE(final long offset, final int value) {
+		checkIndex(offset, INT_LENGTH);
+		if (inWindow(offset, INT_LENGTH)) {
+			return FastArrays.putIntLE(window(offset), (int) (offset & mask), value);
+		}
+		return putBytes(offset, INT_LENGTH, Integer.reverseBytes(value));
+	}
+
+	public long getLongLE(final long offset) {
+		checkIndex(offset, LONG_LENGTH);
+		if (inWindow(offset, LONG_LENGTH)) {
+			return FastArrays.getLongLE(window(offset), (int) (offset & mask));
+		}
+		return Long.reverseBytes(getBytes(offset, LONG_LENGTH));
+	}
+
+	public int putLongLE(final long offset, final long value) {
+		checkIndex(offset, LONG_LENGTH);
+		if (inWindow(offset, LONG_LENGTH)) {
+			return FastArrays.putLongLE(window(offset), (int) (offset & mask), value);
+		}
+		return putBytes(offset, LONG_LENGTH, Long.reverseBytes(value));
+	}
+
+	/**
+	 * Big-endian read of a value that straddles two windows.
+	 */
+	private long getBytes(final long offset, final int count) {
+		long value = 0;
+		for (int i = 0; i < count; i++) {
+			final long pos = offset + i;
+			value = (value << Byte.SIZE) | (window(pos).get((int) (pos & mask)) & BYTE_MASK);
+		}
+		return value;
+	}
+
+	/**
+	 * Big-endian write of a value that straddles two windows.
+	 */
+	private int putBytes(final long offset, final int count, final long value) {
+		for (int i = 0, shift = (count - 1) * Byte.SIZE; i < count; i++, shift -= Byte.SIZE) {
+			final long pos = offset + i;
+			window(pos).put((int) (pos & mask), (byte) (value >>> shift));
+		}
+		return count;
+	}
+
+	/**
+	 * Copies bytes from this region into an array.
+	 */
+	public void arrayCopy(final long srcOffset, @Nonnull final byte[] dst, final int dstPos, final int length) {
+		checkIndex(srcOffset, length);
+		if (dstPos < 0 || dstPos > dst.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		long src = srcOffset;
+		int pos = dstPos;
+		int remaining = length;
+		while (remaining > 0) {
+			final int index = (int) (src & mask);
+			final int count = Math.min(remaining, windowSize - index);
+			FastArrays.arrayCopy(window(src), index, dst, pos, count);
+			src += count;
+			pos += count;
+			remaining -= count;
+		}
+	}
+
+	/**
+	 * Copies bytes from an array into this region.
+	 */
+	public void arrayCopy(@Nonnull final byte[] src, final int srcPos, final long dstOffset, final int length) {
+		checkIndex(dstOffset, length);
+		if (srcPos < 0 || srcPos > src.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		long dst = dstOffset;
+		int pos = srcPos;
+		int remaining = length;
+		while (remaining > 0) {
+			final int index = (int) (dst & mask);
+			final int count = Math.min(remaining, windowSize - index);
+			FastArrays.arrayCopy(src, pos, window(dst), index, count);
+			dst += count;
+			pos += count;
+			remaining -= count;
+		}
+	}
+
+	/**
+	 * Lexicographical (unsigned) comparison between a range of this region
+	 * and a range of an array.
+	 * @see FastArrays#compareArrays(byte[], int, int, byte[], int, int)
+	 */
+	public int compare(final long offset, final long length, @Nonnull final byte[] array, final int arrayOffset,
+			final int arrayLength) {
+		checkIndex(offset, length);
+		if (arrayOffset < 0 || arrayLength < 0 || arrayOffset > array.length - arrayLength) {
+			throw new IndexOutOfBoundsException();
+		}
+		final int minLength = (int) Math.min(length, arrayLength);
+		int pos = 0;
+		for (final int end = minLength - LONG_LENGTH; pos <= end; pos += LONG_LENGTH) {
+			final long lw = getLong(offset + pos);
+			final long rw = FastArrays.getLong(array, arrayOffset + pos);
+			if (lw != rw) {
+				if ((lw < rw) ^ (lw < 0) ^ (rw < 0)) {
+					return -1;
+				}
+				return 1;
+			}
+		}
+		for (; pos < minLength; pos++) {
+			final int lw = get(offset + pos) & BYTE_MASK;
+			final int rw = array[arrayOffset + pos] & BYTE_MASK;
+			if (lw != rw) {
+				return lw < rw ? -1 : 1;
+			}
+		}
+		return Long.signum(length - arrayLength);
+	}
+
+	/**
+	 * Forces all changes to this region to be written to the storage device.
+	 * @see MappedByteBuffer#force()
+	 */
+	public void force() {
+		for (int i = 0; i < windows.length; i++) {
+			window((long) i << shift).force();
+		}
+	}
+
+	/**
+	 * Forces changes to the given range of this region to be written to the
+	 * storage device. Since {@link MappedByteBuffer} can only force a whole
+	 * buffer on Java 7, every window that overlaps the range is forced.
+	 * @see MappedByteBuffer#force()
+	 */
+	public void force(final long offset, final long length) {
+		checkIndex(offset, length);
+		if (length == 0) {
+			return;
+		}
+		final int first = (int) (offset >>> shift);
+		final int last = (int) ((offset + length - 1) >>> shift);
+		for (int i = first; i <= last; i++) {
+			window((long) i << shift).force();
+		}
+	}
+
+	/**
+	 * Unmaps this region. Changes are not forced to storage; call
+	 * {@link #force()} first if needed. Unmapping is best-effort: if the VM
+	 * does not allow explicit release, the windows stay mapped until they are
+	 * garbage collected, and the file may not be deleted or truncated until
+	 * then on some platforms.
+	 * @see FastArrays#release(ByteBuffer)
+	 */
+	@Override
+	public void close() {
+		release(windows);
+	}
+
+}
@@ -0,0 +1,465 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Calculation of MurmurHash3 (x64, 128-bit variant), built on the
+ * little-endian word accessors of {@link FastArrays}. Results are identical to
+ * the reference implementation, which treats the seed as an unsigned 32-bit
+ * value. The 128-bit hash is returned as two longs,
+ * <code>h1</code> and <code>h2</code>; the <code>hash64</code> methods return
+ * only <code>h1</code>. Static methods compute one-shot hashes; instances
+ * compute streaming hashes.
+ *
+ * @see https://github.com/aappleby/smhasher
+ *
+ * @author Ricardo Padilha
+ */
+public final class Murmur3 {
+
+	private static final long C1 = 0x87C3_7B91_1142_53D5L;
+	private static final long C2 = 0x4CF5_AD43_2745_937FL;
+
+	private static final int BYTE_MASK = 0xFF;
+	private static final long INT_MASK = 0xFFFF_FFFFL;
+	private static final int LONG_LENGTH = Long.SIZE / Byte.SIZE;
+	private static final int BLOCK_LENGTH = 2 * LONG_LENGTH;
+
+	private final int seed;
+	private final byte[] memory;
+	private final long[] state;
+	private int memorySize;
+	private long total;
+
+	public Murmur3() {
+		this(0);
+	}
+
+	public Murmur3(final int seed) {
+		this.seed = seed;
+		this.memory = new byte[BLOCK_LENGTH];
+		this.state = new long[2];
+		reset();
+	}
+
+	private static long mixK1(final long k1) {
+		return Long.rotateLeft(k1 * C1, 31) * C2;
+	}
+
+	private static long mixK2(final long k2) {
+		return Long.rotateLeft(k2 * C2, 33) * C1;
+	}
+
+	/**
+	 * Mixes one 16-byte block into <code>h[0..1]</code>.
+	 */
+	private static void block(final long[] h, final long k1, final long k2) {
+		long h1 = h[0];
+		long h2 = h[1];
+		h1 ^= mixK1(k1);
+		h1 = Long.rotateLeft(h1, 27);
+		h1 += h2;
+		h1 = h1 * 5 + 0x52DC_E729;
+		h2 ^= mixK2(k2);
+		h2 = Long.rotateLeft(h2, 31);
+		h2 += h1;
+		h2 = h2 * 5 + 0x3849_5AB5;
+		h[0] = h1;
+		h[1] = h2;
+	}
+
+	private static long fmix(final long value) {
+		long k = value;
+		k ^= k >>> 33;
+		k *= 0xFF51_AFD7_ED55_8CCDL;
+		k ^= k >>> 33;
+		k *= 0xC4CE_B9FE_1A85_EC53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	/**
+	 * Mixes the last (less than 16) bytes, given as two little-endian words,
+	 * and finalizes the hash.
+	 * @param out if not <code>null</code>, receives <code>h1</code> and
+	 *            <code>h2</code> in its first two elements
+	 * @return <code>h1</code>
+	 */
+	private static long finish(final long h1, final long h2, final long k1, final long k2, final int tail,
+			final long length, @Nullable final long[] out) {
+		long a = h1;
+		long b = h2;
+		if (tail > LONG_LENGTH) {
+			b ^= mixK2(k2);
+		}
+		if (tail > 0) {
+			a ^= mixK1(k1);
+		}
+		a ^= length;
+		b ^= length;
+		a += b;
+		b += a;
+		a = fmix(a);
+		b = fmix(b);
+		a += b;
+		if (out != null) {
+			out[0] = a;
+			out[1] = b + a;
+		}
+		return a;
+	}
+
+	/**
+	 * Little-endian read of up to 8 bytes.
+	 */
+	private static long tail(final byte[] array, final int offset, final int length) {
+		long k = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			k = (k << Byte.SIZE) | (array[offset + i] & BYTE_MASK);
+		}
+		return k;
+	}
+
+	private static long tail(final ByteBuffer buffer, final int index, final int length) {
+		long k = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			k = (k << Byte.SIZE) | (buffer.get(index + i) & BYTE_MASK);
+		}
+		return k;
+	}
+
+	private static long tail(final long address, final int length) {
+		long k = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			k = (k << Byte.SIZE) | (FastArrays.getByte(address + i) & BYTE_MASK);
+		}
+		return k;
+	}
+
+	private static void init(final long[] h, final int seed) {
+		h[0] = seed & INT_MASK;
+		h[1] = seed & INT_MASK;
+	}
+
+	private static long hash(final byte[] array, final int offset, final int length, final int seed,
+			@Nullable final long[] out) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		long h1 = seed & INT_MASK;
+		long h2 = h1;
+		int i = offset;
+		for (final int end = offset + length - BLOCK_LENGTH; i <= end; i += BLOCK_LENGTH) {
+			h1 ^= mixK1(FastArrays.getLongLE(array, i));
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52DC_E729;
+			h2 ^= mixK2(FastArrays.getLongLE(array, i + LONG_LENGTH));
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x3849_5AB5;
+		}
+		final int tail = offset + length - i;
+		final long k1;
+		final long k2;
+		if (tail > LONG_LENGTH) {
+			k1 = FastArrays.getLongLE(array, i);
+			k2 = tail(array, i + LONG_LENGTH, tail - LONG_LENGTH);
+		} else {
+			k1 = tail(array, i, tail);
+			k2 = 0;
+		}
+		return finish(h1, h2, k1, k2, tail, length, out);
+	}
+
+	private static long hash(final ByteBuffer buffer, final int position, final int limit, final int seed,
+			@Nullable final long[] out) {
+		if (position < 0 || position > limit || limit > buffer.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (buffer.hasArray()) {
+			return hash(buffer.array(), buffer.arrayOffset() + position, limit - position, seed, out);
+		}
+		if (buffer.isDirect() && FastArrays.backend() == FastArrays.Backend.UNSAFE) {
+			return hash(FastArrays.address(buffer) + position, limit - position, seed, out);
+		}
+		long h1 = seed & INT_MASK;
+		long h2 = h1;
+		int i = position;
+		for (final int end = limit - BLOCK_LENGTH; i <= end; i += BLOCK_LENGTH) {
+			h1 ^= mixK1(FastArrays.getLongLE(buffer, i));
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52DC_E729;
+			h2 ^= mixK2(FastArrays.getLongLE(buffer, i + LONG_LENGTH));
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x3849_5AB5;
+		}
+		final int tail = limit - i;
+		final long k1;
+		final long k2;
+		if (tail > LONG_LENGTH) {
+			k1 = FastArrays.getLongLE(buffer, i);
+			k2 = tail(buffer, i + LONG_LENGTH, tail - LONG_LENGTH);
+		} else {
+			k1 = tail(buffer, i, tail);
+			k2 = 0;
+		}
+		return finish(h1, h2, k1, k2, tail, limit - position, out);
+	}
+
+	private static long hash(final long address, final long length, final int seed,
+			@Nullable final long[] out) {
+		if (length < 0) {
+			throw new IllegalArgumentException("length < 0");
+		}
+		long h1 = seed & INT_MASK;
+		long h2 = h1;
+		long i = address;
+		for (final long end = address + length - BLOCK_LENGTH; i <= end; i += BLOCK_LENGTH) {
+			h1 ^= mixK1(FastArrays.getLongLE(i));
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52DC_E729;
+			h2 ^= mixK2(FastArrays.getLongLE(i + LONG_LENGTH));
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x3849_5AB5;
+		}
+		final int tail = (int) (address + length - i);
+		final long k1;
+		final long k2;
+		if (tail > LONG_LENGTH) {
+			k1 = FastArrays.getLongLE(i);
+			k2 = tail(i + LONG_LENGTH, tail - LONG_LENGTH);
+		} else {
+			k1 = tail(i, tail);
+			k2 = 0;
+		}
+		return finish(h1, h2, k1, k2, tail, length, out);
+	}
+
+	/**
+	 * Calculates the first 64 bits of the 128-bit MurmurHash3 of a byte array.
+	 */
+	public static long hash64(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length, final int seed) {
+		return hash(array, offset, length, seed, null);
+	}
+
+	/**
+	 * Calculates the 128-bit MurmurHash3 of a byte array.
+	 * @param out receives <code>h1</code> and <code>h2</code> in its first two
+	 *            elements
+	 */
+	public static void hash128(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length, final int seed, @Nonnull final long[] out) {
+		hash(array, offset, length, seed, out);
+	}
+
+	/**
+	 * Calculates the first 64 bits of the 128-bit MurmurHash3 of the bytes of
+	 * a buffer between position (inclusive) and limit (exclusive). The
+	 * buffer's position and limit are not affected.
+	 */
+	public static long hash64(@Nonnull final ByteBuffer buffer, @Nonnegative final int position,
+			@Nonnegative final int limit, final int seed) {
+		return hash(buffer, position, limit, seed, null);
+	}
+
+	/**
+	 * Calculates the 128-bit MurmurHash3 of the bytes of a buffer between
+	 * position (inclusive) and limit (exclusive). The buffer's position and
+	 * limit are not affected.
+	 * @param out receives <code>h1</code> and <code>h2</code> in its first two
+	 *            elements
+	 */
+	public static void hash128(@Nonnull final ByteBuffer buffer, @Nonnegative final int position,
+			@Nonnegative final int limit, final int seed, @Nonnull final long[] out) {
+		hash(buffer, position, limit, seed, out);
+	}
+
+	/**
+	 * Calculates the 128-bit MurmurHash3 of a raw memory range. Requires the
+	 * Unsafe backend of {@link FastArrays}.
+	 * @param out receives <code>h1</code> and <code>h2</code> in its first two
+	 *            elements
+	 */
+	public static void hash128(final long address, @Nonnegative final long length, final int seed,
+			@Nonnull final long[] out) {
+		hash(address, length, seed, out);
+	}
+
+	/**
+	 * Resets the hash to its initial state.
+	 */
+	public void reset() {
+		init(state, seed);
+		total = 0;
+		memorySize = 0;
+	}
+
+	/**
+	 * Updates the hash with a single byte.
+	 */
+	public void update(final int value) {
+		memory[memorySize++] = (byte) value;
+		total++;
+		if (memorySize == BLOCK_LENGTH) {
+			block(state, FastArrays.getLongLE(memory, 0), FastArrays.getLongLE(memory, LONG_LENGTH));
+			memorySize = 0;
+		}
+	}
+
+	/**
+	 * Updates the hash with the specified array of bytes.
+	 */
+	public void update(@Nonnull final byte[] array) {
+		update(array, 0, array.length);
+	}
+
+	/**
+	 * Updates the hash with the specified range of bytes.
+	 */
+	public void update(@Nonnull final byte[] array, @Nonnegative final int offset, @Nonnegative final int length) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		total += length;
+		int i = offset;
+		final int end = offset + length;
+		if (memorySize > 0) {
+			final int count = Math.min(BLOCK_LENGTH - memorySize, length);
+			System.arraycopy(array, i, memory, memorySize, count);
+			memorySize += count;
+			i += count;
+			if (memorySize < BLOCK_LENGTH) {
+				return;
+			}
+			block(state, FastArrays.getLongLE(memory, 0), FastArrays.getLongLE(memory, LONG_LENGTH));
+			memorySize = 0;
+		}
+		for (; i <= end - BLOCK_LENGTH; i += BLOCK_LENGTH) {
+			block(state, FastArrays.getLongLE(array, i), FastArrays.getLongLE(array, i + LONG_LENGTH));
+		}
+		memorySize = end - i;
+		System.arraycopy(array, i, memory, 0, memorySize);
+	}
+
+	/**
+	 * Updates the hash with the remaining bytes of a buffer. Upon return, the
+	 * buffer's position will be updated to its limit; its limit will not have
+	 * been changed.
+	 */
+	public void update(@Nonnull final ByteBuffer buffer) {
+		update(buffer, buffer.position(), buffer.limit());
+		buffer.position(buffer.limit());
+	}
+
+	/**
+	 * Updates the hash with the bytes of a buffer between position (inclusive)
+	 * and limit (exclusive). The buffer's position and limit are not affected.
+	 */
+	public void update(@Nonnull final ByteBuffer buffer, @Nonnegative final int position,
+			@Nonnegative final int limit) {
+		if (position < 0 || position > limit || limit > buffer.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (buffer.hasArray()) {
+			update(buffer.array(), buffer.arrayOffset() + position, limit - position);
+			return;
+		}
+		total += limit - position;
+		int i = position;
+		if (memorySize > 0) {
+			final int count = Math.min(BLOCK_LENGTH - memorySize, limit - position);
+			FastArrays.arrayCopy(buffer, i, memory, memorySize, count);
+			memorySize += count;
+			i += count;
+			if (memorySize < BLOCK_LENGTH) {
+				return;
+			}
+			block(state, FastArrays.getLongLE(memory, 0), FastArrays.getLongLE(memory, LONG_LENGTH));
+			memorySize = 0;
+		}
+		for (; i <= limit - BLOCK_LENGTH; i += BLOCK_LENGTH) {
+			block(state, FastArrays.getLongLE(buffer, i), FastArrays.getLongLE(buffer, i + LONG_LENGTH));
+		}
+		memorySize = limit - i;
+		FastArrays.arrayCopy(buffer, i, memory, 0, memorySize);
+	}
+
+	/**
+	 * Writes the 128-bit hash of all bytes given since the last reset, without
+	 * resetting.
+	 * @param out receives <code>h1</code> and <code>h2</code> in its first two
+	 *            elements
+	 */
+	public void getValue(@Nonnull final long[] out) {
+		value(out);
+	}
+
+	/**
+	 * @return the first 64 bits of the hash of all bytes given since the last
+	 *         reset, without resetting
+	 */
+	public long getValue() {
+		return value(null);
+	}
+
+	private long value(@Nullable final long[] out) {
+		final long k1;
+		final long k2;
+		if (memorySize > LONG_LENGTH) {
+			k1 = FastArrays.getLongLE(memory, 0);
+			k2 = tail(memory, LONG_LENGTH, memorySize - LONG_LENGTH);
+		} else {
+			k1 = tail(memory, 0, memorySize);
+			k2 = 0;
+		}
+		return finish(state[0], state[1], k1, k2, memorySize, total, out);
+	}
+
+	/**
+	 * Writes the 128-bit hash of all bytes given since the last reset, and
+	 * resets.
+	 * @param out receives <code>h1</code> and <code>h2</code> in its first two
+	 *            elements
+	 */
+	public void digest(@Nonnull final long[] out) {
+		getValue(out);
+		reset();
+	}
+
+	/**
+	 * @return the first 64 bits of the hash of all bytes given since the last
+	 *         reset, and resets
+	 */
+	public long digest() {
+		final long digest = getValue();
+		reset();
+		return digest;
+	}
+
+}
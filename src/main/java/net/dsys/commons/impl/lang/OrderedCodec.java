@@ -0,0 +1,343 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Order-preserving key encoding: encoded values compare with
+ * {@link FastArrays#compareArrays(byte[], int, int, byte[], int, int)} (an
+ * unsigned memcmp) in the same order as the original values.
+ * <ul>
+ * <li>ints and longs are written big-endian with the sign bit flipped;</li>
+ * <li>floats and doubles are written as their IEEE-754 bits, with all bits
+ * flipped for negative values and only the sign bit flipped otherwise. The
+ * order is that of {@link Double#compare(double, double)}: -0.0 sorts before
+ * 0.0, and NaN sorts last;</li>
+ * <li>byte strings are escaped (0x00 becomes 0x00 0xFF) and terminated by
+ * 0x00 0x01, so that a prefix sorts before any of its extensions;</li>
+ * <li>strings are written as escaped UTF-8, which sorts by code point.
+ * Unpaired surrogates are kept as 3-byte sequences so that strings round
+ * trip.</li>
+ * </ul>
+ * Every encoding is self-delimiting, therefore a composite (tuple) key is
+ * simply the concatenation of the encodings of its fields, and compares
+ * field by field.
+ *
+ * @author Ricardo Padilha
+ */
+public final class OrderedCodec {
+
+	private static final int BYTE_MASK = 0xFF;
+	private static final int INT_LENGTH = Integer.SIZE / Byte.SIZE;
+	private static final int LONG_LENGTH = Long.SIZE / Byte.SIZE;
+	private static final byte ESCAPE = 0x00;
+	private static final byte ESCAPED_ZERO = (byte) 0xFF;
+	private static final byte TERMINATOR = 0x01;
+	private static final int TERMINATOR_LENGTH = 2;
+	private static final String MALFORMED = "malformed ordered string";
+
+	private OrderedCodec() {
+		// no instantiation allowed
+		return;
+	}
+
+	/**
+	 * @return the number of bytes written
+	 */
+	public static int putInt(@Nonnull final byte[] array, @Nonnegative final int offset, final int value) {
+		checkRange(array.length, offset, INT_LENGTH);
+		return FastArrays.putInt(array, offset, value ^ Integer.MIN_VALUE);
+	}
+
+	public static int getInt(@Nonnull final byte[] array, @Nonnegative final int offset) {
+		checkRange(array.length, offset, INT_LENGTH);
+		return FastArrays.getInt(array, offset) ^ Integer.MIN_VALUE;
+	}
+
+	/**
+	 * @return the number of bytes written
+	 */
+	public static int putLong(@Nonnull final byte[] array, @Nonnegative final int offset, final long value) {
+		checkRange(array.length, offset, LONG_LENGTH);
+		return FastArrays.putLong(array, offset, value ^ Long.MIN_VALUE);
+	}
+
+	public static long getLong(@Nonnull final byte[] array, @Nonnegative final int offset) {
+		checkRange(array.length, offset, LONG_LENGTH);
+		return FastArrays.getLong(array, offset) ^ Long.MIN_VALUE;
+	}
+
+	/**
+	 * @return the number of bytes written
+	 */
+	public static int putFloat(@Nonnull final byte[] array, @Nonnegative final int offset, final float value) {
+		final int bits = Float.floatToIntBits(value);
+		return putInt(array, offset, bits ^ (bits >> (Integer.SIZE - 1) & Integer.MAX_VALUE));
+	}
+
+	public static float getFloat(@Nonnull final byte[] array, @Nonnegative final int offset) {
+		final int bits = getInt(array, offset);
+		return Float.intBitsToFloat(bits ^ (bits >> (Integer.SIZE - 1) & Integer.MAX_VALUE));
+	}
+
+	/**
+	 * @return the number of bytes written
+	 */
+	public static int putDouble(@Nonnull final byte[] array, @Nonnegative final int offset, final double value) {
+		final long bits = Double.doubleToLongBits(value);
+		return putLong(array, offset, bits ^ (bits >> (Long.SIZE - 1) & Long.MAX_VALUE));
+	}
+
+	public static double getDouble(@Nonnull final byte[] array, @Nonnegative final int offset) {
+		final long bits = getLong(array, offset);
+		return Double.longBitsToDouble(bits ^ (bits >> (Long.SIZE - 1) & Long.MAX_VALUE));
+	}
+
+	/**
+	 * @return the number of bytes needed to encode the given bytes
+	 */
+	public static int bytesLength(@Nonnull final byte[] src, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		checkRange(src.length, offset, length);
+		int n = length + TERMINATOR_LENGTH;
+		for (int i = FastArrays.indexOf(src, offset, length, ESCAPE); i >= 0;
+				i = FastArrays.indexOf(src, i + 1, offset + length - i - 1, ESCAPE)) {
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Writes an escaped and terminated byte string.
+	 * @return the number of bytes written, same as
+	 *         {@link #bytesLength(byte[], int, int)}
+	 */
+	public static int putBytes(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnull final byte[] src, @Nonnegative final int srcOffset, @Nonnegative final int length) {
+		checkRange(array.length, offset, bytesLength(src, srcOffset, length));
+		int i = srcOffset;
+		int j = offset;
+		final int end = srcOffset + length;
+		while (i < end) {
+			int zero = FastArrays.indexOf(src, i, end - i, ESCAPE);
+			if (zero < 0) {
+				zero = end;
+			}
+			System.arraycopy(src, i, array, j, zero - i);
+			j += zero - i;
+			i = zero;
+			if (i < end) {
+				array[j++] = ESCAPE;
+				array[j++] = ESCAPED_ZERO;
+				i++;
+			}
+		}
+		array[j++] = ESCAPE;
+		array[j++] = TERMINATOR;
+		return j - offset;
+	}
+
+	/**
+	 * @return the number of encoded bytes of the byte string or string at the
+	 *         given offset, including the terminator
+	 * @throws IllegalArgumentException if no terminator is found
+	 */
+	public static int encodedLength(@Nonnull final byte[] array, @Nonnegative final int offset) {
+		checkRange(array.length, offset, 0);
+		int i = offset;
+		while (true) {
+			i = FastArrays.indexOf(array, i, array.length - i, ESCAPE);
+			if (i < 0 || i + 1 >= array.length) {
+				throw new IllegalArgumentException(MALFORMED);
+			}
+			if (array[i + 1] == TERMINATOR) {
+				return i + TERMINATOR_LENGTH - offset;
+			}
+			if (array[i + 1] != ESCAPED_ZERO) {
+				throw new IllegalArgumentException(MALFORMED);
+			}
+			i += 2;
+		}
+	}
+
+	/**
+	 * @return the number of bytes of the byte string at the given offset, once
+	 *         decoded
+	 */
+	public static int decodedLength(@Nonnull final byte[] array, @Nonnegative final int offset) {
+		final int encoded = encodedLength(array, offset);
+		int n = encoded - TERMINATOR_LENGTH;
+		for (int i = FastArrays.indexOf(array, offset, n, ESCAPE); i >= 0;
+				i = FastArrays.indexOf(array, i + 2, offset + encoded - TERMINATOR_LENGTH - i - 2, ESCAPE)) {
+			n--;
+		}
+		return n;
+	}
+
+	/**
+	 * Reads a byte string written by
+	 * {@link #putBytes(byte[], int, byte[], int, int)}. The destination must
+	 * have room for {@link #decodedLength(byte[], int)} bytes.
+	 * @return the number of bytes read, same as
+	 *         {@link #encodedLength(byte[], int)}
+	 */
+	public static int getBytes(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnull final byte[] dst, @Nonnegative final int dstOffset) {
+		final int encoded = encodedLength(array, offset);
+		checkRange(dst.length, dstOffset, decodedLength(array, offset));
+		final int end = offset + encoded - TERMINATOR_LENGTH;
+		int i = offset;
+		int j = dstOffset;
+		while (i < end) {
+			int zero = FastArrays.indexOf(array, i, end - i, ESCAPE);
+			if (zero < 0) {
+				zero = end;
+			}
+			System.arraycopy(array, i, dst, j, zero - i);
+			j += zero - i;
+			i = zero;
+			if (i < end) {
+				dst[j++] = 0;
+				i += 2;
+			}
+		}
+		return encoded;
+	}
+
+	/**
+	 * @return the number of bytes needed to encode the given string
+	 */
+	public static int stringLength(@Nonnull final CharSequence src) {
+		int n = TERMINATOR_LENGTH;
+		final int length = src.length();
+		for (int i = 0; i < length; i++) {
+			final char c = src.charAt(i);
+			if (c == 0) {
+				n += 2;
+			} else if (c < 0x80) {
+				n++;
+			} else if (c < 0x800) {
+				n += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(src.charAt(i + 1))) {
+				n += 4;
+				i++;
+			} else {
+				n += 3;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Writes an escaped and terminated UTF-8 string.
+	 * @return the number of bytes written, same as
+	 *         {@link #stringLength(CharSequence)}
+	 */
+	public static int putString(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnull final CharSequence src) {
+		checkRange(array.length, offset, stringLength(src));
+		int j = offset;
+		final int length = src.length();
+		for (int i = 0; i < length; i++) {
+			final char c = src.charAt(i);
+			if (c == 0) {
+				array[j++] = ESCAPE;
+				array[j++] = ESCAPED_ZERO;
+			} else if (c < 0x80) {
+				array[j++] = (byte) c;
+			} else if (c < 0x800) {
+				array[j++] = (byte) (0xC0 | (c >>> 6));
+				array[j++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(src.charAt(i + 1))) {
+				final int cp = Character.toCodePoint(c, src.charAt(++i));
+				array[j++] = (byte) (0xF0 | (cp >>> 18));
+				array[j++] = (byte) (0x80 | ((cp >>> 12) & 0x3F));
+				array[j++] = (byte) (0x80 | ((cp >>> 6) & 0x3F));
+				array[j++] = (byte) (0x80 | (cp & 0x3F));
+			} else {
+				array[j++] = (byte) (0xE0 | (c >>> 12));
+				array[j++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+				array[j++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		array[j++] = ESCAPE;
+		array[j++] = TERMINATOR;
+		return j - offset;
+	}
+
+	/**
+	 * Reads a string written by {@link #putString(byte[], int, CharSequence)}
+	 * and appends it to a builder.
+	 * @return the number of bytes read, same as
+	 *         {@link #encodedLength(byte[], int)}
+	 * @throws IllegalArgumentException if the string is malformed
+	 */
+	public static int getString(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnull final StringBuilder dst) {
+		final int encoded = encodedLength(array, offset);
+		final int end = offset + encoded - TERMINATOR_LENGTH;
+		int i = offset;
+		while (i < end) {
+			final int b = array[i++] & BYTE_MASK;
+			if (b == 0) {
+				dst.append('\0');
+				i++;
+			} else if (b < 0x80) {
+				dst.append((char) b);
+			} else if (b >= 0xC2 && b < 0xE0) {
+				dst.append((char) (((b & 0x1F) << 6) | continuation(array, i++, end)));
+			} else if (b >= 0xE0 && b < 0xF0) {
+				final int c = ((b & 0x0F) << 12) | (continuation(array, i, end) << 6) | continuation(array, i + 1, end);
+				if (c < 0x800) {
+					throw new IllegalArgumentException(MALFORMED);
+				}
+				dst.append((char) c);
+				i += 2;
+			} else if (b >= 0xF0 && b < 0xF5) {
+				final int cp = ((b & 0x07) << 18) | (continuation(array, i, end) << 12)
+						| (continuation(array, i + 1, end) << 6) | continuation(array, i + 2, end);
+				if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT) {
+					throw new IllegalArgumentException(MALFORMED);
+				}
+				dst.append(Character.highSurrogate(cp)).append(Character.lowSurrogate(cp));
+				i += 3;
+			} else {
+				throw new IllegalArgumentException(MALFORMED);
+			}
+		}
+		return encoded;
+	}
+
+	private static int continuation(final byte[] array, final int index, final int end) {
+		final int b;
+		if (index >= end || ((b = array[index] & BYTE_MASK) & 0xC0) != 0x80) {
+			throw new IllegalArgumentException(MALFORMED);
+		}
+		return b & 0x3F;
+	}
+
+	private static void checkRange(final int capacity, final int offset, final int length) {
+		if (offset < 0 || length < 0 || offset > capacity - length) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+}
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Reads the records of a log written by {@link RecordLogWriter}, between a
+ * buffer's position and its limit, and validates them. Reading stops at the
+ * first invalid frame. A zeroed header, or fewer bytes than a header, is a
+ * clean end. Anything else (a length beyond the end of the buffer, or a CRC
+ * mismatch) is a torn tail, e.g., the last batch of a crash before its
+ * commit, or a record of an older generation, and can be cut off with
+ * {@link #truncate()}. Payloads are read in
+ * place. The buffer's position and limit are not affected. Instances are not
+ * thread-safe.
+ *
+ * @author Ricardo Padilha
+ */
+public final class RecordLogReader {
+
+	private static final int HEADER_LENGTH = RecordLogWriter.HEADER_LENGTH;
+	private static final int CRC_OFFSET = Integer.SIZE / Byte.SIZE;
+
+	private final ByteBuffer buffer;
+	private final MappedByteBuffer mapped;
+	private final long generation;
+	private final CRC32 crc;
+	private int index;
+	private int payload;
+	private int length;
+	private boolean done;
+	private boolean torn;
+
+	/**
+	 * Creates a reader that starts at the buffer's position and accepts only
+	 * records of the given generation.
+	 */
+	public RecordLogReader(@Nonnull final ByteBuffer buffer, final long generation) {
+		this(buffer, null, generation);
+	}
+
+	/**
+	 * Creates a reader over a file-backed mapped buffer, forced by
+	 * {@link #truncate()}. Direct buffers are {@link MappedByteBuffer}s too,
+	 * but must not be given here: forcing them fails on Java 7 and 8.
+	 */
+	public RecordLogReader(@Nonnull final MappedByteBuffer buffer, final long generation) {
+		this(buffer, buffer, generation);
+	}
+
+	private RecordLogReader(final ByteBuffer buffer, final MappedByteBuffer mapped, final long generation) {
+		this.buffer = buffer;
+		this.mapped = mapped;
+		this.generation = generation;
+		this.crc = new CRC32();
+		this.index = buffer.position();
+		this.payload = -1;
+	}
+
+	/**
+	 * @return the generation of the records accepted by this reader
+	 */
+	public long generation() {
+		return generation;
+	}
+
+	/**
+	 * Advances to the next record.
+	 * @return <code>false</code> at a clean end or at a torn tail
+	 */
+	public boolean next() {
+		if (done) {
+			return false;
+		}
+		final int available = buffer.limit() - index;
+		if (available < HEADER_LENGTH || FastArrays.getLong(buffer, index) == 0) {
+			return stop(false);
+		}
+		final int n = FastArrays.getInt(buffer, index);
+		if (n < 0 || n > available - HEADER_LENGTH) {
+			return stop(true);
+		}
+		final int start = index + HEADER_LENGTH;
+		RecordLogWriter.updateHeader(crc, generation, index, n);
+		crc.update(buffer, start, start + n);
+		if (crc.digest() != FastArrays.getInt(buffer, index + CRC_OFFSET)) {
+			return stop(true);
+		}
+		payload = start;
+		length = n;
+		index = start + n;
+		return true;
+	}
+
+	private boolean stop(final boolean isTorn) {
+		done = true;
+		torn = isTorn;
+		payload = -1;
+		return false;
+	}
+
+	/**
+	 * @return the buffer index of the current record's payload
+	 */
+	public int payloadIndex() {
+		checkRecord();
+		return payload;
+	}
+
+	/**
+	 * @return the length of the current record's payload
+	 */
+	public int payloadLength() {
+		checkRecord();
+		return length;
+	}
+
+	/**
+	 * @return a view of the current record's payload
+	 */
+	@Nonnull
+	public ByteBuffer payload() {
+		checkRecord();
+		final ByteBuffer view = buffer.duplicate();
+		view.limit(payload + length);
+		view.position(payload);
+		return view.slice();
+	}
+
+	/**
+	 * Copies the current record's payload into an array.
+	 * @return the number of bytes copied
+	 */
+	public int getPayload(@Nonnull final byte[] dst, @Nonnegative final int offset) {
+		checkRecord();
+		if (offset < 0 || offset > dst.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		FastArrays.arrayCopy(buffer, payload, dst, offset, length);
+		return length;
+	}
+
+	private void checkRecord() {
+		if (payload < 0) {
+			throw new IllegalStateException("no current record");
+		}
+	}
+
+	/**
+	 * @return the buffer index just after the last valid record read so far;
+	 *         once reading has stopped, this is where the log should be
+	 *         resumed
+	 */
+	public int end() {
+		return index;
+	}
+
+	/**
+	 * @return <code>true</code> if reading stopped at a torn tail
+	 */
+	public boolean isTorn() {
+		return torn;
+	}
+
+	/**
+	 * Reads the remaining records, if any, and cuts off a torn tail by zeroing
+	 * the header that follows the last valid record, forcing it if the reader
+	 * was created over a mapped file.
+	 * @return {@link #end()}
+	 */
+	public int truncate() {
+		while (next()) {
+			continue;
+		}
+		if (torn) {
+			FastArrays.putLong(buffer, index, 0);
+			if (mapped != null) {
+				mapped.force();
+			}
+			torn = false;
+		}
+		return index;
+	}
+
+}
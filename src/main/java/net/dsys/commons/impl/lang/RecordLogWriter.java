@@ -0,0 +1,223 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dsys.commons.impl.lang;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Appends checksummed records to a log held in a direct, heap or mapped
+ * buffer, between its position and its limit. Each record is framed as:
+ * <ul>
+ * <li>the payload length, as a big-endian int;</li>
+ * <li>the CRC32 of the log's generation (as 8 big-endian bytes), the record's
+ * buffer index and length (as 4 big-endian bytes each) and the payload, as a
+ * big-endian int;</li>
+ * <li>the payload.</li>
+ * </ul>
+ * After each record, the header slot that follows it is zeroed, if there is
+ * room, so that {@link RecordLogReader} stops there even if the buffer held
+ * older data. That zeroed slot may not reach the disk before a crash, so the
+ * CRC also binds each record to its generation and index: a record left over
+ * from an older log, or from before a truncation, fails the check instead of
+ * being replayed. Each new log over a reused buffer or file must therefore
+ * use a new generation, e.g., an epoch kept by the caller. Records are made durable in batches by {@link #commit()} (group
+ * commit): if the writer was created over a file-backed
+ * {@link MappedByteBuffer}, one {@link MappedByteBuffer#force()} covers every
+ * record appended since the previous commit. The buffer's position and limit
+ * are not affected. Instances are not thread-safe.
+ *
+ * @author Ricardo Padilha
+ */
+public final class RecordLogWriter {
+
+	/**
+	 * Length of a record header: payload length and CRC.
+	 */
+	public static final int HEADER_LENGTH = 2 * (Integer.SIZE / Byte.SIZE);
+
+	private static final int CRC_OFFSET = Integer.SIZE / Byte.SIZE;
+
+	private final ByteBuffer buffer;
+	private final MappedByteBuffer mapped;
+	private final long generation;
+	private final int start;
+	private final CRC32 crc;
+	private int index;
+	private int committed;
+	private int pending;
+
+	/**
+	 * Creates a writer that appends from the buffer's position. To resume a
+	 * log after recovery, set the position to {@link RecordLogReader#end()}
+	 * and keep the generation it was read with.
+	 */
+	public RecordLogWriter(@Nonnull final ByteBuffer buffer, final long generation) {
+		this(buffer, null, generation);
+	}
+
+	/**
+	 * Creates a writer over a file-backed mapped buffer, forced on each
+	 * {@link #commit()}. Direct buffers are {@link MappedByteBuffer}s too, but
+	 * must not be given here: forcing them fails on Java 7 and 8.
+	 */
+	public RecordLogWriter(@Nonnull final MappedByteBuffer buffer, final long generation) {
+		this(buffer, buffer, generation);
+	}
+
+	private RecordLogWriter(final ByteBuffer buffer, final MappedByteBuffer mapped, final long generation) {
+		if (buffer.isReadOnly()) {
+			throw new IllegalArgumentException("buffer is read-only");
+		}
+		this.buffer = buffer;
+		this.mapped = mapped;
+		this.generation = generation;
+		this.start = buffer.position();
+		this.crc = new CRC32();
+		this.index = start;
+		this.committed = start;
+		zeroHeader();
+	}
+
+	/**
+	 * @return the number of bytes a record with the given payload length
+	 *         occupies in the log
+	 */
+	public static int frameLength(@Nonnegative final int length) {
+		if (length < 0) {
+			throw new IllegalArgumentException("length < 0");
+		}
+		return HEADER_LENGTH + length;
+	}
+
+	/**
+	 * Feeds the part of a record's CRC that precedes its payload.
+	 */
+	static void updateHeader(final CRC32 crc, final long generation, final int frame, final int length) {
+		crc.updateLong(generation);
+		crc.updateInt(frame);
+		crc.updateInt(length);
+	}
+
+	/**
+	 * @return the generation of this log
+	 */
+	public long generation() {
+		return generation;
+	}
+
+	/**
+	 * @return the number of bytes appended so far
+	 */
+	public int length() {
+		return index - start;
+	}
+
+	/**
+	 * @return the number of free bytes left in the buffer
+	 */
+	public int remaining() {
+		return buffer.limit() - index;
+	}
+
+	/**
+	 * @return the number of records appended since the last commit
+	 */
+	public int pending() {
+		return pending;
+	}
+
+	/**
+	 * Appends a record.
+	 * @return the buffer index at which the record starts
+	 * @throws BufferOverflowException if the record does not fit, in which
+	 *             case nothing is written
+	 */
+	public int append(@Nonnull final byte[] payload, @Nonnegative final int offset, @Nonnegative final int length) {
+		if (offset < 0 || length < 0 || offset > payload.length - length) {
+			throw new IndexOutOfBoundsException();
+		}
+		final int frame = reserve(length);
+		FastArrays.arrayCopy(payload, offset, buffer, frame + HEADER_LENGTH, length);
+		updateHeader(crc, generation, frame, length);
+		crc.update(payload, offset, length);
+		return seal(frame, length);
+	}
+
+	/**
+	 * Appends the remaining bytes of a buffer as a record. Upon return, the
+	 * payload's position will be equal to its limit.
+	 * @return the buffer index at which the record starts
+	 * @throws BufferOverflowException if the record does not fit, in which
+	 *             case nothing is written
+	 */
+	public int append(@Nonnull final ByteBuffer payload) {
+		final int length = payload.remaining();
+		final int frame = reserve(length);
+		FastArrays.arrayCopy(payload, payload.position(), buffer, frame + HEADER_LENGTH, length);
+		updateHeader(crc, generation, frame, length);
+		crc.update(buffer, frame + HEADER_LENGTH, frame + HEADER_LENGTH + length);
+		payload.position(payload.limit());
+		return seal(frame, length);
+	}
+
+	private int reserve(final int length) {
+		if (length > remaining() - HEADER_LENGTH) {
+			throw new BufferOverflowException();
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the header once the payload is in place, so that a record is
+	 * never valid before its payload is complete.
+	 */
+	private int seal(final int frame, final int length) {
+		FastArrays.putInt(buffer, frame + CRC_OFFSET, crc.digest());
+		FastArrays.putInt(buffer, frame, length);
+		index = frame + HEADER_LENGTH + length;
+		pending++;
+		zeroHeader();
+		return frame;
+	}
+
+	private void zeroHeader() {
+		if (remaining() >= HEADER_LENGTH) {
+			FastArrays.putLong(buffer, index, 0);
+		}
+	}
+
+	/**
+	 * Makes every record appended since the last commit durable, with a
+	 * single force if the writer was created over a mapped file. Other
+	 * buffers are not forced; they must be written out by the caller.
+	 * @return the number of records committed
+	 */
+	public int commit() {
+		final int records = pending;
+		if (index > committed && mapped != null) {
+			mapped.force();
+		}
+		committed = index;
+		pending = 0;
+		return records;
+	}
+
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Slicing-by-8 for reflected CRCs of 32 and 64 bits, shared by
+ * {@link CRC32}, {@link CRC32C} and {@link CRC64}. The tables are stored one
+ * after the other: entry <code>n</code> of slice <code>k</code> is the CRC of
+ * byte <code>n</code> followed by <code>k</code> zero bytes, so slice zero is
+ * the usual byte table. Arrays and buffers are processed eight bytes at a
+ * time, read as little-endian longs, and the remainder a byte at a time.
+ *
+ * @see http://create.stephan-brumme.com/crc32/#slicing-by-8-overview
+ *
+ * @author Ricardo Padilha
+ */
+final class SlicingBy8 {
+
+	private static final int BYTE_SIZE = Byte.SIZE;
+	private static final int BYTE_MASK = 0xFF;
+	private static final long LONG_INT_MASK = 0xFFFF_FFFFL;
+	private static final int LONG_LENGTH = Long.SIZE / Byte.SIZE;
+	private static final int TABLE_LENGTH = 256;
+
+	private SlicingBy8() {
+		// no instantiation allowed
+		return;
+	}
+
+	/**
+	 * @param polynomial bit-reflected 32-bit polynomial
+	 */
+	static int[] slices(final int polynomial) {
+		final int[] slices = new int[LONG_LENGTH * TABLE_LENGTH];
+		for (int n = 0; n < TABLE_LENGTH; n++) {
+			int c = n;
+			for (int k = 0; k < BYTE_SIZE; k++) {
+				c = (c >>> 1) ^ (-(c & 1) & polynomial);
+			}
+			slices[n] = c;
+		}
+		for (int i = TABLE_LENGTH; i < slices.length; i++) {
+			final int prev = slices[i - TABLE_LENGTH];
+			slices[i] = (prev >>> BYTE_SIZE) ^ slices[prev & BYTE_MASK];
+		}
+		return slices;
+	}
+
+	/**
+	 * @param polynomial bit-reflected 64-bit polynomial
+	 */
+	static long[] slices(final long polynomial) {
+		final long[] slices = new long[LONG_LENGTH * TABLE_LENGTH];
+		for (int n = 0; n < TABLE_LENGTH; n++) {
+			long c = n;
+			for (int k = 0; k < BYTE_SIZE; k++) {
+				c = (c >>> 1) ^ (-(c & 1) & polynomial);
+			}
+			slices[n] = c;
+		}
+		for (int i = TABLE_LENGTH; i < slices.length; i++) {
+			final long prev = slices[i - TABLE_LENGTH];
+			slices[i] = (prev >>> BYTE_SIZE) ^ slices[(int) prev & BYTE_MASK];
+		}
+		return slices;
+	}
+
+	/**
+	 * Slicing-by-4 over the bytes of a big-endian int.
+	 */
+	static int updateInt(final int[] slices, final int crc, final int value) {
+		final int word = Integer.reverseBytes(value) ^ crc;
+		return slices[3 * TABLE_LENGTH + (word & BYTE_MASK)]
+				^ slices[2 * TABLE_LENGTH + ((word >>> 8) & BYTE_MASK)]
+				^ slices[TABLE_LENGTH + ((word >>> 16) & BYTE_MASK)]
+				^ slices[word >>> 24];
+	}
+
+	/**
+	 * Folds the running CRC into eight bytes, read as a little-endian long,
+	 * and looks up each byte in the slice that accounts for the bytes that
+	 * follow it.
+	 */
+	static int updateLE(final int[] slices, final int crc, final long value) {
+		final long word = value ^ (crc & LONG_INT_MASK);
+		return slices[7 * TABLE_LENGTH + ((int) word & BYTE_MASK)]
+				^ slices[6 * TABLE_LENGTH + ((int) (word >>> 8) & BYTE_MASK)]
+				^ slices[5 * TABLE_LENGTH + ((int) (word >>> 16) & BYTE_MASK)]
+				^ slices[4 * TABLE_LENGTH + ((int) (word >>> 24) & BYTE_MASK)]
+				^ slices[3 * TABLE_LENGTH + ((int) (word >>> 32) & BYTE_MASK)]
+				^ slices[2 * TABLE_LENGTH + ((int) (word >>> 40) & BYTE_MASK)]
+				^ slices[TABLE_LENGTH + ((int) (word >>> 48) & BYTE_MASK)]
+				^ slices[(int) (word >>> 56)];
+	}
+
+	/**
+	 * @see #updateLE(int[], int, long)
+	 */
+	static long updateLE(final long[] slices, final long crc, final long value) {
+		final long word = value ^ crc;
+		return slices[7 * TABLE_LENGTH + ((int) word & BYTE_MASK)]
+				^ slices[6 * TABLE_LENGTH + ((int) (word >>> 8) & BYTE_MASK)]
+				^ slices[5 * TABLE_LENGTH + ((int) (word >>> 16) & BYTE_MASK)]
+				^ slices[4 * TABLE_LENGTH + ((int) (word >>> 24) & BYTE_MASK)]
+				^ slices[3 * TABLE_LENGTH + ((int) (word >>> 32) & BYTE_MASK)]
+				^ slices[2 * TABLE_LENGTH + ((int) (word >>> 40) & BYTE_MASK)]
+				^ slices[TABLE_LENGTH + ((int) (word >>> 48) & BYTE_MASK)]
+				^ slices[(int) (word >>> 56)];
+	}
+
+	static int update(final int[] slices, final int crc, final byte[] array, final int offset,
+			final int length) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		final int k = offset + length;
+		int c = crc;
+		int i = offset;
+		// first round with longs
+		for (final int last = k - LONG_LENGTH; i <= last; i += LONG_LENGTH) {
+			c = updateLE(slices, c, FastArrays.getLongLE(array, i));
+		}
+		// second round with bytes
+		for (; i < k; i++) {
+			c = (c >>> BYTE_SIZE) ^ slices[(c ^ array[i]) & BYTE_MASK];
+		}
+		return c;
+	}
+
+	static long update(final long[] slices, final long crc, final byte[] array, final int offset,
+			final int length) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		final int k = offset + length;
+		long c = crc;
+		int i = offset;
+		// first round with longs
+		for (final int last = k - LONG_LENGTH; i <= last; i += LONG_LENGTH) {
+			c = updateLE(slices, c, FastArrays.getLongLE(array, i));
+		}
+		// second round with bytes
+		for (; i < k; i++) {
+			c = (c >>> BYTE_SIZE) ^ slices[((int) c ^ array[i]) & BYTE_MASK];
+		}
+		return c;
+	}
+
+	/**
+	 * Word-at-a-time update over a range of a buffer: heap buffers go through
+	 * their array, direct buffers through their address when the Unsafe
+	 * backend is available, and through a little-endian view otherwise.
+	 */
+	static int update(final int[] slices, final int crc, final ByteBuffer buffer, final int position,
+			final int limit) {
+		checkRange(buffer, position, limit);
+		if (buffer.hasArray()) {
+			return update(slices, crc, buffer.array(), buffer.arrayOffset() + position, limit - position);
+		}
+		int c = crc;
+		int i = position;
+		final int last = limit - LONG_LENGTH;
+		if (hasAddress(buffer)) {
+			final long address = FastArrays.address(buffer);
+			for (; i <= last; i += LONG_LENGTH) {
+				c = updateLE(slices, c, FastArrays.getLongLE(address + i));
+			}
+		} else if (last >= i) {
+			final ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			for (; i <= last; i += LONG_LENGTH) {
+				c = updateLE(slices, c, view.getLong(i));
+			}
+		}
+		// second round with bytes
+		for (; i < limit; i++) {
+			c = (c >>> BYTE_SIZE) ^ slices[(c ^ buffer.get(i)) & BYTE_MASK];
+		}
+		return c;
+	}
+
+	/**
+	 * @see #update(int[], int, ByteBuffer, int, int)
+	 */
+	static long update(final long[] slices, final long crc, final ByteBuffer buffer, final int position,
+			final int limit) {
+		checkRange(buffer, position, limit);
+		if (buffer.hasArray()) {
+			return update(slices, crc, buffer.array(), buffer.arrayOffset() + position, limit - position);
+		}
+		long c = crc;
+		int i = position;
+		final int last = limit - LONG_LENGTH;
+		if (hasAddress(buffer)) {
+			final long address = FastArrays.address(buffer);
+			for (; i <= last; i += LONG_LENGTH) {
+				c = updateLE(slices, c, FastArrays.getLongLE(address + i));
+			}
+		} else if (last >= i) {
+			final ByteBuffer view = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+			for (; i <= last; i += LONG_LENGTH) {
+				c = updateLE(slices, c, view.getLong(i));
+			}
+		}
+		// second round with bytes
+		for (; i < limit; i++) {
+			c = (c >>> BYTE_SIZE) ^ slices[((int) c ^ buffer.get(i)) & BYTE_MASK];
+		}
+		return c;
+	}
+
+	/**
+	 * @return <code>true</code> if the buffer's memory can be read through
+	 *         its address
+	 */
+	static boolean hasAddress(final ByteBuffer buffer) {
+		return buffer.isDirect() && FastArrays.backend() == FastArrays.Backend.UNSAFE;
+	}
+
+	static void checkRange(final ByteBuffer buffer, final int position, final int limit) {
+		if (position < 0 || position > limit || limit > buffer.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+}
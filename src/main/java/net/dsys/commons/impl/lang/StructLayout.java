@@ -0,0 +1,625 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import net.dsys.commons.impl.builder.Optional;
+
+/**
+ * Fixed layout of a binary record: a set of named, typed fields at fixed
+ * offsets. Records are read and written in place through a {@link Flyweight},
+ * which can be re-targeted to any record in a byte array, a buffer or a
+ * {@link MappedRegion}, so that parsing a record allocates nothing. Field
+ * handles should be looked up once, with {@link #field(String)}, and kept.
+ * Layouts and fields are immutable and thread-safe.
+ *
+ * @author Ricardo Padilha
+ */
+public final class StructLayout {
+
+	/**
+	 * Field types.
+	 */
+	public enum Type {
+		BYTE(Byte.SIZE / Byte.SIZE),
+		SHORT(Short.SIZE / Byte.SIZE),
+		INT(Integer.SIZE / Byte.SIZE),
+		LONG(Long.SIZE / Byte.SIZE),
+		FLOAT(Float.SIZE / Byte.SIZE),
+		DOUBLE(Double.SIZE / Byte.SIZE),
+		/**
+		 * Fixed-length byte array, copied in and out.
+		 */
+		BYTES(0);
+
+		private final int length;
+
+		private Type(final int length) {
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Handle to a field of a layout.
+	 */
+	public static final class Field {
+
+		private final StructLayout layout;
+		private final String name;
+		private final Type type;
+		private final int offset;
+		private final int length;
+
+		Field(final StructLayout layout, final String name, final Type type, final int offset, final int length) {
+			this.layout = layout;
+			this.name = name;
+			this.type = type;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Nonnull
+		public String name() {
+			return name;
+		}
+
+		@Nonnull
+		public Type type() {
+			return type;
+		}
+
+		/**
+		 * @return the offset of this field from the start of the record
+		 */
+		public int offset() {
+			return offset;
+		}
+
+		/**
+		 * @return the length of this field in bytes
+		 */
+		public int length() {
+			return length;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public String toString() {
+			return name + ":" + type + "@" + offset;
+		}
+	}
+
+	private final Map<String, Field> fields;
+	private final int size;
+	private final boolean little;
+
+	StructLayout(final List<Spec> specs, final int size, final ByteOrder order) {
+		final Map<String, Field> map = new LinkedHashMap<>();
+		for (final Spec spec : specs) {
+			map.put(spec.name, new Field(this, spec.name, spec.type, spec.offset, spec.length));
+		}
+		this.fields = Collections.unmodifiableMap(map);
+		this.size = size;
+		this.little = order == ByteOrder.LITTLE_ENDIAN;
+	}
+
+	/**
+	 * @return a {@link Builder} for {@link StructLayout}
+	 */
+	@Nonnull
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return the size of a record in bytes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the byte order of multi-byte fields
+	 */
+	@Nonnull
+	public ByteOrder order() {
+		return little ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+	}
+
+	/**
+	 * @return the field with the given name
+	 * @throws IllegalArgumentException if there is no such field
+	 */
+	@Nonnull
+	public Field field(@Nonnull final String name) {
+		final Field field = fields.get(name);
+		if (field == null) {
+			throw new IllegalArgumentException("no such field: " + name);
+		}
+		return field;
+	}
+
+	/**
+	 * @return all fields, in declaration order
+	 */
+	@Nonnull
+	public Iterable<Field> fields() {
+		return fields.values();
+	}
+
+	/**
+	 * @return a new flyweight for this layout, not yet attached to a record
+	 */
+	@Nonnull
+	public Flyweight newFlyweight() {
+		return new Flyweight(this);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return fields.values() + "/" + size;
+	}
+
+	/**
+	 * Accessor to the fields of one record at a time. Bounds are checked when
+	 * attaching to a record, not on every field access. Not thread-safe.
+	 */
+	public static final class Flyweight {
+
+		private final StructLayout layout;
+		private final boolean little;
+		private byte[] array;
+		private ByteBuffer buffer;
+		private MappedRegion region;
+		private long base;
+
+		Flyweight(final StructLayout layout) {
+			this.layout = layout;
+			this.little = layout.little;
+		}
+
+		@Nonnull
+		public StructLayout layout() {
+			return layout;
+		}
+
+		/**
+		 * Attaches to the record starting at the given offset of an array.
+		 */
+		@Nonnull
+		public Flyweight wrap(@Nonnull final byte[] array, @Nonnegative final int offset) {
+			if (offset < 0 || offset > array.length - layout.size) {
+				throw new IndexOutOfBoundsException();
+			}
+			this.array = array;
+			this.buffer = null;
+			this.region = null;
+			this.base = offset;
+			return this;
+		}
+
+		/**
+		 * Attaches to the record starting at the given index of a buffer. The
+		 * buffer's position and limit are not affected.
+		 */
+		@Nonnull
+		public Flyweight wrap(@Nonnull final ByteBuffer buffer, @Nonnegative final int index) {
+			if (index < 0 || index > buffer.limit() - layout.size) {
+				throw new IndexOutOfBoundsException();
+			}
+			this.array = null;
+			this.buffer = buffer;
+			this.region = null;
+			this.base = index;
+			return this;
+		}
+
+		/**
+		 * Attaches to the record starting at the given offset of a region.
+		 */
+		@Nonnull
+		public Flyweight wrap(@Nonnull final MappedRegion region, @Nonnegative final long offset) {
+			if (offset < 0 || offset > region.length() - layout.size) {
+				throw new IndexOutOfBoundsException();
+			}
+			this.array = null;
+			this.buffer = null;
+			this.region = region;
+			this.base = offset;
+			return this;
+		}
+
+		/**
+		 * @return the offset of the current record
+		 */
+		public long offset() {
+			return base;
+		}
+
+		private int check(final Field field, final Type type) {
+			if (field.layout != layout || field.type != type) {
+				throw new IllegalArgumentException("not a " + type + " field of this layout: " + field);
+			}
+			if (array == null && buffer == null && region == null) {
+				throw new IllegalStateException("flyweight is not attached");
+			}
+			return field.offset;
+		}
+
+		public byte getByte(@Nonnull final Field field) {
+			final int offset = check(field, Type.BYTE);
+			if (array != null) {
+				return array[(int) base + offset];
+			} else if (buffer != null) {
+				return buffer.get((int) base + offset);
+			}
+			return region.get(base + offset);
+		}
+
+		@Nonnull
+		public Flyweight putByte(@Nonnull final Field field, final byte value) {
+			final int offset = check(field, Type.BYTE);
+			if (array != null) {
+				array[(int) base + offset] = value;
+			} else if (buffer != null) {
+				buffer.put((int) base + offset, value);
+			} else {
+				region.put(base + offset, value);
+			}
+			return this;
+		}
+
+		public short getShort(@Nonnull final Field field) {
+			final int offset = check(field, Type.SHORT);
+			if (array != null) {
+				final int i = (int) base + offset;
+				return little ? FastArrays.getShortLE(array, i) : FastArrays.getShort(array, i);
+			} else if (buffer != null) {
+				final int i = (int) base + offset;
+				return little ? FastArrays.getShortLE(buffer, i) : FastArrays.getShort(buffer, i);
+			}
+			return little ? region.getShortLE(base + offset) : region.getShort(base + offset);
+		}
+
+		@Nonnull
+		public Flyweight putShort(@Nonnull final Field field, final short value) {
+			final int offset = check(field, Type.SHORT);
+			if (array != null) {
+				final int i = (int) base + offset;
+				if (little) {
+					FastArrays.putShortLE(array, i, value);
+				} else {
+					FastArrays.putShort(array, i, value);
+				}
+			} else if (buffer != null) {
+				final int i = (int) base + offset;
+				if (little) {
+					FastArrays.putShortLE(buffer, i, value);
+				} else {
+					FastArrays.putShort(buffer, i, value);
+				}
+			} else if (little) {
+				region.putShortLE(base + offset, value);
+			} else {
+				region.putShort(base + offset, value);
+			}
+			return this;
+		}
+
+		public int getInt(@Nonnull final Field field) {
+			return getInt(check(field, Type.INT));
+		}
+
+		@Nonnull
+		public Flyweight putInt(@Nonnull final Field field, final int value) {
+			putInt(check(field, Type.INT), value);
+			return this;
+		}
+
+		public long getLong(@Nonnull final Field field) {
+			return getLong(check(field, Type.LONG));
+		}
+
+		@Nonnull
+		public Flyweight putLong(@Nonnull final Field field, final long value) {
+			putLong(check(field, Type.LONG), value);
+			return this;
+		}
+
+		public float getFloat(@Nonnull final Field field) {
+			return Float.intBitsToFloat(getInt(check(field, Type.FLOAT)));
+		}
+
+		@Nonnull
+		public Flyweight putFloat(@Nonnull final Field field, final float value) {
+			putInt(check(field, Type.FLOAT), Float.floatToRawIntBits(value));
+			return this;
+		}
+
+		public double getDouble(@Nonnull final Field field) {
+			return Double.longBitsToDouble(getLong(check(field, Type.DOUBLE)));
+		}
+
+		@Nonnull
+		public Flyweight putDouble(@Nonnull final Field field, final double value) {
+			putLong(check(field, Type.DOUBLE), Double.doubleToRawLongBits(value));
+			return this;
+		}
+
+		/**
+		 * Copies the bytes of a {@link Type#BYTES} field into an array.
+		 */
+		@Nonnull
+		public Flyweight getBytes(@Nonnull final Field field, @Nonnull final byte[] dst,
+				@Nonnegative final int dstOffset) {
+			final int offset = check(field, Type.BYTES);
+			if (dstOffset < 0 || dstOffset > dst.length - field.length) {
+				throw new IndexOutOfBoundsException();
+			}
+			if (array != null) {
+				System.arraycopy(array, (int) base + offset, dst, dstOffset, field.length);
+			} else if (buffer != null) {
+				FastArrays.arrayCopy(buffer, (int) base + offset, dst, dstOffset, field.length);
+			} else {
+				region.arrayCopy(base + offset, dst, dstOffset, field.length);
+			}
+			return this;
+		}
+
+		/**
+		 * Copies bytes from an array into a {@link Type#BYTES} field.
+		 */
+		@Nonnull
+		public Flyweight putBytes(@Nonnull final Field field, @Nonnull final byte[] src,
+				@Nonnegative final int srcOffset) {
+			final int offset = check(field, Type.BYTES);
+			if (srcOffset < 0 || srcOffset > src.length - field.length) {
+				throw new IndexOutOfBoundsException();
+			}
+			if (array != null) {
+				System.arraycopy(src, srcOffset, array, (int) base + offset, field.length);
+			} else if (buffer != null) {
+				FastArrays.arrayCopy(src, srcOffset, buffer, (int) base + offset, field.length);
+			} else {
+				region.arrayCopy(src, srcOffset, base + offset, field.length);
+			}
+			return this;
+		}
+
+		private int getInt(final int offset) {
+			if (array != null) {
+				final int i = (int) base + offset;
+				return little ? FastArrays.getIntLE(array, i) : FastArrays.getInt(array, i);
+			} else if (buffer != null) {
+				final int i = (int) base + offset;
+				return little ? FastArrays.getIntLE(buffer, i) : FastArrays.getInt(buffer, i);
+			}
+			return little ? region.getIntLE(base + offset) : region.getInt(base + offset);
+		}
+
+		private void putInt(final int offset, final int value) {
+			if (array != null) {
+				final int i = (int) base + offset;
+				if (little) {
+					FastArrays.putIntLE(array, i, value);
+				} else {
+					FastArrays.putInt(array, i, value);
+				}
+			} else if (buffer != null) {
+				final int i = (int) base + offset;
+				if (little) {
+					FastArrays.putIntLE(buffer, i, value);
+				} else {
+					FastArrays.putInt(buffer, i, value);
+				}
+			} else if (little) {
+				region.putIntLE(base + offset, value);
+			} else {
+				region.putInt(base + offset, value);
+			}
+		}
+
+		private long getLong(final int offset) {
+			if (array != null) {
+				final int i = (int) base + offset;
+				return little ? FastArrays.getLongLE(array, i) : FastArrays.getLong(array, i);
+			} else if (buffer != null) {
+				final int i = (int) base + offset;
+				return little ? FastArrays.getLongLE(buffer, i) : FastArrays.getLong(buffer, i);
+			}
+			return little ? region.getLongLE(base + offset) : region.getLong(base + offset);
+		}
+
+		private void putLong(final int offset, final long value) {
+			if (array != null) {
+				final int i = (int) base + offset;
+				if (little) {
+					FastArrays.putLongLE(array, i, value);
+				} else {
+					FastArrays.putLong(array, i, value);
+				}
+			} else if (buffer != null) {
+				final int i = (int) base + offset;
+				if (little) {
+					FastArrays.putLongLE(buffer, i, value);
+				} else {
+					FastArrays.putLong(buffer, i, value);
+				}
+			} else if (little) {
+				region.putLongLE(base + offset, value);
+			} else {
+				region.putLong(base + offset, value);
+			}
+		}
+	}
+
+	/**
+	 * Field declaration, before the layout is built.
+	 */
+	private static final class Spec {
+		final String name;
+		final Type type;
+		final int offset;
+		final int length;
+
+		Spec(final String name, final Type type, final int offset, final int length) {
+			this.name = name;
+			this.type = type;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Fields are laid out one after the other, unless an explicit offset is
+	 * given. Overlapping fields are rejected.
+	 *
+	 * @author Ricardo Padilha
+	 */
+	public static final class Builder {
+
+		private final List<Spec> specs;
+		private ByteOrder order;
+		private int end;
+		private int size;
+
+		Builder() {
+			this.specs = new ArrayList<>();
+			this.order = ByteOrder.BIG_ENDIAN;
+		}
+
+		/**
+		 * Byte order of multi-byte fields.
+		 */
+		@Optional(defaultValue = "BIG_ENDIAN", restrictions = "order != null")
+		public Builder order(@Nonnull final ByteOrder order) {
+			if (order == null) {
+				throw new NullPointerException("order == null");
+			}
+			this.order = order;
+			return this;
+		}
+
+		/**
+		 * Adds a field at the end of the record so far.
+		 */
+		@Optional(defaultValue = "none", restrictions = "type != BYTES")
+		public Builder add(@Nonnull final String name, @Nonnull final Type type) {
+			return add(name, type, end);
+		}
+
+		/**
+		 * Adds a field at the given offset.
+		 */
+		@Optional(defaultValue = "after the last field", restrictions = "type != BYTES && offset >= 0")
+		public Builder add(@Nonnull final String name, @Nonnull final Type type, @Nonnegative final int offset) {
+			if (type == Type.BYTES) {
+				throw new IllegalArgumentException("use addBytes for BYTES fields");
+			}
+			return add(new Spec(name, type, offset, type.length));
+		}
+
+		/**
+		 * Adds a fixed-length byte array field at the end of the record so far.
+		 */
+		@Optional(defaultValue = "none", restrictions = "length > 0")
+		public Builder addBytes(@Nonnull final String name, @Nonnegative final int length) {
+			return addBytes(name, length, end);
+		}
+
+		/**
+		 * Adds a fixed-length byte array field at the given offset.
+		 */
+		@Optional(defaultValue = "after the last field", restrictions = "length > 0 && offset >= 0")
+		public Builder addBytes(@Nonnull final String name, @Nonnegative final int length,
+				@Nonnegative final int offset) {
+			if (length < 1) {
+				throw new IllegalArgumentException("length < 1");
+			}
+			return add(new Spec(name, Type.BYTES, offset, length));
+		}
+
+		/**
+		 * Pads the record to the given size, which must cover all fields.
+		 */
+		@Optional(defaultValue = "end of the last field", restrictions = "size >= end of the last field")
+		public Builder size(@Nonnegative final int size) {
+			if (size < 0) {
+				throw new IllegalArgumentException("size < 0");
+			}
+			this.size = size;
+			return this;
+		}
+
+		private Builder add(final Spec spec) {
+			if (spec.name == null) {
+				throw new NullPointerException("name == null");
+			}
+			if (spec.offset < 0) {
+				throw new IllegalArgumentException("offset < 0");
+			}
+			if (spec.offset > Integer.MAX_VALUE - spec.length) {
+				throw new IllegalArgumentException("field is too large: " + spec.name);
+			}
+			for (final Spec other : specs) {
+				if (other.name.equals(spec.name)) {
+					throw new IllegalArgumentException("duplicate field: " + spec.name);
+				}
+				if (spec.offset < other.offset + other.length && other.offset < spec.offset + spec.length) {
+					throw new IllegalArgumentException("field " + spec.name + " overlaps " + other.name);
+				}
+			}
+			specs.add(spec);
+			end = Math.max(end, spec.offset + spec.length);
+			return this;
+		}
+
+		/**
+		 * Builds the layout, which must have at least one field, added with
+		 * any of the <code>add</code> or <code>addBytes</code> methods.
+		 * @throws IllegalStateException if there are no fields, or if the size
+		 *             does not cover them
+		 */
+		@Nonnull
+		public StructLayout build() {
+			if (specs.isEmpty()) {
+				throw new IllegalStateException("no fields");
+			}
+			if (size != 0 && size < end) {
+				throw new IllegalStateException("size < " + end);
+			}
+			return new StructLayout(specs, Math.max(size, end), order);
+		}
+
+	}
+
+}
@@ -0,0 +1,475 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * UTF-8 encoder and decoder that writes into caller-supplied arrays, buffers
+ * and builders, without intermediate allocation. Encoding produces the same
+ * bytes as <code>String.getBytes(UTF_8)</code>, including the replacement of
+ * unpaired surrogates by <code>'?'</code>. Decoding is strict: malformed input
+ * is rejected instead of replaced. Runs of ASCII are encoded and decoded 8
+ * bytes at a time.
+ *
+ * @author Ricardo Padilha
+ */
+public final class Utf8 {
+
+	private static final int BYTE_MASK = 0xFF;
+	private static final int LONG_LENGTH = Long.SIZE / Byte.SIZE;
+	private static final long ASCII_MASK = 0x8080_8080_8080_8080L;
+	private static final byte REPLACEMENT = '?';
+	private static final String MALFORMED = "malformed UTF-8";
+
+	private Utf8() {
+		// no instantiation allowed
+		return;
+	}
+
+	/**
+	 * @return the number of bytes needed to encode the given chars
+	 */
+	public static int encodedLength(@Nonnull final CharSequence src) {
+		return encodedLength(src, 0, src.length());
+	}
+
+	/**
+	 * @return the number of bytes needed to encode the given range of chars
+	 */
+	public static int encodedLength(@Nonnull final CharSequence src, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		checkRange(src.length(), offset, length);
+		int n = length;
+		final int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			final char c = src.charAt(i);
+			if (c < 0x80) {
+				continue;
+			} else if (c < 0x800) {
+				n++;
+			} else if (!Character.isSurrogate(c)) {
+				n += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(src.charAt(i + 1))) {
+				n += 2;
+				i++;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * @return the number of chars encoded by the given bytes, assuming they
+	 *         are well-formed
+	 */
+	public static int decodedLength(@Nonnull final byte[] src, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		checkRange(src.length, offset, length);
+		int n = 0;
+		final int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			final int b = src[i] & BYTE_MASK;
+			if ((b & 0xC0) != 0x80) {
+				n += b >= 0xF0 ? 2 : 1;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Encodes chars into an array.
+	 * @return the number of bytes written, same as
+	 *         {@link #encodedLength(CharSequence)}
+	 * @throws IndexOutOfBoundsException if the array is too small, in which
+	 *             case it may have been partially written
+	 */
+	public static int encode(@Nonnull final CharSequence src, @Nonnull final byte[] dst,
+			@Nonnegative final int offset) {
+		return encode(src, 0, src.length(), dst, offset);
+	}
+
+	/**
+	 * Encodes a range of chars into an array.
+	 * @return the number of bytes written, same as
+	 *         {@link #encodedLength(CharSequence, int, int)}
+	 * @throws IndexOutOfBoundsException if the array is too small, in which
+	 *             case it may have been partially written
+	 */
+	public static int encode(@Nonnull final CharSequence src, @Nonnegative final int srcOffset,
+			@Nonnegative final int length, @Nonnull final byte[] dst, @Nonnegative final int offset) {
+		checkRange(src.length(), srcOffset, length);
+		checkRange(dst.length, offset, 0);
+		int j = offset;
+		final int end = srcOffset + length;
+		for (int i = srcOffset; i < end; i++) {
+			final char c = src.charAt(i);
+			if (c < 0x80) {
+				final int last = i + ascii(src, i, end);
+				// Unsafe stores are unchecked, so only whole words that fit
+				for (final int limit = dst.length - LONG_LENGTH; i <= last - LONG_LENGTH && j <= limit;
+						i += LONG_LENGTH) {
+					j += FastArrays.putLong(dst, j, pack(src, i));
+				}
+				for (; i < last; i++) {
+					dst[j++] = (byte) src.charAt(i);
+				}
+				i--;
+			} else if (c < 0x800) {
+				dst[j++] = (byte) (0xC0 | (c >>> 6));
+				dst[j++] = (byte) (0x80 | (c & 0x3F));
+			} else if (!Character.isSurrogate(c)) {
+				dst[j++] = (byte) (0xE0 | (c >>> 12));
+				dst[j++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+				dst[j++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(src.charAt(i + 1))) {
+				final int cp = Character.toCodePoint(c, src.charAt(++i));
+				dst[j++] = (byte) (0xF0 | (cp >>> 18));
+				dst[j++] = (byte) (0x80 | ((cp >>> 12) & 0x3F));
+				dst[j++] = (byte) (0x80 | ((cp >>> 6) & 0x3F));
+				dst[j++] = (byte) (0x80 | (cp & 0x3F));
+			} else {
+				dst[j++] = REPLACEMENT;
+			}
+		}
+		return j - offset;
+	}
+
+	/**
+	 * Encodes chars into a buffer, starting at the given index. The buffer's
+	 * position and limit are not affected.
+	 * @return the number of bytes written, same as
+	 *         {@link #encodedLength(CharSequence)}
+	 * @throws IndexOutOfBoundsException if the buffer is too small
+	 */
+	public static int encode(@Nonnull final CharSequence src, @Nonnull final ByteBuffer dst,
+			@Nonnegative final int index) {
+		return encode(src, 0, src.length(), dst, index);
+	}
+
+	/**
+	 * Encodes a range of chars into a buffer, starting at the given index. The
+	 * buffer's position and limit are not affected.
+	 * @return the number of bytes written, same as
+	 *         {@link #encodedLength(CharSequence, int, int)}
+	 * @throws IndexOutOfBoundsException if the buffer is too small
+	 */
+	public static int encode(@Nonnull final CharSequence src, @Nonnegative final int srcOffset,
+			@Nonnegative final int length, @Nonnull final ByteBuffer dst, @Nonnegative final int index) {
+		checkRange(src.length(), srcOffset, length);
+		checkRange(dst.limit(), index, 0);
+		final int available = dst.limit() - index;
+		if (available < 3L * length && available < encodedLength(src, srcOffset, length)) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (dst.hasArray()) {
+			return encode(src, srcOffset, length, dst.array(), dst.arrayOffset() + index);
+		}
+		if (dst.isReadOnly()) {
+			throw new ReadOnlyBufferException();
+		}
+		int j = index;
+		final int end = srcOffset + length;
+		for (int i = srcOffset; i < end; i++) {
+			final char c = src.charAt(i);
+			if (c < 0x80) {
+				final int last = i + ascii(src, i, end);
+				for (; i <= last - LONG_LENGTH; i += LONG_LENGTH) {
+					j += FastArrays.putLong(dst, j, pack(src, i));
+				}
+				for (; i < last; i++) {
+					dst.put(j++, (byte) src.charAt(i));
+				}
+				i--;
+			} else if (c < 0x800) {
+				dst.put(j++, (byte) (0xC0 | (c >>> 6)));
+				dst.put(j++, (byte) (0x80 | (c & 0x3F)));
+			} else if (!Character.isSurrogate(c)) {
+				dst.put(j++, (byte) (0xE0 | (c >>> 12)));
+				dst.put(j++, (byte) (0x80 | ((c >>> 6) & 0x3F)));
+				dst.put(j++, (byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(src.charAt(i + 1))) {
+				final int cp = Character.toCodePoint(c, src.charAt(++i));
+				dst.put(j++, (byte) (0xF0 | (cp >>> 18)));
+				dst.put(j++, (byte) (0x80 | ((cp >>> 12) & 0x3F)));
+				dst.put(j++, (byte) (0x80 | ((cp >>> 6) & 0x3F)));
+				dst.put(j++, (byte) (0x80 | (cp & 0x3F)));
+			} else {
+				dst.put(j++, REPLACEMENT);
+			}
+		}
+		return j - index;
+	}
+
+	/**
+	 * @return the number of ASCII chars starting at the given offset
+	 */
+	private static int ascii(final CharSequence src, final int offset, final int end) {
+		int i = offset;
+		while (i < end && src.charAt(i) < 0x80) {
+			i++;
+		}
+		return i - offset;
+	}
+
+	/**
+	 * @return the next 8 chars, which must be ASCII, packed big-endian into a
+	 *         long
+	 */
+	private static long pack(final CharSequence src, final int offset) {
+		long word = 0;
+		for (int i = 0; i < LONG_LENGTH; i++) {
+			word = (word << Byte.SIZE) | src.charAt(offset + i);
+		}
+		return word;
+	}
+
+	/**
+	 * Decodes bytes into a char array.
+	 * @return the number of chars written, same as
+	 *         {@link #decodedLength(byte[], int, int)}
+	 * @throws IllegalArgumentException if the bytes are not well-formed UTF-8
+	 */
+	public static int decode(@Nonnull final byte[] src, @Nonnegative final int offset, @Nonnegative final int length,
+			@Nonnull final char[] dst, @Nonnegative final int dstOffset) {
+		checkRange(src.length, offset, length);
+		checkRange(dst.length, dstOffset, 0);
+		int i = offset;
+		int j = dstOffset;
+		final int end = offset + length;
+		while (i < end) {
+			if (i <= end - LONG_LENGTH && (FastArrays.getLong(src, i) & ASCII_MASK) == 0) {
+				for (final int last = i + LONG_LENGTH; i < last; i++) {
+					dst[j++] = (char) src[i];
+				}
+				continue;
+			}
+			final int b0 = src[i] & BYTE_MASK;
+			if (b0 < 0x80) {
+				dst[j++] = (char) b0;
+				i++;
+				continue;
+			}
+			final int n = sequenceLength(b0, end - i);
+			final int cp = codePoint(n, b0, src[i + 1], n > 2 ? src[i + 2] : 0, n > 3 ? src[i + 3] : 0);
+			i += n;
+			if (n < 4) {
+				dst[j++] = (char) cp;
+			} else {
+				dst[j++] = Character.highSurrogate(cp);
+				dst[j++] = Character.lowSurrogate(cp);
+			}
+		}
+		return j - dstOffset;
+	}
+
+	/**
+	 * Decodes bytes and appends them to a builder.
+	 * @return the number of chars appended
+	 * @throws IllegalArgumentException if the bytes are not well-formed UTF-8,
+	 *             in which case the builder may have been partially appended
+	 */
+	public static int decode(@Nonnull final byte[] src, @Nonnegative final int offset, @Nonnegative final int length,
+			@Nonnull final StringBuilder dst) {
+		checkRange(src.length, offset, length);
+		final int start = dst.length();
+		dst.ensureCapacity(start + length);
+		int i = offset;
+		final int end = offset + length;
+		while (i < end) {
+			if (i <= end - LONG_LENGTH && (FastArrays.getLong(src, i) & ASCII_MASK) == 0) {
+				for (final int last = i + LONG_LENGTH; i < last; i++) {
+					dst.append((char) src[i]);
+				}
+				continue;
+			}
+			final int b0 = src[i] & BYTE_MASK;
+			if (b0 < 0x80) {
+				dst.append((char) b0);
+				i++;
+				continue;
+			}
+			final int n = sequenceLength(b0, end - i);
+			final int cp = codePoint(n, b0, src[i + 1], n > 2 ? src[i + 2] : 0, n > 3 ? src[i + 3] : 0);
+			i += n;
+			if (n < 4) {
+				dst.append((char) cp);
+			} else {
+				dst.append(Character.highSurrogate(cp)).append(Character.lowSurrogate(cp));
+			}
+		}
+		return dst.length() - start;
+	}
+
+	/**
+	 * Decodes bytes of a buffer, starting at the given index, into a char
+	 * array. The buffer's position and limit are not affected.
+	 * @return the number of chars written
+	 * @throws IllegalArgumentException if the bytes are not well-formed UTF-8
+	 */
+	public static int decode(@Nonnull final ByteBuffer src, @Nonnegative final int index,
+			@Nonnegative final int length, @Nonnull final char[] dst, @Nonnegative final int dstOffset) {
+		checkRange(src.limit(), index, length);
+		if (src.hasArray()) {
+			return decode(src.array(), src.arrayOffset() + index, length, dst, dstOffset);
+		}
+		checkRange(dst.length, dstOffset, 0);
+		int i = index;
+		int j = dstOffset;
+		final int end = index + length;
+		while (i < end) {
+			if (i <= end - LONG_LENGTH) {
+				final long word = FastArrays.getLong(src, i);
+				if ((word & ASCII_MASK) == 0) {
+					for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+						dst[j++] = (char) ((word >>> shift) & BYTE_MASK);
+					}
+					i += LONG_LENGTH;
+					continue;
+				}
+			}
+			final int b0 = src.get(i) & BYTE_MASK;
+			if (b0 < 0x80) {
+				dst[j++] = (char) b0;
+				i++;
+				continue;
+			}
+			final int n = sequenceLength(b0, end - i);
+			final int cp = codePoint(n, b0, src.get(i + 1), n > 2 ? src.get(i + 2) : 0, n > 3 ? src.get(i + 3) : 0);
+			i += n;
+			if (n < 4) {
+				dst[j++] = (char) cp;
+			} else {
+				dst[j++] = Character.highSurrogate(cp);
+				dst[j++] = Character.lowSurrogate(cp);
+			}
+		}
+		return j - dstOffset;
+	}
+
+	/**
+	 * Decodes bytes of a buffer, starting at the given index, and appends them
+	 * to a builder. The buffer's position and limit are not affected.
+	 * @return the number of chars appended
+	 * @throws IllegalArgumentException if the bytes are not well-formed UTF-8,
+	 *             in which case the builder may have been partially appended
+	 */
+	public static int decode(@Nonnull final ByteBuffer src, @Nonnegative final int index,
+			@Nonnegative final int length, @Nonnull final StringBuilder dst) {
+		checkRange(src.limit(), index, length);
+		if (src.hasArray()) {
+			return decode(src.array(), src.arrayOffset() + index, length, dst);
+		}
+		final int start = dst.length();
+		dst.ensureCapacity(start + length);
+		int i = index;
+		final int end = index + length;
+		while (i < end) {
+			if (i <= end - LONG_LENGTH) {
+				final long word = FastArrays.getLong(src, i);
+				if ((word & ASCII_MASK) == 0) {
+					for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+						dst.append((char) ((word >>> shift) & BYTE_MASK));
+					}
+					i += LONG_LENGTH;
+					continue;
+				}
+			}
+			final int b0 = src.get(i) & BYTE_MASK;
+			if (b0 < 0x80) {
+				dst.append((char) b0);
+				i++;
+				continue;
+			}
+			final int n = sequenceLength(b0, end - i);
+			final int cp = codePoint(n, b0, src.get(i + 1), n > 2 ? src.get(i + 2) : 0, n > 3 ? src.get(i + 3) : 0);
+			i += n;
+			if (n < 4) {
+				dst.append((char) cp);
+			} else {
+				dst.append(Character.highSurrogate(cp)).append(Character.lowSurrogate(cp));
+			}
+		}
+		return dst.length() - start;
+	}
+
+	/**
+	 * @return the length of the sequence starting with the given (non-ASCII)
+	 *         byte
+	 * @throws IllegalArgumentException if it is not a valid lead byte, or if
+	 *             fewer than the required bytes remain
+	 */
+	private static int sequenceLength(final int b0, final int remaining) {
+		final int n;
+		if (b0 < 0xC2) {
+			throw new IllegalArgumentException(MALFORMED);
+		} else if (b0 < 0xE0) {
+			n = 2;
+		} else if (b0 < 0xF0) {
+			n = 3;
+		} else if (b0 < 0xF5) {
+			n = 4;
+		} else {
+			throw new IllegalArgumentException(MALFORMED);
+		}
+		if (n > remaining) {
+			throw new IllegalArgumentException(MALFORMED);
+		}
+		return n;
+	}
+
+	/**
+	 * @return the code point of a multi-byte sequence of length
+	 *         <code>n</code>; unused trailing bytes are ignored
+	 * @throws IllegalArgumentException if the sequence is overlong, encodes a
+	 *             surrogate, or is out of range
+	 */
+	private static int codePoint(final int n, final int b0, final byte b1, final byte b2, final byte b3) {
+		final int cp;
+		if (n == 2) {
+			cp = ((b0 & 0x1F) << 6) | continuation(b1);
+		} else if (n == 3) {
+			cp = ((b0 & 0x0F) << 12) | (continuation(b1) << 6) | continuation(b2);
+			if (cp < 0x800 || Character.isSurrogate((char) cp)) {
+				throw new IllegalArgumentException(MALFORMED);
+			}
+		} else {
+			cp = ((b0 & 0x07) << 18) | (continuation(b1) << 12) | (continuation(b2) << 6) | continuation(b3);
+			if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT) {
+				throw new IllegalArgumentException(MALFORMED);
+			}
+		}
+		return cp;
+	}
+
+	private static int continuation(final byte b) {
+		if ((b & 0xC0) != 0x80) {
+			throw new IllegalArgumentException(MALFORMED);
+		}
+		return b & 0x3F;
+	}
+
+	private static void checkRange(final int capacity, final int offset, final int length) {
+		if (offset < 0 || length < 0 || offset > capacity - length) {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Java 7 placeholder for the VarHandle backend of {@link FastArrays}. The
+ * actual implementation lives in <code>src/main/java9</code> and replaces this
+ * class in the multi-release JAR when running on Java 9 or later.
+ * 
+ * @author Ricardo Padilha
+ */
+final class VarHandleAccess {
+
+	private VarHandleAccess() {
+		// no instantiation allowed
+		return;
+	}
+
+	/**
+	 * Not a constant, so that callers compiled against this class do not
+	 * inline it.
+	 */
+	static boolean isAvailable() {
+		return false;
+	}
+
+	static short getShort(final byte[] array, final int offset) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putShort(final byte[] array, final int offset, final short value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int getInt(final byte[] array, final int offset) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putInt(final byte[] array, final int offset, final int value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static long getLong(final byte[] array, final int offset) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putLong(final byte[] array, final int offset, final long value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static short getShortLE(final byte[] array, final int offset) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putShortLE(final byte[] array, final int offset, final short value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int getIntLE(final byte[] array, final int offset) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putIntLE(final byte[] array, final int offset, final int value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static long getLongLE(final byte[] array, final int offset) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putLongLE(final byte[] array, final int offset, final long value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static short getShort(final ByteBuffer buffer, final int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putShort(final ByteBuffer buffer, final int index, final short value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int getInt(final ByteBuffer buffer, final int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putInt(final ByteBuffer buffer, final int index, final int value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static long getLong(final ByteBuffer buffer, final int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putLong(final ByteBuffer buffer, final int index, final long value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static short getShortLE(final ByteBuffer buffer, final int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putShortLE(final ByteBuffer buffer, final int index, final short value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int getIntLE(final ByteBuffer buffer, final int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putIntLE(final ByteBuffer buffer, final int index, final int value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static long getLongLE(final ByteBuffer buffer, final int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putLongLE(final ByteBuffer buffer, final int index, final long value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int getIntVolatile(final byte[] array, final int offset) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putIntVolatile(final byte[] array, final int offset, final int value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putIntOrdered(final byte[] array, final int offset, final int value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static boolean compareAndSetInt(final byte[] array, final int offset, final int expected, final int value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int getAndAddInt(final byte[] array, final int offset, final int delta) {
+		throw new UnsupportedOperationException();
+	}
+
+	static long getLongVolatile(final byte[] array, final int offset) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putLongVolatile(final byte[] array, final int offset, final long value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putLongOrdered(final byte[] array, final int offset, final long value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static boolean compareAndSetLong(final byte[] array, final int offset, final long expected, final long value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static long getAndAddLong(final byte[] array, final int offset, final long delta) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int getIntVolatile(final ByteBuffer buffer, final int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putIntVolatile(final ByteBuffer buffer, final int index, final int value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putIntOrdered(final ByteBuffer buffer, final int index, final int value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static boolean compareAndSetInt(final ByteBuffer buffer, final int index, final int expected, final int value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int getAndAddInt(final ByteBuffer buffer, final int index, final int delta) {
+		throw new UnsupportedOperationException();
+	}
+
+	static long getLongVolatile(final ByteBuffer buffer, final int index) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putLongVolatile(final ByteBuffer buffer, final int index, final long value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void putLongOrdered(final ByteBuffer buffer, final int index, final long value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static boolean compareAndSetLong(final ByteBuffer buffer, final int index, final long expected, final long value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static long getAndAddLong(final ByteBuffer buffer, final int index, final long delta) {
+		throw new UnsupportedOperationException();
+	}
+
+}
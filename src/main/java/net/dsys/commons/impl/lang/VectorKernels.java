@@ -0,0 +1,58 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+/**
+ * Java 7 placeholder for the SIMD kernels of {@link FastArrays}. The actual
+ * implementation lives in <code>src/main/java17</code> and replaces this class
+ * in the multi-release JAR when running on Java 17 or later.
+ * 
+ * @author Ricardo Padilha
+ */
+final class VectorKernels {
+
+	private VectorKernels() {
+		// no instantiation allowed
+		return;
+	}
+
+	/**
+	 * Not a constant, so that callers compiled against this class do not
+	 * inline it.
+	 */
+	static boolean isAvailable() {
+		return false;
+	}
+
+	static int mismatch(final byte[] left, final int leftOffset, final byte[] right, final int rightOffset,
+			final int length) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int hashInts(final byte[] array, final int offset, final int ints, final int hashcode) {
+		throw new UnsupportedOperationException();
+	}
+
+	static int indexOf(final byte[] array, final int offset, final int length, final byte value) {
+		throw new UnsupportedOperationException();
+	}
+
+	static void fill(final byte[] array, final int offset, final int length, final byte value) {
+		throw new UnsupportedOperationException();
+	}
+
+}
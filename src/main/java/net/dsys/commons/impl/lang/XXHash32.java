@@ -0,0 +1,399 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import net.dsys.commons.api.lang.BufferChecksum;
+
+/**
+ * Calculation of xxHash32, built on the little-endian word accessors of
+ * {@link FastArrays}. Results are identical to the reference implementation.
+ * Static methods compute one-shot hashes; instances compute streaming hashes,
+ * and may be used as a {@link java.util.zip.Checksum}.
+ *
+ * @see XXHash64
+ * @see https://github.com/Cyan4973/xxHash
+ *
+ * @author Ricardo Padilha
+ */
+public final class XXHash32 implements BufferChecksum {
+
+	private static final int P1 = 0x9E37_79B1;
+	private static final int P2 = 0x85EB_CA77;
+	private static final int P3 = 0xC2B2_AE3D;
+	private static final int P4 = 0x27D4_EB2F;
+	private static final int P5 = 0x1656_67B1;
+
+	private static final int BYTE_MASK = 0xFF;
+	private static final long INT_MASK = 0xFFFF_FFFFL;
+	private static final int INT_LENGTH = Integer.SIZE / Byte.SIZE;
+	private static final int STRIPE_LENGTH = 4 * INT_LENGTH;
+
+	private final int seed;
+	private final byte[] memory;
+	private int memorySize;
+	private long total;
+	private int v1;
+	private int v2;
+	private int v3;
+	private int v4;
+
+	public XXHash32() {
+		this(0);
+	}
+
+	public XXHash32(final int seed) {
+		this.seed = seed;
+		this.memory = new byte[STRIPE_LENGTH];
+		reset();
+	}
+
+	private static int round(final int acc, final int input) {
+		return Integer.rotateLeft(acc + input * P2, 13) * P1;
+	}
+
+	private static int converge(final int v1, final int v2, final int v3, final int v4) {
+		return Integer.rotateLeft(v1, 1) + Integer.rotateLeft(v2, 7) + Integer.rotateLeft(v3, 12)
+				+ Integer.rotateLeft(v4, 18);
+	}
+
+	private static int mixInt(final int h, final int value) {
+		return Integer.rotateLeft(h + value * P3, 17) * P4;
+	}
+
+	private static int mixByte(final int h, final byte value) {
+		return Integer.rotateLeft(h + (value & BYTE_MASK) * P5, 11) * P1;
+	}
+
+	private static int avalanche(final int hash) {
+		int h = hash;
+		h ^= h >>> 15;
+		h *= P2;
+		h ^= h >>> 13;
+		h *= P3;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Mixes the last (less than 16) bytes of the input, and avalanches.
+	 */
+	private static int finish(final int hash, final byte[] array, final int offset, final int length) {
+		int h = hash;
+		int i = offset;
+		final int end = offset + length;
+		for (; i <= end - INT_LENGTH; i += INT_LENGTH) {
+			h = mixInt(h, FastArrays.getIntLE(array, i));
+		}
+		for (; i < end; i++) {
+			h = mixByte(h, array[i]);
+		}
+		return avalanche(h);
+	}
+
+	private static int finish(final int hash, final ByteBuffer buffer, final int offset, final int length) {
+		int h = hash;
+		int i = offset;
+		final int end = offset + length;
+		for (; i <= end - INT_LENGTH; i += INT_LENGTH) {
+			h = mixInt(h, FastArrays.getIntLE(buffer, i));
+		}
+		for (; i < end; i++) {
+			h = mixByte(h, buffer.get(i));
+		}
+		return avalanche(h);
+	}
+
+	private static int finish(final int hash, final long address, final long length) {
+		int h = hash;
+		long i = address;
+		final long end = address + length;
+		for (; i <= end - INT_LENGTH; i += INT_LENGTH) {
+			h = mixInt(h, FastArrays.getIntLE(i));
+		}
+		for (; i < end; i++) {
+			h = mixByte(h, FastArrays.getByte(i));
+		}
+		return avalanche(h);
+	}
+
+	/**
+	 * Calculates the xxHash32 of a byte array, with seed 0.
+	 */
+	public static int hash(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		return hash(array, offset, length, 0);
+	}
+
+	/**
+	 * Calculates the xxHash32 of a byte array.
+	 */
+	public static int hash(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length, final int seed) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		int i = offset;
+		int h;
+		if (length >= STRIPE_LENGTH) {
+			int v1 = seed + P1 + P2;
+			int v2 = seed + P2;
+			int v3 = seed;
+			int v4 = seed - P1;
+			for (final int end = offset + length - STRIPE_LENGTH; i <= end; i += STRIPE_LENGTH) {
+				v1 = round(v1, FastArrays.getIntLE(array, i));
+				v2 = round(v2, FastArrays.getIntLE(array, i + 4));
+				v3 = round(v3, FastArrays.getIntLE(array, i + 8));
+				v4 = round(v4, FastArrays.getIntLE(array, i + 12));
+			}
+			h = converge(v1, v2, v3, v4);
+		} else {
+			h = seed + P5;
+		}
+		h += length;
+		return finish(h, array, i, offset + length - i);
+	}
+
+	/**
+	 * Calculates the xxHash32 of the remaining bytes of a buffer, with seed 0.
+	 * Upon return, the buffer's position will be updated to its limit; its
+	 * limit will not have been changed.
+	 */
+	public static int hash(@Nonnull final ByteBuffer buffer) {
+		final int hash = hash(buffer, buffer.position(), buffer.limit(), 0);
+		buffer.position(buffer.limit());
+		return hash;
+	}
+
+	/**
+	 * Calculates the xxHash32 of the bytes of a buffer between position
+	 * (inclusive) and limit (exclusive). The buffer's position and limit are
+	 * not affected.
+	 */
+	public static int hash(@Nonnull final ByteBuffer buffer, @Nonnegative final int position,
+			@Nonnegative final int limit, final int seed) {
+		if (position < 0 || position > limit || limit > buffer.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		final int length = limit - position;
+		if (buffer.hasArray()) {
+			return hash(buffer.array(), buffer.arrayOffset() + position, length, seed);
+		}
+		if (buffer.isDirect() && FastArrays.backend() == FastArrays.Backend.UNSAFE) {
+			return hash(FastArrays.address(buffer) + position, length, seed);
+		}
+		int i = position;
+		int h;
+		if (length >= STRIPE_LENGTH) {
+			int v1 = seed + P1 + P2;
+			int v2 = seed + P2;
+			int v3 = seed;
+			int v4 = seed - P1;
+			for (final int end = limit - STRIPE_LENGTH; i <= end; i += STRIPE_LENGTH) {
+				v1 = round(v1, FastArrays.getIntLE(buffer, i));
+				v2 = round(v2, FastArrays.getIntLE(buffer, i + 4));
+				v3 = round(v3, FastArrays.getIntLE(buffer, i + 8));
+				v4 = round(v4, FastArrays.getIntLE(buffer, i + 12));
+			}
+			h = converge(v1, v2, v3, v4);
+		} else {
+			h = seed + P5;
+		}
+		h += length;
+		return finish(h, buffer, i, limit - i);
+	}
+
+	/**
+	 * Calculates the xxHash32 of a raw memory range. Requires the Unsafe
+	 * backend of {@link FastArrays}.
+	 */
+	public static int hash(final long address, @Nonnegative final long length, final int seed) {
+		if (length < 0) {
+			throw new IllegalArgumentException("length < 0");
+		}
+		long i = address;
+		int h;
+		if (length >= STRIPE_LENGTH) {
+			int v1 = seed + P1 + P2;
+			int v2 = seed + P2;
+			int v3 = seed;
+			int v4 = seed - P1;
+			for (final long end = address + length - STRIPE_LENGTH; i <= end; i += STRIPE_LENGTH) {
+				v1 = round(v1, FastArrays.getIntLE(i));
+				v2 = round(v2, FastArrays.getIntLE(i + 4));
+				v3 = round(v3, FastArrays.getIntLE(i + 8));
+				v4 = round(v4, FastArrays.getIntLE(i + 12));
+			}
+			h = converge(v1, v2, v3, v4);
+		} else {
+			h = seed + P5;
+		}
+		h += (int) length;
+		return finish(h, i, address + length - i);
+	}
+
+	/**
+	 * Resets the hash to its initial state.
+	 */
+	@Override
+	public void reset() {
+		v1 = seed + P1 + P2;
+		v2 = seed + P2;
+		v3 = seed;
+		v4 = seed - P1;
+		total = 0;
+		memorySize = 0;
+	}
+
+	/**
+	 * Updates the hash with a single byte.
+	 */
+	@Override
+	public void update(final int value) {
+		memory[memorySize++] = (byte) value;
+		total++;
+		if (memorySize == STRIPE_LENGTH) {
+			stripe(memory, 0);
+			memorySize = 0;
+		}
+	}
+
+	/**
+	 * Updates the hash with the specified array of bytes.
+	 */
+	@Override
+	public void update(@Nonnull final byte[] array) {
+		update(array, 0, array.length);
+	}
+
+	/**
+	 * Updates the hash with the specified range of bytes.
+	 */
+	@Override
+	public void update(@Nonnull final byte[] array, @Nonnegative final int offset, @Nonnegative final int length) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		total += length;
+		int i = offset;
+		final int end = offset + length;
+		if (memorySize > 0) {
+			final int count = Math.min(STRIPE_LENGTH - memorySize, length);
+			System.arraycopy(array, i, memory, memorySize, count);
+			memorySize += count;
+			i += count;
+			if (memorySize < STRIPE_LENGTH) {
+				return;
+			}
+			stripe(memory, 0);
+			memorySize = 0;
+		}
+		for (; i <= end - STRIPE_LENGTH; i += STRIPE_LENGTH) {
+			stripe(array, i);
+		}
+		memorySize = end - i;
+		System.arraycopy(array, i, memory, 0, memorySize);
+	}
+
+	/**
+	 * Updates the hash with the remaining bytes of a buffer. Upon return, the
+	 * buffer's position will be updated to its limit; its limit will not have
+	 * been changed.
+	 */
+	@Override
+	public void update(@Nonnull final ByteBuffer buffer) {
+		update(buffer, buffer.position(), buffer.limit());
+		buffer.position(buffer.limit());
+	}
+
+	/**
+	 * Updates the hash with the bytes of a buffer between position (inclusive)
+	 * and limit (exclusive). The buffer's position and limit are not affected.
+	 */
+	@Override
+	public void update(@Nonnull final ByteBuffer buffer, @Nonnegative final int position,
+			@Nonnegative final int limit) {
+		if (position < 0 || position > limit || limit > buffer.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (buffer.hasArray()) {
+			update(buffer.array(), buffer.arrayOffset() + position, limit - position);
+			return;
+		}
+		total += limit - position;
+		int i = position;
+		if (memorySize > 0) {
+			final int count = Math.min(STRIPE_LENGTH - memorySize, limit - position);
+			FastArrays.arrayCopy(buffer, i, memory, memorySize, count);
+			memorySize += count;
+			i += count;
+			if (memorySize < STRIPE_LENGTH) {
+				return;
+			}
+			stripe(memory, 0);
+			memorySize = 0;
+		}
+		for (; i <= limit - STRIPE_LENGTH; i += STRIPE_LENGTH) {
+			v1 = round(v1, FastArrays.getIntLE(buffer, i));
+			v2 = round(v2, FastArrays.getIntLE(buffer, i + 4));
+			v3 = round(v3, FastArrays.getIntLE(buffer, i + 8));
+			v4 = round(v4, FastArrays.getIntLE(buffer, i + 12));
+		}
+		memorySize = limit - i;
+		FastArrays.arrayCopy(buffer, i, memory, 0, memorySize);
+	}
+
+	private void stripe(final byte[] array, final int offset) {
+		v1 = round(v1, FastArrays.getIntLE(array, offset));
+		v2 = round(v2, FastArrays.getIntLE(array, offset + 4));
+		v3 = round(v3, FastArrays.getIntLE(array, offset + 8));
+		v4 = round(v4, FastArrays.getIntLE(array, offset + 12));
+	}
+
+	/**
+	 * @return the hash of all bytes given since the last reset, as an
+	 *         unsigned int, without resetting
+	 */
+	@Override
+	public long getValue() {
+		return hash() & INT_MASK;
+	}
+
+	private int hash() {
+		int h;
+		if (total >= STRIPE_LENGTH) {
+			h = converge(v1, v2, v3, v4);
+		} else {
+			h = seed + P5;
+		}
+		h += (int) total;
+		return finish(h, memory, 0, memorySize);
+	}
+
+	/**
+	 * @return the hash of all bytes given since the last reset, and resets
+	 */
+	public int digest() {
+		final int digest = hash();
+		reset();
+		return digest;
+	}
+
+}
@@ -0,0 +1,410 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+/**
+ * Calculation of xxHash64, built on the little-endian word accessors of
+ * {@link FastArrays}. Results are identical to the reference implementation.
+ * Static methods compute one-shot hashes; instances compute streaming hashes.
+ *
+ * @see https://github.com/Cyan4973/xxHash
+ *
+ * @author Ricardo Padilha
+ */
+public final class XXHash64 {
+
+	private static final long P1 = 0x9E37_79B1_85EB_CA87L;
+	private static final long P2 = 0xC2B2_AE3D_27D4_EB4FL;
+	private static final long P3 = 0x1656_67B1_9E37_79F9L;
+	private static final long P4 = 0x85EB_CA77_C2B2_AE63L;
+	private static final long P5 = 0x27D4_EB2F_1656_67C5L;
+
+	private static final int BYTE_MASK = 0xFF;
+	private static final long INT_MASK = 0xFFFF_FFFFL;
+	private static final int INT_LENGTH = Integer.SIZE / Byte.SIZE;
+	private static final int LONG_LENGTH = Long.SIZE / Byte.SIZE;
+	private static final int STRIPE_LENGTH = 4 * LONG_LENGTH;
+
+	private final long seed;
+	private final byte[] memory;
+	private int memorySize;
+	private long total;
+	private long v1;
+	private long v2;
+	private long v3;
+	private long v4;
+
+	public XXHash64() {
+		this(0);
+	}
+
+	public XXHash64(final long seed) {
+		this.seed = seed;
+		this.memory = new byte[STRIPE_LENGTH];
+		reset();
+	}
+
+	private static long round(final long acc, final long input) {
+		return Long.rotateLeft(acc + input * P2, 31) * P1;
+	}
+
+	private static long mergeRound(final long acc, final long value) {
+		return (acc ^ round(0, value)) * P1 + P4;
+	}
+
+	private static long converge(final long v1, final long v2, final long v3, final long v4) {
+		long h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+		h = mergeRound(h, v1);
+		h = mergeRound(h, v2);
+		h = mergeRound(h, v3);
+		h = mergeRound(h, v4);
+		return h;
+	}
+
+	private static long mixLong(final long h, final long value) {
+		return Long.rotateLeft(h ^ round(0, value), 27) * P1 + P4;
+	}
+
+	private static long mixInt(final long h, final int value) {
+		return Long.rotateLeft(h ^ ((value & INT_MASK) * P1), 23) * P2 + P3;
+	}
+
+	private static long mixByte(final long h, final byte value) {
+		return Long.rotateLeft(h ^ ((value & BYTE_MASK) * P5), 11) * P1;
+	}
+
+	private static long avalanche(final long hash) {
+		long h = hash;
+		h ^= h >>> 33;
+		h *= P2;
+		h ^= h >>> 29;
+		h *= P3;
+		h ^= h >>> 32;
+		return h;
+	}
+
+	/**
+	 * Mixes the last (less than 32) bytes of the input, and avalanches.
+	 */
+	private static long finish(final long hash, final byte[] array, final int offset, final int length) {
+		long h = hash;
+		int i = offset;
+		final int end = offset + length;
+		for (; i <= end - LONG_LENGTH; i += LONG_LENGTH) {
+			h = mixLong(h, FastArrays.getLongLE(array, i));
+		}
+		if (i <= end - INT_LENGTH) {
+			h = mixInt(h, FastArrays.getIntLE(array, i));
+			i += INT_LENGTH;
+		}
+		for (; i < end; i++) {
+			h = mixByte(h, array[i]);
+		}
+		return avalanche(h);
+	}
+
+	private static long finish(final long hash, final ByteBuffer buffer, final int offset, final int length) {
+		long h = hash;
+		int i = offset;
+		final int end = offset + length;
+		for (; i <= end - LONG_LENGTH; i += LONG_LENGTH) {
+			h = mixLong(h, FastArrays.getLongLE(buffer, i));
+		}
+		if (i <= end - INT_LENGTH) {
+			h = mixInt(h, FastArrays.getIntLE(buffer, i));
+			i += INT_LENGTH;
+		}
+		for (; i < end; i++) {
+			h = mixByte(h, buffer.get(i));
+		}
+		return avalanche(h);
+	}
+
+	private static long finish(final long hash, final long address, final long length) {
+		long h = hash;
+		long i = address;
+		final long end = address + length;
+		for (; i <= end - LONG_LENGTH; i += LONG_LENGTH) {
+			h = mixLong(h, FastArrays.getLongLE(i));
+		}
+		if (i <= end - INT_LENGTH) {
+			h = mixInt(h, FastArrays.getIntLE(i));
+			i += INT_LENGTH;
+		}
+		for (; i < end; i++) {
+			h = mixByte(h, FastArrays.getByte(i));
+		}
+		return avalanche(h);
+	}
+
+	/**
+	 * Calculates the xxHash64 of a byte array, with seed 0.
+	 */
+	public static long hash(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length) {
+		return hash(array, offset, length, 0);
+	}
+
+	/**
+	 * Calculates the xxHash64 of a byte array.
+	 */
+	public static long hash(@Nonnull final byte[] array, @Nonnegative final int offset,
+			@Nonnegative final int length, final long seed) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		int i = offset;
+		long h;
+		if (length >= STRIPE_LENGTH) {
+			long v1 = seed + P1 + P2;
+			long v2 = seed + P2;
+			long v3 = seed;
+			long v4 = seed - P1;
+			for (final int end = offset + length - STRIPE_LENGTH; i <= end; i += STRIPE_LENGTH) {
+				v1 = round(v1, FastArrays.getLongLE(array, i));
+				v2 = round(v2, FastArrays.getLongLE(array, i + 8));
+				v3 = round(v3, FastArrays.getLongLE(array, i + 16));
+				v4 = round(v4, FastArrays.getLongLE(array, i + 24));
+			}
+			h = converge(v1, v2, v3, v4);
+		} else {
+			h = seed + P5;
+		}
+		h += length;
+		return finish(h, array, i, offset + length - i);
+	}
+
+	/**
+	 * Calculates the xxHash64 of the remaining bytes of a buffer, with seed 0.
+	 * Upon return, the buffer's position will be updated to its limit; its
+	 * limit will not have been changed.
+	 */
+	public static long hash(@Nonnull final ByteBuffer buffer) {
+		final long hash = hash(buffer, buffer.position(), buffer.limit(), 0);
+		buffer.position(buffer.limit());
+		return hash;
+	}
+
+	/**
+	 * Calculates the xxHash64 of the bytes of a buffer between position
+	 * (inclusive) and limit (exclusive). The buffer's position and limit are
+	 * not affected.
+	 */
+	public static long hash(@Nonnull final ByteBuffer buffer, @Nonnegative final int position,
+			@Nonnegative final int limit, final long seed) {
+		if (position < 0 || position > limit || limit > buffer.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		final int length = limit - position;
+		if (buffer.hasArray()) {
+			return hash(buffer.array(), buffer.arrayOffset() + position, length, seed);
+		}
+		if (buffer.isDirect() && FastArrays.backend() == FastArrays.Backend.UNSAFE) {
+			return hash(FastArrays.address(buffer) + position, length, seed);
+		}
+		int i = position;
+		long h;
+		if (length >= STRIPE_LENGTH) {
+			long v1 = seed + P1 + P2;
+			long v2 = seed + P2;
+			long v3 = seed;
+			long v4 = seed - P1;
+			for (final int end = limit - STRIPE_LENGTH; i <= end; i += STRIPE_LENGTH) {
+				v1 = round(v1, FastArrays.getLongLE(buffer, i));
+				v2 = round(v2, FastArrays.getLongLE(buffer, i + 8));
+				v3 = round(v3, FastArrays.getLongLE(buffer, i + 16));
+				v4 = round(v4, FastArrays.getLongLE(buffer, i + 24));
+			}
+			h = converge(v1, v2, v3, v4);
+		} else {
+			h = seed + P5;
+		}
+		h += length;
+		return finish(h, buffer, i, limit - i);
+	}
+
+	/**
+	 * Calculates the xxHash64 of a raw memory range. Requires the Unsafe
+	 * backend of {@link FastArrays}.
+	 */
+	public static long hash(final long address, @Nonnegative final long length, final long seed) {
+		if (length < 0) {
+			throw new IllegalArgumentException("length < 0");
+		}
+		long i = address;
+		long h;
+		if (length >= STRIPE_LENGTH) {
+			long v1 = seed + P1 + P2;
+			long v2 = seed + P2;
+			long v3 = seed;
+			long v4 = seed - P1;
+			for (final long end = address + length - STRIPE_LENGTH; i <= end; i += STRIPE_LENGTH) {
+				v1 = round(v1, FastArrays.getLongLE(i));
+				v2 = round(v2, FastArrays.getLongLE(i + 8));
+				v3 = round(v3, FastArrays.getLongLE(i + 16));
+				v4 = round(v4, FastArrays.getLongLE(i + 24));
+			}
+			h = converge(v1, v2, v3, v4);
+		} else {
+			h = seed + P5;
+		}
+		h += length;
+		return finish(h, i, address + length - i);
+	}
+
+	/**
+	 * Resets the hash to its initial state.
+	 */
+	public void reset() {
+		v1 = seed + P1 + P2;
+		v2 = seed + P2;
+		v3 = seed;
+		v4 = seed - P1;
+		total = 0;
+		memorySize = 0;
+	}
+
+	/**
+	 * Updates the hash with a single byte.
+	 */
+	public void update(final int value) {
+		memory[memorySize++] = (byte) value;
+		total++;
+		if (memorySize == STRIPE_LENGTH) {
+			stripe(memory, 0);
+			memorySize = 0;
+		}
+	}
+
+	/**
+	 * Updates the hash with the specified array of bytes.
+	 */
+	public void update(@Nonnull final byte[] array) {
+		update(array, 0, array.length);
+	}
+
+	/**
+	 * Updates the hash with the specified range of bytes.
+	 */
+	public void update(@Nonnull final byte[] array, @Nonnegative final int offset, @Nonnegative final int length) {
+		if (offset < 0 || length < 0 || offset > array.length - length) {
+			throw new ArrayIndexOutOfBoundsException();
+		}
+		total += length;
+		int i = offset;
+		final int end = offset + length;
+		if (memorySize > 0) {
+			final int count = Math.min(STRIPE_LENGTH - memorySize, length);
+			System.arraycopy(array, i, memory, memorySize, count);
+			memorySize += count;
+			i += count;
+			if (memorySize < STRIPE_LENGTH) {
+				return;
+			}
+			stripe(memory, 0);
+			memorySize = 0;
+		}
+		for (; i <= end - STRIPE_LENGTH; i += STRIPE_LENGTH) {
+			stripe(array, i);
+		}
+		memorySize = end - i;
+		System.arraycopy(array, i, memory, 0, memorySize);
+	}
+
+	/**
+	 * Updates the hash with the remaining bytes of a buffer. Upon return, the
+	 * buffer's position will be updated to its limit; its limit will not have
+	 * been changed.
+	 */
+	public void update(@Nonnull final ByteBuffer buffer) {
+		update(buffer, buffer.position(), buffer.limit());
+		buffer.position(buffer.limit());
+	}
+
+	/**
+	 * Updates the hash with the bytes of a buffer between position (inclusive)
+	 * and limit (exclusive). The buffer's position and limit are not affected.
+	 */
+	public void update(@Nonnull final ByteBuffer buffer, @Nonnegative final int position,
+			@Nonnegative final int limit) {
+		if (position < 0 || position > limit || limit > buffer.limit()) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (buffer.hasArray()) {
+			update(buffer.array(), buffer.arrayOffset() + position, limit - position);
+			return;
+		}
+		total += limit - position;
+		int i = position;
+		if (memorySize > 0) {
+			final int count = Math.min(STRIPE_LENGTH - memorySize, limit - position);
+			FastArrays.arrayCopy(buffer, i, memory, memorySize, count);
+			memorySize += count;
+			i += count;
+			if (memorySize < STRIPE_LENGTH) {
+				return;
+			}
+			stripe(memory, 0);
+			memorySize = 0;
+		}
+		for (; i <= limit - STRIPE_LENGTH; i += STRIPE_LENGTH) {
+			v1 = round(v1, FastArrays.getLongLE(buffer, i));
+			v2 = round(v2, FastArrays.getLongLE(buffer, i + 8));
+			v3 = round(v3, FastArrays.getLongLE(buffer, i + 16));
+			v4 = round(v4, FastArrays.getLongLE(buffer, i + 24));
+		}
+		memorySize = limit - i;
+		FastArrays.arrayCopy(buffer, i, memory, 0, memorySize);
+	}
+
+	private void stripe(final byte[] array, final int offset) {
+		v1 = round(v1, FastArrays.getLongLE(array, offset));
+		v2 = round(v2, FastArrays.getLongLE(array, offset + 8));
+		v3 = round(v3, FastArrays.getLongLE(array, offset + 16));
+		v4 = round(v4, FastArrays.getLongLE(array, offset + 24));
+	}
+
+	/**
+	 * @return the hash of all bytes given since the last reset, without
+	 *         resetting
+	 */
+	public long getValue() {
+		long h;
+		if (total >= STRIPE_LENGTH) {
+			h = converge(v1, v2, v3, v4);
+		} else {
+			h = seed + P5;
+		}
+		h += total;
+		return finish(h, memory, 0, memorySize);
+	}
+
+	/**
+	 * @return the hash of all bytes given since the last reset, and resets
+	 */
+	public long digest() {
+		final long digest = getValue();
+		reset();
+		return digest;
+	}
+
+}
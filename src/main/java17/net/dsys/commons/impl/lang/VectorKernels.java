@@ -0,0 +1,71 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+/**
+ * SIMD kernels of {@link FastArrays} for Java 17 and later. The kernels are
+ * only enabled when the <code>jdk.incubator.vector</code> module is present in
+ * the boot layer (e.g., <code>--add-modules jdk.incubator.vector</code>); the
+ * classes that use the Vector API are only loaded in that case.
+ * 
+ * @author Ricardo Padilha
+ */
+final class VectorKernels {
+
+	private static final boolean AVAILABLE = probe();
+
+	private VectorKernels() {
+		// no instantiation allowed
+		return;
+	}
+
+	private static boolean probe() {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+			return false;
+		}
+		try {
+			// the Vector API is still incubating: make sure this release links
+			final byte[] probe = new byte[Long.SIZE];
+			VectorKernelsImpl.fill(probe, 0, probe.length, (byte) 1);
+			return VectorKernelsImpl.indexOf(probe, 0, probe.length, (byte) 1) == 0;
+		} catch (final LinkageError | RuntimeException e) {
+			return false;
+		}
+	}
+
+	static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	static int mismatch(final byte[] left, final int leftOffset, final byte[] right, final int rightOffset,
+			final int length) {
+		return VectorKernelsImpl.mismatch(left, leftOffset, right, rightOffset, length);
+	}
+
+	static int hashInts(final byte[] array, final int offset, final int ints, final int hashcode) {
+		return VectorKernelsImpl.hashInts(array, offset, ints, hashcode);
+	}
+
+	static int indexOf(final byte[] array, final int offset, final int length, final byte value) {
+		return VectorKernelsImpl.indexOf(array, offset, length, value);
+	}
+
+	static void fill(final byte[] array, final int offset, final int length, final byte value) {
+		VectorKernelsImpl.fill(array, offset, length, value);
+	}
+
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of the {@link VectorKernels}. Only loaded when
+ * the <code>jdk.incubator.vector</code> module is present. Every kernel has
+ * the same result as the scalar code of {@link FastArrays}.
+ * 
+ * @author Ricardo Padilha
+ */
+final class VectorKernelsImpl {
+
+	private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Byte> INT_BYTES = INTS.withLanes(byte.class);
+	private static final int INT_LENGTH = Integer.SIZE / Byte.SIZE;
+
+	/**
+	 * Reverses the bytes of each int, since lane reinterpretation is
+	 * little-endian and FastArrays ints are big-endian.
+	 */
+	private static final VectorShuffle<Byte> BIG_ENDIAN_INTS = VectorShuffle.fromOp(INT_BYTES,
+			i -> (i & -INT_LENGTH) | (INT_LENGTH - 1 - (i & (INT_LENGTH - 1))));
+
+	/**
+	 * 31^(n - 1 - lane), for the polynomial hash of one block of ints.
+	 */
+	private static final IntVector COEFFICIENTS = IntVector.fromArray(INTS, powers(INTS.length()), 0);
+
+	/**
+	 * 31^n, where n is the number of ints in a block.
+	 */
+	private static final int BLOCK_MULTIPLIER = power(INTS.length());
+
+	private VectorKernelsImpl() {
+		// no instantiation allowed
+		return;
+	}
+
+	private static int power(final int n) {
+		int p = 1;
+		for (int i = 0; i < n; i++) {
+			p *= 31;
+		}
+		return p;
+	}
+
+	private static int[] powers(final int n) {
+		final int[] powers = new int[n];
+		for (int i = 0; i < n; i++) {
+			powers[i] = power(n - 1 - i);
+		}
+		return powers;
+	}
+
+	static int mismatch(final byte[] left, final int leftOffset, final byte[] right, final int rightOffset,
+			final int length) {
+		int pos = 0;
+		for (final int end = BYTES.loopBound(length); pos < end; pos += BYTES.length()) {
+			final ByteVector lv = ByteVector.fromArray(BYTES, left, leftOffset + pos);
+			final ByteVector rv = ByteVector.fromArray(BYTES, right, rightOffset + pos);
+			final VectorMask<Byte> ne = lv.compare(VectorOperators.NE, rv);
+			if (ne.anyTrue()) {
+				return pos + ne.firstTrue();
+			}
+		}
+		for (; pos < length; pos++) {
+			if (left[leftOffset + pos] != right[rightOffset + pos]) {
+				return pos;
+			}
+		}
+		return -1;
+	}
+
+	static int hashInts(final byte[] array, final int offset, final int ints, final int hashcode) {
+		final int lanes = INTS.length();
+		final int blocks = ints / lanes;
+		int index = offset;
+		int hash = hashcode;
+		if (blocks > 0) {
+			IntVector acc = IntVector.zero(INTS);
+			for (int i = 0; i < blocks; i++, index += lanes * INT_LENGTH) {
+				final IntVector v = ByteVector.fromArray(INT_BYTES, array, index)
+						.rearrange(BIG_ENDIAN_INTS)
+						.reinterpretAsInts();
+				acc = acc.mul(BLOCK_MULTIPLIER).add(v);
+				hash *= BLOCK_MULTIPLIER;
+			}
+			hash += acc.mul(COEFFICIENTS).reduceLanes(VectorOperators.ADD);
+		}
+		for (final int end = offset + ints * INT_LENGTH; index < end; index += INT_LENGTH) {
+			hash = 31 * hash + FastArrays.getInt(array, index);
+		}
+		return hash;
+	}
+
+	static int indexOf(final byte[] array, final int offset, final int length, final byte value) {
+		int pos = 0;
+		for (final int end = BYTES.loopBound(length); pos < end; pos += BYTES.length()) {
+			final VectorMask<Byte> eq = ByteVector.fromArray(BYTES, array, offset + pos)
+					.compare(VectorOperators.EQ, value);
+			if (eq.anyTrue()) {
+				return offset + pos + eq.firstTrue();
+			}
+		}
+		for (; pos < length; pos++) {
+			if (array[offset + pos] == value) {
+				return offset + pos;
+			}
+		}
+		return -1;
+	}
+
+	static void fill(final byte[] array, final int offset, final int length, final byte value) {
+		final ByteVector v = ByteVector.broadcast(BYTES, value);
+		int pos = 0;
+		for (final int end = BYTES.loopBound(length); pos < end; pos += BYTES.length()) {
+			v.intoArray(array, offset + pos);
+		}
+		for (; pos < length; pos++) {
+			array[offset + pos] = value;
+		}
+	}
+
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * VarHandle backend of {@link FastArrays} for Java 9 and later. Byte array
+ * views are intrinsified by the JIT, so this backend is as fast as
+ * sun.misc.Unsafe without requiring access to it.
+ * 
+ * @author Ricardo Padilha
+ */
+final class VarHandleAccess {
+
+	private static final VarHandle SHORT = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle SHORT_LE = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle BB_SHORT = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle BB_INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle BB_LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	private static final VarHandle BB_SHORT_LE = MethodHandles.byteBufferViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle BB_INT_LE = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle BB_LONG_LE = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+	private static final VarHandle NATIVE_INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.nativeOrder());
+	private static final VarHandle NATIVE_LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+	private static final VarHandle BB_NATIVE_INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+	private static final VarHandle BB_NATIVE_LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+	private VarHandleAccess() {
+		// no instantiation allowed
+		return;
+	}
+
+	/**
+	 * Not a constant, so that callers compiled against this class do not
+	 * inline it.
+	 */
+	static boolean isAvailable() {
+		return true;
+	}
+
+	static short getShort(final byte[] array, final int offset) {
+		return (short) SHORT.get(array, offset);
+	}
+
+	static void putShort(final byte[] array, final int offset, final short value) {
+		SHORT.set(array, offset, value);
+	}
+
+	static int getInt(final byte[] array, final int offset) {
+		return (int) INT.get(array, offset);
+	}
+
+	static void putInt(final byte[] array, final int offset, final int value) {
+		INT.set(array, offset, value);
+	}
+
+	static long getLong(final byte[] array, final int offset) {
+		return (long) LONG.get(array, offset);
+	}
+
+	static void putLong(final byte[] array, final int offset, final long value) {
+		LONG.set(array, offset, value);
+	}
+
+	static short getShortLE(final byte[] array, final int offset) {
+		return (short) SHORT_LE.get(array, offset);
+	}
+
+	static void putShortLE(final byte[] array, final int offset, final short value) {
+		SHORT_LE.set(array, offset, value);
+	}
+
+	static int getIntLE(final byte[] array, final int offset) {
+		return (int) INT_LE.get(array, offset);
+	}
+
+	static void putIntLE(final byte[] array, final int offset, final int value) {
+		INT_LE.set(array, offset, value);
+	}
+
+	static long getLongLE(final byte[] array, final int offset) {
+		return (long) LONG_LE.get(array, offset);
+	}
+
+	static void putLongLE(final byte[] array, final int offset, final long value) {
+		LONG_LE.set(array, offset, value);
+	}
+
+	static short getShort(final ByteBuffer buffer, final int index) {
+		return (short) BB_SHORT.get(buffer, index);
+	}
+
+	static void putShort(final ByteBuffer buffer, final int index, final short value) {
+		BB_SHORT.set(buffer, index, value);
+	}
+
+	static int getInt(final ByteBuffer buffer, final int index) {
+		return (int) BB_INT.get(buffer, index);
+	}
+
+	static void putInt(final ByteBuffer buffer, final int index, final int value) {
+		BB_INT.set(buffer, index, value);
+	}
+
+	static long getLong(final ByteBuffer buffer, final int index) {
+		return (long) BB_LONG.get(buffer, index);
+	}
+
+	static void putLong(final ByteBuffer buffer, final int index, final long value) {
+		BB_LONG.set(buffer, index, value);
+	}
+
+	static short getShortLE(final ByteBuffer buffer, final int index) {
+		return (short) BB_SHORT_LE.get(buffer, index);
+	}
+
+	static void putShortLE(final ByteBuffer buffer, final int index, final short value) {
+		BB_SHORT_LE.set(buffer, index, value);
+	}
+
+	static int getIntLE(final ByteBuffer buffer, final int index) {
+		return (int) BB_INT_LE.get(buffer, index);
+	}
+
+	static void putIntLE(final ByteBuffer buffer, final int index, final int value) {
+		BB_INT_LE.set(buffer, index, value);
+	}
+
+	static long getLongLE(final ByteBuffer buffer, final int index) {
+		return (long) BB_LONG_LE.get(buffer, index);
+	}
+
+	static void putLongLE(final ByteBuffer buffer, final int index, final long value) {
+		BB_LONG_LE.set(buffer, index, value);
+	}
+
+	static int getIntVolatile(final byte[] array, final int offset) {
+		return (int) NATIVE_INT.getVolatile(array, offset);
+	}
+
+	static void putIntVolatile(final byte[] array, final int offset, final int value) {
+		NATIVE_INT.setVolatile(array, offset, value);
+	}
+
+	static void putIntOrdered(final byte[] array, final int offset, final int value) {
+		NATIVE_INT.setRelease(array, offset, value);
+	}
+
+	static boolean compareAndSetInt(final byte[] array, final int offset, final int expected, final int value) {
+		return NATIVE_INT.compareAndSet(array, offset, expected, value);
+	}
+
+	static int getAndAddInt(final byte[] array, final int offset, final int delta) {
+		return (int) NATIVE_INT.getAndAdd(array, offset, delta);
+	}
+
+	static long getLongVolatile(final byte[] array, final int offset) {
+		return (long) NATIVE_LONG.getVolatile(array, offset);
+	}
+
+	static void putLongVolatile(final byte[] array, final int offset, final long value) {
+		NATIVE_LONG.setVolatile(array, offset, value);
+	}
+
+	static void putLongOrdered(final byte[] array, final int offset, final long value) {
+		NATIVE_LONG.setRelease(array, offset, value);
+	}
+
+	static boolean compareAndSetLong(final byte[] array, final int offset, final long expected, final long value) {
+		return NATIVE_LONG.compareAndSet(array, offset, expected, value);
+	}
+
+	static long getAndAddLong(final byte[] array, final int offset, final long delta) {
+		return (long) NATIVE_LONG.getAndAdd(array, offset, delta);
+	}
+
+	static int getIntVolatile(final ByteBuffer buffer, final int index) {
+		checkAligned(buffer, index, Integer.BYTES);
+		return (int) BB_NATIVE_INT.getVolatile(buffer, index);
+	}
+
+	static void putIntVolatile(final ByteBuffer buffer, final int index, final int value) {
+		checkAligned(buffer, index, Integer.BYTES);
+		BB_NATIVE_INT.setVolatile(buffer, index, value);
+	}
+
+	static void putIntOrdered(final ByteBuffer buffer, final int index, final int value) {
+		checkAligned(buffer, index, Integer.BYTES);
+		BB_NATIVE_INT.setRelease(buffer, index, value);
+	}
+
+	static boolean compareAndSetInt(final ByteBuffer buffer, final int index, final int expected, final int value) {
+		checkAligned(buffer, index, Integer.BYTES);
+		return BB_NATIVE_INT.compareAndSet(buffer, index, expected, value);
+	}
+
+	static int getAndAddInt(final ByteBuffer buffer, final int index, final int delta) {
+		checkAligned(buffer, index, Integer.BYTES);
+		return (int) BB_NATIVE_INT.getAndAdd(buffer, index, delta);
+	}
+
+	static long getLongVolatile(final ByteBuffer buffer, final int index) {
+		checkAligned(buffer, index, Long.BYTES);
+		return (long) BB_NATIVE_LONG.getVolatile(buffer, index);
+	}
+
+	static void putLongVolatile(final ByteBuffer buffer, final int index, final long value) {
+		checkAligned(buffer, index, Long.BYTES);
+		BB_NATIVE_LONG.setVolatile(buffer, index, value);
+	}
+
+	static void putLongOrdered(final ByteBuffer buffer, final int index, final long value) {
+		checkAligned(buffer, index, Long.BYTES);
+		BB_NATIVE_LONG.setRelease(buffer, index, value);
+	}
+
+	static boolean compareAndSetLong(final ByteBuffer buffer, final int index, final long expected, final long value) {
+		checkAligned(buffer, index, Long.BYTES);
+		return BB_NATIVE_LONG.compareAndSet(buffer, index, expected, value);
+	}
+
+	static long getAndAddLong(final ByteBuffer buffer, final int index, final long delta) {
+		checkAligned(buffer, index, Long.BYTES);
+		return (long) BB_NATIVE_LONG.getAndAdd(buffer, index, delta);
+	}
+
+	/**
+	 * Atomic access modes require aligned addresses; the view handles would
+	 * throw IllegalStateException instead.
+	 */
+	private static void checkAligned(final ByteBuffer buffer, final int index, final int length) {
+		if (buffer.alignmentOffset(index, length) != 0) {
+			throw new IllegalArgumentException("unaligned access");
+		}
+	}
+
+}
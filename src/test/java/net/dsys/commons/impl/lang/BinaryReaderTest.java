@@ -0,0 +1,170 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import net.dsys.commons.api.lang.Factory;
+
+import org.junit.Test;
+
+/**
+ * @author Ricardo Padilha
+ */
+public class BinaryReaderTest {
+
+	private static final String TEXT = "chunk \u00e9\u00e8 \u20ac\ud83d\ude00 chunk";
+
+	/**
+	 * @return a prefix of {@link #TEXT} that does not split a surrogate pair
+	 */
+	private static String prefix(final Random random) {
+		final int count = random.nextInt(TEXT.codePointCount(0, TEXT.length()) + 1);
+		return TEXT.substring(0, TEXT.offsetByCodePoints(0, count));
+	}
+
+	/**
+	 * Writes the same fields as {@link #read(BinaryReader, long)}.
+	 */
+	private static void write(final BinaryWriter writer, final long seed) {
+		final Random random = new Random(seed);
+		for (int i = 0; i < 50; i++) {
+			writer.putByte((byte) random.nextInt());
+			writer.putShort((short) random.nextInt());
+			writer.putIntLE(random.nextInt());
+			writer.putLong(random.nextLong());
+			writer.putVarInt(random.nextInt() >>> random.nextInt(32));
+			writer.putVarLong(random.nextLong() >>> random.nextInt(64));
+			final byte[] bytes = new byte[random.nextInt(40)];
+			random.nextBytes(bytes);
+			writer.putSlice(bytes, 0, bytes.length);
+			writer.putString(prefix(random));
+			writer.putDouble(random.nextDouble());
+		}
+	}
+
+	private static void read(final BinaryReader reader, final long seed) {
+		final Random random = new Random(seed);
+		final BinaryReader slice = new BinaryReader();
+		for (int i = 0; i < 50; i++) {
+			assertEquals((byte) random.nextInt(), reader.getByte());
+			assertEquals((short) random.nextInt(), reader.getShort());
+			assertEquals(random.nextInt(), reader.getIntLE());
+			assertEquals(random.nextLong(), reader.getLong());
+			assertEquals(random.nextInt() >>> random.nextInt(32), reader.getVarInt());
+			assertEquals(random.nextLong() >>> random.nextInt(64), reader.getVarLong());
+			final byte[] bytes = new byte[random.nextInt(40)];
+			random.nextBytes(bytes);
+			if (i % 2 == 0) {
+				assertEquals(ByteBuffer.wrap(bytes), reader.getSlice());
+			} else {
+				reader.getSlice(slice);
+				assertEquals(bytes.length, slice.remaining());
+				final byte[] actual = new byte[bytes.length];
+				slice.getBytes(actual);
+				assertArrayEquals(bytes, actual);
+				assertFalse(slice.hasRemaining());
+			}
+			assertEquals(prefix(random), reader.getString());
+			assertEquals(random.nextDouble(), reader.getDouble(), 0);
+		}
+		assertFalse(reader.hasRemaining());
+	}
+
+	@Test
+	public void chunkedRoundTrip() {
+		for (final int size : new int[] { FastArrays.VARLONG_MAX_LENGTH, 13, 64, 1000 }) {
+			final Factory<ByteBuffer> factory = new Factory<ByteBuffer>() {
+				@Override
+				public ByteBuffer newInstance() {
+					return ByteBuffer.allocateDirect(size);
+				}
+			};
+			final BinaryWriter writer = new BinaryWriter(factory);
+			write(writer, size);
+			final ByteBuffer[] chunks = writer.buffers();
+			if (size < 1000) {
+				assertTrue(chunks.length > 1);
+			}
+			final BinaryReader reader = new BinaryReader().wrap(chunks);
+			assertEquals(writer.length(), reader.remaining());
+			read(reader, size);
+			assertEquals(writer.length(), reader.position());
+			try {
+				reader.getByte();
+				fail();
+			} catch (final BufferUnderflowException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void singleBufferRoundTrip() {
+		final BinaryWriter writer = new BinaryWriter();
+		write(writer, 5);
+		read(new BinaryReader(writer.buffer()), 5);
+	}
+
+	@Test
+	public void varintCutOffAtEnd() {
+		final byte[] array = { (byte) 0x81, (byte) 0x80, (byte) 0x80, 0x01, 0, 0, 0, 0, 0, 0, 0, 0 };
+		for (int length = 0; length < 4; length++) {
+			final BinaryReader reader = new BinaryReader();
+			reader.wrap(ByteBuffer.wrap(array), 0, length);
+			try {
+				reader.getVarInt();
+				fail();
+			} catch (final BufferUnderflowException e) {
+				assertEquals(0, reader.position());
+			}
+			reader.wrap(ByteBuffer.wrap(array), 0, length);
+			try {
+				reader.getVarLong();
+				fail();
+			} catch (final BufferUnderflowException e) {
+				assertEquals(0, reader.position());
+			}
+		}
+		final BinaryReader reader = new BinaryReader(ByteBuffer.wrap(array, 0, 4));
+		assertEquals(1 + (1 << 21), reader.getVarInt());
+		assertEquals(0, reader.remaining());
+	}
+
+	@Test
+	public void sliceCutOffAtEnd() {
+		final BinaryWriter writer = new BinaryWriter();
+		writer.putSlice(new byte[10], 0, 10);
+		final ByteBuffer written = writer.buffer();
+		final BinaryReader reader = new BinaryReader(written.array(), 0, written.remaining() - 1);
+		try {
+			reader.getSlice();
+			fail();
+		} catch (final BufferUnderflowException e) {
+			assertEquals(0, reader.position());
+		}
+	}
+
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link CRC32C} against a bitwise reference. In the multi-release JAR
+ * runs arrays and buffers are delegated to {@link java.util.zip.CRC32C},
+ * except in the run that sets {@value CRC32C#PURE_PROPERTY}.
+ *
+ * @author Ricardo Padilha
+ */
+public class CRC32CTest {
+
+	private static final int POLYNOMIAL = 0x82F6_3B78;
+
+	private static int reference(final byte[] array, final int offset, final int length) {
+		int crc = 0xFFFF_FFFF;
+		for (int i = offset; i < offset + length; i++) {
+			crc ^= array[i] & 0xFF;
+			for (int k = 0; k < Byte.SIZE; k++) {
+				crc = (crc >>> 1) ^ (POLYNOMIAL & -(crc & 1));
+			}
+		}
+		return ~crc;
+	}
+
+	private static int reference(final ByteBuffer bigEndian) {
+		return reference(bigEndian.array(), 0, bigEndian.position());
+	}
+
+	/**
+	 * @return the same bytes in a heap buffer, a heap buffer with a non-zero
+	 *         array offset, a direct buffer, and read-only views of each
+	 */
+	private static ByteBuffer[] buffers(final byte[] array) {
+		final ByteBuffer heap = ByteBuffer.allocate(array.length + 3);
+		heap.position(3);
+		final ByteBuffer offset = heap.slice();
+		offset.put(array).clear();
+		final ByteBuffer direct = ByteBuffer.allocateDirect(array.length);
+		direct.put(array).clear();
+		final ByteBuffer wrapped = ByteBuffer.wrap(array);
+		return new ByteBuffer[] { wrapped, offset, direct, wrapped.asReadOnlyBuffer(), offset.asReadOnlyBuffer(),
+				direct.asReadOnlyBuffer() };
+	}
+
+	@Test
+	public void checkValue() {
+		assertEquals(0xE306_9283, CRC32C.digest("123456789".getBytes()));
+	}
+
+	/**
+	 * Test vectors of RFC 3720 (iSCSI), appendix B.4.
+	 */
+	@Test
+	public void rfc3720() {
+		final byte[] zeros = new byte[32];
+		final byte[] ones = new byte[32];
+		final byte[] incrementing = new byte[32];
+		final byte[] decrementing = new byte[32];
+		for (int i = 0; i < 32; i++) {
+			ones[i] = (byte) 0xFF;
+			incrementing[i] = (byte) i;
+			decrementing[i] = (byte) (31 - i);
+		}
+		assertEquals(0x8A91_36AA, CRC32C.digest(zeros));
+		assertEquals(0x62A8_AB43, CRC32C.digest(ones));
+		assertEquals(0x46DD_794E, CRC32C.digest(incrementing));
+		assertEquals(0x113F_DB5C, CRC32C.digest(decrementing));
+	}
+
+	@Test
+	public void mode() {
+		if (Boolean.getBoolean(CRC32C.PURE_PROPERTY)) {
+			assertFalse(CRC32C.isIntrinsic());
+			return;
+		}
+		MultiRelease.requireIntrinsicCRC32C();
+		assertTrue(CRC32C.isIntrinsic());
+	}
+
+	@Test
+	public void arrays() {
+		final Random random = new Random(3);
+		for (int i = 0; i < 500; i++) {
+			final byte[] array = new byte[random.nextInt(300)];
+			random.nextBytes(array);
+			final int offset = random.nextInt(array.length + 1);
+			final int length = random.nextInt(array.length - offset + 1);
+			final int expected = reference(array, offset, length);
+			assertEquals(expected, CRC32C.digest(array, offset, length));
+
+			final CRC32C crc = new CRC32C();
+			final int split = random.nextInt(length + 1);
+			crc.update(array, offset, split);
+			if (split < length) {
+				crc.update(array[offset + split]);
+				crc.update(array, offset + split + 1, length - split - 1);
+			}
+			assertEquals(expected & 0xFFFF_FFFFL, crc.getValue());
+			assertEquals(expected, crc.digest());
+			assertEquals(0, crc.getValue());
+		}
+	}
+
+	@Test
+	public void buffers() {
+		final Random random = new Random(4);
+		for (int i = 0; i < 200; i++) {
+			final byte[] array = new byte[random.nextInt(300)];
+			random.nextBytes(array);
+			final int position = random.nextInt(array.length + 1);
+			final int limit = position + random.nextInt(array.length - position + 1);
+			final int expected = reference(array, position, limit - position);
+			for (final ByteBuffer buffer : buffers(array)) {
+				final String name = buffer.toString();
+				assertEquals(name, expected, CRC32C.digest(buffer, position, limit));
+				assertEquals(name, 0, buffer.position());
+				assertEquals(name, array.length, buffer.limit());
+
+				final CRC32C crc = new CRC32C();
+				final int split = position + random.nextInt(limit - position + 1);
+				crc.update(buffer, position, split);
+				crc.update(buffer, split, limit);
+				assertEquals(name, expected, crc.digest());
+
+				buffer.limit(limit).position(position);
+				assertEquals(name, expected, CRC32C.digest(buffer));
+				assertEquals(name, limit, buffer.position());
+				buffer.position(position);
+				crc.update(buffer);
+				assertEquals(name, expected, crc.digest());
+				assertEquals(name, limit, buffer.position());
+				assertEquals(name, limit, buffer.limit());
+			}
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void bufferRangeBeyondLimit() {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(16);
+		buffer.limit(8);
+		CRC32C.digest(buffer, 0, 9);
+	}
+
+	private static final long[] LONGS = { 0, 1, -1, 0x0123_4567_89AB_CDEFL, Long.MIN_VALUE, Long.MAX_VALUE,
+			0x8000_0000L, 0xFFFF_FFFFL };
+
+	@Test
+	public void primitiveDigests() {
+		for (final long a : LONGS) {
+			final int ia = (int) (a >>> Integer.SIZE);
+			final int ib = (int) a;
+			assertEquals(reference(ByteBuffer.allocate(8).putLong(a)), CRC32C.digest(a));
+			assertEquals(reference(ByteBuffer.allocate(4).putInt(ib)), CRC32C.digest(ib));
+			assertEquals(reference(ByteBuffer.allocate(8).putInt(ia).putInt(ib)), CRC32C.digest(ia, ib));
+			for (final long b : LONGS) {
+				assertEquals(reference(ByteBuffer.allocate(16).putLong(a).putLong(b)), CRC32C.digest(a, b));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author Ricardo Padilha
+ */
+public class CRC32Test {
+
+	private static final int LENGTH = (5 << 20) + 123;
+
+	private static ForkJoinPool pool;
+	private static byte[] data;
+
+	@BeforeClass
+	public static void setUp() {
+		// more than one worker, so that ranges are split on any machine
+		pool = new ForkJoinPool(4);
+		data = new byte[LENGTH];
+		new Random(9).nextBytes(data);
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		pool.shutdown();
+	}
+
+	private static int jdk(final byte[] array, final int offset, final int length) {
+		final java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+		crc.update(array, offset, length);
+		return (int) crc.getValue();
+	}
+
+	@Test
+	public void checkValue() {
+		assertEquals(0xCBF4_3926, CRC32.digest("123456789".getBytes()));
+	}
+
+	private static final long[] LONGS = { 0, 1, -1, 0x0123_4567_89AB_CDEFL, Long.MIN_VALUE, Long.MAX_VALUE,
+			0x8000_0000L, 0xFFFF_FFFFL };
+
+	private static int jdk(final ByteBuffer bigEndian) {
+		return jdk(bigEndian.array(), 0, bigEndian.position());
+	}
+
+	@Test
+	public void primitiveDigests() {
+		for (final long a : LONGS) {
+			final int ia = (int) (a >>> Integer.SIZE);
+			final int ib = (int) a;
+			assertEquals(jdk(ByteBuffer.allocate(8).putLong(a)), CRC32.digest(a));
+			assertEquals(jdk(ByteBuffer.allocate(4).putInt(ib)), CRC32.digest(ib));
+			assertEquals(jdk(ByteBuffer.allocate(8).putInt(ia).putInt(ib)), CRC32.digest(ia, ib));
+			assertEquals(jdk(ByteBuffer.allocate(8).putInt(ib).putInt(ia)), CRC32.digest(new int[] { ib, ia }));
+			for (final long b : LONGS) {
+				final ByteBuffer expected = ByteBuffer.allocate(16).putLong(a).putLong(b);
+				assertEquals(jdk(expected), CRC32.digest(a, b));
+				assertEquals(jdk(expected), CRC32.digest(new long[] { a, b }));
+				final CRC32 crc = new CRC32();
+				crc.updateLong(a);
+				crc.updateLong(b);
+				assertEquals(jdk(expected), crc.digest());
+				crc.reset();
+				crc.updateInt(ia);
+				crc.updateInt(ib);
+				crc.updateLong(b);
+				assertEquals(jdk(expected), crc.digest());
+			}
+		}
+		assertEquals(jdk(ByteBuffer.allocate(0)), CRC32.digest(new long[0]));
+	}
+
+	@Test
+	public void combine() {
+		final Random random = new Random(1);
+		for (int i = 0; i < 500; i++) {
+			final byte[] array = new byte[random.nextInt(2000)];
+			random.nextBytes(array);
+			final int k = random.nextInt(array.length + 1);
+			final int crcA = jdk(array, 0, k);
+			final int crcB = jdk(array, k, array.length - k);
+			assertEquals(jdk(array, 0, array.length), CRC32.combine(crcA, crcB, array.length - k));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void combineNegativeLength() {
+		CRC32.combine(0, 0, -1);
+	}
+
+	@Test
+	public void parallelDigestArray() {
+		assertEquals(jdk(data, 0, LENGTH), CRC32.parallelDigest(pool, data, 0, LENGTH));
+		assertEquals(jdk(data, 5, LENGTH - 9), CRC32.parallelDigest(pool, data, 5, LENGTH - 9));
+		assertEquals(jdk(data, 0, LENGTH), CRC32.parallelDigest(data, 0, LENGTH));
+	}
+
+	@Test
+	public void parallelDigestBuffer() {
+		final ByteBuffer direct = ByteBuffer.allocateDirect(LENGTH);
+		direct.put(data).clear();
+		assertEquals(jdk(data, 0, LENGTH), CRC32.parallelDigest(pool, direct, 0, LENGTH));
+		assertEquals(jdk(data, 7, LENGTH - 8), CRC32.parallelDigest(pool, direct, 7, LENGTH - 1));
+		assertEquals(0, direct.position());
+		assertEquals(LENGTH, direct.limit());
+		final ByteBuffer heap = ByteBuffer.wrap(data);
+		assertEquals(jdk(data, 3, LENGTH - 3), CRC32.parallelDigest(pool, heap, 3, LENGTH));
+		FastArrays.release(direct);
+	}
+
+	@Test
+	public void parallelDigestRegion() throws IOException {
+		final Path file = Files.createTempFile("crc32", ".bin");
+		try {
+			Files.write(file, data);
+			try (final MappedRegion region = new MappedRegion(file, MapMode.READ_ONLY, 1 << 20)) {
+				assertEquals(jdk(data, 0, LENGTH), CRC32.parallelDigest(pool, region, 0, region.length()));
+				assertEquals(jdk(data, 3, LENGTH - 3), CRC32.parallelDigest(pool, region, 3, region.length() - 3));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+import net.dsys.commons.api.lang.Factory;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link CheckedReadableByteChannel} and
+ * {@link CheckedWritableByteChannel} update their checksum with exactly the
+ * bytes transferred by partial reads and writes, and leave the buffer where
+ * the wrapped channel left it.
+ *
+ * @author Ricardo Padilha
+ */
+public class CheckedChannelsTest {
+
+	/**
+	 * Larger than the scratch array of {@link ChecksumBuffers}, so that
+	 * direct buffers are copied in more than one piece.
+	 */
+	private static final int CAPACITY = 2 * 8192 + 77;
+	private static final int START = 5;
+	private static final int END = CAPACITY - 3;
+	private static final int SOURCE_LENGTH = 3 * 8192 + 123;
+
+	/**
+	 * Byte counts returned by successive calls of the wrapped channels,
+	 * further limited by the bytes remaining.
+	 */
+	private static final int[][] CHUNKS = { { 1, 7, 0, 300 }, { 8192, 8193 }, { 20000 } };
+
+	@SuppressWarnings("unchecked")
+	private static Factory<Checksum>[] checksums() {
+		return new Factory[] { new Factory<Checksum>() {
+			@Override
+			public Checksum newInstance() {
+				return new java.util.zip.Adler32();
+			}
+		}, new Factory<Checksum>() {
+			@Override
+			public Checksum newInstance() {
+				return new java.util.zip.CRC32();
+			}
+		}, new Factory<Checksum>() {
+			@Override
+			public Checksum newInstance() {
+				return new CRC32C();
+			}
+		}, };
+	}
+
+	/**
+	 * @return heap, offset heap, direct, and offset direct buffers of
+	 *         {@link #CAPACITY} bytes, filled with junk
+	 */
+	private static ByteBuffer[] buffers(final Random random) {
+		final byte[] junk = new byte[CAPACITY + 16];
+		random.nextBytes(junk);
+		final ByteBuffer direct = ByteBuffer.allocateDirect(CAPACITY + 16);
+		direct.put(junk).position(16);
+		return new ByteBuffer[] {
+				ByteBuffer.wrap(junk.clone(), 0, CAPACITY).slice(),
+				ByteBuffer.wrap(junk.clone(), 16, CAPACITY).slice(),
+				(ByteBuffer) ByteBuffer.allocateDirect(CAPACITY).put(junk, 0, CAPACITY).clear(),
+				direct.slice(), };
+	}
+
+	private static byte[] source(final Random random) {
+		final byte[] source = new byte[SOURCE_LENGTH];
+		random.nextBytes(source);
+		return source;
+	}
+
+	@Test
+	public void scratch() {
+		assertNull(ChecksumBuffers.scratch(new CRC32C()));
+		assertNull(ChecksumBuffers.scratch(new Adler32()));
+		assertNotNull(ChecksumBuffers.scratch(new java.util.zip.Adler32()));
+	}
+
+	@Test
+	public void updateRange() {
+		final Random random = new Random(1);
+		for (final Factory<Checksum> factory : checksums()) {
+			for (final ByteBuffer buffer : buffers(random)) {
+				buffer.limit(END).position(START);
+				final byte[] bytes = new byte[CAPACITY];
+				((ByteBuffer) buffer.duplicate().clear()).get(bytes);
+				for (final int[] range : new int[][] { { 0, 0 }, { 0, END }, { START, END }, { 8190, 8195 },
+						{ 1, 2 * 8192 + 1 } }) {
+					final Checksum checksum = factory.newInstance();
+					ChecksumBuffers.update(checksum, ChecksumBuffers.scratch(checksum), buffer, range[0], range[1]);
+					final Checksum reference = factory.newInstance();
+					reference.update(bytes, range[0], range[1] - range[0]);
+					assertEquals(reference.getValue(), checksum.getValue());
+					assertEquals(START, buffer.position());
+					assertEquals(END, buffer.limit());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void partialReads() throws IOException {
+		final Random random = new Random(2);
+		for (final int[] chunks : CHUNKS) {
+			for (final Factory<Checksum> factory : checksums()) {
+				for (final ByteBuffer buffer : buffers(random)) {
+					final byte[] source = source(random);
+					final ChunkedReadableChannel channel = new ChunkedReadableChannel(source, chunks);
+					final CheckedReadableByteChannel checked = new CheckedReadableByteChannel(channel,
+							factory.newInstance());
+					final Checksum reference = factory.newInstance();
+					buffer.limit(END).position(START);
+					int total = 0;
+					int n;
+					while ((n = checked.read(buffer)) >= 0) {
+						assertEquals(channel.position, buffer.position());
+						assertEquals(channel.limit, buffer.limit());
+						assertEquals(END, buffer.limit());
+						reference.update(source, total, n);
+						total += n;
+						assertEquals(reference.getValue(), checked.getChecksum().getValue());
+						if (!buffer.hasRemaining()) {
+							buffer.position(START);
+						}
+					}
+					assertEquals(SOURCE_LENGTH, total);
+					assertEquals(reference.getValue(), checked.getChecksum().getValue());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void partialWrites() throws IOException {
+		final Random random = new Random(3);
+		for (final int[] chunks : CHUNKS) {
+			for (final Factory<Checksum> factory : checksums()) {
+				for (final ByteBuffer buffer : buffers(random)) {
+					final byte[] source = source(random);
+					final ChunkedWritableChannel channel = new ChunkedWritableChannel(chunks);
+					final CheckedWritableByteChannel checked = new CheckedWritableByteChannel(channel,
+							factory.newInstance());
+					final Checksum reference = factory.newInstance();
+					for (int offset = 0; offset < SOURCE_LENGTH;) {
+						final int count = Math.min(END - START, SOURCE_LENGTH - offset);
+						buffer.limit(START + count).position(START);
+						buffer.duplicate().put(source, offset, count);
+						offset += count;
+						while (buffer.hasRemaining()) {
+							final int written = channel.sink.size();
+							final int n = checked.write(buffer);
+							assertEquals(channel.sink.size() - written, n);
+							assertEquals(channel.position, buffer.position());
+							assertEquals(channel.limit, buffer.limit());
+							assertEquals(START + count, buffer.limit());
+							reference.update(source, written, n);
+							assertEquals(reference.getValue(), checked.getChecksum().getValue());
+						}
+					}
+					assertArrayEquals(source, channel.sink.toByteArray());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads from an array, at most the next chunk of bytes per call, and
+	 * records where it left the buffer.
+	 */
+	private static final class ChunkedReadableChannel implements ReadableByteChannel {
+
+		private final byte[] source;
+		private final int[] chunks;
+		private int offset;
+		private int calls;
+		int position;
+		int limit;
+
+		ChunkedReadableChannel(final byte[] source, final int[] chunks) {
+			this.source = source;
+			this.chunks = chunks;
+		}
+
+		@Override
+		public int read(final ByteBuffer dst) {
+			if (offset == source.length) {
+				position = dst.position();
+				limit = dst.limit();
+				return -1;
+			}
+			final int chunk = chunks[calls++ % chunks.length];
+			final int n = Math.min(chunk, Math.min(dst.remaining(), source.length - offset));
+			dst.put(source, offset, n);
+			offset += n;
+			position = dst.position();
+			limit = dst.limit();
+			return n;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			return;
+		}
+
+	}
+
+	/**
+	 * Writes to an array, at most the next chunk of bytes per call, and
+	 * records where it left the buffer.
+	 */
+	private static final class ChunkedWritableChannel implements WritableByteChannel {
+
+		private final int[] chunks;
+		private int calls;
+		final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+		int position;
+		int limit;
+
+		ChunkedWritableChannel(final int[] chunks) {
+			this.chunks = chunks;
+		}
+
+		@Override
+		public int write(final ByteBuffer src) {
+			final int chunk = chunks[calls++ % chunks.length];
+			final byte[] bytes = new byte[Math.min(chunk, src.remaining())];
+			src.get(bytes);
+			sink.write(bytes, 0, bytes.length);
+			position = src.position();
+			limit = src.limit();
+			return bytes.length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+			return;
+		}
+
+	}
+
+}
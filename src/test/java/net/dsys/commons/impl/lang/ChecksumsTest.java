@@ -0,0 +1,183 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import net.dsys.commons.api.lang.BufferChecksum;
+import net.dsys.commons.api.lang.Checksummer;
+
+import org.junit.Test;
+
+/**
+ * Checks every {@link Checksums} algorithm against its published check value
+ * and a bitwise or JDK reference, and checks that arrays, heap and direct
+ * buffers, and streaming updates all agree.
+ *
+ * @author Ricardo Padilha
+ */
+public class ChecksumsTest {
+
+	private static final byte[] CHECK = "123456789".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * xxHash32 of the prefixes of {@link HashVectors#sanityBuffer()}, with
+	 * seed 0 and {@link HashVectors#PRIME}, as published in
+	 * <code>xxhsum.c</code>.
+	 */
+	private static final int[] XXHASH32 = { 0x02CC5D05, 0x36B78AE7, 0xB85CBEE5, 0xD5845D64, 0xE5AA0AB4,
+			0x4481951D, 0x1F1AA412, 0x498EC8E2, };
+
+	/**
+	 * Bitwise reference for reflected CRCs of up to 64 bits.
+	 */
+	private static long reference(final long polynomial, final long mask, final byte[] array) {
+		long crc = mask;
+		for (final byte b : array) {
+			crc ^= b & 0xFF;
+			for (int k = 0; k < Byte.SIZE; k++) {
+				crc = (crc >>> 1) ^ (-(crc & 1) & polynomial);
+			}
+		}
+		return crc ^ mask;
+	}
+
+	private static long reference(final Checksums checksum, final byte[] array) {
+		switch (checksum) {
+			case CRC32:
+				return reference(0xEDB8_8320L, 0xFFFF_FFFFL, array);
+			case CRC32C:
+				return reference(0x82F6_3B78L, 0xFFFF_FFFFL, array);
+			case ADLER32:
+				final java.util.zip.Adler32 adler = new java.util.zip.Adler32();
+				adler.update(array, 0, array.length);
+				return adler.getValue();
+			case CRC64:
+				return reference(0xC96C_5795_D787_0F42L, -1L, array);
+			case XXHASH32:
+				return XXHash32.hash(array, 0, array.length) & 0xFFFF_FFFFL;
+			default:
+				throw new AssertionError(checksum);
+		}
+	}
+
+	@Test
+	public void checkValues() {
+		assertEquals(0xCBF4_3926L, Checksums.CRC32.digest(CHECK, 0, CHECK.length));
+		assertEquals(0xE306_9283L, Checksums.CRC32C.digest(CHECK, 0, CHECK.length));
+		assertEquals(0x091E_01DEL, Checksums.ADLER32.digest(CHECK, 0, CHECK.length));
+		assertEquals(0x995D_C9BB_DF19_39FAL, Checksums.CRC64.digest(CHECK, 0, CHECK.length));
+		assertEquals(0x02CC_5D05L, Checksums.XXHASH32.digest(new byte[0], 0, 0));
+	}
+
+	@Test
+	public void bits() {
+		assertEquals(Integer.SIZE, Checksums.CRC32.bits());
+		assertEquals(Integer.SIZE, Checksums.CRC32C.bits());
+		assertEquals(Integer.SIZE, Checksums.ADLER32.bits());
+		assertEquals(Long.SIZE, Checksums.CRC64.bits());
+		assertEquals(Integer.SIZE, Checksums.XXHASH32.bits());
+	}
+
+	@Test
+	public void xxHash32Sanity() {
+		final byte[] array = HashVectors.sanityBuffer();
+		for (int i = 0; i < XXHASH32.length; i++) {
+			final int n = HashVectors.SANITY_LENGTHS[i / 2];
+			final int seed = i % 2 == 0 ? 0 : HashVectors.PRIME;
+			final String msg = "length " + n + ", seed " + seed;
+			assertEquals(msg, XXHASH32[i], XXHash32.hash(array, 0, n, seed));
+			assertEquals(msg, XXHASH32[i], XXHash32.hash(HashVectors.direct(array, n), 0, n, seed));
+		}
+	}
+
+	@Test
+	public void references() {
+		final Random random = new Random(4);
+		for (int i = 0; i < 200; i++) {
+			final byte[] array = new byte[random.nextInt(random.nextBoolean() ? 40 : 4096)];
+			random.nextBytes(array);
+			for (final Checksums checksum : Checksums.values()) {
+				assertEquals(checksum + " " + array.length, reference(checksum, array),
+						checksum.digest(array, 0, array.length));
+			}
+		}
+	}
+
+	/**
+	 * Adler32 defers its modulo; runs of 0xFF are its worst case.
+	 */
+	@Test
+	public void adler32Saturated() {
+		final byte[] array = new byte[100_000];
+		java.util.Arrays.fill(array, (byte) 0xFF);
+		assertEquals(reference(Checksums.ADLER32, array), Checksums.ADLER32.digest(array, 0, array.length));
+		final ByteBuffer direct = ByteBuffer.allocateDirect(array.length);
+		direct.put(array).flip();
+		assertEquals(reference(Checksums.ADLER32, array), Checksums.ADLER32.digest(direct, 0, direct.limit()));
+	}
+
+	@Test
+	public void buffersAndStreaming() {
+		final Random random = new Random(5);
+		for (int i = 0; i < 100; i++) {
+			final byte[] array = new byte[random.nextInt(3000)];
+			random.nextBytes(array);
+			final ByteBuffer direct = ByteBuffer.allocateDirect(array.length);
+			direct.put(array).flip();
+			final ByteBuffer heap = ByteBuffer.wrap(array);
+			for (final Checksummer checksum : Checksums.values()) {
+				final long expected = checksum.digest(array, 0, array.length);
+				assertEquals(expected, checksum.digest(heap, 0, heap.limit()));
+				assertEquals(expected, checksum.digest(direct, 0, direct.limit()));
+				assertEquals(0, direct.position());
+				assertEquals(expected, checksum.digest(direct));
+				assertFalse(direct.hasRemaining());
+				direct.clear();
+
+				final BufferChecksum stream = checksum.newChecksum();
+				for (int j = 0; j < array.length;) {
+					final int n = Math.min(array.length - j, random.nextInt(50));
+					switch (random.nextInt(3)) {
+						case 0:
+							stream.update(array, j, n);
+							break;
+						case 1:
+							stream.update(direct, j, j + n);
+							break;
+						default:
+							for (int k = 0; k < n; k++) {
+								stream.update(array[j + k]);
+							}
+							break;
+					}
+					j += n;
+				}
+				assertEquals(checksum.toString(), expected, stream.getValue());
+				stream.reset();
+				stream.update(array);
+				assertEquals(checksum.toString(), expected, stream.getValue());
+			}
+		}
+	}
+
+}
@@ -0,0 +1,581 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.util.Random;
+
+import net.dsys.commons.impl.lang.FastArrays.Backend;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * @author Ricardo Padilha
+ */
+public class FastArraysTest {
+
+	/**
+	 * Number of atomic operations exercised by {@link #atomic(byte[], int, int)}
+	 * and {@link #atomic(ByteBuffer, int, int)}: the first half on ints, the
+	 * second half on longs; the first of each half is the volatile read.
+	 */
+	private static final int OPS = 10;
+	private static final int INT_OPS = OPS / 2;
+	/**
+	 * Space for varints: offsets near its end leave less than 8 bytes, which
+	 * disables the word-at-a-time decoder.
+	 */
+	private static final int VARINT_SPACE = 24;
+
+	private static void atomic(final byte[] array, final int op, final int offset) {
+		switch (op) {
+			case 0: FastArrays.getIntVolatile(array, offset); break;
+			case 1: FastArrays.putIntVolatile(array, offset, 1); break;
+			case 2: FastArrays.putIntOrdered(array, offset, 1); break;
+			case 3: FastArrays.compareAndSetInt(array, offset, 0, 1); break;
+			case 4: FastArrays.getAndAddInt(array, offset, 1); break;
+			case 5: FastArrays.getLongVolatile(array, offset); break;
+			case 6: FastArrays.putLongVolatile(array, offset, 1); break;
+			case 7: FastArrays.putLongOrdered(array, offset, 1); break;
+			case 8: FastArrays.compareAndSetLong(array, offset, 0, 1); break;
+			case 9: FastArrays.getAndAddLong(array, offset, 1); break;
+			default: throw new AssertionError(op);
+		}
+	}
+
+	private static void atomic(final ByteBuffer buffer, final int op, final int index) {
+		switch (op) {
+			case 0: FastArrays.getIntVolatile(buffer, index); break;
+			case 1: FastArrays.putIntVolatile(buffer, index, 1); break;
+			case 2: FastArrays.putIntOrdered(buffer, index, 1); break;
+			case 3: FastArrays.compareAndSetInt(buffer, index, 0, 1); break;
+			case 4: FastArrays.getAndAddInt(buffer, index, 1); break;
+			case 5: FastArrays.getLongVolatile(buffer, index); break;
+			case 6: FastArrays.putLongVolatile(buffer, index, 1); break;
+			case 7: FastArrays.putLongOrdered(buffer, index, 1); break;
+			case 8: FastArrays.compareAndSetLong(buffer, index, 0, 1); break;
+			case 9: FastArrays.getAndAddLong(buffer, index, 1); break;
+			default: throw new AssertionError(op);
+		}
+	}
+
+	private static boolean isRead(final int op) {
+		return op % INT_OPS == 0;
+	}
+
+	private static void assumeAtomics() {
+		Assume.assumeTrue(FastArrays.backend() != Backend.PLAIN);
+	}
+
+	/**
+	 * @return buffers whose index 0 is 8-byte aligned: heap, direct, and
+	 *         slices of both with a non-zero offset
+	 */
+	private static ByteBuffer[] buffers() {
+		final ByteBuffer heap = ByteBuffer.allocate(64);
+		heap.position(8);
+		final ByteBuffer direct = ByteBuffer.allocateDirect(64);
+		direct.position(8);
+		return new ByteBuffer[] { ByteBuffer.allocate(32), ByteBuffer.allocateDirect(32), heap.slice(),
+				direct.slice() };
+	}
+
+	@Test
+	public void arrayAtomics() {
+		assumeAtomics();
+		final byte[] array = new byte[32];
+		final ByteBuffer view = ByteBuffer.wrap(array).order(ByteOrder.nativeOrder());
+
+		FastArrays.putIntVolatile(array, 4, 0x01020304);
+		assertEquals(0x01020304, view.getInt(4));
+		assertEquals(0x01020304, FastArrays.getIntVolatile(array, 4));
+		FastArrays.putIntOrdered(array, 4, -1);
+		assertEquals(-1, view.getInt(4));
+		assertFalse(FastArrays.compareAndSetInt(array, 4, 0, 5));
+		assertEquals(-1, FastArrays.getIntVolatile(array, 4));
+		assertTrue(FastArrays.compareAndSetInt(array, 4, -1, 5));
+		assertEquals(5, FastArrays.getAndAddInt(array, 4, 10));
+		assertEquals(15, view.getInt(4));
+		assertEquals(0, view.getInt(0));
+		assertEquals(0, view.getInt(8));
+
+		FastArrays.putLongVolatile(array, 16, 0x0102030405060708L);
+		assertEquals(0x0102030405060708L, view.getLong(16));
+		assertEquals(0x0102030405060708L, FastArrays.getLongVolatile(array, 16));
+		FastArrays.putLongOrdered(array, 16, Long.MIN_VALUE);
+		assertEquals(Long.MIN_VALUE, view.getLong(16));
+		assertFalse(FastArrays.compareAndSetLong(array, 16, 0, 5));
+		assertEquals(Long.MIN_VALUE, FastArrays.getLongVolatile(array, 16));
+		assertTrue(FastArrays.compareAndSetLong(array, 16, Long.MIN_VALUE, -5));
+		assertEquals(-5, FastArrays.getAndAddLong(array, 16, 10));
+		assertEquals(5, view.getLong(16));
+		assertEquals(0, view.getLong(8));
+		assertEquals(0, view.getLong(24));
+	}
+
+	@Test
+	public void bufferAtomics() {
+		assumeAtomics();
+		for (final ByteBuffer buffer : buffers()) {
+			final ByteBuffer view = buffer.duplicate().order(ByteOrder.nativeOrder());
+			buffer.position(3);
+
+			FastArrays.putIntVolatile(buffer, 4, 0x01020304);
+			assertEquals(0x01020304, view.getInt(4));
+			assertEquals(0x01020304, FastArrays.getIntVolatile(buffer, 4));
+			FastArrays.putIntOrdered(buffer, 4, -1);
+			assertEquals(-1, view.getInt(4));
+			assertFalse(FastArrays.compareAndSetInt(buffer, 4, 0, 5));
+			assertTrue(FastArrays.compareAndSetInt(buffer, 4, -1, 5));
+			assertEquals(5, FastArrays.getAndAddInt(buffer, 4, 10));
+			assertEquals(15, view.getInt(4));
+			assertEquals(0, view.getInt(0));
+			assertEquals(0, view.getInt(8));
+
+			FastArrays.putLongVolatile(buffer, 16, 0x0102030405060708L);
+			assertEquals(0x0102030405060708L, view.getLong(16));
+			assertEquals(0x0102030405060708L, FastArrays.getLongVolatile(buffer, 16));
+			FastArrays.putLongOrdered(buffer, 16, Long.MIN_VALUE);
+			assertEquals(Long.MIN_VALUE, view.getLong(16));
+			assertFalse(FastArrays.compareAndSetLong(buffer, 16, 0, 5));
+			assertTrue(FastArrays.compareAndSetLong(buffer, 16, Long.MIN_VALUE, -5));
+			assertEquals(-5, FastArrays.getAndAddLong(buffer, 16, 10));
+			assertEquals(5, view.getLong(16));
+			assertEquals(0, view.getLong(8));
+			assertEquals(0, view.getLong(24));
+
+			assertEquals(3, buffer.position());
+			assertEquals(buffer.capacity(), buffer.limit());
+		}
+	}
+
+	@Test
+	public void misalignedArray() {
+		assumeAtomics();
+		final byte[] array = new byte[32];
+		for (int op = 0; op < OPS; op++) {
+			for (int offset = 1; offset < (op < INT_OPS ? 4 : 8); offset++) {
+				try {
+					atomic(array, op, offset);
+					fail("op " + op + " at " + offset);
+				} catch (final IllegalArgumentException e) {
+					// expected
+				}
+			}
+			atomic(array, op, 8);
+		}
+	}
+
+	@Test
+	public void misalignedBuffer() {
+		assumeAtomics();
+		for (final ByteBuffer buffer : buffers()) {
+			for (int op = 0; op < OPS; op++) {
+				for (int index = 1; index < (op < INT_OPS ? 4 : 8); index++) {
+					try {
+						atomic(buffer, op, index);
+						fail("op " + op + " at " + index + " in " + buffer);
+					} catch (final IllegalArgumentException e) {
+						// expected
+					}
+				}
+				atomic(buffer, op, 8);
+			}
+		}
+	}
+
+	@Test
+	public void writesToReadOnlyBuffer() {
+		for (final ByteBuffer buffer : buffers()) {
+			final ByteBuffer readOnly = buffer.asReadOnlyBuffer();
+			for (int op = 0; op < OPS; op++) {
+				if (isRead(op)) {
+					continue;
+				}
+				try {
+					atomic(readOnly, op, 8);
+					fail("op " + op + " in " + readOnly);
+				} catch (final ReadOnlyBufferException e) {
+					// expected
+				}
+			}
+			assertEquals(0, buffer.getLong(8));
+		}
+	}
+
+	@Test
+	public void readsFromReadOnlyDirectBuffer() {
+		assumeAtomics();
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(32);
+		FastArrays.putIntVolatile(buffer, 8, 42);
+		FastArrays.putLongVolatile(buffer, 16, -42L);
+		final ByteBuffer readOnly = buffer.asReadOnlyBuffer();
+		assertEquals(42, FastArrays.getIntVolatile(readOnly, 8));
+		assertEquals(-42L, FastArrays.getLongVolatile(readOnly, 16));
+	}
+
+	@Test
+	public void readsFromReadOnlyHeapBuffer() {
+		assumeAtomics();
+		final ByteBuffer buffer = ByteBuffer.allocate(32);
+		FastArrays.putIntVolatile(buffer, 8, 42);
+		FastArrays.putLongVolatile(buffer, 16, -42L);
+		final ByteBuffer readOnly = buffer.asReadOnlyBuffer();
+		if (!VarHandleAccess.isAvailable()) {
+			try {
+				FastArrays.getIntVolatile(readOnly, 8);
+				fail();
+			} catch (final UnsupportedOperationException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("read-only heap buffer"));
+			}
+		}
+		MultiRelease.requireVarHandles();
+		assertEquals(42, FastArrays.getIntVolatile(readOnly, 8));
+		assertEquals(-42L, FastArrays.getLongVolatile(readOnly, 16));
+	}
+
+	@Test
+	public void plainBackendHasNoAtomics() {
+		Assume.assumeTrue(FastArrays.backend() == Backend.PLAIN);
+		final byte[] array = new byte[32];
+		for (int op = 0; op < OPS; op++) {
+			try {
+				atomic(array, op, 8);
+				fail("op " + op);
+			} catch (final UnsupportedOperationException e) {
+				// expected
+			}
+			for (final ByteBuffer buffer : buffers()) {
+				try {
+					atomic(buffer, op, 8);
+					fail("op " + op + " in " + buffer);
+				} catch (final UnsupportedOperationException e) {
+					// expected
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return heap, offset heap and direct buffers holding the same bytes
+	 */
+	private static ByteBuffer[] copies(final byte[] array, final int length) {
+		final ByteBuffer heap = ByteBuffer.allocate(length + 5);
+		heap.position(5);
+		final ByteBuffer offset = heap.slice();
+		offset.put(array, 0, length).clear();
+		return new ByteBuffer[] { ByteBuffer.wrap(array, 0, length), offset, HashVectors.direct(array, length) };
+	}
+
+	private static long getVar(final byte[] array, final int offset, final boolean isLong) {
+		return isLong ? FastArrays.getVarLong(array, offset) : FastArrays.getVarInt(array, offset);
+	}
+
+	private static long getVar(final ByteBuffer buffer, final int index, final boolean isLong) {
+		return isLong ? FastArrays.getVarLong(buffer, index) : FastArrays.getVarInt(buffer, index);
+	}
+
+	/**
+	 * @return the smallest, the largest and a random value of each varint
+	 *         length, from 1 to the maximum
+	 */
+	private static long[][] varValues(final Random random, final boolean isLong) {
+		final int maxLength = isLong ? FastArrays.VARLONG_MAX_LENGTH : FastArrays.VARINT_MAX_LENGTH;
+		final long[][] values = new long[maxLength + 1][];
+		for (int length = 1; length <= maxLength; length++) {
+			final long min = length == 1 ? 0 : 1L << (7 * (length - 1));
+			final long max;
+			if (length == maxLength) {
+				max = isLong ? -1L : 0xFFFF_FFFFL;
+			} else {
+				max = (1L << (7 * length)) - 1;
+			}
+			final long middle = length == 1 ? random.nextInt(0x80) : min | (random.nextLong() & (min - 1));
+			values[length] = new long[] { min, max, middle };
+		}
+		return values;
+	}
+
+	private static void varRoundTrip(final boolean isLong) {
+		final Random random = new Random(isLong ? 8 : 4);
+		final long[][] values = varValues(random, isLong);
+		for (int length = 1; length < values.length; length++) {
+			for (final long v : values[length]) {
+				final long value = isLong ? v : (int) v;
+				assertEquals(length, isLong ? FastArrays.varLongLength(value) : FastArrays.varIntLength((int) value));
+				for (int offset = 0; offset <= VARINT_SPACE - length; offset++) {
+					// garbage around the encoding must not be read
+					final byte[] array = new byte[VARINT_SPACE];
+					random.nextBytes(array);
+					final ByteBuffer direct = ByteBuffer.allocateDirect(VARINT_SPACE);
+					if (isLong) {
+						assertEquals(length, FastArrays.putVarLong(array, offset, value));
+						assertEquals(length, FastArrays.putVarLong(direct, offset, value));
+					} else {
+						assertEquals(length, FastArrays.putVarInt(array, offset, (int) value));
+						assertEquals(length, FastArrays.putVarInt(direct, offset, (int) value));
+					}
+					for (int i = 0; i < length; i++) {
+						assertEquals(array[offset + i], direct.get(offset + i));
+					}
+					assertEquals(0, array[offset + length - 1] & 0x80);
+					assertEquals(value, getVar(array, offset, isLong));
+					for (final ByteBuffer buffer : copies(array, array.length)) {
+						assertEquals(value, getVar(buffer, offset, isLong));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Asserts that an encoding is rejected at every offset, whether or not
+	 * 8 bytes are available, in arrays and buffers.
+	 */
+	private static void assertMalformed(final byte[] encoding, final boolean isLong) {
+		for (int offset = 0; offset <= VARINT_SPACE - encoding.length; offset++) {
+			final byte[] array = new byte[VARINT_SPACE];
+			System.arraycopy(encoding, 0, array, offset, encoding.length);
+			try {
+				getVar(array, offset, isLong);
+				fail(FastArrays.toString(encoding, 0, encoding.length) + " at " + offset);
+			} catch (final IllegalArgumentException e) {
+				// expected
+			}
+			for (final ByteBuffer buffer : copies(array, array.length)) {
+				try {
+					getVar(buffer, offset, isLong);
+					fail(FastArrays.toString(encoding, 0, encoding.length) + " at " + offset + " in " + buffer);
+				} catch (final IllegalArgumentException e) {
+					// expected
+				}
+			}
+		}
+	}
+
+	/**
+	 * Asserts that the bytes of an encoding up to the end of the array or the
+	 * buffer's limit are rejected.
+	 */
+	private static void assertTruncated(final byte[] encoding, final int length, final boolean isLong) {
+		for (int offset = 0; offset <= VARINT_SPACE - encoding.length; offset++) {
+			final byte[] array = new byte[offset + length];
+			System.arraycopy(encoding, 0, array, offset, length);
+			try {
+				getVar(array, offset, isLong);
+				fail("truncated to " + length + " at " + offset);
+			} catch (final IndexOutOfBoundsException e) {
+				// expected
+			}
+			for (final ByteBuffer buffer : copies(array, array.length)) {
+				try {
+					getVar(buffer, offset, isLong);
+					fail("truncated to " + length + " at " + offset + " in " + buffer);
+				} catch (final IndexOutOfBoundsException e) {
+					// expected
+				}
+			}
+		}
+	}
+
+	private static void varRejected(final boolean isLong) {
+		final Random random = new Random(isLong ? 9 : 5);
+		final int maxLength = isLong ? FastArrays.VARLONG_MAX_LENGTH : FastArrays.VARINT_MAX_LENGTH;
+		for (int length = 1; length <= maxLength; length++) {
+			final byte[] encoding = new byte[length];
+			for (int i = 0; i < length - 1; i++) {
+				encoding[i] = (byte) (0x80 | random.nextInt(0x80));
+			}
+			// overlong: a final group of zeros
+			if (length > 1) {
+				encoding[length - 1] = 0;
+				assertMalformed(encoding, isLong);
+			}
+			// truncated: continuation bytes up to the end
+			encoding[length - 1] = (byte) (1 + random.nextInt(0x7F));
+			for (int cut = 0; cut < length; cut++) {
+				assertTruncated(encoding, cut, isLong);
+			}
+		}
+		// overflow: more than 32 or 64 bits in the last group
+		final byte[] overflow = new byte[maxLength];
+		for (int i = 0; i < maxLength - 1; i++) {
+			overflow[i] = (byte) 0xFF;
+		}
+		for (int last = isLong ? 0x02 : 0x10; last < 0x80; last++) {
+			overflow[maxLength - 1] = (byte) last;
+			assertMalformed(overflow, isLong);
+		}
+		// unterminated: continuation bytes beyond the maximum length
+		final byte[] unterminated = new byte[maxLength + 1];
+		for (int i = 0; i < maxLength; i++) {
+			unterminated[i] = (byte) (0x80 | random.nextInt(0x80));
+		}
+		unterminated[maxLength] = 1;
+		assertMalformed(unterminated, isLong);
+	}
+
+	@Test
+	public void varIntRoundTrip() {
+		varRoundTrip(false);
+	}
+
+	@Test
+	public void varLongRoundTrip() {
+		varRoundTrip(true);
+	}
+
+	@Test
+	public void varIntRejected() {
+		varRejected(false);
+	}
+
+	@Test
+	public void varLongRejected() {
+		varRejected(true);
+	}
+
+	@Test
+	public void zigZag() {
+		final int[] ints = { 0, -1, 1, -2, 2, 63, -64, 64, -65, Integer.MAX_VALUE, Integer.MIN_VALUE,
+				Integer.MAX_VALUE - 1, Integer.MIN_VALUE + 1 };
+		final int[] encodedInts = { 0, 1, 2, 3, 4, 126, 127, 128, 129, -2, -1, -4, -3 };
+		final int[] intLengths = { 1, 1, 1, 1, 1, 1, 1, 2, 2, 5, 5, 5, 5 };
+		for (int i = 0; i < ints.length; i++) {
+			assertEquals(encodedInts[i], FastArrays.encodeZigZag(ints[i]));
+			assertEquals(ints[i], FastArrays.decodeZigZag(encodedInts[i]));
+			assertEquals(intLengths[i], FastArrays.varIntLength(FastArrays.encodeZigZag(ints[i])));
+		}
+		final long[] longs = { 0, -1, 1, -64, 64, Integer.MIN_VALUE, Integer.MAX_VALUE + 1L, Long.MAX_VALUE,
+				Long.MIN_VALUE, Long.MAX_VALUE - 1, Long.MIN_VALUE + 1 };
+		final long[] encodedLongs = { 0, 1, 2, 127, 128, 0xFFFF_FFFFL, 0x1_0000_0000L, -2, -1, -4, -3 };
+		final int[] longLengths = { 1, 1, 1, 1, 2, 5, 5, 10, 10, 10, 10 };
+		for (int i = 0; i < longs.length; i++) {
+			assertEquals(encodedLongs[i], FastArrays.encodeZigZag(longs[i]));
+			assertEquals(longs[i], FastArrays.decodeZigZag(encodedLongs[i]));
+			assertEquals(longLengths[i], FastArrays.varLongLength(FastArrays.encodeZigZag(longs[i])));
+		}
+	}
+
+	/**
+	 * Bytes next to 0x00, 0x80 and 0xFF, where word-at-a-time scans can
+	 * borrow or carry into neighbouring bytes.
+	 */
+	private static final byte[] EDGE_BYTES = { 0x00, 0x01, 0x02, 0x7E, 0x7F, (byte) 0x80, (byte) 0x81,
+			(byte) 0xFE, (byte) 0xFF };
+
+	private static int naiveIndexOf(final byte[] array, final int offset, final int length, final byte[] values) {
+		for (int i = offset; i < offset + length; i++) {
+			for (final byte value : values) {
+				if (array[i] == value) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private static int naiveLastIndexOf(final byte[] array, final int offset, final int length, final byte value) {
+		for (int i = offset + length - 1; i >= offset; i--) {
+			if (array[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static byte[] edgeBytes(final Random random, final int length) {
+		final byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = EDGE_BYTES[random.nextInt(EDGE_BYTES.length)];
+		}
+		return bytes;
+	}
+
+	@Test
+	public void byteSearch() {
+		final Random random = new Random(17);
+		for (int n = 0; n < 5000; n++) {
+			final byte[] array = edgeBytes(random, random.nextInt(48));
+			final int offset = random.nextInt(array.length + 1);
+			final int length = random.nextInt(array.length - offset + 1);
+			// sets of 1-4 bytes use the word-at-a-time scan, larger ones a bitmap
+			final byte[] values = edgeBytes(random, random.nextInt(8));
+			if (values.length > 5 && random.nextBoolean()) {
+				values[0] = (byte) random.nextInt();
+			}
+			final String name = FastArrays.toString(array, offset, length) + " for "
+					+ FastArrays.toString(values, 0, values.length);
+			final int any = naiveIndexOf(array, offset, length, values);
+			assertEquals(name, any, FastArrays.indexOfAny(array, offset, length, values));
+			for (final byte value : values) {
+				final int first = naiveIndexOf(array, offset, length, new byte[] { value });
+				final int last = naiveLastIndexOf(array, offset, length, value);
+				assertEquals(name, first, FastArrays.indexOf(array, offset, length, value));
+				assertEquals(name, last, FastArrays.lastIndexOf(array, offset, length, value));
+			}
+			final ByteBuffer[] buffers = copies(array, array.length);
+			for (final ByteBuffer buffer : new ByteBuffer[] { buffers[0], buffers[1], buffers[2],
+					buffers[1].asReadOnlyBuffer(), buffers[2].asReadOnlyBuffer() }) {
+				buffer.position(random.nextInt(array.length + 1));
+				final int position = buffer.position();
+				assertEquals(name, any, FastArrays.indexOfAny(buffer, offset, length, values));
+				for (final byte value : values) {
+					final int first = naiveIndexOf(array, offset, length, new byte[] { value });
+					final int last = naiveLastIndexOf(array, offset, length, value);
+					assertEquals(name, first, FastArrays.indexOf(buffer, offset, length, value));
+					assertEquals(name, last, FastArrays.lastIndexOf(buffer, offset, length, value));
+				}
+				assertEquals(position, buffer.position());
+				assertEquals(array.length, buffer.limit());
+			}
+		}
+	}
+
+	@Test
+	public void byteSearchBitmap() {
+		// every byte value, in a set large enough for the bitmap
+		final byte[] array = new byte[256];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = (byte) (255 - i);
+		}
+		for (int b = 0; b < 256; b++) {
+			final byte[] values = { (byte) b, (byte) b, (byte) b, (byte) b, (byte) b };
+			assertEquals(255 - b, FastArrays.indexOfAny(array, 0, array.length, values));
+			for (final ByteBuffer buffer : copies(array, array.length)) {
+				assertEquals(255 - b, FastArrays.indexOfAny(buffer, 0, array.length, values));
+				assertEquals(-1, FastArrays.indexOfAny(buffer, 256 - b, b, values));
+			}
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void byteSearchBeyondLimit() {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(32);
+		buffer.limit(16);
+		FastArrays.indexOf(buffer, 8, 9, (byte) 0);
+	}
+
+}
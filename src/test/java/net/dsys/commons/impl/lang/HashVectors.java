@@ -0,0 +1,70 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Inputs of published hash test vectors, shared by the hash tests.
+ *
+ * @author Ricardo Padilha
+ */
+final class HashVectors {
+
+	/**
+	 * PRIME32_1 of xxHash, used as a seed by its self-test.
+	 */
+	static final int PRIME = 0x9E37_79B1;
+
+	/**
+	 * Lengths of the {@link #sanityBuffer()} prefixes hashed by the xxHash
+	 * self-test, each with seed 0 and {@link #PRIME}.
+	 */
+	static final int[] SANITY_LENGTHS = { 0, 1, 14, 101 };
+
+	private static final int SANITY_LENGTH = 101;
+
+	private HashVectors() {
+		// no instantiation allowed
+		return;
+	}
+
+	/**
+	 * @return the buffer hashed by the xxHash self-test
+	 *         (<code>BMK_sanityCheck</code> in <code>xxhsum.c</code>)
+	 */
+	static byte[] sanityBuffer() {
+		final byte[] array = new byte[SANITY_LENGTH];
+		int gen = PRIME;
+		for (int i = 0; i < SANITY_LENGTH; i++) {
+			array[i] = (byte) (gen >>> (Integer.SIZE - Byte.SIZE));
+			gen *= gen;
+		}
+		return array;
+	}
+
+	/**
+	 * @return a direct buffer holding the first bytes of an array
+	 */
+	static ByteBuffer direct(final byte[] array, final int length) {
+		final ByteBuffer direct = ByteBuffer.allocateDirect(length);
+		direct.put(array, 0, length);
+		direct.clear();
+		return direct;
+	}
+
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link MappedRegion} with small windows, so that values and ranges
+ * cross window boundaries.
+ *
+ * @author Ricardo Padilha
+ */
+public class MappedRegionTest {
+
+	private static final int WINDOW = 64;
+	/**
+	 * Not a multiple of the window size, so that the last window is shorter.
+	 */
+	private static final int LENGTH = 4 * WINDOW - 6;
+
+	private final Random random = new Random(4);
+	private Path file;
+	private byte[] data;
+	private MappedRegion region;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("region", ".bin");
+		data = new byte[LENGTH];
+		random.nextBytes(data);
+		Files.write(file, data);
+		region = new MappedRegion(file, MapMode.READ_WRITE, WINDOW);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		region.close();
+		Files.delete(file);
+	}
+
+	@Test
+	public void accessors() {
+		assertEquals(LENGTH, region.length());
+		final ByteBuffer be = ByteBuffer.wrap(data);
+		final ByteBuffer le = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		for (int offset = 0; offset < LENGTH; offset++) {
+			assertEquals(data[offset], region.get(offset));
+			if (offset <= LENGTH - 2) {
+				assertEquals(be.getShort(offset), region.getShort(offset));
+				assertEquals(le.getShort(offset), region.getShortLE(offset));
+			}
+			if (offset <= LENGTH - 4) {
+				assertEquals(be.getInt(offset), region.getInt(offset));
+				assertEquals(le.getInt(offset), region.getIntLE(offset));
+			}
+			if (offset <= LENGTH - 8) {
+				assertEquals(be.getLong(offset), region.getLong(offset));
+				assertEquals(le.getLong(offset), region.getLongLE(offset));
+			}
+		}
+	}
+
+	@Test
+	public void putAcrossWindows() throws IOException {
+		final ByteBuffer be = ByteBuffer.wrap(data);
+		final ByteBuffer le = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		// every alignment around the first boundary, and at the last one
+		for (int offset = WINDOW - 8; offset <= WINDOW; offset++) {
+			final long value = random.nextLong();
+			switch (offset % 6) {
+				case 0:
+					assertEquals(8, region.putLong(offset, value));
+					be.putLong(offset, value);
+					break;
+				case 1:
+					assertEquals(8, region.putLongLE(offset, value));
+					le.putLong(offset, value);
+					break;
+				case 2:
+					assertEquals(4, region.putInt(offset, (int) value));
+					be.putInt(offset, (int) value);
+					break;
+				case 3:
+					assertEquals(4, region.putIntLE(offset, (int) value));
+					le.putInt(offset, (int) value);
+					break;
+				case 4:
+					assertEquals(2, region.putShort(offset, (short) value));
+					be.putShort(offset, (short) value);
+					break;
+				default:
+					assertEquals(2, region.putShortLE(offset, (short) value));
+					le.putShort(offset, (short) value);
+					break;
+			}
+			final byte[] actual = new byte[LENGTH];
+			region.arrayCopy(0, actual, 0, LENGTH);
+			assertArrayEquals("at " + offset, data, actual);
+		}
+		region.putLong(3 * WINDOW - 3, -1L);
+		be.putLong(3 * WINDOW - 3, -1L);
+		region.put(LENGTH - 1, (byte) 7);
+		data[LENGTH - 1] = 7;
+		region.force();
+		assertArrayEquals(data, Files.readAllBytes(file));
+	}
+
+	@Test
+	public void arrayCopyAcrossWindows() {
+		for (int n = 0; n < 200; n++) {
+			final int offset = random.nextInt(LENGTH + 1);
+			final int length = random.nextInt(LENGTH - offset + 1);
+			final int pos = random.nextInt(5);
+			final byte[] dst = new byte[pos + length];
+			region.arrayCopy(offset, dst, pos, length);
+			for (int i = 0; i < length; i++) {
+				assertEquals(data[offset + i], dst[pos + i]);
+			}
+			final byte[] src = new byte[pos + length];
+			random.nextBytes(src);
+			region.arrayCopy(src, pos, offset, length);
+			System.arraycopy(src, pos, data, offset, length);
+			for (int i = 0; i < LENGTH; i++) {
+				assertEquals(data[i], region.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void compareAcrossWindows() {
+		for (int n = 0; n < 500; n++) {
+			final int offset = random.nextInt(LENGTH + 1);
+			final int length = random.nextInt(LENGTH - offset + 1);
+			final int arrayLength = Math.max(0, length + random.nextInt(5) - 2);
+			final byte[] array = new byte[arrayLength + 3];
+			random.nextBytes(array);
+			System.arraycopy(data, offset, array, 3, Math.min(length, arrayLength));
+			if (arrayLength > 0 && length > 0 && random.nextBoolean()) {
+				// one differing byte, possibly in the next window
+				final int diff = random.nextInt(Math.min(length, arrayLength));
+				array[3 + diff] = (byte) random.nextInt();
+			}
+			int expected = 0;
+			for (int i = 0; i < Math.min(length, arrayLength) && expected == 0; i++) {
+				expected = Integer.compare(data[offset + i] & 0xFF, array[3 + i] & 0xFF);
+			}
+			if (expected == 0) {
+				expected = Integer.compare(length, arrayLength);
+			}
+			assertEquals(Integer.signum(expected), region.compare(offset, length, array, 3, arrayLength));
+		}
+	}
+
+	@Test
+	public void forceRange() throws IOException {
+		region.force(0, 0);
+		region.force(LENGTH, 0);
+		region.force(WINDOW - 1, 2);
+		region.force(0, LENGTH);
+		region.putInt(2 * WINDOW - 2, 0x01020304);
+		ByteBuffer.wrap(data).putInt(2 * WINDOW - 2, 0x01020304);
+		region.force(2 * WINDOW - 2, 4);
+		assertArrayEquals(data, Files.readAllBytes(file));
+		for (final long[] range : new long[][] { { -1, 1 }, { 0, LENGTH + 1 }, { LENGTH, 1 }, { 1, -1 } }) {
+			try {
+				region.force(range[0], range[1]);
+				fail(range[0] + ", " + range[1]);
+			} catch (final IndexOutOfBoundsException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void useAfterClose() {
+		region.close();
+		final byte[] array = new byte[16];
+		for (int op = 0; op < 7; op++) {
+			try {
+				switch (op) {
+					case 0: region.get(WINDOW); break;
+					case 1: region.putLong(WINDOW - 4, 1); break;
+					case 2: region.getIntLE(0); break;
+					case 3: region.arrayCopy(WINDOW - 8, array, 0, 16); break;
+					case 4: region.compare(0, 16, array, 0, 16); break;
+					case 5: region.force(); break;
+					default: region.force(0, LENGTH); break;
+				}
+				fail("op " + op);
+			} catch (final IllegalStateException e) {
+				// expected
+			}
+		}
+		// closing twice is harmless
+		region.close();
+	}
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Assume;
+
+/**
+ * Guards for tests of the classes in <code>META-INF/versions</code>. Under
+ * <code>mvn test</code> the Java 7 placeholders are loaded and these tests are
+ * skipped; the failsafe runs of the <code>java9</code> profile set
+ * {@value #PACKAGED_PROPERTY} and run them over the packaged JAR, where a
+ * missing feature is a failure instead.
+ *
+ * @author Ricardo Padilha
+ */
+final class MultiRelease {
+
+	static final String PACKAGED_PROPERTY = "net.dsys.commons.test.mrjar";
+	static final String VECTOR_PROPERTY = "net.dsys.commons.test.vector";
+
+	private MultiRelease() {
+		// no instantiation allowed
+		return;
+	}
+
+	/**
+	 * @return <code>true</code> if the tests run over the multi-release JAR
+	 */
+	static boolean isPackaged() {
+		return Boolean.getBoolean(PACKAGED_PROPERTY);
+	}
+
+	/**
+	 * Fails in the packaged run, and skips otherwise, if the feature is not
+	 * available.
+	 */
+	static void require(final String feature, final boolean available) {
+		if (isPackaged()) {
+			assertTrue(feature + " not available in the multi-release JAR", available);
+		}
+		Assume.assumeTrue(available);
+	}
+
+	static void requireVarHandles() {
+		require("VarHandles", VarHandleAccess.isAvailable());
+	}
+
+	static void requireIntrinsicCRC32C() {
+		require("java.util.zip.CRC32C", IntrinsicCRC32C.isAvailable());
+	}
+
+	/**
+	 * Vectors are only required in the packaged run when
+	 * {@value #VECTOR_PROPERTY} is set, i.e., on Java 17+ with
+	 * <code>--add-modules jdk.incubator.vector</code>.
+	 */
+	static void requireVectors() {
+		if (isPackaged() && !Boolean.getBoolean(VECTOR_PROPERTY)) {
+			Assume.assumeTrue(VectorKernels.isAvailable());
+		}
+		require("jdk.incubator.vector", VectorKernels.isAvailable());
+	}
+
+}
@@ -0,0 +1,58 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.Locale;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * @author Ricardo Padilha
+ */
+public class MultiReleaseTest {
+
+	@Test
+	public void loadedFromJar() {
+		Assume.assumeTrue(MultiRelease.isPackaged());
+		final URL url = FastArrays.class.getResource("FastArrays.class");
+		assertTrue(url.toString(), url.getProtocol().equals("jar"));
+		final URL versioned = VarHandleAccess.class.getResource("VarHandleAccess.class");
+		assertTrue(versioned.toString(), versioned.toString().contains("META-INF/versions/"));
+	}
+
+	@Test
+	public void backend() {
+		Assume.assumeTrue(MultiRelease.isPackaged());
+		final String name = System.getProperty(FastArrays.BACKEND_PROPERTY, "unsafe");
+		assertEquals(name.toUpperCase(Locale.ROOT), FastArrays.backend().name());
+		assertEquals(Boolean.getBoolean(CRC32C.PURE_PROPERTY), !CRC32C.isIntrinsic());
+		assertEquals(Boolean.getBoolean(MultiRelease.VECTOR_PROPERTY), FastArrays.isVectorized());
+	}
+
+	@Test
+	public void features() {
+		MultiRelease.requireVarHandles();
+		MultiRelease.requireIntrinsicCRC32C();
+		MultiRelease.requireVectors();
+	}
+
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link Murmur3} against the SMHasher verification value and a
+ * published vector.
+ *
+ * @author Ricardo Padilha
+ */
+public class Murmur3Test {
+
+	/**
+	 * Verification value of MurmurHash3_x64_128 in SMHasher.
+	 */
+	private static final int VERIFICATION = 0x6384_BA69;
+
+	private static final byte[] FOX = "The quick brown fox jumps over the lazy dog"
+			.getBytes(StandardCharsets.US_ASCII);
+
+	private static void putLE(final long value, final byte[] array, final int offset) {
+		for (int i = 0; i < Long.SIZE / Byte.SIZE; i++) {
+			array[offset + i] = (byte) (value >>> (i * Byte.SIZE));
+		}
+	}
+
+	/**
+	 * SMHasher's <code>VerificationTest</code>: hashes the keys
+	 * <code>{0}, {0, 1}, ..., {0, ..., 254}</code> with seeds
+	 * <code>256 - length</code>, then hashes the concatenated results with
+	 * seed 0.
+	 */
+	@Test
+	public void verification() {
+		final byte[] key = new byte[256];
+		final byte[] hashes = new byte[256 * 16];
+		final long[] out = new long[2];
+		for (int i = 0; i < 256; i++) {
+			key[i] = (byte) i;
+			Murmur3.hash128(key, 0, i, 256 - i, out);
+			putLE(out[0], hashes, i * 16);
+			putLE(out[1], hashes, i * 16 + 8);
+		}
+		Murmur3.hash128(hashes, 0, hashes.length, 0, out);
+		assertEquals(VERIFICATION, (int) out[0]);
+	}
+
+	@Test
+	public void fox() {
+		final long[] out = new long[2];
+		Murmur3.hash128(FOX, 0, FOX.length, 0, out);
+		assertEquals(0xE34B_BC7B_BC07_1B6CL, out[0]);
+		assertEquals(0x7A43_3CA9_C49A_9347L, out[1]);
+		assertEquals(0xE34B_BC7B_BC07_1B6CL, Murmur3.hash64(FOX, 0, FOX.length, 0));
+	}
+
+	/**
+	 * Buffers and streaming updates agree with arrays on every length, so
+	 * that all tail paths are covered.
+	 */
+	@Test
+	public void streaming() {
+		final byte[] array = HashVectors.sanityBuffer();
+		final long[] expected = new long[2];
+		final long[] out = new long[2];
+		for (int n = 0; n <= array.length; n++) {
+			final int seed = n * 13;
+			final String msg = "length " + n;
+			Murmur3.hash128(array, 0, n, seed, expected);
+			assertEquals(msg, expected[0], Murmur3.hash64(array, 0, n, seed));
+
+			final ByteBuffer direct = HashVectors.direct(array, n);
+			assertEquals(msg, expected[0], Murmur3.hash64(direct, 0, n, seed));
+			Murmur3.hash128(direct, 0, n, seed, out);
+			assertEquals(msg, expected[1], out[1]);
+			assertEquals(msg, expected[0], Murmur3.hash64(ByteBuffer.wrap(array), 0, n, seed));
+
+			final Murmur3 stream = new Murmur3(seed);
+			for (int j = 0; j < n; j += 5) {
+				stream.update(array, j, Math.min(5, n - j));
+			}
+			assertEquals(msg, expected[0], stream.getValue());
+			stream.getValue(out);
+			assertEquals(msg, expected[0], out[0]);
+			assertEquals(msg, expected[1], out[1]);
+			assertEquals(msg, expected[0], stream.digest());
+			stream.update(ByteBuffer.wrap(array, 0, n));
+			stream.digest(out);
+			assertEquals(msg, expected[1], out[1]);
+		}
+	}
+
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Property tests of {@link OrderedCodec}: for every pair of values, the
+ * unsigned comparison of their encodings has the same sign as the comparison
+ * of the values, and every encoding decodes back to its value.
+ *
+ * @author Ricardo Padilha
+ */
+public class OrderedCodecTest {
+
+	private static final int RANDOM_VALUES = 100;
+
+	private final Random random = new Random(12);
+
+	private static int compare(final byte[] left, final byte[] right) {
+		return Integer.signum(FastArrays.compareArrays(left, right));
+	}
+
+	/**
+	 * Naive unsigned lexicographical order of byte strings.
+	 */
+	private static int compareBytes(final byte[] left, final byte[] right) {
+		for (int i = 0; i < Math.min(left.length, right.length); i++) {
+			final int diff = (left[i] & 0xFF) - (right[i] & 0xFF);
+			if (diff != 0) {
+				return Integer.signum(diff);
+			}
+		}
+		return Integer.signum(left.length - right.length);
+	}
+
+	private static byte[] encodeInt(final int value) {
+		final byte[] array = new byte[4];
+		assertEquals(4, OrderedCodec.putInt(array, 0, value));
+		return array;
+	}
+
+	private static byte[] encodeLong(final long value) {
+		final byte[] array = new byte[8];
+		assertEquals(8, OrderedCodec.putLong(array, 0, value));
+		return array;
+	}
+
+	private static byte[] encodeFloat(final float value) {
+		final byte[] array = new byte[4];
+		assertEquals(4, OrderedCodec.putFloat(array, 0, value));
+		return array;
+	}
+
+	private static byte[] encodeDouble(final double value) {
+		final byte[] array = new byte[8];
+		assertEquals(8, OrderedCodec.putDouble(array, 0, value));
+		return array;
+	}
+
+	private static byte[] encodeBytes(final byte[] value) {
+		final byte[] array = new byte[OrderedCodec.bytesLength(value, 0, value.length)];
+		assertEquals(array.length, OrderedCodec.putBytes(array, 0, value, 0, value.length));
+		return array;
+	}
+
+	private static byte[] decodeBytes(final byte[] array, final int offset) {
+		final byte[] value = new byte[OrderedCodec.decodedLength(array, offset)];
+		assertEquals(OrderedCodec.encodedLength(array, offset), OrderedCodec.getBytes(array, offset, value, 0));
+		return value;
+	}
+
+	/**
+	 * @return values next to each of the given ones, and random values
+	 */
+	private List<Long> around(final long... values) {
+		final List<Long> list = new ArrayList<>();
+		for (final long value : values) {
+			for (long delta = -3; delta <= 3; delta++) {
+				list.add(value + delta);
+			}
+		}
+		for (int i = 0; i < RANDOM_VALUES; i++) {
+			list.add(random.nextLong() >> random.nextInt(64));
+		}
+		return list;
+	}
+
+	@Test
+	public void ints() {
+		final List<Long> values = around(Integer.MIN_VALUE + 3, -1, 0, Integer.MAX_VALUE - 3, 0x7F, 0x80, 0xFF);
+		for (final long a : values) {
+			final int ia = (int) a;
+			final byte[] ea = encodeInt(ia);
+			assertEquals(ia, OrderedCodec.getInt(ea, 0));
+			for (final long b : values) {
+				final int ib = (int) b;
+				assertEquals(ia + " vs " + ib, Integer.signum(Integer.compare(ia, ib)), compare(ea, encodeInt(ib)));
+			}
+		}
+	}
+
+	@Test
+	public void longs() {
+		final List<Long> values = around(Long.MIN_VALUE + 3, Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE,
+				Long.MAX_VALUE - 3);
+		for (final long a : values) {
+			final byte[] ea = encodeLong(a);
+			assertEquals(a, OrderedCodec.getLong(ea, 0));
+			for (final long b : values) {
+				assertEquals(a + " vs " + b, Integer.signum(Long.compare(a, b)), compare(ea, encodeLong(b)));
+			}
+		}
+	}
+
+	@Test
+	public void floats() {
+		final List<Float> values = new ArrayList<>();
+		final float[] edges = { Float.NEGATIVE_INFINITY, -Float.MAX_VALUE, -1f, -Float.MIN_NORMAL,
+				-Float.MIN_VALUE, -0f, 0f, Float.MIN_VALUE, Float.MIN_NORMAL, 1f, Float.MAX_VALUE,
+				Float.POSITIVE_INFINITY, Float.NaN };
+		for (final float edge : edges) {
+			values.add(edge);
+			values.add(Math.nextUp(edge));
+			values.add(Math.nextAfter(edge, Double.NEGATIVE_INFINITY));
+		}
+		for (int i = 0; i < RANDOM_VALUES; i++) {
+			values.add(Float.intBitsToFloat(random.nextInt()));
+		}
+		for (final float a : values) {
+			final byte[] ea = encodeFloat(a);
+			assertEquals(Float.floatToIntBits(a), Float.floatToIntBits(OrderedCodec.getFloat(ea, 0)));
+			for (final float b : values) {
+				assertEquals(a + " vs " + b, Integer.signum(Float.compare(a, b)), compare(ea, encodeFloat(b)));
+			}
+		}
+		assertTrue(compare(encodeFloat(-0f), encodeFloat(0f)) < 0);
+	}
+
+	@Test
+	public void doubles() {
+		final List<Double> values = new ArrayList<>();
+		final double[] edges = { Double.NEGATIVE_INFINITY, -Double.MAX_VALUE, -1, -Double.MIN_NORMAL,
+				-Double.MIN_VALUE, -0d, 0d, Double.MIN_VALUE, Double.MIN_NORMAL, 1, Double.MAX_VALUE,
+				Double.POSITIVE_INFINITY, Double.NaN };
+		for (final double edge : edges) {
+			values.add(edge);
+			values.add(Math.nextUp(edge));
+			values.add(Math.nextAfter(edge, Double.NEGATIVE_INFINITY));
+		}
+		for (int i = 0; i < RANDOM_VALUES; i++) {
+			values.add(Double.longBitsToDouble(random.nextLong()));
+		}
+		for (final double a : values) {
+			final byte[] ea = encodeDouble(a);
+			assertEquals(Double.doubleToLongBits(a), Double.doubleToLongBits(OrderedCodec.getDouble(ea, 0)));
+			for (final double b : values) {
+				assertEquals(a + " vs " + b, Integer.signum(Double.compare(a, b)), compare(ea, encodeDouble(b)));
+			}
+		}
+		assertTrue(compare(encodeDouble(-0d), encodeDouble(0d)) < 0);
+	}
+
+	/**
+	 * @return short byte strings over an alphabet of escape-sensitive bytes
+	 */
+	private List<byte[]> sampleByteStrings() {
+		final byte[] alphabet = { 0x00, 0x01, 0x02, 'a', 'b', (byte) 0xFE, (byte) 0xFF };
+		final List<byte[]> values = new ArrayList<>();
+		values.add(new byte[0]);
+		for (final byte b : alphabet) {
+			values.add(new byte[] { b });
+			values.add(new byte[] { 'a', b });
+			values.add(new byte[] { b, 0 });
+		}
+		for (int i = 0; i < RANDOM_VALUES; i++) {
+			final byte[] value = new byte[random.nextInt(6)];
+			for (int j = 0; j < value.length; j++) {
+				value[j] = alphabet[random.nextInt(alphabet.length)];
+			}
+			values.add(value);
+		}
+		return values;
+	}
+
+	@Test
+	public void byteStrings() {
+		final List<byte[]> values = sampleByteStrings();
+		for (final byte[] a : values) {
+			final byte[] ea = encodeBytes(a);
+			assertArrayEquals(a, decodeBytes(ea, 0));
+			for (final byte[] b : values) {
+				final String name = FastArrays.toString(a, 0, a.length) + " vs " + FastArrays.toString(b, 0, b.length);
+				assertEquals(name, compareBytes(a, b), compare(ea, encodeBytes(b)));
+			}
+		}
+		final byte[] a = encodeBytes(new byte[] { 'a' });
+		final byte[] a0 = encodeBytes(new byte[] { 'a', 0 });
+		final byte[] a1 = encodeBytes(new byte[] { 'a', 1 });
+		assertTrue(compare(a, a0) < 0);
+		assertTrue(compare(a0, a1) < 0);
+		assertTrue(compare(encodeBytes(new byte[] { 'a', 0, (byte) 0xFF }), a1) < 0);
+	}
+
+	/**
+	 * A composite key (int, byte string, long) compares field by field.
+	 */
+	@Test
+	public void tuples() {
+		final List<byte[]> strings = sampleByteStrings();
+		final int count = 300;
+		final int[] ints = new int[count];
+		final byte[][] bytes = new byte[count][];
+		final long[] longs = new long[count];
+		final byte[][] keys = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			// few distinct values, so that leading fields are often equal
+			ints[i] = random.nextInt(3) - 1;
+			bytes[i] = strings.get(random.nextInt(12));
+			longs[i] = random.nextBoolean() ? random.nextInt(3) - 1 : random.nextLong();
+			final byte[] key = new byte[4 + OrderedCodec.bytesLength(bytes[i], 0, bytes[i].length) + 8];
+			int offset = OrderedCodec.putInt(key, 0, ints[i]);
+			offset += OrderedCodec.putBytes(key, offset, bytes[i], 0, bytes[i].length);
+			offset += OrderedCodec.putLong(key, offset, longs[i]);
+			assertEquals(key.length, offset);
+			keys[i] = key;
+
+			assertEquals(ints[i], OrderedCodec.getInt(key, 0));
+			assertArrayEquals(bytes[i], decodeBytes(key, 4));
+			assertEquals(longs[i], OrderedCodec.getLong(key, 4 + OrderedCodec.encodedLength(key, 4)));
+		}
+		for (int i = 0; i < count; i++) {
+			for (int j = 0; j < count; j++) {
+				int expected = Integer.compare(ints[i], ints[j]);
+				if (expected == 0) {
+					expected = compareBytes(bytes[i], bytes[j]);
+				}
+				if (expected == 0) {
+					expected = Long.compare(longs[i], longs[j]);
+				}
+				assertEquals(Integer.signum(expected), compare(keys[i], keys[j]));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,291 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link RecordLogWriter} and {@link RecordLogReader} together: round
+ * trips, torn tails, truncation and resuming a log.
+ *
+ * @author Ricardo Padilha
+ */
+public class RecordLogTest {
+
+	private static final int START = 16;
+	private static final int CAPACITY = 1 << 16;
+	private static final long GENERATION = 7;
+
+	private final Random random = new Random(6);
+
+	/**
+	 * Fills the buffer with garbage, as left by an older log, and appends
+	 * records from {@link #START}.
+	 */
+	private List<byte[]> write(final ByteBuffer buffer, final int count) {
+		return write(buffer, count, false);
+	}
+
+	private List<byte[]> write(final ByteBuffer buffer, final int count, final boolean mapped) {
+		for (int i = 0; i < buffer.capacity(); i++) {
+			buffer.put(i, (byte) random.nextInt());
+		}
+		buffer.position(START);
+		final RecordLogWriter writer;
+		if (mapped) {
+			writer = new RecordLogWriter((MappedByteBuffer) buffer, GENERATION);
+		} else {
+			writer = new RecordLogWriter(buffer, GENERATION);
+		}
+		final List<byte[]> records = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			final byte[] payload = new byte[random.nextInt(200)];
+			random.nextBytes(payload);
+			if (random.nextBoolean()) {
+				writer.append(payload, 0, payload.length);
+			} else {
+				writer.append(ByteBuffer.wrap(payload));
+			}
+			records.add(payload);
+			if (i % 10 == 9) {
+				assertEquals(10, writer.commit());
+			}
+		}
+		assertEquals(START, buffer.position());
+		return records;
+	}
+
+	private static int count(final ByteBuffer buffer) {
+		final RecordLogReader reader = new RecordLogReader(buffer, GENERATION);
+		int n = 0;
+		while (reader.next()) {
+			n++;
+		}
+		return n;
+	}
+
+	private void roundTrip(final ByteBuffer buffer, final boolean mapped) {
+		final List<byte[]> records = write(buffer, 100, mapped);
+		final RecordLogReader reader = new RecordLogReader(buffer, GENERATION);
+		int end = START;
+		for (final byte[] expected : records) {
+			assertTrue(reader.next());
+			final byte[] actual = new byte[reader.payloadLength()];
+			reader.getPayload(actual, 0);
+			assertArrayEquals(expected, actual);
+			assertEquals(ByteBuffer.wrap(expected), reader.payload());
+			end += RecordLogWriter.frameLength(expected.length);
+		}
+		assertFalse(reader.next());
+		assertFalse(reader.isTorn());
+		assertEquals(end, reader.end());
+	}
+
+	@Test
+	public void roundTripHeap() {
+		roundTrip(ByteBuffer.allocate(CAPACITY), false);
+	}
+
+	@Test
+	public void roundTripDirect() {
+		roundTrip(ByteBuffer.allocateDirect(CAPACITY), false);
+	}
+
+	@Test
+	public void roundTripMapped() throws IOException {
+		final Path file = Files.createTempFile("records", ".log");
+		try {
+			final MappedByteBuffer buffer;
+			try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+					StandardOpenOption.WRITE)) {
+				buffer = channel.map(MapMode.READ_WRITE, 0, CAPACITY);
+			}
+			roundTrip(buffer, true);
+			final RecordLogReader reader = new RecordLogReader(buffer, GENERATION);
+			final int end = reader.truncate();
+			FastArrays.putInt(buffer, end, 1);
+			assertEquals(end, new RecordLogReader(buffer, GENERATION).truncate());
+			assertEquals(end, reader.end());
+			FastArrays.release(buffer);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void truncateAndResume() {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(CAPACITY);
+		final List<byte[]> records = write(buffer, 100);
+		final RecordLogReader clean = new RecordLogReader(buffer, GENERATION);
+		while (clean.next()) {
+			continue;
+		}
+		final int end = clean.end();
+		final byte[] last = records.get(records.size() - 1);
+		final int lastStart = end - RecordLogWriter.frameLength(last.length);
+
+		// corrupt the last record: its payload, or its CRC if it has none
+		final int corrupt = last.length > 0 ? end - 1 : lastStart + RecordLogWriter.HEADER_LENGTH - 1;
+		buffer.put(corrupt, (byte) (buffer.get(corrupt) ^ 1));
+		final RecordLogReader torn = new RecordLogReader(buffer, GENERATION);
+		assertEquals(99, count(buffer));
+		while (torn.next()) {
+			continue;
+		}
+		assertTrue(torn.isTorn());
+		assertEquals(lastStart, torn.end());
+
+		assertEquals(lastStart, new RecordLogReader(buffer, GENERATION).truncate());
+		final RecordLogReader truncated = new RecordLogReader(buffer, GENERATION);
+		while (truncated.next()) {
+			continue;
+		}
+		assertFalse(truncated.isTorn());
+		assertEquals(lastStart, truncated.end());
+
+		// resume where the valid records end
+		buffer.position(truncated.end());
+		final RecordLogWriter writer = new RecordLogWriter(buffer, GENERATION);
+		writer.append(new byte[] { 1, 2, 3 }, 0, 3);
+		writer.commit();
+		buffer.position(START);
+		final RecordLogReader resumed = new RecordLogReader(buffer, GENERATION);
+		for (int i = 0; i < 99; i++) {
+			assertTrue(resumed.next());
+		}
+		assertTrue(resumed.next());
+		final byte[] payload = new byte[3];
+		resumed.getPayload(payload, 0);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, payload);
+		assertFalse(resumed.next());
+		assertFalse(resumed.isTorn());
+	}
+
+	@Test
+	public void staleGeneration() {
+		final ByteBuffer buffer = ByteBuffer.allocate(CAPACITY);
+		final List<byte[]> records = write(buffer, 100);
+		final ByteBuffer old = ByteBuffer.wrap(buffer.array().clone());
+		old.position(START);
+
+		// a new log writes the same records at the same offsets, then crashes
+		// before the header zeroed after its last record reaches the disk
+		final RecordLogWriter writer = new RecordLogWriter(buffer, GENERATION + 1);
+		for (int i = 0; i < 10; i++) {
+			writer.append(records.get(i), 0, records.get(i).length);
+		}
+		writer.commit();
+		final int end = START + writer.length();
+		System.arraycopy(old.array(), end, buffer.array(), end, RecordLogWriter.HEADER_LENGTH);
+		assertEquals(100, count(old));
+
+		final RecordLogReader reader = new RecordLogReader(buffer, GENERATION + 1);
+		for (int i = 0; i < 10; i++) {
+			assertTrue(reader.next());
+			assertEquals(ByteBuffer.wrap(records.get(i)), reader.payload());
+		}
+		assertFalse(reader.next());
+		assertTrue(reader.isTorn());
+		assertEquals(end, reader.end());
+		assertEquals(end, new RecordLogReader(buffer, GENERATION + 1).truncate());
+		assertEquals(0, count(buffer));
+	}
+
+	@Test
+	public void relocatedRecord() {
+		final ByteBuffer buffer = ByteBuffer.allocate(CAPACITY);
+		buffer.position(START);
+		final RecordLogWriter writer = new RecordLogWriter(buffer, GENERATION);
+		final int frame = writer.append(new byte[] { 1, 2, 3 }, 0, 3);
+		final int length = RecordLogWriter.frameLength(3);
+		// a valid frame of the same generation, but recorded at another index
+		for (int i = 0; i < length; i++) {
+			buffer.put(frame + length + i, buffer.get(frame + i));
+		}
+		final RecordLogReader reader = new RecordLogReader(buffer, GENERATION);
+		assertTrue(reader.next());
+		assertFalse(reader.next());
+		assertTrue(reader.isTorn());
+		assertEquals(frame + length, reader.end());
+	}
+
+	@Test
+	public void lengthBeyondEnd() {
+		final ByteBuffer buffer = ByteBuffer.allocate(CAPACITY);
+		write(buffer, 10);
+		final RecordLogReader reader = new RecordLogReader(buffer, GENERATION);
+		while (reader.next()) {
+			continue;
+		}
+		FastArrays.putInt(buffer, reader.end(), CAPACITY);
+		FastArrays.putInt(buffer, reader.end() + Integer.SIZE / Byte.SIZE, 1);
+		assertEquals(10, count(buffer));
+		final RecordLogReader torn = new RecordLogReader(buffer, GENERATION);
+		while (torn.next()) {
+			continue;
+		}
+		assertTrue(torn.isTorn());
+	}
+
+	@Test
+	public void overflow() {
+		final ByteBuffer buffer = ByteBuffer.allocate(RecordLogWriter.frameLength(12));
+		final RecordLogWriter writer = new RecordLogWriter(buffer, GENERATION);
+		writer.append(new byte[12], 0, 12);
+		try {
+			writer.append(new byte[1], 0, 1);
+			fail();
+		} catch (final BufferOverflowException e) {
+			// expected
+		}
+		final RecordLogReader reader = new RecordLogReader(buffer, GENERATION);
+		assertTrue(reader.next());
+		assertFalse(reader.next());
+		assertFalse(reader.isTorn());
+	}
+
+	@Test
+	public void emptyRecord() {
+		final ByteBuffer buffer = ByteBuffer.allocate(64);
+		new RecordLogWriter(buffer, GENERATION).append(new byte[0], 0, 0);
+		final RecordLogReader reader = new RecordLogReader(buffer, GENERATION);
+		assertTrue(reader.next());
+		assertEquals(0, reader.payloadLength());
+		assertFalse(reader.next());
+		assertFalse(reader.isTorn());
+	}
+
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link Utf8} against the JDK's encoder, and its decoder against
+ * ill-formed sequences.
+ *
+ * @author Ricardo Padilha
+ */
+public class Utf8Test {
+
+	private static final int ASCII_RUNS = 20;
+
+	/**
+	 * Chars of every encoded length, and lone surrogates.
+	 */
+	private static final String[] PIECES = { "a", "\u0000", "\u007f", "\u0080", "\u07ff", "\u0800", "\ud7ff",
+			"\ue000", "\uffff", "\ud800\udc00", "\udbff\udfff", "\ud83d\ude00", "\ud800", "\udfff" };
+
+	private static final int[][] MALFORMED = {
+			// lone continuation bytes
+			{ 0x80 }, { 0xBF },
+			// overlong
+			{ 0xC0, 0x80 }, { 0xC1, 0xBF }, { 0xE0, 0x80, 0x80 }, { 0xE0, 0x9F, 0xBF }, { 0xF0, 0x80, 0x80, 0x80 },
+			{ 0xF0, 0x8F, 0xBF, 0xBF },
+			// surrogate code points
+			{ 0xED, 0xA0, 0x80 }, { 0xED, 0xAF, 0xBF }, { 0xED, 0xB0, 0x80 }, { 0xED, 0xBF, 0xBF },
+			// truncated
+			{ 0xC2 }, { 0xDF, 0x41 }, { 0xE0, 0xA0 }, { 0xE1, 0x80, 0x41 }, { 0xF0, 0x90, 0x80 },
+			{ 0xF4, 0x8F, 0xBF, 0x41 },
+			// above U+10FFFF
+			{ 0xF4, 0x90, 0x80, 0x80 }, { 0xF5, 0x80, 0x80, 0x80 }, { 0xF7, 0xBF, 0xBF, 0xBF },
+			{ 0xF8, 0x88, 0x80, 0x80, 0x80 }, { 0xFF } };
+
+	private final Random random = new Random(13);
+
+	/**
+	 * @return a string of random pieces, with runs of ASCII of every length
+	 *         up to {@value #ASCII_RUNS}
+	 */
+	private String randomString(final boolean loneSurrogates) {
+		final StringBuilder s = new StringBuilder();
+		final int pieces = random.nextInt(8);
+		for (int i = 0; i < pieces; i++) {
+			final int run = random.nextInt(ASCII_RUNS + 1);
+			for (int k = 0; k < run; k++) {
+				s.append((char) (0x20 + random.nextInt(0x5F)));
+			}
+			final String piece = PIECES[random.nextInt(PIECES.length)];
+			if (loneSurrogates || piece.length() > 1 || !Character.isSurrogate(piece.charAt(0))) {
+				s.append(piece);
+			}
+		}
+		return s.toString();
+	}
+
+	@Test
+	public void encodeArray() {
+		for (int n = 0; n < 2000; n++) {
+			final String s = randomString(true);
+			final byte[] expected = s.getBytes(StandardCharsets.UTF_8);
+			assertEquals(s, expected.length, Utf8.encodedLength(s));
+			final int offset = random.nextInt(9);
+			// exact fit, so that ASCII runs may end within the last 8 bytes
+			final byte[] dst = new byte[offset + expected.length];
+			assertEquals(s, expected.length, Utf8.encode(s, dst, offset));
+			assertArrayEquals(s, expected, Arrays.copyOfRange(dst, offset, dst.length));
+		}
+	}
+
+	@Test
+	public void encodeAsciiAtEnd() {
+		for (int length = 0; length <= ASCII_RUNS; length++) {
+			final StringBuilder s = new StringBuilder("\u00e9");
+			for (int i = 0; i < length; i++) {
+				s.append((char) ('a' + i));
+			}
+			final byte[] expected = s.toString().getBytes(StandardCharsets.UTF_8);
+			for (int slack = 0; slack < 9; slack++) {
+				final byte[] dst = new byte[expected.length + slack];
+				assertEquals(expected.length, Utf8.encode(s, dst, slack));
+				assertArrayEquals(expected, Arrays.copyOfRange(dst, slack, dst.length));
+			}
+		}
+	}
+
+	@Test
+	public void encodeBuffer() {
+		for (int n = 0; n < 500; n++) {
+			final String s = randomString(true);
+			final byte[] expected = s.getBytes(StandardCharsets.UTF_8);
+			final int index = random.nextInt(9);
+			for (final ByteBuffer dst : new ByteBuffer[] { ByteBuffer.allocate(index + expected.length),
+					ByteBuffer.allocateDirect(index + expected.length) }) {
+				assertEquals(expected.length, Utf8.encode(s, dst, index));
+				final byte[] actual = new byte[expected.length];
+				dst.position(index);
+				dst.get(actual);
+				assertArrayEquals(s, expected, actual);
+			}
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void encodeBufferTooSmall() {
+		Utf8.encode("\u00e9\u00e9", ByteBuffer.allocateDirect(3), 0);
+	}
+
+	/**
+	 * @return the given bytes in an array, a direct buffer and a read-only
+	 *         heap buffer, which hides its array
+	 */
+	private static Object[] sources(final byte[] bytes) {
+		final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+		direct.put(bytes).clear();
+		return new Object[] { bytes, direct, ByteBuffer.wrap(bytes).asReadOnlyBuffer() };
+	}
+
+	private static String decode(final Object src, final int offset, final int length, final boolean builder) {
+		if (builder) {
+			final StringBuilder dst = new StringBuilder("x");
+			final int n;
+			if (src instanceof byte[]) {
+				n = Utf8.decode((byte[]) src, offset, length, dst);
+			} else {
+				n = Utf8.decode((ByteBuffer) src, offset, length, dst);
+			}
+			assertEquals(dst.length() - 1, n);
+			return dst.substring(1);
+		}
+		final char[] dst = new char[length + 1];
+		final int n;
+		if (src instanceof byte[]) {
+			n = Utf8.decode((byte[]) src, offset, length, dst, 1);
+		} else {
+			n = Utf8.decode((ByteBuffer) src, offset, length, dst, 1);
+		}
+		return new String(dst, 1, n);
+	}
+
+	@Test
+	public void decode() {
+		for (int n = 0; n < 2000; n++) {
+			final String s = randomString(false);
+			final byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+			final int offset = random.nextInt(9);
+			final byte[] src = new byte[offset + encoded.length + random.nextInt(9)];
+			random.nextBytes(src);
+			System.arraycopy(encoded, 0, src, offset, encoded.length);
+			assertEquals(s.length(), Utf8.decodedLength(src, offset, encoded.length));
+			for (final Object source : sources(src)) {
+				assertEquals(s, decode(source, offset, encoded.length, false));
+				assertEquals(s, decode(source, offset, encoded.length, true));
+			}
+		}
+	}
+
+	@Test
+	public void decodeMalformed() {
+		for (final int[] sequence : MALFORMED) {
+			// after ASCII runs of every length, so that the word-at-a-time
+			// scan hands over to the sequence at every alignment
+			for (int ascii = 0; ascii <= ASCII_RUNS; ascii++) {
+				final byte[] src = new byte[ascii + sequence.length];
+				for (int i = 0; i < ascii; i++) {
+					src[i] = 'a';
+				}
+				for (int i = 0; i < sequence.length; i++) {
+					src[ascii + i] = (byte) sequence[i];
+				}
+				final String name = FastArrays.toString(src, ascii, sequence.length);
+				for (final Object source : sources(src)) {
+					for (final boolean builder : new boolean[] { false, true }) {
+						try {
+							decode(source, 0, src.length, builder);
+							fail(name + " in " + source);
+						} catch (final IllegalArgumentException e) {
+							// expected
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void decodeTruncatedByRange() {
+		final byte[] src = "a\ud83d\ude00".getBytes(StandardCharsets.UTF_8);
+		for (int length = 2; length < src.length; length++) {
+			for (final Object source : sources(src)) {
+				try {
+					decode(source, 0, length, false);
+					fail(length + " in " + source);
+				} catch (final IllegalArgumentException e) {
+					// expected
+				}
+			}
+		}
+	}
+
+}
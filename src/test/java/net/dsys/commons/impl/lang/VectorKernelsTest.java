@@ -0,0 +1,250 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares the SIMD kernels, and the {@link FastArrays} methods that use them,
+ * with naive scalar code, for lengths around the vector threshold of 64
+ * bytes and at unaligned offsets. The kernels are only tested in the
+ * multi-release JAR run with <code>jdk.incubator.vector</code>; the
+ * {@link FastArrays} methods are tested on every run.
+ *
+ * @author Ricardo Padilha
+ */
+public class VectorKernelsTest {
+
+	private static final int MAX_LENGTH = 200;
+	private static final int MAX_OFFSET = 9;
+
+	private final Random random = new Random(17);
+
+	private static int mismatch(final byte[] left, final int leftOffset, final byte[] right, final int rightOffset,
+			final int length) {
+		for (int i = 0; i < length; i++) {
+			if (left[leftOffset + i] != right[rightOffset + i]) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int getInt(final byte[] array, final int index) {
+		return (array[index] << 24) | ((array[index + 1] & 0xFF) << 16) | ((array[index + 2] & 0xFF) << 8)
+				| (array[index + 3] & 0xFF);
+	}
+
+	private static int hashInts(final byte[] array, final int offset, final int ints, final int hashcode) {
+		int hash = hashcode;
+		for (int i = 0; i < ints; i++) {
+			hash = 31 * hash + getInt(array, offset + i * 4);
+		}
+		return hash;
+	}
+
+	private static int hashCode(final byte[] array, final int offset, final int length) {
+		if (length == 4) {
+			return getInt(array, offset);
+		}
+		final int ints = length / 4;
+		int hash = hashInts(array, offset, ints, 1);
+		for (int i = offset + ints * 4; i < offset + length; i++) {
+			hash = 31 * hash + array[i];
+		}
+		return hash;
+	}
+
+	private static int indexOf(final byte[] array, final int offset, final int length, final byte value) {
+		for (int i = offset; i < offset + length; i++) {
+			if (array[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int compare(final byte[] left, final int leftOffset, final int leftLength, final byte[] right,
+			final int rightOffset, final int rightLength) {
+		final int pos = mismatch(left, leftOffset, right, rightOffset, Math.min(leftLength, rightLength));
+		if (pos < 0) {
+			return Integer.signum(leftLength - rightLength);
+		}
+		return (left[leftOffset + pos] & 0xFF) < (right[rightOffset + pos] & 0xFF) ? -1 : 1;
+	}
+
+	/**
+	 * @return two copies of the same random bytes at unrelated offsets
+	 */
+	private byte[][] pair(final int length, final int leftOffset, final int rightOffset) {
+		final byte[] left = new byte[leftOffset + length + MAX_OFFSET];
+		random.nextBytes(left);
+		final byte[] right = new byte[rightOffset + length + MAX_OFFSET];
+		random.nextBytes(right);
+		System.arraycopy(left, leftOffset, right, rightOffset, length);
+		return new byte[][] { left, right };
+	}
+
+	private void mismatch(final boolean kernel) {
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			final int leftOffset = random.nextInt(MAX_OFFSET);
+			final int rightOffset = random.nextInt(MAX_OFFSET);
+			final byte[][] pair = pair(length, leftOffset, rightOffset);
+			final byte[] left = pair[0];
+			final byte[] right = pair[1];
+			for (int pos = -1; pos < length; pos++) {
+				if (pos >= 0) {
+					// 0x7F vs 0x80 differs in sign, not only in value
+					left[leftOffset + pos] = 0x7F;
+					right[rightOffset + pos] = (byte) 0x80;
+				}
+				final int expected = mismatch(left, leftOffset, right, rightOffset, length);
+				assertEquals(pos, expected);
+				if (kernel) {
+					assertEquals(expected, VectorKernels.mismatch(left, leftOffset, right, rightOffset, length));
+				} else {
+					assertEquals(expected, FastArrays.mismatch(left, leftOffset, right, rightOffset, length));
+					assertEquals(compare(left, leftOffset, length, right, rightOffset, length),
+							FastArrays.compareArrays(left, leftOffset, length, right, rightOffset, length));
+					final int shorter = Math.max(length - 1, 0);
+					assertEquals(compare(right, rightOffset, length, left, leftOffset, shorter),
+							FastArrays.compareArrays(right, rightOffset, length, left, leftOffset, shorter));
+				}
+				if (pos >= 0) {
+					left[leftOffset + pos] = right[rightOffset + pos];
+				}
+			}
+		}
+	}
+
+	private void hashInts(final boolean kernel) {
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			final int offset = random.nextInt(MAX_OFFSET);
+			final byte[] array = new byte[offset + length];
+			random.nextBytes(array);
+			if (kernel) {
+				final int hashcode = random.nextInt();
+				assertEquals(hashInts(array, offset, length / 4, hashcode),
+						VectorKernels.hashInts(array, offset, length / 4, hashcode));
+			} else {
+				assertEquals(hashCode(array, offset, length), FastArrays.hashCode(array, offset, length));
+			}
+		}
+	}
+
+	private void indexOf(final boolean kernel) {
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			final int offset = random.nextInt(MAX_OFFSET);
+			final byte[] array = new byte[offset + length + MAX_OFFSET];
+			// no zero in the range, except where placed below
+			for (int i = 0; i < array.length; i++) {
+				array[i] = (byte) (1 + random.nextInt(255));
+			}
+			for (int pos = -1; pos < length; pos++) {
+				if (pos >= 0) {
+					array[offset + pos] = 0;
+				}
+				final int expected = indexOf(array, offset, length, (byte) 0);
+				assertEquals(pos < 0 ? -1 : offset + pos, expected);
+				if (kernel) {
+					assertEquals(expected, VectorKernels.indexOf(array, offset, length, (byte) 0));
+				} else {
+					assertEquals(expected, FastArrays.indexOf(array, offset, length, (byte) 0));
+				}
+				if (pos >= 0) {
+					// a later duplicate must not change the result
+					array[offset + length - 1] = 0;
+					if (kernel) {
+						assertEquals(expected, VectorKernels.indexOf(array, offset, length, (byte) 0));
+					} else {
+						assertEquals(expected, FastArrays.indexOf(array, offset, length, (byte) 0));
+					}
+					array[offset + length - 1] = 1;
+					array[offset + pos] = 1;
+				}
+			}
+		}
+	}
+
+	private void fill(final boolean kernel) {
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			final int offset = random.nextInt(MAX_OFFSET);
+			final byte[] array = new byte[offset + length + MAX_OFFSET];
+			random.nextBytes(array);
+			final byte[] expected = array.clone();
+			final byte value = (byte) random.nextInt();
+			for (int i = offset; i < offset + length; i++) {
+				expected[i] = value;
+			}
+			if (kernel) {
+				VectorKernels.fill(array, offset, length, value);
+			} else {
+				assertEquals(length, FastArrays.fill(array, offset, length, value));
+			}
+			assertEquals(-1, mismatch(expected, 0, array, 0, array.length));
+		}
+	}
+
+	@Test
+	public void mismatchKernel() {
+		MultiRelease.requireVectors();
+		mismatch(true);
+	}
+
+	@Test
+	public void compareArrays() {
+		mismatch(false);
+	}
+
+	@Test
+	public void hashIntsKernel() {
+		MultiRelease.requireVectors();
+		hashInts(true);
+	}
+
+	@Test
+	public void hashCodeOfRange() {
+		hashInts(false);
+	}
+
+	@Test
+	public void indexOfKernel() {
+		MultiRelease.requireVectors();
+		indexOf(true);
+	}
+
+	@Test
+	public void indexOfRange() {
+		indexOf(false);
+	}
+
+	@Test
+	public void fillKernel() {
+		MultiRelease.requireVectors();
+		fill(true);
+	}
+
+	@Test
+	public void fillRange() {
+		fill(false);
+	}
+
+}
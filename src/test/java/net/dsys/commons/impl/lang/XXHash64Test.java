@@ -0,0 +1,87 @@
+/**
+ * Copyright 2014 Ricardo Padilha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.dsys.commons.impl.lang;
+
+import static net.dsys.commons.impl.lang.HashVectors.PRIME;
+import static net.dsys.commons.impl.lang.HashVectors.SANITY_LENGTHS;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+/**
+ * Checks {@link XXHash64} against the vectors of the xxHash self-test.
+ *
+ * @author Ricardo Padilha
+ */
+public class XXHash64Test {
+
+	/**
+	 * xxHash64 of the prefixes of {@link HashVectors#sanityBuffer()}, with
+	 * seed 0 and {@link HashVectors#PRIME}, as published in
+	 * <code>xxhsum.c</code>.
+	 */
+	private static final long[] SANITY = {
+			0xEF46DB3751D8E999L, 0xAC75FDA2929B17EFL,
+			0x4FCE394CC88952D8L, 0x739840CB819FA723L,
+			0xCFFA8DB881BC3A3DL, 0x5B9611585EFCC9CBL,
+			0x0EAB543384F878ADL, 0xCAA65939306F1E21L,
+	};
+
+	@Test
+	public void empty() {
+		assertEquals(0xEF46_DB37_51D8_E999L, XXHash64.hash(new byte[0], 0, 0));
+	}
+
+	@Test
+	public void sanity() {
+		final byte[] array = HashVectors.sanityBuffer();
+		for (int i = 0; i < SANITY.length; i++) {
+			final int n = SANITY_LENGTHS[i / 2];
+			final long seed = i % 2 == 0 ? 0 : PRIME & 0xFFFF_FFFFL;
+			final String msg = "length " + n + ", seed " + seed;
+			assertEquals(msg, SANITY[i], XXHash64.hash(array, 0, n, seed));
+			assertEquals(msg, SANITY[i], XXHash64.hash(HashVectors.direct(array, n), 0, n, seed));
+			assertEquals(msg, SANITY[i], XXHash64.hash(ByteBuffer.wrap(array), 0, n, seed));
+		}
+	}
+
+	/**
+	 * Buffers and streaming updates agree with arrays on every length, so
+	 * that all tail paths are covered.
+	 */
+	@Test
+	public void streaming() {
+		final byte[] array = HashVectors.sanityBuffer();
+		for (int n = 0; n <= array.length; n++) {
+			final long seed = n * 13;
+			final long expected = XXHash64.hash(array, 0, n, seed);
+			final ByteBuffer direct = HashVectors.direct(array, n);
+			assertEquals(expected, XXHash64.hash(direct, 0, n, seed));
+			final XXHash64 stream = new XXHash64(seed);
+			for (int j = 0; j < n; j += 5) {
+				stream.update(array, j, Math.min(5, n - j));
+			}
+			assertEquals(expected, stream.getValue());
+			stream.reset();
+			stream.update(direct, 0, n);
+			assertEquals(expected, stream.digest());
+		}
+	}
+
+}